@@ -0,0 +1,274 @@
+// ****************************************************************************
+//
+// Bench.java : Generic base for simple microbenchmarks, with warmup and
+// measurement iterations, throughput and latency modes.
+//
+// Copyright 2026 the Intense project contributors.
+//
+// This file is part of the Intense project.
+//
+// Intense is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// Intense is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with Intense; if not, write to the Free Software Foundation, Inc.,
+// 59 Temple Place, Suite 330, Boston, MA 02111-1307, USA.
+//
+// ****************************************************************************
+
+
+import java.util.*;
+import java.util.regex.*;
+
+
+public abstract class Bench {
+
+  /**
+   * A single benchmarked operation.  The result is consumed, so that the
+   * work done to produce it cannot be optimised away.
+   */
+  protected abstract static class Operation {
+
+    public abstract Object run
+    ()
+      throws Exception;
+
+  }
+
+  protected String execName;
+
+  protected int warmupIterations;
+
+  protected int iterations;
+
+  protected long iterationMillis;
+
+  protected Pattern filter;
+
+  private int sink;
+
+  public Bench
+  (String execName)
+  {
+    this.execName = execName;
+    warmupIterations = 3;
+    iterations = 5;
+    iterationMillis = 1000;
+    filter = null;
+    sink = 0;
+  }
+
+  protected String getUsageString
+  ()
+  {
+    return "\nusage:\n\n" + execName + " [-w<warmup iterations>] " +
+      "[-i<measurement iterations>]\n\t[-t<milliseconds per iteration>] " +
+      "[-f<benchmark name regex>]\n" +
+      "\t[-h (help - you're looking at it...)]\n";
+  }
+
+  protected void usage
+  ()
+  {
+    System.err.println(getUsageString());
+    System.exit(1);
+  }
+
+  private int getIntOpt
+  (String value)
+  {
+    try {
+      return Integer.parseInt(value);
+    } catch (NumberFormatException e) {
+      System.err.println("Invalid number \"" + value + "\"");
+      System.exit(1);
+      return 0;
+    }
+  }
+
+  protected void getOpts
+  (String[] argv)
+  {
+    for (int i = 0; i < argv.length; i++) {
+      if (argv[i].startsWith("-w")) {
+        warmupIterations = getIntOpt(argv[i].substring(2));
+      } else if (argv[i].startsWith("-i")) {
+        iterations = getIntOpt(argv[i].substring(2));
+      } else if (argv[i].startsWith("-t")) {
+        iterationMillis = getIntOpt(argv[i].substring(2));
+      } else if (argv[i].startsWith("-f")) {
+        filter = Pattern.compile(argv[i].substring(2));
+      } else {
+        usage();
+      }
+    }
+    if ((iterations < 1)||(warmupIterations < 0)||(iterationMillis < 1)) {
+      usage();
+    }
+  }
+
+  private boolean selected
+  (String name)
+  {
+    return (filter == null)||(filter.matcher(name).find());
+  }
+
+  private void consume
+  (Object result)
+  {
+    sink += System.identityHashCode(result);
+  }
+
+  /**
+   * Run op repeatedly for one iteration.
+   *
+   * @return The number of operations per second.
+   */
+  private double throughputIteration
+  (Operation op)
+    throws Exception
+  {
+    long deadline = System.nanoTime() + iterationMillis*1000000L;
+    long start = System.nanoTime();
+    long count = 0;
+    long now;
+    int batch = 1;
+
+    do {
+      for (int i = 0; i < batch; i++) {
+        consume(op.run());
+      }
+      count += batch;
+      now = System.nanoTime();
+      if (batch < 1024) {
+        batch *= 2;
+      }
+    } while (now < deadline);
+    return count*1e9/(now - start);
+  }
+
+  private static String format
+  (double value)
+  {
+    return String.format("%14.3f", value);
+  }
+
+  private void report
+  (String name, String mode, double score, double error, String units)
+  {
+    System.out.println(
+      String.format(
+        "%-48s %6s %4d", execName + '.' + name, mode, iterations
+      ) + format(score) + " +-" + format(error) + "  " + units
+    );
+  }
+
+  private void reportPercentile
+  (String name, long[] sortedSamples, int count, double fraction)
+  {
+    int index = Math.min((int)(count*fraction), count - 1);
+
+    report(name, "sample", sortedSamples[index]/1e3, 0, "us/op");
+  }
+
+  /**
+   * Measure the throughput of an operation.
+   */
+  protected void throughput
+  (String name, Operation op)
+    throws Exception
+  {
+    double[] scores = new double[iterations];
+    double mean = 0;
+    double variance = 0;
+
+    if (!selected(name)) {
+      return;
+    }
+    for (int i = 0; i < warmupIterations; i++) {
+      throughputIteration(op);
+    }
+    for (int i = 0; i < iterations; i++) {
+      scores[i] = throughputIteration(op);
+      mean += scores[i];
+    }
+    mean /= iterations;
+    for (int i = 0; i < iterations; i++) {
+      variance += (scores[i] - mean)*(scores[i] - mean);
+    }
+    if (iterations > 1) {
+      variance /= (iterations - 1);
+    }
+    report(name, "thrpt", mean, Math.sqrt(variance), "ops/s");
+  }
+
+  /**
+   * Measure the latency distribution of an operation, one call at a time.
+   */
+  protected void latency
+  (String name, Operation op)
+    throws Exception
+  {
+    long[] samples = new long[1024];
+    int count = 0;
+
+    if (!selected(name)) {
+      return;
+    }
+    for (int i = 0; i < warmupIterations; i++) {
+      throughputIteration(op);
+    }
+    for (int i = 0; i < iterations; i++) {
+      long deadline = System.nanoTime() + iterationMillis*1000000L;
+      long now;
+
+      do {
+        long start = System.nanoTime();
+
+        consume(op.run());
+        now = System.nanoTime();
+        if (count == samples.length) {
+          samples = Arrays.copyOf(samples, count*2);
+        }
+        samples[count++] = now - start;
+      } while (now < deadline);
+    }
+    Arrays.sort(samples, 0, count);
+    reportPercentile(name + ":p50", samples, count, 0.5);
+    reportPercentile(name + ":p90", samples, count, 0.9);
+    reportPercentile(name + ":p99", samples, count, 0.99);
+    reportPercentile(name + ":max", samples, count, 1.0);
+  }
+
+  protected void benchMain
+  (String[] argv)
+  {
+    getOpts(argv);
+    try {
+      bench();
+    } catch (Exception e) {
+      System.err.println(
+        "\n" + execName + " generated an Exception:\n\n" + e.getMessage() +
+        "\n"
+      );
+      e.printStackTrace(System.err);
+      System.exit(3);
+    }
+    // Keeps the consumed results live:
+    if (sink == 42) {
+      System.err.print("");
+    }
+  }
+
+  protected abstract void bench
+  ()
+    throws Exception;
+
+}
@@ -0,0 +1,202 @@
+// ****************************************************************************
+//
+// IntenseAEPBench0.java : Benchmarks of AEP operations between AEPSharedClients
+// and AEPSharedServers.
+//
+// Copyright 2026 the Intense project contributors.
+//
+// This file is part of the Intense project.
+//
+// Intense is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// Intense is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with Intense; if not, write to the Free Software Foundation, Inc.,
+// 59 Temple Place, Suite 330, Boston, MA 02111-1307, USA.
+//
+// ****************************************************************************
+
+
+import java.util.*;
+import java.util.concurrent.*;
+import intense.*;
+import intense.log.*;
+import intense.aep.*;
+
+
+public class IntenseAEPBench0
+  extends Bench {
+
+  public static final int logLevel = Log.ERROR;
+
+  public static final int readerCount = 8;
+
+  public static final int pipelineLength = 256;
+
+  public IntenseAEPBench0
+  ()
+  {
+    super("IntenseAEPBench0");
+  }
+
+
+  /**
+   * A participant which counts, and otherwise ignores, its notifications.
+   */
+  private static class CountingParticipant
+    extends AEPClient.Participant {
+
+    private long notifications;
+
+    private CountingParticipant
+    (AEPClient client, Log log)
+    {
+      super(client, log, IntenseAEPBench0.logLevel);
+      notifications = 0;
+    }
+
+    public void assignNotify
+    (Context context, CompoundDimension dim, intense.Origin origin)
+    {
+      notifications++;
+    }
+
+    public void applyNotify
+    (ContextOp op, CompoundDimension dim, intense.Origin origin)
+    {
+      notifications++;
+    }
+
+    public void clearNotify
+    (CompoundDimension dim, intense.Origin origin)
+    {
+      notifications++;
+    }
+
+    public void kickNotify
+    (intense.Origin origin)
+    {
+    }
+
+  }
+
+
+  private static class SharedPair {
+
+    AEPSharedServer server;
+
+    AEPSharedClient client;
+
+    SharedPair
+    (AEPServer.AEther aether, Log log)
+      throws Exception
+    {
+      server = new AEPSharedServer(aether, log, logLevel, true);
+      client = new AEPSharedClient(server, log, logLevel);
+      server.start();
+      client.start();
+    }
+
+    void stop
+    ()
+      throws Exception
+    {
+      client.disconnect();
+      client.stop();
+      server.stop();
+    }
+
+  }
+
+
+  protected void bench
+  ()
+    throws Exception
+  {
+    LogStream logStream = new LogStream(System.err, logLevel, true, true);
+    Log log = new Log(logStream);
+    AEPServer.AEther aether = new AEPServer.AEther(
+      AEPServer.AEther.defaultMaxAccumulatedCount, log, logLevel
+    );
+    List<SharedPair> pairs = new LinkedList<SharedPair>();
+    final AEPSharedClient writer;
+    final Context context = new Context(IntenseBench0.contextString(0));
+    final ContextOp op = new ContextOp("[d0:[y:<1>]+d1:[x:<2>]]");
+
+    aether.start();
+    for (int i = 0; i <= readerCount; i++) {
+      pairs.add(new SharedPair(aether, log));
+    }
+    writer = pairs.get(0).client;
+    // Notified readers, joined at the root of the AEther:
+    for (int i = 1; i <= readerCount; i++) {
+      new CountingParticipant(pairs.get(i).client, log).join(false);
+    }
+    writer.assign(context);
+
+    throughput("assign", new Operation() {
+      public Object run
+      ()
+        throws Exception
+      {
+        return new Long(writer.assign(context));
+      }
+    });
+    throughput("apply", new Operation() {
+      public Object run
+      ()
+        throws Exception
+      {
+        return new Long(writer.apply(op));
+      }
+    });
+    throughput("applyPipelined" + pipelineLength, new Operation() {
+      public Object run
+      ()
+        throws Exception
+      {
+        CompletableFuture<Long> last = null;
+
+        for (int i = 0; i < pipelineLength; i++) {
+          last = writer.applyAsync(op);
+        }
+        return last.get();
+      }
+    });
+    latency("applyRoundTrip", new Operation() {
+      public Object run
+      ()
+        throws Exception
+      {
+        return new Long(writer.apply(op));
+      }
+    });
+    latency("synchRoundTrip", new Operation() {
+      public Object run
+      ()
+        throws Exception
+      {
+        return new Long(writer.synch(null));
+      }
+    });
+
+    for (SharedPair pair : pairs) {
+      pair.stop();
+    }
+    aether.stop();
+  }
+
+  public static void main(String[] argv)
+  {
+    IntenseAEPBench0 bench = new IntenseAEPBench0();
+    bench.benchMain(argv);
+  }
+
+}
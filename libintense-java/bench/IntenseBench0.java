@@ -0,0 +1,180 @@
+// ****************************************************************************
+//
+// IntenseBench0.java : Benchmarks of Context and ContextOp operations.
+//
+// Copyright 2026 the Intense project contributors.
+//
+// This file is part of the Intense project.
+//
+// Intense is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// Intense is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with Intense; if not, write to the Free Software Foundation, Inc.,
+// 59 Temple Place, Suite 330, Boston, MA 02111-1307, USA.
+//
+// ****************************************************************************
+
+
+import java.io.*;
+import intense.*;
+
+
+public class IntenseBench0
+  extends Bench {
+
+  public static final int dimensionCount = 32;
+
+  public IntenseBench0
+  ()
+  {
+    super("IntenseBench0");
+  }
+
+  /**
+   * A context with dimensionCount string-valued dimensions, each with two
+   * numeric subdimensions, and with every value in the given variant.
+   */
+  static String contextString
+  (int variant)
+  {
+    StringBuffer buffer = new StringBuffer("<\"root\"");
+
+    for (int i = 0; i < dimensionCount; i++) {
+      buffer.append(
+        "+d" + i + ":<\"value" + variant + "\"+x:<" + i + ">+y:<" +
+        (i + variant) + ">>"
+      );
+    }
+    buffer.append('>');
+    return buffer.toString();
+  }
+
+  /**
+   * An op replacing every other subdimension y, and pruning every fourth x.
+   */
+  static String contextOpString
+  ()
+  {
+    StringBuffer buffer = new StringBuffer("[");
+
+    for (int i = 0; i < dimensionCount; i += 2) {
+      if (i > 0) {
+        buffer.append('+');
+      }
+      buffer.append("d" + i + ":[y:<" + (i*3) + ">");
+      if (i%4 == 0) {
+        buffer.append("+x:[-]");
+      }
+      buffer.append(']');
+    }
+    buffer.append(']');
+    return buffer.toString();
+  }
+
+  protected void bench
+  ()
+    throws Exception
+  {
+    final String canonical = contextString(0);
+    final Context context = new Context(canonical);
+    final Context equal = new Context(canonical);
+    final Context other = new Context(contextString(1));
+    final Context refined = new Context(canonical);
+    final ContextOp op = new ContextOp(contextOpString());
+    final Context applied = new Context(canonical);
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    final DataOutputStream out = new DataOutputStream(bytes);
+    final byte[] serialised;
+
+    refined.value(new CompoundDimension("d0:x")).clear();
+    Context.factorySerialise(context, out);
+    serialised = bytes.toByteArray();
+
+    throughput("parse", new Operation() {
+      public Object run
+      ()
+        throws Exception
+      {
+        return new Context(canonical);
+      }
+    });
+    throughput("canonical", new Operation() {
+      public Object run
+      ()
+      {
+        return context.canonical();
+      }
+    });
+    throughput("clone", new Operation() {
+      public Object run
+      ()
+      {
+        return context.clone();
+      }
+    });
+    throughput("compareEqual", new Operation() {
+      public Object run
+      ()
+      {
+        return new Integer(context.compare(equal));
+      }
+    });
+    throughput("compareDiffering", new Operation() {
+      public Object run
+      ()
+      {
+        return new Integer(context.compare(other));
+      }
+    });
+    throughput("refinesTo", new Operation() {
+      public Object run
+      ()
+      {
+        return Boolean.valueOf(refined.refinesTo(context));
+      }
+    });
+    throughput("applyContextOp", new Operation() {
+      public Object run
+      ()
+        throws Exception
+      {
+        return applied.apply(op);
+      }
+    });
+    throughput("serialise", new Operation() {
+      public Object run
+      ()
+        throws Exception
+      {
+        bytes.reset();
+        Context.factorySerialise(context, out);
+        return bytes;
+      }
+    });
+    throughput("deserialise", new Operation() {
+      public Object run
+      ()
+        throws Exception
+      {
+        return Context.factoryDeserialise(
+          new DataInputStream(new ByteArrayInputStream(serialised))
+        );
+      }
+    });
+  }
+
+  public static void main(String[] argv)
+  {
+    IntenseBench0 bench = new IntenseBench0();
+    bench.benchMain(argv);
+  }
+
+}
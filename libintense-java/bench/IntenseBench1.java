@@ -0,0 +1,134 @@
+// ****************************************************************************
+//
+// IntenseBench1.java : Benchmarks of ContextDomain best fits.
+//
+// Copyright 2026 the Intense project contributors.
+//
+// This file is part of the Intense project.
+//
+// Intense is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// Intense is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with Intense; if not, write to the Free Software Foundation, Inc.,
+// 59 Temple Place, Suite 330, Boston, MA 02111-1307, USA.
+//
+// ****************************************************************************
+
+
+import intense.*;
+
+
+public class IntenseBench1
+  extends Bench {
+
+  public static final int platforms = 8;
+
+  public static final int languages = 16;
+
+  public static final int releases = 8;
+
+  public IntenseBench1
+  ()
+  {
+    super("IntenseBench1");
+  }
+
+  /**
+   * Fill a domain with every combination of platform, language and
+   * release, plus the partial versions that fall back to each of them.
+   */
+  private static void populate
+  (ContextDomain<Context> domain)
+    throws IntenseException
+  {
+    domain.insert(new Context("<>"));
+    for (int p = 0; p < platforms; p++) {
+      domain.insert(new Context("<platform:<\"p" + p + "\">>"));
+      for (int l = 0; l < languages; l++) {
+        domain.insert(
+          new Context("<platform:<\"p" + p + "\">+lang:<\"l" + l + "\">>")
+        );
+        for (int r = 0; r < releases; r++) {
+          domain.insert(new Context(
+            "<platform:<\"p" + p + "\">+lang:<\"l" + l + "\">+release:<" +
+            r + ">>"
+          ));
+        }
+      }
+    }
+  }
+
+  private void benchDomain
+  (String name, final ContextDomain<Context> domain)
+    throws Exception
+  {
+    final Context exact =
+      new Context("<platform:<\"p3\">+lang:<\"l7\">+release:<5>>");
+    final Context fallback = new Context(
+      "<platform:<\"p3\">+lang:<\"l7\">+release:<99>+theme:<\"dark\">>"
+    );
+    final Context miss = new Context("<platform:<\"none\">>");
+
+    throughput(name + ".bestExact", new Operation() {
+      public Object run
+      ()
+        throws Exception
+      {
+        return domain.best(exact, false);
+      }
+    });
+    throughput(name + ".bestFallback", new Operation() {
+      public Object run
+      ()
+        throws Exception
+      {
+        return domain.best(fallback, false);
+      }
+    });
+    throughput(name + ".bestMiss", new Operation() {
+      public Object run
+      ()
+        throws Exception
+      {
+        return domain.best(miss, false);
+      }
+    });
+    throughput(name + ".near", new Operation() {
+      public Object run
+      ()
+        throws Exception
+      {
+        return domain.near(fallback);
+      }
+    });
+  }
+
+  protected void bench
+  ()
+    throws Exception
+  {
+    SetContextDomain<Context> set = new SetContextDomain<Context>();
+    IndexedContextDomain<Context> indexed =
+      new IndexedContextDomain<Context>();
+
+    populate(set);
+    populate(indexed);
+    benchDomain("set", set);
+    benchDomain("indexed", indexed);
+  }
+
+  public static void main(String[] argv)
+  {
+    IntenseBench1 bench = new IntenseBench1();
+    bench.benchMain(argv);
+  }
+
+}
@@ -184,6 +184,18 @@ public class AEther
     }
   }
 
+  /**
+   * AEther nodes are only pruned if there are no participants at them or
+   * beneath them.
+   *
+   * @param child A sub-AEther of this AEther.
+   */
+  protected boolean isPrunable
+  (Context child)
+  {
+    return child.empty()&&(((AEther)child).headcount == 0);
+  }
+
   /**
    * For use by clear(dim), to empty a dimension behind a given iterator.
    * In a subclass such as AEther, this can be overridden, to avoid wiping
@@ -203,6 +215,7 @@ public class AEther
     if (((AEther)pair.context).headcount > 0) {
       ((AEther)pair.context).clearNoPropagate(origin);
       if (initialBasecount != 0) {
+        pair.context.propagateBasecount(-initialBasecount);
         ((AEther)pair.context).propagateClearNotify(origin);
       }
     } else {
@@ -239,6 +252,8 @@ public class AEther
          contextMarker = contextMarker.parent) {
       contextMarker.basecount += deltaBasecount;
       contextMarker.canonicalString = null;
+      contextMarker.structuralHash = 0;
+      contextMarker.snapshot = null;
     }
     propagateAssignNotify(c, origin);
     assignHelper(c, origin);
@@ -282,8 +297,12 @@ public class AEther
     for (marker = parent; marker != null; marker = marker.parent) {
       marker.basecount += deltaBasecount;
       marker.canonicalString = null;
+      marker.structuralHash = 0;
+      marker.snapshot = null;
     }
     canonicalString = null;
+    structuralHash = 0;
+    snapshot = null;
     return this;
   }
 
@@ -351,6 +370,8 @@ public class AEther
 
       basecount = 0;
       canonicalString = null;
+      structuralHash = 0;
+      snapshot = null;
       base = null;
       while (itr.hasNext()) {
         Pair pair = (Pair)itr.next();
@@ -383,28 +404,23 @@ public class AEther
     java.util.Iterator itr = compoundDimension.iterator();
 
     if (itr.hasNext()) {
-      int deltaBasecount;
       Context marker = this;
       Pair pair;
       Dimension nextDimension;
 
       nextDimension = (Dimension)itr.next();
       while (itr.hasNext()) {
-        Node node = marker.find(new Pair(nextDimension, null));
-
-        if (node == null) {
+        pair = (Pair)marker.findElement(nextDimension);
+        if (pair == null) {
           // The dimension doesn't exist, anyway:
           return;
         }
-        marker = marker.valueRef(nextDimension);
+        marker = pair.context;
         nextDimension = (Dimension)itr.next();
       }
-      Node node = marker.find(new Pair(nextDimension, null));
-      if ((node != null)&&((pair = (Pair)node.element) != null)) {
-        deltaBasecount = -pair.context.basecount;
-        basecount += deltaBasecount;
-        propagateBasecount(deltaBasecount);
-        checkedClearAndPropagateNotify((Pair)node.element, origin);
+      pair = (Pair)marker.findElement(nextDimension);
+      if (pair != null) {
+        ((AEther)marker).checkedClearAndPropagateNotify(pair, origin);
       }
     } else {
       // Perhaps EVIL, but it's essentially what they asked for:
@@ -881,7 +897,7 @@ public class AEther
    * @param in A stream to read the context from.
    */
   public void deserialise
-  (DataInputStream in, BoundManager boundSerialiser, Origin origin)
+  (DataInput in, BoundManager boundSerialiser, Origin origin)
     throws IOException, IntenseException
   {
     int initialBasecount = basecount;
@@ -901,7 +917,7 @@ public class AEther
    * @param in A stream to read the context from.
    */
   public void deserialise
-  (DataInputStream in, BoundManager boundSerialiser)
+  (DataInput in, BoundManager boundSerialiser)
     throws IOException, IntenseException
   {
     deserialise(in, boundSerialiser, null);
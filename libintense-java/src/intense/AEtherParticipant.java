@@ -157,7 +157,12 @@ public abstract class AEtherParticipant
       if (dim == null) {
         aether.clear(this);
       } else {
-        ((AEther)aether.value(dim)).clear(this);
+        AEther target = (AEther)aether.lookup(dim);
+
+        // There is nothing to clear under a dimension with no node:
+        if (target != null) {
+          target.clear(this);
+        }
       }
     } else {
       throw new IntenseException(
@@ -85,6 +85,12 @@ public class AlphaBaseValue
     return true;
   }
 
+  public int hashCode
+  ()
+  {
+    return ALPHA;
+  }
+
   public boolean refinesTo
   (BaseValue bv)
   {
@@ -119,7 +125,7 @@ public class AlphaBaseValue
    * XDRBaseSerialiser.
    */
   void serialise
-  (DataOutputStream out)
+  (DataOutput out)
     throws IOException
   {
   }
@@ -129,7 +135,7 @@ public class AlphaBaseValue
    * XDRBaseSerialiser.
    */
   void deserialise
-  (DataInputStream in)
+  (DataInput in)
     throws IOException
   {
   }
@@ -141,6 +141,27 @@ public abstract class BaseValue
   public abstract boolean equals
   (BaseValue bv);
 
+  /**
+   * Test the equality of this BaseValue and another object, as per
+   * equals(BaseValue).
+   *
+   * @param o An object to compare to this BaseValue.
+   * @return A boolean comparison value.
+   */
+  public boolean equals
+  (Object o)
+  {
+    return (o instanceof BaseValue)&&equals((BaseValue)o);
+  }
+
+  /**
+   * Hash code, consistent with equals(BaseValue).
+   *
+   * @return The hash code.
+   */
+  public abstract int hashCode
+  ();
+
   /**
    * Test the intensional refinement (partial order relation) between two
    * BaseValues.
@@ -161,6 +182,22 @@ public abstract class BaseValue
   public abstract boolean lessThan
   (BaseValue bv);
 
+  /**
+   * The order of BaseValues of different types: ALPHA before all others,
+   * OMEGA after all others, and the rest in order of their type integers.
+   *
+   * @param bv An operand BaseValue, of a different type to this one.
+   * @return true if this BaseValue's type is ordered before that of bv.
+   */
+  protected boolean typeLessThan
+  (BaseValue bv)
+  {
+    int type = (getType() == OMEGA) ? typeMap.length : getType();
+    int bvType = (bv.getType() == OMEGA) ? typeMap.length : bv.getType();
+
+    return type < bvType;
+  }
+
   /**
    * Assign the value of another BaseValue to this BaseValue.
    *
@@ -176,7 +213,7 @@ public abstract class BaseValue
    * XDRBaseSerialiser.
    */
   abstract void serialise
-  (DataOutputStream out)
+  (DataOutput out)
     throws IOException;
 
   /**
@@ -184,7 +221,7 @@ public abstract class BaseValue
    * XDRBaseSerialiser.
    */
   abstract void deserialise
-  (DataInputStream in)
+  (DataInput in)
     throws IOException;
 
   /**
@@ -192,7 +229,7 @@ public abstract class BaseValue
    * libintense-serial XDRBaseSerialiser.
    */
   static void factorySerialise
-  (BaseValue baseValue, DataOutputStream out, BoundManager boundManager)
+  (BaseValue baseValue, DataOutput out, BoundManager boundManager)
     throws IOException
   {
     if (baseValue != null) {
@@ -214,7 +251,7 @@ public abstract class BaseValue
    * libintense-serial XDRBaseSerialiser.
    */
   static BaseValue factoryDeserialise
-  (DataInputStream in, BoundManager boundManager)
+  (DataInput in, BoundManager boundManager)
     throws IOException
   {
     int type;
@@ -28,10 +28,14 @@ package intense;
 
 import java.util.*;
 import java.io.*;
+import java.nio.*;
 
 
 /**
- * A basic binary-string-valued BaseValue subclass.
+ * A basic binary-string-valued BaseValue subclass.  The content is held in
+ * a ByteBuffer, which may be direct or memory-mapped, and which is never
+ * modified once a BinaryBaseValue holds it: assignment replaces the buffer
+ * rather than writing to it, so clones and copies share their storage.
  */
 public class BinaryBaseValue
   extends BaseValue {
@@ -41,27 +45,55 @@ public class BinaryBaseValue
   public static final int MAX_LENGTH = 1048576;
 
   /**
-   * The Binary value of this BaseValue.
+   * Implemented by the DataOutputs which can write the content of a
+   * ByteBuffer directly, without an intermediate copy into a byte array.
    */
-  protected byte[] content;
+  public interface BufferWriter {
+
+    /**
+     * Write the bytes between the buffer's position and limit, advancing
+     * its position to its limit.
+     */
+    public void writeBuffer
+    (ByteBuffer buffer)
+      throws IOException;
+
+  }
+
+  /**
+   * The java.io serialized form, unchanged from when the content was a
+   * byte array.
+   */
+  private static final ObjectStreamField[] serialPersistentFields = {
+    new ObjectStreamField("content", byte[].class)
+  };
+
+  /**
+   * The size of the chunks in which content which is not in an accessible
+   * array is copied to a DataOutput.
+   */
+  private static final int copyChunkSize = 8192;
+
+  /**
+   * The Binary value of this BaseValue: the bytes from 0 to the buffer's
+   * limit.  The position is always 0, and the bytes are never written.
+   */
+  protected ByteBuffer content;
 
   /**
    * Canonical form constructor.
    *
    * @param bv The BaseValue from which to take the canonical form for the
-   * Binary value of this BinaryBaseValue.
+   * Binary value of this BinaryBaseValue (or the content, shared, of a
+   * BinaryBaseValue).
    */
   public BinaryBaseValue
   (BaseValue bv)
   {
     if (bv.getType() == BINARY) {
-      byte[] bvContent = ((BinaryBaseValue)bv).content;
-      content = new byte[bvContent.length];
-      for (int i = 0; i < bvContent.length; i++) {
-        content[i] = bvContent[i];
-      }
+      content = ((BinaryBaseValue)bv).content;
     } else {
-      content = bv.canonical().getBytes();
+      content = ByteBuffer.wrap(bv.canonical().getBytes());
     }
   }
 
@@ -73,7 +105,20 @@ public class BinaryBaseValue
   public BinaryBaseValue
   (String s)
   {
-    content = s.getBytes();
+    content = ByteBuffer.wrap(s.getBytes());
+  }
+
+  /**
+   * Shared buffer constructor.  The content is the bytes between the
+   * buffer's position and limit, which are not copied, and so must not be
+   * changed afterwards.
+   *
+   * @param buffer The buffer, which may be direct or memory-mapped.
+   */
+  public BinaryBaseValue
+  (ByteBuffer buffer)
+  {
+    content = buffer.slice();
   }
 
   /**
@@ -85,7 +130,7 @@ public class BinaryBaseValue
   public BinaryBaseValue
   (int initialSize)
   {
-    content = new byte[initialSize];
+    content = ByteBuffer.wrap(new byte[initialSize]);
   }
 
   /**
@@ -94,7 +139,68 @@ public class BinaryBaseValue
   public BinaryBaseValue
   ()
   {
-    content = new byte[0];
+    content = ByteBuffer.wrap(new byte[0]);
+  }
+
+  /**
+   * Outbound java.io serialization.
+   *
+   * @param out A stream to serialize the BinaryBaseValue to.
+   */
+  private void writeObject
+  (ObjectOutputStream out)
+    throws IOException
+  {
+    out.putFields().put("content", getBytes());
+    out.writeFields();
+  }
+
+  /**
+   * Inbound java.io deserialization.
+   *
+   * @param in A stream to deserialize the BinaryBaseValue from.
+   */
+  private void readObject
+  (ObjectInputStream in)
+    throws IOException, ClassNotFoundException
+  {
+    byte[] bytes = (byte[])in.readFields().get("content", null);
+
+    content = ByteBuffer.wrap((bytes != null) ? bytes : new byte[0]);
+  }
+
+  /**
+   * Get the content.
+   *
+   * @return A read-only view of the content, which shares its storage.
+   */
+  public ByteBuffer getContent
+  ()
+  {
+    return content.asReadOnlyBuffer();
+  }
+
+  /**
+   * Get a copy of the content.
+   *
+   * @return A new array holding the content.
+   */
+  public byte[] getBytes
+  ()
+  {
+    byte[] bytes = new byte[content.limit()];
+
+    content.duplicate().get(bytes);
+    return bytes;
+  }
+
+  /**
+   * @return The length of the content in bytes.
+   */
+  public int length
+  ()
+  {
+    return content.limit();
   }
 
   /**
@@ -117,11 +223,14 @@ public class BinaryBaseValue
   ()
   {
     StringBuffer buffer = new StringBuffer();
+    int length = content.limit();
 
     buffer.append("#");
-    for (int i = 0; i < content.length; i++) {
-      buffer.append(nybbleToChar((content[i]&0xf0) >> 4));
-      buffer.append(nybbleToChar(content[i]&0x0f));
+    for (int i = 0; i < length; i++) {
+      byte b = content.get(i);
+
+      buffer.append(nybbleToChar((b&0xf0) >> 4));
+      buffer.append(nybbleToChar(b&0x0f));
     }
     return buffer.toString();
   }
@@ -147,18 +256,17 @@ public class BinaryBaseValue
   {
     if (bv.getType() != BINARY) {
       return false;
-    } else if (((BinaryBaseValue)bv).content.length != content.length) {
-      return false;
     } else {
-      for (int i = 0; i < content.length; i++) {
-        if (content[i] != ((BinaryBaseValue)bv).content[i]) {
-          return false;
-        }
-      }
-      return true;
+      return content.equals(((BinaryBaseValue)bv).content);
     }
   }
 
+  public int hashCode
+  ()
+  {
+    return content.hashCode();
+  }
+
   public boolean refinesTo
   (BaseValue bv)
   {
@@ -172,28 +280,11 @@ public class BinaryBaseValue
   (BaseValue bv)
   {
     if (bv.getType() != BINARY) {
-      // No comparing incompatible types:
-      return false;
+      // Incompatible types are ordered by type:
+      return typeLessThan(bv);
     } else {
-      int maxLength;
-      BinaryBaseValue bvPtr = (BinaryBaseValue)(bv);
-      if (bvPtr.content.length > content.length) {
-        maxLength = content.length;
-      } else {
-        maxLength = bvPtr.content.length;
-      }
-      for (int i = 0; i < maxLength; i++) {
-        if (content[i] < ((BinaryBaseValue)bv).content[i]) {
-          return true;
-        } else if (content[i] > ((BinaryBaseValue)bv).content[i]) {
-          return false;
-        }
-      }
-      if (content.length < bvPtr.content.length) {
-        return true;
-      } else {
-        return false;
-      }
+      // Signed bytes, then length, as ever:
+      return content.compareTo(((BinaryBaseValue)bv).content) < 0;
     }
   }
 
@@ -202,13 +293,9 @@ public class BinaryBaseValue
     throws IntenseException
   {
     if (bv.getType() == BINARY) {
-      BinaryBaseValue bvPtr = (BinaryBaseValue)bv;
-      content = new byte[bvPtr.content.length];
-      for (int i = 0; i < content.length; i++) {
-        content[i] = bvPtr.content[i];
-      }
+      content = ((BinaryBaseValue)bv).content;
     } else {
-      content = bv.canonical().getBytes();
+      content = ByteBuffer.wrap(bv.canonical().getBytes());
     }
     return this;
   }
@@ -217,7 +304,7 @@ public class BinaryBaseValue
   (String s)
     throws IntenseException
   {
-    content = s.getBytes();
+    content = ByteBuffer.wrap(s.getBytes());
     return this;
   }
 
@@ -226,12 +313,28 @@ public class BinaryBaseValue
    * XDRBaseSerialiser.
    */
   void serialise
-  (DataOutputStream out)
+  (DataOutput out)
     throws IOException
   {
-    out.writeInt(content.length);
-    if (content.length > 0) {
-      out.write(content, 0, content.length);
+    int length = content.limit();
+
+    out.writeInt(length);
+    if (length == 0) {
+      return;
+    } else if (out instanceof BufferWriter) {
+      ((BufferWriter)out).writeBuffer(content.duplicate());
+    } else if (content.hasArray()) {
+      out.write(content.array(), content.arrayOffset(), length);
+    } else {
+      ByteBuffer source = content.duplicate();
+      byte[] chunk = new byte[Math.min(length, copyChunkSize)];
+
+      while (source.hasRemaining()) {
+        int count = Math.min(chunk.length, source.remaining());
+
+        source.get(chunk, 0, count);
+        out.write(chunk, 0, count);
+      }
     }
   }
 
@@ -240,10 +343,11 @@ public class BinaryBaseValue
    * XDRBaseSerialiser.
    */
   void deserialise
-  (DataInputStream in)
+  (DataInput in)
     throws IOException
   {
     int length = in.readInt();
+    byte[] bytes;
 
     if (length > MAX_LENGTH) {
       throw new IOException(
@@ -251,15 +355,16 @@ public class BinaryBaseValue
         " > max allowed length " + MAX_LENGTH
       );
     } else {
-      content = new byte[length];
+      bytes = new byte[length];
     }
     if (length > 0) {
       try {
-        in.readFully(content);
+        in.readFully(bytes);
       } catch (EOFException e) {
-        throw new IOException("EOF reached deserialising BinaryBaseValue");
+        throw new EOFException("EOF reached deserialising BinaryBaseValue");
       }
     }
+    content = ByteBuffer.wrap(bytes);
   }
 
   /**
@@ -274,7 +379,7 @@ public class BinaryBaseValue
   (String hexString)
     throws IntenseException
   {
-    BinaryBaseValue value = new BinaryBaseValue(hexString.length() / 2);
+    byte[] bytes = new byte[hexString.length() / 2];
     byte[] byteArray = hexString.getBytes();
 
     if ((hexString.length()%2) != 0) {
@@ -306,9 +411,9 @@ public class BinaryBaseValue
           "Invalid char " + ((int)byteArray[2*i + 1]) + " in binary hex string"
         );
       }
-      value.content[i] = character;
+      bytes[i] = character;
     }
-    return value;
+    return new BinaryBaseValue(ByteBuffer.wrap(bytes));
   }
 
 }
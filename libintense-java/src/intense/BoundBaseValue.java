@@ -142,6 +142,12 @@ public class BoundBaseValue
     return (bv.getType() == BOUND)&&(bound == ((BoundBaseValue)bv).bound);
   }
 
+  public int hashCode
+  ()
+  {
+    return System.identityHashCode(bound);
+  }
+
   public boolean refinesTo
   (BaseValue bv)
   {
@@ -152,7 +158,8 @@ public class BoundBaseValue
   public boolean lessThan
   (BaseValue bv)
   {
-    return false;
+    // Bound values are only ordered against other types:
+    return (bv.getType() != BOUND)&&typeLessThan(bv);
   }
 
   public BaseValue assign
@@ -188,7 +195,7 @@ public class BoundBaseValue
    * XDRBaseSerialiser - NOT valid without BoundManager for BoundBaseValue.
    */
   void serialise
-  (DataOutputStream out)
+  (DataOutput out)
     throws IOException
   {
     serialise(out, null);
@@ -199,7 +206,7 @@ public class BoundBaseValue
    * XDRBaseSerialiser - NOT valid without BoundManager for BoundBaseValue.
    */
   void deserialise
-  (DataInputStream in)
+  (DataInput in)
     throws IOException
   {
     deserialise(in, null);
@@ -209,7 +216,7 @@ public class BoundBaseValue
    * Outbound serialisation, via an external BoundManager.
    */
   void serialise
-  (DataOutputStream out, BoundManager boundSerialiser)
+  (DataOutput out, BoundManager boundSerialiser)
     throws IOException
   {
     if ((boundSerialiser != null)&&(bound != null)) {
@@ -235,7 +242,7 @@ public class BoundBaseValue
    * Inbound serialisation, via an external BoundManager.
    */
   void deserialise
-  (DataInputStream in, BoundManager boundSerialiser)
+  (DataInput in, BoundManager boundSerialiser)
     throws IOException
   {
     int length = in.readInt();
@@ -251,7 +258,7 @@ public class BoundBaseValue
     try {
       in.readFully(packed);
     } catch (EOFException e) {
-      throw new IOException("EOF reached deserialising BoundBaseValue");
+      throw new EOFException("EOF reached deserialising BoundBaseValue");
     }
     bound = null;
     if (boundSerialiser != null) {
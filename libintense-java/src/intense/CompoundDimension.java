@@ -209,12 +209,18 @@ public class CompoundDimension
 
   /**
    * Outbound serialisation, compatible with the C++ libintense-serial
-   * XDRBaseSerialiser.
+   * XDRBaseSerialiser, unless out carries a DimensionDictionary.
    */
   public void serialise
-  (DataOutputStream out)
+  (DataOutput out)
     throws IOException
   {
+    DimensionDictionary dictionary = DimensionDictionary.get(out);
+
+    if (dictionary != null) {
+      dictionary.serialise(list, out);
+      return;
+    }
     out.writeInt(list.size());
     Iterator itr = list.iterator();
 
@@ -228,13 +234,21 @@ public class CompoundDimension
    * XDRBaseSerialiser.
    */
   public void deserialise
-  (DataInputStream in)
+  (DataInput in)
     throws IOException, IntenseException
   {
     int sizeInt;
 
     list.clear();
     sizeInt = in.readInt();
+    if ((sizeInt < 0)&&(DimensionDictionary.get(in) != null)) {
+      list.addAll(
+        DimensionDictionary.get(in).deserialisePath(
+          sizeInt, in, maxCompoundDimensionSize
+        )
+      );
+      return;
+    }
     if (sizeInt < 0) {
       throw new IntenseException(
         "Attempt to deserialise CompoundDimension with negative size"
@@ -104,7 +104,7 @@ public class Context
   }
 
   public static void factorySerialise
-  (Context context, DataOutputStream out)
+  (Context context, DataOutput out)
     throws IOException
   {
     int type;
@@ -121,7 +121,7 @@ public class Context
   }
 
   public static Context factoryDeserialise
-  (DataInputStream is)
+  (DataInput is)
     throws IOException, IntenseException
   {
     int type;
@@ -150,6 +150,21 @@ public class Context
    */
   protected String canonicalString;
 
+  /**
+   * The cached structural hash code for this Context, or 0 if it has not
+   * been computed since this Context (or a descendant) last changed.  It is
+   * invalidated along with canonicalString.
+   */
+  protected int structuralHash;
+
+  /**
+   * The cached snapshot of this Context, or null if none has been taken
+   * since this Context (or a descendant) last changed.  It is invalidated
+   * along with canonicalString, so that unchanged subtrees are shared by
+   * successive snapshots.
+   */
+  protected ContextSnapshot snapshot;
+
   /**
    * The total number of BaseValues under this Context.
    */
@@ -167,6 +182,18 @@ public class Context
    */
   public static final int MAX_DIMENSION_LENGTH = 1024;
 
+  /**
+   * The number of children a Context holds in a sorted array, before it
+   * builds an AVL tree of them.
+   */
+  public static final int MAX_COMPACT_CHILDREN = 8;
+
+  /**
+   * The largest number of children, under non-negative IntegerDimensions,
+   * which a Context indexes by value, for constant time lookup.
+   */
+  public static final int MAX_DENSE_CHILDREN = 65536;
+
   /**
    * An inner class to wrap String/Context pairs for RightThreadedAVLTree
    * elements, providing type checking and getting rid of lots of casts.
@@ -205,14 +232,18 @@ public class Context
   /**
    * Subclasses of RightThreadedAVLTree must define an element comparator.
    *
-   * @param key1 left key object in comparison.
+   * @param key1 left key object in comparison, which may also be a bare
+   * Dimension, for searches which do not allocate a Pair.
    * @param key2 right key object in comparison.
    * @return -1 for <, 0 for ==, and 1 for >.
    */
   protected int cmp
   (Object key1, Object key2)
   {
-    return (((Pair)key1).dim.compareTo(((Pair)key2).dim));
+    Dimension dim1 = (key1 instanceof Pair) ?
+      ((Pair)key1).dim : (Dimension)key1;
+
+    return dim1.compareTo(((Pair)key2).dim);
   }
 
   /**
@@ -227,6 +258,41 @@ public class Context
     return new Context();
   }
 
+  /**
+   * Contexts hold small numbers of children compactly.
+   *
+   * @return MAX_COMPACT_CHILDREN.
+   */
+  protected int getCompactCapacity
+  ()
+  {
+    return MAX_COMPACT_CHILDREN;
+  }
+
+  /**
+   * Contexts index children under non-negative IntegerDimensions by value.
+   *
+   * @return The value of the IntegerDimension of pair, or -1.
+   */
+  protected int denseIndex
+  (Object pair)
+  {
+    Dimension dim = (pair instanceof Pair) ?
+      ((Pair)pair).dim : (Dimension)pair;
+
+    return (dim instanceof IntegerDimension) ?
+      ((IntegerDimension)dim).getValue() : -1;
+  }
+
+  /**
+   * @return MAX_DENSE_CHILDREN.
+   */
+  protected int getDenseCapacity
+  ()
+  {
+    return MAX_DENSE_CHILDREN;
+  }
+
   /**
    * Verifies that all of a child-originating basecount in a context comes
    * from one subcontext.
@@ -262,6 +328,8 @@ public class Context
     for (Context marker = parent; marker != null; marker = marker.parent) {
       marker.basecount += delta;
       marker.canonicalString = null;
+      marker.structuralHash = 0;
+      marker.snapshot = null;
     }
   }
 
@@ -330,6 +398,8 @@ public class Context
   {
     for (Context marker = parent; marker != null; marker = marker.parent) {
       marker.canonicalString = null;
+      marker.structuralHash = 0;
+      marker.snapshot = null;
     }
   }
 
@@ -343,6 +413,8 @@ public class Context
     parent = null;
     parentDim = null;
     canonicalString = null;
+    structuralHash = 0;
+    snapshot = null;
     basecount = 0;
     base = null;
   }
@@ -374,6 +446,8 @@ public class Context
     parent = null;
     parentDim = null;
     canonicalString = null;
+    structuralHash = 0;
+    snapshot = null;
     basecount = 0;
     base = null;
     parse(contextString);
@@ -394,6 +468,8 @@ public class Context
     this.parent = parent;
     this.parentDim = parentDim;
     canonicalString = null;
+    structuralHash = 0;
+    snapshot = null;
     basecount = 0;
     base = null;
   }
@@ -414,6 +490,8 @@ public class Context
     this.parent = parent;
     this.parentDim = parentDim;
     canonicalString = null;
+    structuralHash = 0;
+    snapshot = null;
     basecount = 0;
     base = null;
     assign(c);
@@ -440,6 +518,8 @@ public class Context
          contextMarker = contextMarker.parent) {
       contextMarker.basecount += deltaBasecount;
       contextMarker.canonicalString = null;
+      contextMarker.structuralHash = 0;
+      contextMarker.snapshot = null;
     }
     assignHelper(c, null);
     return this;
@@ -453,6 +533,7 @@ public class Context
     Pair pair, insertPair;
 
     canonicalString = c.canonicalString;
+    structuralHash = c.structuralHash;
     basecount = c.basecount;
     if (c.base != null) {
       base = (BaseValue)(c.base.clone());
@@ -497,8 +578,12 @@ public class Context
     for (marker = parent; marker != null; marker = marker.parent) {
       marker.basecount += deltaBasecount;
       marker.canonicalString = null;
+      marker.structuralHash = 0;
+      marker.snapshot = null;
     }
     canonicalString = null;
+    structuralHash = 0;
+    snapshot = null;
     return this;
   }
 
@@ -531,7 +616,6 @@ public class Context
     Iterator itr = iterator();
     Iterator opItr = op.iterator();
     Pair itrPair, opItrPair, tempPair;
-    Node nodeMarker;
     int initialChildBasecount;
 
     if (op.clearBaseFlag()) {
@@ -595,16 +679,14 @@ public class Context
       for (opItrPair = (Pair)(opItr.next()); opItrPair != null;
            opItrPair = (Pair)(opItr.next())) {
         tempPair = new Pair(opItrPair.dim, null);
-        nodeMarker = probe(tempPair);
-        if (nodeMarker.element != tempPair) {
-          initialChildBasecount =
-            ((Pair)(nodeMarker.element)).context.basecount;
-          ((Pair)(nodeMarker.element)).context.
+        if ((itrPair = (Pair)insert(tempPair)) != null) {
+          initialChildBasecount = itrPair.context.basecount;
+          itrPair.context.
             applyHelper((ContextOp)(opItrPair.context), origin);
-          basecount += ((Pair)(nodeMarker.element)).context.basecount -
-            initialChildBasecount;
+          basecount += itrPair.context.basecount - initialChildBasecount;
         } else {
           // This dimension did not already exist in *this.
+          itrPair = tempPair;
           tempPair.context = valueRefFactory(opItrPair.dim);
           initialChildBasecount = tempPair.context.basecount;
           tempPair.context.
@@ -613,12 +695,14 @@ public class Context
         }
         // As above, if that vmod resulted in an empty subcontext, we
         // just prune it here and now:
-        if (((Pair)(nodeMarker.element)).context.empty()) {
-          checkedClear((Pair)(nodeMarker.element), origin);
+        if (itrPair.context.empty()) {
+          checkedClear(itrPair, origin);
         }
       }
     }
     canonicalString = null;
+    structuralHash = 0;
+    snapshot = null;
   }
 
   /**
@@ -637,6 +721,24 @@ public class Context
   }
 
 
+  /**
+   * Take an immutable snapshot of this Context, which may be read by other
+   * threads, without locks, while this Context continues to change.  Only
+   * the nodes changed since the last snapshot are copied; the rest are
+   * shared with it.  This Context must not change while the snapshot is
+   * taken.
+   *
+   * @return The snapshot.
+   */
+  public ContextSnapshot snapshot
+  ()
+  {
+    if (snapshot == null) {
+      snapshot = ContextSnapshot.build(this);
+    }
+    return snapshot;
+  }
+
   /**
    * @return The root node of this context (or this context, if it has no
    * parent).
@@ -732,7 +834,9 @@ public class Context
   }
 
   /**
-   * Test equality between this Context and the argument Context.
+   * Test equality between this Context and the argument Context.  Two
+   * Contexts are equal if they have equal BaseValues at the same dimension
+   * paths (empty sub-Contexts are ignored).
    *
    * @param c A Context to compare to this Context.
    * @return true if both Contexts are equal.
@@ -740,11 +844,85 @@ public class Context
   public boolean equals
   (Context c)
   {
-    if (basecount != c.basecount) {
+    Iterator itr, cItr;
+    Pair itrPair, cItrPair;
+
+    if (c == this) {
+      return true;
+    } else if (basecount != c.basecount) {
+      return false;
+    } else if ((structuralHash != 0)&&(c.structuralHash != 0)&&
+               (structuralHash != c.structuralHash)) {
       return false;
-    } else {
-      return compare(c) == 0;
     }
+    if (base != null) {
+      if ((c.base == null)||(!(base.equals(c.base)))) {
+        return false;
+      }
+    } else if (c.base != null) {
+      return false;
+    }
+    itr = iterator();
+    cItr = c.iterator();
+    for (;;) {
+      while (((itrPair = (Pair)(itr.next())) != null)&&
+             ((itrPair.context.empty())));
+      while (((cItrPair = (Pair)(cItr.next())) != null)&&
+             ((cItrPair.context.empty())));
+      if ((itrPair == null)||(cItrPair == null)) {
+        return itrPair == cItrPair;
+      }
+      if ((!(itrPair.dim.equals(cItrPair.dim)))||
+          (!(itrPair.context.equals(cItrPair.context)))) {
+        return false;
+      }
+    }
+  }
+
+  /**
+   * Test equality between this Context and another object, as per
+   * equals(Context), so that Contexts can be used as hash keys.  ContextOps
+   * (which override this) are never equal to plain Contexts.
+   *
+   * @param o An object to compare to this Context.
+   * @return true if o is a Context (but not a ContextOp) equal to this
+   * Context.
+   */
+  public boolean equals
+  (Object o)
+  {
+    return (o instanceof Context)&&(!(o instanceof ContextOp))&&
+      equals((Context)o);
+  }
+
+  /**
+   * Structural hash code, consistent with equals(Context).  The hash is
+   * cached in this node until this Context or one of its descendants
+   * changes, so a Context must not be modified while it is used as a hash
+   * key.
+   *
+   * @return The hash code.
+   */
+  public int hashCode
+  ()
+  {
+    int h = structuralHash;
+
+    if (h == 0) {
+      Iterator itr = iterator();
+      Pair itrPair;
+
+      if (base != null) {
+        h = base.hashCode();
+      }
+      while ((itrPair = (Pair)(itr.next())) != null) {
+        if (!(itrPair.context.empty())) {
+          h = 31*h + (itrPair.dim.hashCode() ^ itrPair.context.hashCode());
+        }
+      }
+      structuralHash = h;
+    }
+    return h;
   }
 
   /**
@@ -759,7 +937,7 @@ public class Context
   {
     Iterator itr = iterator();
     Pair itrPair;
-    Node findNode;
+    Pair findPair;
     Context subContext;
 
     if (empty()) {
@@ -777,12 +955,11 @@ public class Context
       if (itrPair.context.empty()) {
         continue;
       } else {
-        findNode = c.find(itrPair);
+        findPair = (Pair)c.findElement(itrPair);
         // If it's not in c or it's in c and itrPair.context doesn't
         // refine to it, return false:
-        if ((findNode == null)||
-            (!(itrPair.context.
-               refinesTo(((Pair)(findNode.element)).context)))) {
+        if ((findPair == null)||
+            (!(itrPair.context.refinesTo(findPair.context)))) {
           return false;
         }
       }
@@ -843,11 +1020,11 @@ public class Context
       if (cItrPair == null) {
         return 1; // c < *this
       }
-      // c < this:
+      // this < c:
       if (itrPair.dim.compareTo(cItrPair.dim) < 0) {
-        return 1;
+        return -1;
       }
-      // this < c:
+      // c < this:
       if (cItrPair.dim.compareTo(itrPair.dim) < 0) {
         return 1;
       }
@@ -861,8 +1038,8 @@ public class Context
       while (((cItrPair = (Pair)(cItr.next())) != null)&&
              ((cItrPair.context.empty())));
     }
-    // Everything's been the same so far:
-    if (cItr.hasNext()&&(basecount != c.basecount)) {
+    // Everything's been the same so far, so c is greater if it has more:
+    if (cItrPair != null) {
       return -1;
     }
     return 0;
@@ -914,6 +1091,100 @@ public class Context
     return value(new CompoundDimension(compoundDimension));
   }
 
+  /**
+   * Find the sub-Context under a non-compound dimension, without creating
+   * it, as value() would.
+   *
+   * @param dim A non-compound dimension.
+   * @return The Context under dim, or null if there is none.
+   */
+  public Context lookup
+  (Dimension dim)
+  {
+    Pair pair = (Pair)findElement(dim);
+
+    return (pair != null) ? pair.context : null;
+  }
+
+  /**
+   * Find the sub-Context under a possibly-compound dimension, without
+   * creating any nodes, as value() would, nor allocating anything for each
+   * dimension in the path.
+   *
+   * @param dim A possibly-compound dimension.
+   * @return The Context under dim, or null if there is none.
+   */
+  public Context lookup
+  (CompoundDimension dim)
+  {
+    java.util.Iterator itr = dim.iterator();
+    Context marker = this;
+
+    while ((marker != null)&&(itr.hasNext())) {
+      marker = marker.lookup((Dimension)itr.next());
+    }
+    return marker;
+  }
+
+  /**
+   * Find the sub-Context under a possibly-compound dimension, without
+   * creating any nodes, as value() would.
+   *
+   * @param compoundDimension A possibly-compound dimension String which is
+   * parsed and used as a CompoundDimension key.
+   * @return The Context under the dimension, or null if there is none.
+   */
+  public Context lookup
+  (String compoundDimension)
+    throws IntenseException
+  {
+    return lookup(new CompoundDimension(compoundDimension));
+  }
+
+  /**
+   * Remove the empty sub-Contexts under this Context, such as those left by
+   * value() for dimensions which were never assigned.  This does not change
+   * the value of this Context.  Removed nodes are detached, so that changes
+   * made through any references still held to them are not propagated to
+   * this Context.
+   *
+   * @return The number of sub-Contexts removed (not counting their own
+   * sub-Contexts).
+   */
+  public int prune
+  ()
+  {
+    Iterator itr = iterator();
+    Pair itrPair = (Pair)itr.next();
+    Pair tempPair;
+    int count = 0;
+
+    while (itrPair != null) {
+      tempPair = (Pair)itr.next();
+      if (isPrunable(itrPair.context)) {
+        delete(itrPair);
+        itrPair.context.parent = null;
+        count++;
+      } else {
+        count += itrPair.context.prune();
+      }
+      itrPair = tempPair;
+    }
+    return count;
+  }
+
+  /**
+   * Decide whether prune() may remove a sub-Context.  In Context, it may if
+   * it is empty.
+   *
+   * @param child A sub-Context of this Context.
+   */
+  protected boolean isPrunable
+  (Context child)
+  {
+    return child.empty();
+  }
+
   /**
    * Find a path to a given node under this Context.
    *
@@ -1109,10 +1380,15 @@ public class Context
       for (marker = this; marker != null; marker = marker.parent) {
         marker.basecount++;
         marker.canonicalString = null;
+        marker.structuralHash = 0;
+        marker.snapshot = null;
       }
     } else {
-      for (marker = this; marker != null; marker = marker.parent)
+      for (marker = this; marker != null; marker = marker.parent) {
         marker.canonicalString = null;
+        marker.structuralHash = 0;
+        marker.snapshot = null;
+      }
       base = null;
     }
     base = (BaseValue)(bv.clone());
@@ -1180,6 +1456,9 @@ public class Context
   {
     if (base != null) {
       basecount--;
+      canonicalString = null;
+      structuralHash = 0;
+      snapshot = null;
       propagateBasecount(-1);
     }
     base = null;
@@ -1210,6 +1489,8 @@ public class Context
   {
     basecount = 0;
     canonicalString = null;
+    structuralHash = 0;
+    snapshot = null;
     base = null;
     super.clearAll();
   }
@@ -1234,23 +1515,23 @@ public class Context
 
       nextDimension = (Dimension)itr.next();
       while (itr.hasNext()) {
-        Node node = marker.find(new Pair(nextDimension, null));
-
-        if (node == null) {
+        pair = (Pair)marker.findElement(nextDimension);
+        if (pair == null) {
           // The dimension doesn't exist, anyway:
           return;
         }
-        marker = marker.valueRef(nextDimension);
+        marker = pair.context;
         nextDimension = (Dimension)itr.next();
       }
-      Node node = marker.find(
-        new Pair(nextDimension, null)
-      );
-      if ((node != null)&&((pair = (Pair)node.element) != null)) {
+      pair = (Pair)marker.findElement(nextDimension);
+      if (pair != null) {
         deltaBasecount = -pair.context.basecount;
-        basecount += deltaBasecount;
-        propagateBasecount(deltaBasecount);
-        checkedClear((Pair)node.element, null);
+        marker.checkedClear(pair, null);
+        marker.basecount += deltaBasecount;
+        marker.canonicalString = null;
+        marker.structuralHash = 0;
+        marker.snapshot = null;
+        marker.propagateBasecount(deltaBasecount);
       }
     } else {
       // Perhaps EVIL, but it's essentially what they asked for:
@@ -1623,6 +1904,9 @@ public class Context
         );
       }
     }
+    canonicalString = null;
+    structuralHash = 0;
+    snapshot = null;
     // For the benefit of AEthers - does nothing in Context:
     assignNotify(this, origin);
     parent = tempParent;
@@ -1653,10 +1937,11 @@ public class Context
 
   /**
    * Outbound serialisation, compatable with the C++ libintense-serial
-   * XDRBaseSerialiser.
+   * XDRBaseSerialiser.  The output is not flushed, so that a Context may be
+   * serialised as part of a larger message; that is up to the caller.
    */
   public void serialise
-  (DataOutputStream out, BoundManager boundManager)
+  (DataOutput out, BoundManager boundManager)
     throws IOException
   {
     Iterator itr = iterator();
@@ -1670,7 +1955,6 @@ public class Context
       Dimension.factorySerialise(itrPair.dim, out);
       itrPair.context.serialise(out);
     }
-    out.flush();
   }
 
   /**
@@ -1678,7 +1962,7 @@ public class Context
    * XDRBaseSerialiser.
    */
   public void serialise
-  (DataOutputStream out)
+  (DataOutput out)
     throws IOException
   {
     serialise(out, null);
@@ -1693,7 +1977,7 @@ public class Context
    * @param in A stream to read the context from.
    */
   public void deserialise
-  (DataInputStream in, BoundManager boundSerialiser)
+  (DataInput in, BoundManager boundSerialiser)
     throws IOException, IntenseException
   {
     int initialBasecount = basecount;
@@ -1712,14 +1996,14 @@ public class Context
    * @param in A stream to read the context from.
    */
   public void deserialise
-  (DataInputStream in)
+  (DataInput in)
     throws IOException, IntenseException
   {
     deserialise(in, null);
   }
 
   protected void deserialiseHelper
-  (DataInputStream in, BoundManager boundManager, Origin origin)
+  (DataInput in, BoundManager boundManager, Origin origin)
     throws IOException, IntenseException
   {
     int tempInt;
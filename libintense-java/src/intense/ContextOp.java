@@ -103,6 +103,8 @@ public class ContextOp
          contextMarker = contextMarker.parent) {
       ((ContextOp)(contextMarker)).blankcount += delta;
       contextMarker.canonicalString = null;
+      contextMarker.structuralHash = 0;
+      contextMarker.snapshot = null;
     }
   }
 
@@ -121,7 +123,6 @@ public class ContextOp
     Pair opItrPair, itrPair, insertPair, tempPair;
     ContextOp contextOpMarker;
     boolean mustClearCurrentDimension;
-    Node nodeMarker;
     int initialChildBasecount;
     int initialChildBlankcount;
 
@@ -172,7 +173,7 @@ public class ContextOp
           // This dimension did not already exist in *this.
           contextOpMarker = new ContextOp();
           itrPair = new Pair(opItrPair.dim, contextOpMarker);
-          itr = iterator(probe(itrPair));
+          itr = iterator(itrPair);
           // If the clearDimsFlag is true in this ContextOp or we are
           // already pruning from above here, any new dimensions
           // added from op have to contain actual basevalues:
@@ -237,9 +238,8 @@ public class ContextOp
       for (opItrPair = (Pair)(opItr.next()); opItrPair != null;
            opItrPair = (Pair)(opItr.next())) {
         mustClearCurrentDimension = false;
-        nodeMarker = find(opItrPair);
-        if (nodeMarker != null) {
-          itrPair = (Pair)(nodeMarker.element);
+        itrPair = (Pair)findElement(opItrPair);
+        if (itrPair != null) {
           contextOpMarker = (ContextOp)(itrPair.context);
           initialChildBasecount = contextOpMarker.basecount;
           initialChildBlankcount = contextOpMarker.blankcount;
@@ -298,6 +298,8 @@ public class ContextOp
       }
     }
     canonicalString = null;
+    structuralHash = 0;
+    snapshot = null;
   }
 
   /**
@@ -453,6 +455,7 @@ public class ContextOp
 
     clear();
     canonicalString = op.canonicalString;
+    structuralHash = op.structuralHash;
     basecount = op.basecount;
     blankcount = op.blankcount;
     if (op.base != null) base = (BaseValue)op.base.clone();
@@ -528,8 +531,7 @@ public class ContextOp
   (ContextOp op)
   {
     Iterator itr, opItr;
-    Pair itrPair, opItrPair;
-    Node nodeMarker;
+    Pair itrPair, opItrPair, findPair;
     ContextOp opMarker;
 
     // ContextOps must test for equality of flags, as well as equality of
@@ -561,13 +563,13 @@ public class ContextOp
           }
           opItrPair = (Pair)opItr.next();
         }
-        nodeMarker = op.find(itrPair);
+        findPair = (Pair)op.findElement(itrPair);
         if ((((ContextOp)(itrPair.context)).empty())&&
-            ((nodeMarker != null)&&
-             (!((ContextOp)(((Pair)nodeMarker.element).context)).empty()))) {
+            ((findPair != null)&&
+             (!((ContextOp)(findPair.context)).empty()))) {
           return false;
-        } else if ((nodeMarker == null)||
-                   (!(((ContextOp)(((Pair)nodeMarker.element).context))).
+        } else if ((findPair == null)||
+                   (!(((ContextOp)(findPair.context))).
                     equals(((ContextOp)(itrPair.context))))) {
           return false;
         }
@@ -586,6 +588,47 @@ public class ContextOp
     return false;
   }
 
+  /**
+   * Test equality between this ContextOp and another object, as per
+   * equals(ContextOp).
+   *
+   * @param o An object to compare to this ContextOp.
+   * @return true if o is a ContextOp equal to this ContextOp.
+   */
+  public boolean equals
+  (Object o)
+  {
+    return (o instanceof ContextOp)&&equals((ContextOp)o);
+  }
+
+  /**
+   * Structural hash code, consistent with equals(ContextOp).  Unlike
+   * Context.hashCode(), this is not cached, since ContextOp flags can be
+   * changed without invalidating ancestors.
+   *
+   * @return The hash code.
+   */
+  public int hashCode
+  ()
+  {
+    Iterator itr;
+    Pair itrPair;
+    int h;
+
+    if (empty()) {
+      return 0;
+    }
+    h = (base != null) ? base.hashCode() : 0;
+    h = 31*h + (clearBaseFlag ? 2 : 0) + (clearDimsFlag ? 1 : 0);
+    itr = iterator();
+    while ((itrPair = (Pair)(itr.next())) != null) {
+      if (!(itrPair.context.empty())) {
+        h = 31*h + (itrPair.dim.hashCode() ^ itrPair.context.hashCode());
+      }
+    }
+    return h;
+  }
+
   /**
    * Applying a Context to a ContextOp as an operator turns the ContextOp
    * into a pure vset to the argument Context.
@@ -630,6 +673,8 @@ public class ContextOp
       contextOpMarker.basecount += deltaBasecount;
       contextOpMarker.blankcount += deltaBlankcount;
       contextOpMarker.canonicalString = null;
+      contextOpMarker.structuralHash = 0;
+      contextOpMarker.snapshot = null;
     }
     return this;
   }
@@ -1270,7 +1315,7 @@ public class ContextOp
    * XDRBaseSerialiser.
    */
   public void serialise
-  (DataOutputStream out, BoundManager boundSerialiser)
+  (DataOutput out, BoundManager boundSerialiser)
     throws IOException
   {
     int flags = 0;
@@ -1295,7 +1340,7 @@ public class ContextOp
    * @param in A stream to read the context from.
    */
   public void deserialise
-  (DataInputStream in, BoundManager boundSerialiser)
+  (DataInput in, BoundManager boundSerialiser)
     throws IOException, IntenseException
   {
     int initialBasecount = basecount;
@@ -1310,7 +1355,7 @@ public class ContextOp
   }
 
   protected void deserialiseHelper
-  (DataInputStream in, BoundManager boundSerialiser, Origin ignored)
+  (DataInput in, BoundManager boundSerialiser, Origin ignored)
     throws IOException, IntenseException
   {
     int tempInt = in.readInt();
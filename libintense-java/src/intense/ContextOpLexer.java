@@ -708,7 +708,7 @@ public int getToken
           }
         case 52: break;
         case 30: 
-          { return lval.setStringDimension(new StringDimension(
+          { return lval.setStringDimension(StringDimension.intern(
     yytext().substring(0, yytext().length() - 1), false
   ));
           }
@@ -830,7 +830,7 @@ public int getToken
         case 64: break;
         case 28: 
           { yybegin(YYINITIAL);
-  return lval.setStringDimension(new StringDimension(
+  return lval.setStringDimension(StringDimension.intern(
     currentString.toString(),
     stringBufferRequiresQuotes||stringBufferIsAllIntChars
   ));
@@ -0,0 +1,468 @@
+// ****************************************************************************
+//
+// ContextSnapshot.java : Immutable, structurally shared snapshots of
+// Contexts.
+//
+// Copyright 2026 the Intense project contributors.
+//
+// This file is part of the Intense project.
+//
+// Intense is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// Intense is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with Intense; if not, write to the Free Software Foundation, Inc.,
+// 59 Temple Place, Suite 330, Boston, MA 02111-1307, USA.
+//
+// ****************************************************************************
+
+
+package intense;
+
+
+import java.io.*;
+import java.util.*;
+
+
+/**
+ * An immutable snapshot of a Context, taken with Context.snapshot().  Each
+ * node of a Context caches the snapshot taken of it, until the node or one
+ * of its descendants changes, so a new snapshot only copies the nodes on the
+ * paths to the changes made since the last one; every unchanged subtree is
+ * shared.
+ *
+ * <p>A snapshot holds only the non-empty children of each node, in Dimension
+ * order, and is safe to read from any thread without locks.  The BaseValues
+ * and Dimensions are shared with the Context the snapshot was taken from,
+ * and must not be modified in place.  Snapshots compare, hash, refine and
+ * serialise as the Contexts they were taken from do; toContext() gives a
+ * mutable copy.
+ */
+public final class ContextSnapshot {
+
+  private static final Dimension[] noDimensions = new Dimension[0];
+
+  private static final ContextSnapshot[] noChildren = new ContextSnapshot[0];
+
+  /**
+   * The snapshot of every empty Context.
+   */
+  public static final ContextSnapshot EMPTY =
+    new ContextSnapshot(null, 0, noDimensions, noChildren);
+
+  private final BaseValue base;
+
+  private final int basecount;
+
+  private final Dimension[] dimensions;
+
+  private final ContextSnapshot[] children;
+
+  /**
+   * The structural hash code, or 0 if it has not been computed.  Racy, but
+   * recomputing it is harmless.
+   */
+  private int hash;
+
+  private String canonicalString;
+
+  private ContextSnapshot
+  (BaseValue base, int basecount, Dimension[] dimensions,
+   ContextSnapshot[] children)
+  {
+    this.base = base;
+    this.basecount = basecount;
+    this.dimensions = dimensions;
+    this.children = children;
+    hash = 0;
+    canonicalString = null;
+  }
+
+  /**
+   * Build the snapshot of a Context node, using the cached snapshots of its
+   * children.
+   */
+  static ContextSnapshot build
+  (Context context)
+  {
+    Iterator itr;
+    Context.Pair pair;
+    Dimension[] dimensions;
+    ContextSnapshot[] children;
+    int count = 0;
+
+    if (context.empty()) {
+      return EMPTY;
+    }
+    itr = context.iterator();
+    while ((pair = (Context.Pair)itr.next()) != null) {
+      if (!(pair.context.empty())) {
+        count++;
+      }
+    }
+    dimensions = (count > 0) ? new Dimension[count] : noDimensions;
+    children = (count > 0) ? new ContextSnapshot[count] : noChildren;
+    count = 0;
+    itr = context.iterator();
+    while ((pair = (Context.Pair)itr.next()) != null) {
+      if (!(pair.context.empty())) {
+        dimensions[count] = pair.dim;
+        children[count++] = pair.context.snapshot();
+      }
+    }
+    return new ContextSnapshot(
+      context.base, context.basecount, dimensions, children
+    );
+  }
+
+  /**
+   * @return true if there are no BaseValues in this snapshot.
+   */
+  public boolean empty
+  ()
+  {
+    return basecount == 0;
+  }
+
+  /**
+   * @return The total number of BaseValues in this snapshot.
+   */
+  public int baseCount
+  ()
+  {
+    return basecount;
+  }
+
+  public boolean hasBase
+  ()
+  {
+    return base != null;
+  }
+
+  /**
+   * @return The BaseValue at the root of this snapshot, or null.  It must
+   * not be modified.
+   */
+  public BaseValue getBase
+  ()
+  {
+    return base;
+  }
+
+  /**
+   * @return The number of (non-empty) children of the root of this
+   * snapshot.
+   */
+  public int size
+  ()
+  {
+    return children.length;
+  }
+
+  /**
+   * @param i The index of a child, in Dimension order.
+   */
+  public Dimension getDimension
+  (int i)
+  {
+    return dimensions[i];
+  }
+
+  /**
+   * @param i The index of a child, in Dimension order.
+   */
+  public ContextSnapshot getChild
+  (int i)
+  {
+    return children[i];
+  }
+
+  /**
+   * @return The index of the child under dim, or -1.
+   */
+  private int indexOf
+  (Dimension dim)
+  {
+    int low = 0;
+    int high = dimensions.length - 1;
+
+    while (low <= high) {
+      int middle = (low + high) >>> 1;
+      int rc = dimensions[middle].compareTo(dim);
+
+      if (rc < 0) {
+        low = middle + 1;
+      } else if (rc > 0) {
+        high = middle - 1;
+      } else {
+        return middle;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Get the snapshot under a non-compound dimension.
+   *
+   * @return The snapshot under dim, which is EMPTY if there is none.
+   */
+  public ContextSnapshot value
+  (Dimension dim)
+  {
+    int i = indexOf(dim);
+
+    return (i >= 0) ? children[i] : EMPTY;
+  }
+
+  /**
+   * Get the snapshot under a possibly-compound dimension.
+   *
+   * @return The snapshot under dim, which is EMPTY if there is none.
+   */
+  public ContextSnapshot value
+  (CompoundDimension dim)
+  {
+    java.util.Iterator itr = dim.iterator();
+    ContextSnapshot marker = this;
+
+    while ((itr.hasNext())&&(marker != EMPTY)) {
+      marker = marker.value((Dimension)itr.next());
+    }
+    return marker;
+  }
+
+  /**
+   * Test equality, as per Context.equals(Context).
+   */
+  public boolean equals
+  (ContextSnapshot c)
+  {
+    if (c == this) {
+      return true;
+    } else if ((basecount != c.basecount)||
+               (children.length != c.children.length)) {
+      return false;
+    } else if ((hash != 0)&&(c.hash != 0)&&(hash != c.hash)) {
+      return false;
+    }
+    if (base != null) {
+      if ((c.base == null)||(!(base.equals(c.base)))) {
+        return false;
+      }
+    } else if (c.base != null) {
+      return false;
+    }
+    for (int i = 0; i < children.length; i++) {
+      if ((!(dimensions[i].equals(c.dimensions[i])))||
+          (!(children[i].equals(c.children[i])))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  public boolean equals
+  (Object o)
+  {
+    return (o instanceof ContextSnapshot)&&equals((ContextSnapshot)o);
+  }
+
+  /**
+   * Structural hash code, equal to that of the Context the snapshot was
+   * taken from.
+   */
+  public int hashCode
+  ()
+  {
+    int h = hash;
+
+    if (h == 0) {
+      if (base != null) {
+        h = base.hashCode();
+      }
+      for (int i = 0; i < children.length; i++) {
+        h = 31*h + (dimensions[i].hashCode() ^ children[i].hashCode());
+      }
+      hash = h;
+    }
+    return h;
+  }
+
+  /**
+   * Test the intensional refinement relation, as per
+   * Context.refinesTo(Context).
+   */
+  public boolean refinesTo
+  (ContextSnapshot c)
+  {
+    if (empty()) {
+      return true;
+    } else if (c.empty()) {
+      return false;
+    }
+    if ((base != null)&&((c.base == null)||(!(base.refinesTo(c.base))))) {
+      return false;
+    }
+    for (int i = 0; i < children.length; i++) {
+      int j = c.indexOf(dimensions[i]);
+
+      if ((j < 0)||(!(children[i].refinesTo(c.children[j])))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Lexicographic comparison, as per Context.compare(Context).
+   *
+   * @return -1 for <, 0 for ==, and 1 for >.
+   */
+  public int compare
+  (ContextSnapshot c)
+  {
+    int rc;
+
+    if (c == this) {
+      return 0;
+    }
+    if (base != null) {
+      if (c.base == null) {
+        return 1;
+      } else if (base.lessThan(c.base)) {
+        return -1;
+      } else if (c.base.lessThan(base)) {
+        return 1;
+      }
+    } else if (c.base != null) {
+      return -1;
+    }
+    for (int i = 0; i < children.length; i++) {
+      if (i >= c.children.length) {
+        return 1;
+      }
+      if ((rc = dimensions[i].compareTo(c.dimensions[i])) != 0) {
+        return (rc < 0) ? -1 : 1;
+      }
+      if ((rc = children[i].compare(c.children[i])) != 0) {
+        return rc;
+      }
+    }
+    return (children.length < c.children.length) ? -1 : 0;
+  }
+
+  public boolean lessThan
+  (ContextSnapshot c)
+  {
+    return compare(c) == -1;
+  }
+
+  /**
+   * @return The canonical form of the Context the snapshot was taken from.
+   */
+  public String canonical
+  ()
+  {
+    String returnValue = canonicalString;
+
+    if (returnValue == null) {
+      StringBuilder buffer = new StringBuilder();
+
+      appendCanonical(buffer);
+      canonicalString = returnValue = buffer.toString();
+    }
+    return returnValue;
+  }
+
+  private void appendCanonical
+  (StringBuilder buffer)
+  {
+    if (canonicalString != null) {
+      buffer.append(canonicalString);
+      return;
+    }
+    buffer.append('<');
+    if (base != null) {
+      buffer.append(base.canonical());
+    }
+    for (int i = 0; i < children.length; i++) {
+      if ((i > 0)||(base != null)) {
+        buffer.append('+');
+      }
+      buffer.append(dimensions[i].canonical()).append(':');
+      children[i].appendCanonical(buffer);
+    }
+    buffer.append('>');
+  }
+
+  public String toString
+  ()
+  {
+    return canonical();
+  }
+
+  /**
+   * Outbound serialisation, in the form written by Context.serialise(), so
+   * that it may be read by Context.deserialise().  As there, the output is
+   * not flushed.
+   */
+  public void serialise
+  (DataOutput out, BoundManager boundManager)
+    throws IOException
+  {
+    serialiseHelper(out, boundManager);
+  }
+
+  public void serialise
+  (DataOutput out)
+    throws IOException
+  {
+    serialise(out, null);
+  }
+
+  private void serialiseHelper
+  (DataOutput out, BoundManager boundManager)
+    throws IOException
+  {
+    out.writeInt(basecount);
+    BaseValue.factorySerialise(base, out, boundManager);
+    out.writeInt(children.length);
+    for (int i = 0; i < children.length; i++) {
+      Dimension.factorySerialise(dimensions[i], out);
+      children[i].serialiseHelper(out, boundManager);
+    }
+  }
+
+  /**
+   * @return A new (mutable) Context with the value of this snapshot.
+   */
+  public Context toContext
+  ()
+  {
+    Context context = new Context();
+
+    assignTo(context);
+    return context;
+  }
+
+  private void assignTo
+  (Context context)
+  {
+    if (base != null) {
+      context.base = (BaseValue)base.clone();
+    }
+    context.basecount = basecount;
+    for (int i = 0; i < children.length; i++) {
+      children[i].assignTo(context.valueRef(dimensions[i]));
+    }
+    context.snapshot = this;
+  }
+
+}
@@ -120,6 +120,30 @@ public abstract class Dimension
   public abstract Object clone
   ();
 
+  /**
+   * Get the shared instance equal to this Dimension, if its class keeps
+   * them.
+   *
+   * @return The shared instance, or this.
+   */
+  public Dimension intern
+  ()
+  {
+    return this;
+  }
+
+  /**
+   * Get the shared instance equal to this Dimension, received from another
+   * process, if its class keeps them and shares received ones.
+   *
+   * @return The shared instance, or this.
+   */
+  public Dimension internReceived
+  ()
+  {
+    return this;
+  }
+
   /**
    * Compare two dimensions.
    *
@@ -140,15 +164,36 @@ public abstract class Dimension
   public boolean equals
   (Dimension dim)
   {
-    return compareTo(dim) == 0;
+    return (dim == this)||(compareTo(dim) == 0);
   }
 
+  /**
+   * Test the equality of this dimension and another object, as per
+   * equals(Dimension).
+   *
+   * @param o An object to compare to this dimension.
+   * @return true if o is an equal Dimension, false otherwise.
+   */
+  public boolean equals
+  (Object o)
+  {
+    return (o instanceof Dimension)&&equals((Dimension)o);
+  }
+
+  /**
+   * Hash code, consistent with equals(Dimension).
+   *
+   * @return The hash code.
+   */
+  public abstract int hashCode
+  ();
+
   /**
    * Outbound serialisation, compatable with the C++ libintense-serial
    * XDRBaseSerialiser.
    */
   public abstract void serialise
-  (DataOutputStream out)
+  (DataOutput out)
     throws IOException;
 
   /**
@@ -156,19 +201,25 @@ public abstract class Dimension
    * XDRBaseSerialiser.
    */
   public abstract void deserialise
-  (DataInputStream in)
+  (DataInput in)
     throws IOException;
 
   /**
    * Outbound factory-based serialisation, compatable with the C++
-   * libintense-serial XDRBaseSerialiser.
+   * libintense-serial XDRBaseSerialiser, unless out carries a
+   * DimensionDictionary.
    */
   public static void factorySerialise
-  (Dimension dimension, DataOutputStream out)
+  (Dimension dimension, DataOutput out)
     throws IOException
   {
+    DimensionDictionary dictionary = DimensionDictionary.get(out);
     int type;
 
+    if ((dictionary != null)&&(dimension != null)) {
+      dictionary.serialise(dimension, out);
+      return;
+    }
     if (dimension != null) {
       type = dimension.getType();
     } else {
@@ -185,13 +236,23 @@ public abstract class Dimension
    * libintense-serial XDRBaseSerialiser.
    */
   public static Dimension factoryDeserialise
-  (DataInputStream in)
+  (DataInput in)
     throws IOException
   {
     int type = in.readInt();
-    Dimension dimension = Dimension.factory(type);
+    Dimension dimension;
+
+    if (type < 0) {
+      DimensionDictionary dictionary = DimensionDictionary.get(in);
+
+      if (dictionary != null) {
+        return dictionary.deserialise(type, in);
+      }
+    }
+    dimension = Dimension.factory(type);
     if (dimension != null) {
       dimension.deserialise(in);
+      dimension = dimension.internReceived();
     }
     return dimension;
   }
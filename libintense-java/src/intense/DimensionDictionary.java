@@ -0,0 +1,266 @@
+// ****************************************************************************
+//
+// DimensionDictionary.java : Per-stream dictionaries of serialised
+// dimensions and compound dimensions.
+//
+// Copyright 2026 the Intense project contributors.
+//
+// This file is part of the Intense project.
+//
+// Intense is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// Intense is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with Intense; if not, write to the Free Software Foundation, Inc.,
+// 59 Temple Place, Suite 330, Boston, MA 02111-1307, USA.
+//
+// ****************************************************************************
+
+
+package intense;
+
+
+import java.io.*;
+import java.util.*;
+
+
+/**
+ * A dictionary of the dimensions and compound dimensions written to, or
+ * read from, a single stream.  The first time a dimension is serialised
+ * through a DataOutput which holds a dictionary, it is written in full,
+ * marked as a definition; thereafter it is written as the id it was
+ * implicitly given, so a long-lived connection sends each of the names it
+ * uses only once.  The reading side's dictionary assigns the same ids, in
+ * the same order, as it decodes the definitions.
+ *
+ * <p>An instance is used either for writing or for reading, never both.
+ * Dictionaries are used by Dimension.factorySerialise() and
+ * CompoundDimension.serialise() (and the matching deserialisers) when the
+ * DataOutput or DataInput is a Holder; they only grow, and once maxSize
+ * entries are defined, further dimensions are written in full.  Writers
+ * must not use a larger maxSize than their readers.
+ */
+public class DimensionDictionary {
+
+  /**
+   * Implemented by the DataOutputs and DataInputs which carry a
+   * dictionary.
+   */
+  public interface Holder {
+
+    /**
+     * @return The dictionary, or null for none.
+     */
+    public DimensionDictionary getDimensionDictionary
+    ();
+
+  }
+
+  public static final int defaultMaxSize = 16384;
+
+  /**
+   * Tags, in place of a Dimension type or CompoundDimension size, for
+   * dictionary references and definitions.
+   */
+  static final int REFERENCE = -1;
+
+  static final int DEFINITION = -2;
+
+  protected int maxSize;
+
+  protected HashMap<Dimension, Integer> dimensionIds;
+
+  protected HashMap<List<Dimension>, Integer> pathIds;
+
+  protected ArrayList<Dimension> dimensions;
+
+  protected ArrayList<List<Dimension>> paths;
+
+  /**
+   * @param maxSize The maximum number of dimensions, and of compound
+   * dimensions, defined.
+   */
+  public DimensionDictionary
+  (int maxSize)
+  {
+    this.maxSize = (maxSize > 0) ? maxSize : 0;
+    dimensionIds = new HashMap<Dimension, Integer>();
+    pathIds = new HashMap<List<Dimension>, Integer>();
+    dimensions = new ArrayList<Dimension>();
+    paths = new ArrayList<List<Dimension>>();
+  }
+
+  public DimensionDictionary
+  ()
+  {
+    this(defaultMaxSize);
+  }
+
+  static DimensionDictionary get
+  (Object stream)
+  {
+    if (stream instanceof Holder) {
+      return ((Holder)stream).getDimensionDictionary();
+    }
+    return null;
+  }
+
+  public int getMaxSize
+  ()
+  {
+    return maxSize;
+  }
+
+  /**
+   * @return The number of dimensions and compound dimensions defined.
+   */
+  public int size
+  ()
+  {
+    return dimensionIds.size() + pathIds.size() + dimensions.size() +
+      paths.size();
+  }
+
+  /**
+   * Write a (non-null) dimension, in place of its type and content.
+   */
+  void serialise
+  (Dimension dimension, DataOutput out)
+    throws IOException
+  {
+    Integer id = dimensionIds.get(dimension);
+
+    if (id != null) {
+      out.writeInt(REFERENCE);
+      out.writeInt(id.intValue());
+      return;
+    }
+    if (dimensionIds.size() < maxSize) {
+      dimensionIds.put(dimension, dimensionIds.size());
+      out.writeInt(DEFINITION);
+    }
+    out.writeInt(dimension.getType());
+    dimension.serialise(out);
+  }
+
+  /**
+   * Read a dimension whose tag (REFERENCE or DEFINITION) has been read.
+   */
+  Dimension deserialise
+  (int tag, DataInput in)
+    throws IOException
+  {
+    switch (tag) {
+    case REFERENCE:
+      {
+        int id = in.readInt();
+
+        if ((id < 0)||(id >= dimensions.size())) {
+          throw new IOException("Bad dimension dictionary id " + id);
+        }
+        return dimensions.get(id);
+      }
+    case DEFINITION:
+      {
+        Dimension dimension;
+
+        if (dimensions.size() >= maxSize) {
+          throw new IOException(
+            "Dimension dictionary overflow (max size " + maxSize + ")"
+          );
+        }
+        dimension = Dimension.factory(in.readInt());
+        if (dimension == null) {
+          throw new IOException("VOID dimension dictionary definition");
+        }
+        dimension.deserialise(in);
+        dimension = dimension.internReceived();
+        dimensions.add(dimension);
+        return dimension;
+      }
+    default:
+      throw new IOException("Bad Dimension type " + tag);
+    }
+  }
+
+  /**
+   * Write the dimensions of a compound dimension, in place of its size and
+   * content.
+   */
+  void serialise
+  (List<Dimension> path, DataOutput out)
+    throws IOException
+  {
+    Integer id = pathIds.get(path);
+
+    if (id != null) {
+      out.writeInt(REFERENCE);
+      out.writeInt(id.intValue());
+      return;
+    }
+    if (pathIds.size() < maxSize) {
+      pathIds.put(new ArrayList<Dimension>(path), pathIds.size());
+      out.writeInt(DEFINITION);
+    }
+    out.writeInt(path.size());
+    for (Dimension dimension : path) {
+      Dimension.factorySerialise(dimension, out);
+    }
+  }
+
+  /**
+   * Read the dimensions of a compound dimension whose tag (REFERENCE or
+   * DEFINITION) has been read.
+   *
+   * @param maxLength The maximum number of dimensions in a definition.
+   */
+  List<Dimension> deserialisePath
+  (int tag, DataInput in, int maxLength)
+    throws IOException
+  {
+    switch (tag) {
+    case REFERENCE:
+      {
+        int id = in.readInt();
+
+        if ((id < 0)||(id >= paths.size())) {
+          throw new IOException("Bad compound dimension dictionary id " + id);
+        }
+        return paths.get(id);
+      }
+    case DEFINITION:
+      {
+        int length = in.readInt();
+        ArrayList<Dimension> path;
+
+        if (paths.size() >= maxSize) {
+          throw new IOException(
+            "Compound dimension dictionary overflow (max size " + maxSize +
+            ")"
+          );
+        }
+        if ((length < 0)||(length > maxLength)) {
+          throw new IOException(
+            "Bad compound dimension dictionary definition size " + length
+          );
+        }
+        path = new ArrayList<Dimension>(length);
+        for (int i = 0; i < length; i++) {
+          path.add(Dimension.factoryDeserialise(in));
+        }
+        paths.add(path);
+        return path;
+      }
+    default:
+      throw new IOException("Bad CompoundDimension size " + tag);
+    }
+  }
+
+}
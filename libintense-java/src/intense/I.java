@@ -27,6 +27,8 @@ package intense;
 
 
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 
 /**
@@ -37,11 +39,185 @@ public class I<Versioned extends Object> {
 
   static final long serialVersionUID = -1L;
 
-  private SetContextDomain<Version<Versioned>> domain;
+  private ContextDomain<Version<Versioned>> domain;
+
+  /**
+   * A bounded, least-recently-used map from (copies of) requested contexts
+   * to best-fit versions (or null, for failed best fits).
+   */
+  private static class BestFitCache<Versioned extends Object>
+    extends LinkedHashMap<Context, Version<Versioned>> {
+
+    static final long serialVersionUID = 2916203475523410437L;
+
+    private int maxSize;
+
+    private BestFitCache
+    (int maxSize)
+    {
+      super(16, 0.75f, true);
+      this.maxSize = maxSize;
+    }
+
+    protected boolean removeEldestEntry
+    (Map.Entry<Context, Version<Versioned>> eldest)
+    {
+      return size() > maxSize;
+    }
+
+  }
+
+  private BestFitCache<Versioned> cache;
+
+  private long cacheHits;
+
+  private long cacheMisses;
+
+  /**
+   * Incremented on every modification of the versions, so that a best fit
+   * computed across a modification is not retained.
+   */
+  private long cacheGeneration;
 
   public I()
   {
-    domain = new SetContextDomain<Version<Versioned>>();
+    this(new SetContextDomain<Version<Versioned>>(), 0);
+  }
+
+  /**
+   * Construct with a given (empty) ContextDomain implementation, e.g. an
+   * IndexedContextDomain, for large numbers of versions.
+   */
+  public I
+  (ContextDomain<Version<Versioned>> domain)
+  {
+    this(domain, 0);
+  }
+
+  /**
+   * Construct with a best-fit cache.
+   *
+   * @param cacheSize The maximum number of requested contexts for which to
+   * retain best fits, or 0 for no cache.
+   */
+  public I
+  (int cacheSize)
+  {
+    this(new SetContextDomain<Version<Versioned>>(), cacheSize);
+  }
+
+  /**
+   * Construct with a given (empty) ContextDomain implementation and a
+   * best-fit cache.
+   *
+   * @param domain The ContextDomain to hold versions in.
+   * @param cacheSize The maximum number of requested contexts for which to
+   * retain best fits, or 0 for no cache.
+   */
+  public I
+  (ContextDomain<Version<Versioned>> domain, int cacheSize)
+  {
+    this.domain = domain;
+    setCacheSize(cacheSize);
+  }
+
+  /**
+   * Set the maximum number of requested contexts for which best fits are
+   * retained.  Best fits are retained until the least recently requested
+   * one must make room, or until the versions are modified via insert(),
+   * remove() or clear().  The cache is emptied by this call.
+   *
+   * @param cacheSize The maximum cache size, or 0 for no cache.
+   */
+  public synchronized void setCacheSize
+  (int cacheSize)
+  {
+    if (cacheSize > 0) {
+      cache = new BestFitCache<Versioned>(cacheSize);
+    } else {
+      cache = null;
+    }
+  }
+
+  /**
+   * @return The number of best fits that were answered from the cache.
+   */
+  public synchronized long getCacheHits
+  ()
+  {
+    return cacheHits;
+  }
+
+  /**
+   * @return The number of best fits that had to be computed while the cache
+   * was enabled.
+   */
+  public synchronized long getCacheMisses
+  ()
+  {
+    return cacheMisses;
+  }
+
+  private synchronized void invalidateCache
+  ()
+  {
+    cacheGeneration++;
+    if (cache != null) {
+      cache.clear();
+    }
+  }
+
+  private Version<Versioned> bestVersion
+  (Context desired, boolean canThrow)
+    throws IntenseException
+  {
+    Context key;
+    long generation;
+    Version<Versioned> version;
+
+    synchronized (this) {
+      generation = cacheGeneration;
+      if (cache == null) {
+        key = null;
+      } else {
+        key = desired;
+        if ((version = cache.get(key)) != null) {
+          cacheHits++;
+          return version;
+        } else if (cache.containsKey(key)) {
+          cacheHits++;
+          if (canThrow) {
+            throw new IntenseException(
+              "Failed best fit for requested context " + desired.canonical()
+            );
+          }
+          return null;
+        }
+        cacheMisses++;
+      }
+    }
+    version = domain.best(desired, false);
+    if (key != null) {
+      synchronized (this) {
+        if ((cache != null)&&(generation == cacheGeneration)) {
+          // The requested context may be modified later (e.g., the
+          // ContextManager current context), so the key must be a copy:
+          cache.put(new Context(key), version);
+        }
+      }
+    }
+    if ((version == null)&&canThrow) {
+      throw new IntenseException(
+        "Failed best fit for requested context " + desired.canonical()
+      );
+    }
+    return version;
+  }
+
+  private Versioned bound
+  (Version<Versioned> version)
+  {
+    return (version != null) ? version.bound : null;
   }
 
   /**
@@ -50,7 +226,10 @@ public class I<Versioned extends Object> {
   public boolean insert
   (Version<Versioned> version)
   {
-    return domain.insert(version, true);
+    boolean inserted = domain.insert(version, true);
+
+    invalidateCache();
+    return inserted;
   }
 
   /**
@@ -60,7 +239,11 @@ public class I<Versioned extends Object> {
   (String context, Versioned versioned)
     throws IntenseException
   {
-    return domain.insert(new Version<Versioned>(context, versioned), true);
+    boolean inserted =
+      domain.insert(new Version<Versioned>(context, versioned), true);
+
+    invalidateCache();
+    return inserted;
   }
 
   /**
@@ -69,7 +252,10 @@ public class I<Versioned extends Object> {
   boolean insert
   (Version<Versioned> version, boolean canReplace)
   {
-    return domain.insert(version, canReplace);
+    boolean inserted = domain.insert(version, canReplace);
+
+    invalidateCache();
+    return inserted;
   }
 
   /**
@@ -79,6 +265,7 @@ public class I<Versioned extends Object> {
   (Context context)
   {
     domain.remove(context);
+    invalidateCache();
   }
 
   /**
@@ -89,54 +276,56 @@ public class I<Versioned extends Object> {
     throws IntenseException
   {
     domain.remove(new Context(context));
+    invalidateCache();
   }
 
   public Versioned best
   (Context desired)
     throws IntenseException
   {
-    return domain.best(desired, true).bound;
+    return bound(bestVersion(desired, true));
   }
 
   public Versioned best
   (String desired)
     throws IntenseException
   {
-    return domain.best(new Context(desired), true).bound;
+    return bound(bestVersion(new Context(desired), true));
   }
 
   public Versioned best
   (Context desired, boolean canThrow)
     throws IntenseException
   {
-    return domain.best(desired, canThrow).bound;
+    return bound(bestVersion(desired, canThrow));
   }
 
   public Versioned best
   (String desired, boolean canThrow)
     throws IntenseException
   {
-    return domain.best(new Context(desired), canThrow).bound;
+    return bound(bestVersion(new Context(desired), canThrow));
   }
 
   public Versioned best
   (boolean canThrow)
     throws IntenseException
   {
-    return domain.best(ContextManager.instance().current(), canThrow).bound;
+    return bound(bestVersion(ContextManager.instance().current(), canThrow));
   }
 
   public Versioned best
   ()
     throws IntenseException
   {
-    return domain.best(ContextManager.instance().current(), true).bound;
+    return bound(bestVersion(ContextManager.instance().current(), true));
   }
 
   public void clear
   ()
   {
     domain.clear();
+    invalidateCache();
   }
 
 }
@@ -0,0 +1,592 @@
+// ****************************************************************************
+//
+// IndexedContextDomain.java - ContextDomain implemented as a set of Contexts,
+// with an inverted index from (dimension path, base value) to versions, used
+// to prune best-fit candidates.
+//
+// Copyright 2026 the Intense project contributors.
+//
+// This file is part of the Intense project.
+//
+// Intense is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// Intense is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with Intense; if not, write to the Free Software Foundation, Inc.,
+// 59 Temple Place, Suite 330, Boston, MA 02111-1307, USA.
+//
+// ****************************************************************************
+
+
+
+package intense;
+
+
+import java.util.*;
+
+
+/**
+ * A ContextDomain which, in addition to the (compare-ordered) set of
+ * Contexts kept by SetContextDomain, maintains an inverted index from each
+ * (dimension path, base value) pair to the versions that have a base value
+ * at that path.  A version can only refine to a requested context if every
+ * one of its base values refines to a base value at the same path in the
+ * requested context, so a best fit only needs to run Context.refinesTo() on
+ * the versions whose every indexed path is matched by the requested context.
+ * The results are identical to those of SetContextDomain.
+ *
+ * Note that versions must not be modified while they are in the domain (the
+ * same is already true of the ordering in SetContextDomain).
+ */
+public class IndexedContextDomain
+<VersionElement extends Context>
+  extends SetContextDomain<VersionElement> {
+
+  static final long serialVersionUID = 4431380526094416817L;
+
+  /**
+   * An indexed version, together with the number of paths under which it
+   * has a base value.
+   */
+  private static class Entry<VersionElement extends Context> {
+
+    private VersionElement version;
+
+    private int basePathCount;
+
+    private Entry
+    (VersionElement version)
+    {
+      this.version = version;
+      basePathCount = 0;
+    }
+
+  }
+
+
+  /**
+   * A node in the index, corresponding to a dimension path.  Postings are
+   * kept by base value type, with the exactly-comparable types (strings,
+   * binaries and bounds) keyed by value.
+   */
+  private static class IndexNode<VersionElement extends Context> {
+
+    private IndexNode<VersionElement> parent;
+
+    private Dimension parentDim;
+
+    private TreeMap<Dimension, IndexNode<VersionElement>> children;
+
+    private ArrayList<Entry<VersionElement>> alphas;
+
+    private ArrayList<Entry<VersionElement>> omegas;
+
+    private ArrayList<Entry<VersionElement>> numbers;
+
+    private HashMap<String, ArrayList<Entry<VersionElement>>> valued;
+
+    private int postingCount;
+
+    private IndexNode
+    (IndexNode<VersionElement> parent, Dimension parentDim)
+    {
+      this.parent = parent;
+      this.parentDim = parentDim;
+      children = null;
+      alphas = null;
+      omegas = null;
+      numbers = null;
+      valued = null;
+      postingCount = 0;
+    }
+
+    private IndexNode<VersionElement> child
+    (Dimension dim, boolean create)
+    {
+      IndexNode<VersionElement> child;
+
+      if (children == null) {
+        if (!create) {
+          return null;
+        }
+        children = new TreeMap<Dimension, IndexNode<VersionElement>>(
+          dimensionComparator
+        );
+      }
+      if (((child = children.get(dim)) == null)&&create) {
+        child = new IndexNode<VersionElement>(this, dim);
+        children.put(dim, child);
+      }
+      return child;
+    }
+
+    private boolean isEmpty
+    ()
+    {
+      return (postingCount == 0)&&((children == null)||children.isEmpty());
+    }
+
+    /**
+     * Get (and possibly create) the posting list for versions with the
+     * given base value at this node.
+     */
+    private ArrayList<Entry<VersionElement>> postings
+    (BaseValue base, boolean create)
+    {
+      ArrayList<Entry<VersionElement>> list;
+
+      switch (base.getType()) {
+      case BaseValue.ALPHA:
+        if ((alphas == null)&&create) {
+          alphas = new ArrayList<Entry<VersionElement>>();
+        }
+        return alphas;
+      case BaseValue.OMEGA:
+        if ((omegas == null)&&create) {
+          omegas = new ArrayList<Entry<VersionElement>>();
+        }
+        return omegas;
+      case BaseValue.NUMBER:
+        if ((numbers == null)&&create) {
+          numbers = new ArrayList<Entry<VersionElement>>();
+        }
+        return numbers;
+      default:
+        if (valued == null) {
+          if (!create) {
+            return null;
+          }
+          valued = new HashMap<String, ArrayList<Entry<VersionElement>>>();
+        }
+        String key = valueKey(base);
+        if (((list = valued.get(key)) == null)&&create) {
+          list = new ArrayList<Entry<VersionElement>>();
+          valued.put(key, list);
+        }
+        return list;
+      }
+    }
+
+  }
+
+
+  private static final Comparator<Dimension> dimensionComparator =
+    new Comparator<Dimension>() {
+      public int compare
+      (Dimension dim1, Dimension dim2)
+      {
+        return dim1.compareTo(dim2);
+      }
+    };
+
+  /**
+   * The key for a base value in an IndexNode valued map.  Only needs to be
+   * unique up to BaseValue.refinesTo() equality, for the types concerned.
+   */
+  private static String valueKey
+  (BaseValue base)
+  {
+    return base.getType() + base.canonical();
+  }
+
+
+  private static class ListElement<VersionElement extends Context>
+    implements ContextDomain.Element<VersionElement> {
+
+    private List<VersionElement> list;
+
+    private int index;
+
+    private ListElement
+    (List<VersionElement> list)
+    {
+      this.list = list;
+      index = 0;
+    }
+
+    public ContextDomain.Element<VersionElement> getNext
+    ()
+    {
+      if (++index < list.size()) {
+        return this;
+      } else {
+        return null;
+      }
+    }
+
+    public VersionElement getVersion
+    ()
+    {
+      return list.get(index);
+    }
+
+  }
+
+
+  private IndexNode<VersionElement> index;
+
+  private IdentityHashMap<VersionElement, Entry<VersionElement>> entries;
+
+  /**
+   * Versions with no base values at all, which refine to everything.
+   */
+  private ArrayList<Entry<VersionElement>> emptyEntries;
+
+  /**
+   * Void constructor.
+   */
+  public IndexedContextDomain
+  ()
+  {
+    super();
+    index = new IndexNode<VersionElement>(null, null);
+    entries = new IdentityHashMap<VersionElement, Entry<VersionElement>>();
+    emptyEntries = new ArrayList<Entry<VersionElement>>();
+  }
+
+  private void indexHelper
+  (Entry<VersionElement> entry, Context context,
+   IndexNode<VersionElement> node)
+  {
+    Iterator itr = context.iterator();
+    Context.Pair pair;
+
+    if (context.base != null) {
+      node.postings(context.base, true).add(entry);
+      node.postingCount++;
+      entry.basePathCount++;
+    }
+    while ((pair = (Context.Pair)itr.next()) != null) {
+      if (pair.context.basecount > 0) {
+        indexHelper(entry, pair.context, node.child(pair.dim, true));
+      }
+    }
+  }
+
+  private void unindexHelper
+  (Entry<VersionElement> entry, Context context,
+   IndexNode<VersionElement> node)
+  {
+    Iterator itr = context.iterator();
+    Context.Pair pair;
+
+    if (context.base != null) {
+      ArrayList<Entry<VersionElement>> list =
+        node.postings(context.base, false);
+
+      if ((list != null)&&list.remove(entry)) {
+        node.postingCount--;
+        if (list.isEmpty()&&(node.valued != null)) {
+          node.valued.remove(valueKey(context.base));
+        }
+      }
+    }
+    while ((pair = (Context.Pair)itr.next()) != null) {
+      if (pair.context.basecount > 0) {
+        IndexNode<VersionElement> child = node.child(pair.dim, false);
+
+        if (child != null) {
+          unindexHelper(entry, pair.context, child);
+        }
+      }
+    }
+    // Prune index nodes which no longer index anything:
+    if ((node.parent != null)&&node.isEmpty()) {
+      node.parent.children.remove(node.parentDim);
+    }
+  }
+
+  private void index
+  (VersionElement version)
+  {
+    Entry<VersionElement> entry = new Entry<VersionElement>(version);
+
+    indexHelper(entry, version, index);
+    if (entry.basePathCount == 0) {
+      emptyEntries.add(entry);
+    }
+    entries.put(version, entry);
+  }
+
+  private void unindex
+  (VersionElement version)
+  {
+    Entry<VersionElement> entry = entries.remove(version);
+
+    if (entry != null) {
+      if (entry.basePathCount == 0) {
+        emptyEntries.remove(entry);
+      } else {
+        unindexHelper(entry, version, index);
+      }
+    }
+  }
+
+  private static <VersionElement extends Context> void count
+  (List<Entry<VersionElement>> list,
+   IdentityHashMap<Entry<VersionElement>, int[]> counts,
+   List<VersionElement> candidates)
+  {
+    if (list == null) {
+      return;
+    }
+    for (int i = 0; i < list.size(); i++) {
+      Entry<VersionElement> entry = list.get(i);
+      int[] count = counts.get(entry);
+
+      if (count == null) {
+        counts.put(entry, count = new int[1]);
+      }
+      if (++count[0] == entry.basePathCount) {
+        candidates.add(entry.version);
+      }
+    }
+  }
+
+  /**
+   * Walk the requested context alongside the index, counting, for each
+   * version, the number of its base values which may refine to the base
+   * value at the same path in the requested context.
+   */
+  private void candidateHelper
+  (Context requested, IndexNode<VersionElement> node,
+   IdentityHashMap<Entry<VersionElement>, int[]> counts,
+   List<VersionElement> candidates)
+  {
+    Iterator itr;
+    Context.Pair pair;
+
+    if ((requested.base != null)&&(node.postingCount > 0)) {
+      BaseValue base = requested.base;
+
+      // Alphas refine to everything:
+      count(node.alphas, counts, candidates);
+      if (base.getType() == BaseValue.OMEGA) {
+        // ...and everything refines to omega:
+        count(node.omegas, counts, candidates);
+        count(node.numbers, counts, candidates);
+        if (node.valued != null) {
+          Iterator<ArrayList<Entry<VersionElement>>> valuedItr =
+            node.valued.values().iterator();
+
+          while (valuedItr.hasNext()) {
+            count(valuedItr.next(), counts, candidates);
+          }
+        }
+      } else if (base.getType() == BaseValue.NUMBER) {
+        count(node.numbers, counts, candidates);
+      } else if (base.getType() != BaseValue.ALPHA) {
+        count(node.postings(base, false), counts, candidates);
+      }
+    }
+    if (node.children == null) {
+      return;
+    }
+    itr = requested.iterator();
+    while ((pair = (Context.Pair)itr.next()) != null) {
+      if (pair.context.basecount > 0) {
+        IndexNode<VersionElement> child = node.child(pair.dim, false);
+
+        if (child != null) {
+          candidateHelper(pair.context, child, counts, candidates);
+        }
+      }
+    }
+  }
+
+  /**
+   * Get the versions in this domain which are candidates for refinement to
+   * the requested context, in no particular order.
+   *
+   * @param requested The desired context.
+   * @return A list of candidate versions (a superset of those that refine to
+   * the requested context).
+   */
+  protected List<VersionElement> candidates
+  (Context requested)
+  {
+    ArrayList<VersionElement> candidates = new ArrayList<VersionElement>();
+
+    for (int i = 0; i < emptyEntries.size(); i++) {
+      candidates.add(emptyEntries.get(i).version);
+    }
+    if (!requested.empty()) {
+      candidateHelper(
+        requested, index,
+        new IdentityHashMap<Entry<VersionElement>, int[]>(), candidates
+      );
+    }
+    return candidates;
+  }
+
+  /**
+   * Get a first element over the candidates for the requested context, in
+   * the same order as getFirstElement().  The near-fit algorithm is
+   * sensitive to the order of the domain, so this is used for near fits;
+   * the best fit (if any) does not depend on the order, so best fits use
+   * the candidates directly.
+   */
+  private ContextDomain.Element<VersionElement> getFirstOrderedCandidate
+  (Context requested)
+  {
+    List<VersionElement> candidates = candidates(requested);
+    IdentityHashMap<VersionElement, VersionElement> candidateSet;
+    ArrayList<VersionElement> ordered;
+    ContextDomain.Element<VersionElement> element;
+
+    if (candidates.size() == 0) {
+      return null;
+    }
+    candidateSet = new IdentityHashMap<VersionElement, VersionElement>();
+    for (int i = 0; i < candidates.size(); i++) {
+      candidateSet.put(candidates.get(i), candidates.get(i));
+    }
+    ordered = new ArrayList<VersionElement>(candidates.size());
+    for (element = getFirstElement(); element != null;
+         element = element.getNext()) {
+      if (candidateSet.containsKey(element.getVersion())) {
+        ordered.add(element.getVersion());
+        if (ordered.size() == candidates.size()) {
+          break;
+        }
+      }
+    }
+    return new ListElement<VersionElement>(ordered);
+  }
+
+  /**
+   * Determine the best-fit context in this domain, as per
+   * ContextDomain.best(), running refinement tests only on indexed
+   * candidates.
+   *
+   * @param requested The desired context.
+   * @param canThrow If true, will case best() to throw an IntenseException on
+   * a failed best fit.
+   * @return The best fit context, or null if there was no best fit (and
+   * canThrow was false).
+   * @throws IntenseException if canThrow was true and there was no unique
+   * best-fit context.
+   */
+  public VersionElement best
+  (Context requested, boolean canThrow)
+    throws IntenseException
+  {
+    List<VersionElement> candidates = candidates(requested);
+
+    return best(
+      (candidates.size() == 0) ?
+      null : new ListElement<VersionElement>(candidates),
+      requested, canThrow
+    );
+  }
+
+  /**
+   * Determine the best-fit context in this domain, as per
+   * ContextDomain.best(), running refinement tests only on indexed
+   * candidates.
+   *
+   * @param requested The desired context.
+   * @return The best fit context.
+   * @throws IntenseException if the best fit failed.
+   */
+  public VersionElement best
+  (Context requested)
+    throws IntenseException
+  {
+    return best(requested, true);
+  }
+
+  /**
+   * Determine the set of near-fit contexts in this domain, as per
+   * ContextDomain.near(), running refinement tests only on indexed
+   * candidates.
+   *
+   * @param requested The desired context.
+   * @return The set of near-fit contexts.
+   * @throws IntenseException if any of the contexts in the domain was null.
+   */
+  public List<VersionElement> near
+  (Context requested)
+    throws IntenseException
+  {
+    return near(getFirstOrderedCandidate(requested), requested);
+  }
+
+  /**
+   * Determine the set of near-fit contexts in this domain, as per
+   * ContextDomain.near(), running refinement tests only on indexed
+   * candidates.
+   *
+   * @param target The target near-fit list to populate (which is NOT
+   * cleared, first).
+   * @param requested The desired context.
+   * @return The best-fit context, if there was one, or null.
+   * @throws IntenseException if any of the contexts in the domain was null.
+   */
+  public VersionElement near
+  (List<VersionElement> target, Context requested)
+    throws IntenseException
+  {
+    return near(getFirstOrderedCandidate(requested), target, requested);
+  }
+
+  /**
+   * Insert a Context (or ContextBinder, etc) into this domain, and index it.
+   *
+   * @param context The Context to insert.
+   * @param canReplace If true, will allow the replacement of a Context with
+   * the same value (as per Context.compare()) as the inserted Context.
+   * @return True if the context was inserted, false otherwise.
+   */
+  public boolean insert
+  (VersionElement context, boolean canReplace)
+  {
+    VersionElement existing = findElement(context);
+
+    if (existing != null) {
+      if (!canReplace) {
+        return false;
+      }
+      unindex(existing);
+    }
+    super.insert(context, canReplace);
+    index(context);
+    return true;
+  }
+
+  /**
+   * Remove a Context (or ContextBinder, etc) from this domain.
+   *
+   * @param context The Context to remove.
+   */
+  public void remove
+  (Context context)
+  {
+    VersionElement existing = findElement(context);
+
+    if (existing != null) {
+      unindex(existing);
+      super.remove(context);
+    }
+  }
+
+  /**
+   * Clear this domain of all values.
+   */
+  public void clear
+  ()
+  {
+    super.clear();
+    index = new IndexNode<VersionElement>(null, null);
+    entries.clear();
+    emptyEntries.clear();
+  }
+
+}
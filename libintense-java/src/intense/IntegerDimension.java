@@ -60,6 +60,15 @@ public class IntegerDimension
     this.value = value;
   }
 
+  /**
+   * @return The value of this IntegerDimension.
+   */
+  public int getValue
+  ()
+  {
+    return value;
+  }
+
   /**
    * Get the subclass type.
    *
@@ -120,12 +129,23 @@ public class IntegerDimension
     }
   }
 
+  /**
+   * Hash code, consistent with equals(Dimension).
+   *
+   * @return The hash code.
+   */
+  public int hashCode
+  ()
+  {
+    return value;
+  }
+
   /**
    * Outbound serialisation, compatable with the C++ libintense-serial
    * XDRBaseSerialiser.
    */
   public void serialise
-  (DataOutputStream out)
+  (DataOutput out)
     throws IOException
   {
     out.writeInt(value);
@@ -136,7 +156,7 @@ public class IntegerDimension
    * XDRBaseSerialiser.
    */
   public void deserialise
-  (DataInputStream in)
+  (DataInput in)
     throws IOException
   {
     value = in.readInt();
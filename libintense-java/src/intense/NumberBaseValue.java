@@ -112,6 +112,15 @@ public class NumberBaseValue
     return (bv.getType() == NUMBER)&&(number == ((NumberBaseValue)bv).number);
   }
 
+  public int hashCode
+  ()
+  {
+    // 0.0 == -0.0, so they must hash the same:
+    long bits = Double.doubleToLongBits((number == 0.0) ? 0.0 : number);
+
+    return (int)(bits^(bits >>> 32));
+  }
+
   public boolean refinesTo
   (BaseValue bv)
   {
@@ -122,7 +131,11 @@ public class NumberBaseValue
   public boolean lessThan
   (BaseValue bv)
   {
-    return (bv.getType() == NUMBER)&&(number < ((NumberBaseValue)bv).number);
+    if (bv.getType() != NUMBER) {
+      // Incompatible types are ordered by type:
+      return typeLessThan(bv);
+    }
+    return number < ((NumberBaseValue)bv).number;
   }
 
   public BaseValue assign
@@ -157,7 +170,7 @@ public class NumberBaseValue
    * XDRBaseSerialiser.
    */
   void serialise
-  (DataOutputStream out)
+  (DataOutput out)
     throws IOException
   {
     out.writeDouble(number);
@@ -168,7 +181,7 @@ public class NumberBaseValue
    * XDRBaseSerialiser.
    */
   void deserialise
-  (DataInputStream in)
+  (DataInput in)
     throws IOException
   {
     number = in.readDouble();
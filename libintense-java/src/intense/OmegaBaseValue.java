@@ -85,6 +85,12 @@ public class OmegaBaseValue
     return false;
   }
 
+  public int hashCode
+  ()
+  {
+    return OMEGA;
+  }
+
   public boolean refinesTo
   (BaseValue bv)
   {
@@ -97,10 +103,8 @@ public class OmegaBaseValue
   public boolean lessThan
   (BaseValue bv)
   {
-    if (bv.getType() == OMEGA) {
-      return false;
-    }
-    return true;
+    // Nothing is ordered after omega:
+    return false;
   }
 
   public BaseValue assign
@@ -121,7 +125,7 @@ public class OmegaBaseValue
    * XDRBaseSerialiser.
    */
   void serialise
-  (DataOutputStream out)
+  (DataOutput out)
     throws IOException
   {
   }
@@ -131,7 +135,7 @@ public class OmegaBaseValue
    * XDRBaseSerialiser.
    */
   void deserialise
-  (DataInputStream in)
+  (DataInput in)
     throws IOException
   {
   }
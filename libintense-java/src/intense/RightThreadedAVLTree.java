@@ -36,6 +36,23 @@ import java.util.*;
 
 /**
  * Right-threaded AVL trees with O(n) forward iterator traversal.
+ *
+ * <p>A subclass may also keep small trees compact, overriding
+ * getCompactCapacity():  up to that many elements are then held in a sorted
+ * array, with no Nodes (nor the header Node, while the tree is empty), and
+ * the tree is only built when the capacity is exceeded, or when a Node is
+ * asked for, by probe(), find() or iterator(Node).  The element-based
+ * methods (insert(), replace(), delete(), findElement(), iterator() and
+ * iterator(Contained)) leave a tree compact.  A tree, once built, stays
+ * built until clearAll().
+ *
+ * <p>A subclass may also give some elements a small, non-negative dense
+ * index, overriding denseIndex() and getDenseCapacity().  The elements with
+ * dense indices are then also kept in an array, indexed by them, so that
+ * findElement() and insert() find them in constant time.  The array only
+ * grows to cover indices up to about twice the size of the tree, so it
+ * stays proportional to it; elements beyond it are found by searching, as
+ * usual.
  */
 public abstract class RightThreadedAVLTree<Contained extends Object>
   implements Serializable {
@@ -48,8 +65,22 @@ public abstract class RightThreadedAVLTree<Contained extends Object>
 
   private final static int AVL_MAX_HEIGHT = 32;
 
+  /**
+   * The header Node, or null while the tree is compact.
+   */
   private Node<Contained> root;
 
+  /**
+   * The elements of a compact tree, in order, or null if there are none.
+   */
+  private Object[] compact;
+
+  /**
+   * The elements with dense indices, by index, or null.  Every element
+   * whose dense index is less than dense.length is in it.
+   */
+  private Object[] dense;
+
   private int nodeCount;
 
 
@@ -64,11 +95,11 @@ public abstract class RightThreadedAVLTree<Contained extends Object>
 
     private Node<Contained> linkRight;   // Subtrees or threads.
 
-    private int bal;       // Balance factor.
+    private byte bal;      // Balance factor.
 
-    private int cache;     // Used during insertion.
+    private byte cache;    // Used during insertion.
 
-    private int rtag;      // Right thread tag.
+    private byte rtag;     // Right thread tag.
 
     private Node<Contained> getLink
     (int index)
@@ -140,11 +171,24 @@ public abstract class RightThreadedAVLTree<Contained extends Object>
 
     private Node<Contained> node;
 
+    /**
+     * Whether this Iterator finds each element as the successor of the last
+     * (as it must while the tree is compact), rather than following Nodes.
+     */
+    private boolean byElement;
+
+    /**
+     * The element last returned, or null, by an Iterator byElement.
+     */
+    private Contained last;
+
     protected Iterator
     (RightThreadedAVLTree<Contained> tree)
     {
       this.tree = tree;
       node = tree.root;
+      byElement = (node == null);
+      last = null;
     }
 
     protected Iterator
@@ -152,6 +196,21 @@ public abstract class RightThreadedAVLTree<Contained extends Object>
     {
       this.tree = tree;
       this.node = node;
+      byElement = false;
+      last = null;
+    }
+
+    /**
+     * An Iterator byElement, positioned at (an element with the key of)
+     * last.
+     */
+    protected Iterator
+    (RightThreadedAVLTree<Contained> tree, Contained last)
+    {
+      this.tree = tree;
+      node = null;
+      byElement = true;
+      this.last = last;
     }
 
     protected Iterator
@@ -159,6 +218,8 @@ public abstract class RightThreadedAVLTree<Contained extends Object>
     {
       this.tree = itr.tree;
       this.node = itr.node;
+      this.byElement = itr.byElement;
+      this.last = itr.last;
     }
 
     /**
@@ -172,6 +233,9 @@ public abstract class RightThreadedAVLTree<Contained extends Object>
     {
       Node<Contained> marker = node;
 
+      if (byElement) {
+        return (tree != null)&&(tree.successor(last) != null);
+      }
       // This is so that hasNext() and next() will always return false
       // and null, respectively, after they have returned so already:
       if (node == null) {
@@ -202,6 +266,16 @@ public abstract class RightThreadedAVLTree<Contained extends Object>
     {
       Node<Contained> marker = node;
 
+      if (byElement) {
+        if (tree == null) {
+          return null;
+        }
+        last = tree.successor(last);
+        if (last == null) {
+          tree = null;
+        }
+        return last;
+      }
       // This is so that hasNext() and next() will always return false
       // and null, respectively, after they have returned so already:
       if (node == null) {
@@ -232,7 +306,11 @@ public abstract class RightThreadedAVLTree<Contained extends Object>
     public void remove
     ()
     {
-      tree.delete(node.element);
+      if (byElement) {
+        tree.delete(last);
+      } else {
+        tree.delete(node.element);
+      }
     }
 
   }
@@ -269,6 +347,10 @@ public abstract class RightThreadedAVLTree<Contained extends Object>
   public Iterator<Contained> iterator
   (Contained element)
   {
+    if (root == null) {
+      insert(element);
+      return new Iterator<Contained>(this, element);
+    }
     return new Iterator<Contained>(this, probe(element));
   }
 
@@ -298,11 +380,227 @@ public abstract class RightThreadedAVLTree<Contained extends Object>
   public RightThreadedAVLTree
   ()
   {
+    root = null;
+    compact = null;
+    dense = null;
+    nodeCount = 0;
+  }
+
+  /**
+   * A subclass may override this to keep small trees compact.
+   *
+   * @return The maximum number of elements held without building the tree
+   * (0 by default).
+   */
+  protected int getCompactCapacity
+  ()
+  {
+    return 0;
+  }
+
+  /**
+   * @return true if the elements are held in a sorted array, rather than in
+   * Nodes.
+   */
+  public boolean isCompact
+  ()
+  {
+    return root == null;
+  }
+
+  /**
+   * A subclass may override this to index some elements densely.
+   *
+   * @return The dense index of item, or -1 if it has none (the default).
+   */
+  protected int denseIndex
+  (Object item)
+  {
+    return -1;
+  }
+
+  /**
+   * A subclass which overrides denseIndex() must also override this.
+   *
+   * @return The maximum size of the dense array (0 by default).
+   */
+  protected int getDenseCapacity
+  ()
+  {
+    return 0;
+  }
+
+  /**
+   * @return The slot of the dense array which decides whether an element
+   * matching item is in the tree, or -1 if the tree must be searched.
+   */
+  private int denseSlot
+  (Object item)
+  {
+    int index;
+
+    if (dense == null) {
+      return -1;
+    }
+    index = denseIndex(item);
+    return (index < dense.length) ? index : -1;
+  }
+
+  /**
+   * Record an element, which has just been added to the tree, in the dense
+   * array, growing the array if it is dense enough.
+   */
+  private void denseAdd
+  (Contained item)
+  {
+    int index = denseIndex(item);
+    int length;
+
+    if (index < 0) {
+      return;
+    } else if ((dense != null)&&(index < dense.length)) {
+      dense[index] = item;
+      return;
+    } else if ((index >= getDenseCapacity())||(index >= 2*nodeCount + 16)) {
+      // Too sparse, for now:
+      return;
+    }
+    length = (dense == null) ? 16 : 2*dense.length;
+    denseBuild(Math.min(Math.max(length, index + 1), getDenseCapacity()));
+  }
+
+  /**
+   * Fill a new dense array of a given length from the elements of the tree.
+   */
+  private void denseBuild
+  (int length)
+  {
+    Iterator<Contained> itr = iterator();
+    Contained element;
+
+    dense = new Object[length];
+    while ((element = itr.next()) != null) {
+      int index = denseIndex(element);
+
+      if ((index >= 0)&&(index < length)) {
+        dense[index] = element;
+      }
+    }
+  }
+
+  /**
+   * Build the tree from the elements of a compact tree.
+   */
+  private void build
+  ()
+  {
+    Object[] elements = compact;
+    int count = nodeCount;
+
     root = new Node<Contained>();
     root.linkLeft = null;
     root.linkRight = root;
     root.rtag = PLUS;
+    compact = null;
     nodeCount = 0;
+    for (int i = 0; i < count; i++) {
+      probe(compactElement(elements, i));
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private static <Contained> Contained compactElement
+  (Object[] elements, int i)
+  {
+    return (Contained)elements[i];
+  }
+
+  /**
+   * Binary search of a compact tree.
+   *
+   * @return The index of the element matching item, or (-(insertion
+   * point) - 1).
+   */
+  private int compactIndex
+  (Object item)
+  {
+    int low = 0;
+    int high = nodeCount - 1;
+
+    while (low <= high) {
+      int middle = (low + high) >>> 1;
+      int diff = cmp(item, compact[middle]);
+
+      if (diff < 0) {
+        high = middle - 1;
+      } else if (diff > 0) {
+        low = middle + 1;
+      } else {
+        return middle;
+      }
+    }
+    return -(low + 1);
+  }
+
+  /**
+   * Insert an element into a compact tree at a given index.
+   */
+  private void compactInsert
+  (int index, Contained item)
+  {
+    if ((compact == null)||(nodeCount == compact.length)) {
+      Object[] elements =
+        new Object[Math.min(Math.max(2*nodeCount, 2), getCompactCapacity())];
+
+      if (nodeCount > 0) {
+        System.arraycopy(compact, 0, elements, 0, nodeCount);
+      }
+      compact = elements;
+    }
+    System.arraycopy(
+      compact, index, compact, index + 1, nodeCount - index
+    );
+    compact[index] = item;
+    nodeCount++;
+    denseAdd(item);
+  }
+
+  /**
+   * Get the least element greater than an item.
+   *
+   * @param item The item, or null for the first element.
+   * @return The element, or null if there is none.
+   */
+  Contained successor
+  (Contained item)
+  {
+    if (root == null) {
+      int index;
+
+      if (item == null) {
+        index = 0;
+      } else if ((index = compactIndex(item)) >= 0) {
+        index++;
+      } else {
+        index = -(index + 1);
+      }
+      return (index < nodeCount) ? compactElement(compact, index) : null;
+    } else {
+      Node<Contained> marker = root.linkLeft;
+      Contained found = null;
+
+      while (marker != null) {
+        if ((item == null)||(cmp(item, marker.element) < 0)) {
+          found = marker.element;
+          marker = marker.linkLeft;
+        } else if (marker.rtag == MINUS) {
+          break;
+        } else {
+          marker = marker.linkRight;
+        }
+      }
+      return found;
+    }
   }
 
   /**
@@ -317,6 +615,8 @@ public abstract class RightThreadedAVLTree<Contained extends Object>
   (RightThreadedAVLTree<Contained> t)
   {
     root = t.root;
+    compact = t.compact;
+    dense = t.dense;
     nodeCount = t.nodeCount;
     return this;
   }
@@ -366,6 +666,15 @@ public abstract class RightThreadedAVLTree<Contained extends Object>
     Node<Contained> q;
 
     new_tree = rightThreadedAVLTreeFactory();
+    if (root == null) {
+      for (int i = 0; i < nodeCount; i++) {
+        Contained element = compactElement(compact, i);
+
+        new_tree.insert((copier == null) ? element : copier.copy(element));
+      }
+      return new_tree;
+    }
+    new_tree.build();
     new_tree.nodeCount = nodeCount;
     p = root;
     if (p.linkLeft == p)
@@ -401,6 +710,9 @@ public abstract class RightThreadedAVLTree<Contained extends Object>
 
       // C6.
       if (p == root) {
+        if (dense != null) {
+          new_tree.denseBuild(dense.length);
+        }
         return new_tree;
       }
       
@@ -442,6 +754,21 @@ public abstract class RightThreadedAVLTree<Contained extends Object>
    */
   public Node<Contained> probe
   (Contained item)
+  {
+    Node<Contained> node;
+
+    if (root == null) {
+      build();
+    }
+    node = probeTree(item);
+    if (node.element == item) {
+      denseAdd(item);
+    }
+    return node;
+  }
+
+  private Node<Contained> probeTree
+  (Contained item)
   {
     // Uses Knuth's Algorithm 6.2.3A (balanced tree search and
     // insertion), modified for a right-threaded binary tree.  Caches
@@ -515,7 +842,7 @@ public abstract class RightThreadedAVLTree<Contained extends Object>
     // A6.
     r = p = s.getLink();
     while (p != q) {
-      p.bal = p.cache * 2 - 1;
+      p.bal = (byte)(p.cache * 2 - 1);
       p = p.getLink();
     }
     // A7.
@@ -629,10 +956,9 @@ public abstract class RightThreadedAVLTree<Contained extends Object>
   public void clearAll
   ()
   {
-    root = new Node<Contained>();
-    root.linkLeft = null;
-    root.linkRight = root;
-    root.rtag = PLUS;
+    root = null;
+    compact = null;
+    dense = null;
     nodeCount = 0;
   }
 
@@ -647,6 +973,12 @@ public abstract class RightThreadedAVLTree<Contained extends Object>
   {
     Node<Contained> marker;
 
+    if (root == null) {
+      if (nodeCount == 0) {
+        return null;
+      }
+      build();
+    }
     marker = root.linkLeft;
     if (marker == null)
       return null;
@@ -667,6 +999,30 @@ public abstract class RightThreadedAVLTree<Contained extends Object>
     }
   }
 
+  /**
+   * Search this tree for an item matching the argument, without building a
+   * compact tree.
+   *
+   * @return The matching element, or null if none was found.
+   */
+  public Contained findElement
+  (Object item)
+  {
+    int slot = denseSlot(item);
+
+    if (slot >= 0) {
+      return compactElement(dense, slot);
+    } else if (root == null) {
+      int index = compactIndex(item);
+
+      return (index >= 0) ? compactElement(compact, index) : null;
+    } else {
+      Node<Contained> marker = find(item);
+
+      return (marker != null) ? marker.element : null;
+    }
+  }
+
   /**
    * Searches for an item matching item.  If found, the item is
    * removed from the tree.
@@ -676,6 +1032,30 @@ public abstract class RightThreadedAVLTree<Contained extends Object>
   public Contained delete
   (Contained item)
   {
+    int slot = denseSlot(item);
+
+    if (slot >= 0) {
+      if (dense[slot] == null) {
+        return null;
+      }
+      dense[slot] = null;
+    }
+    if (root == null) {
+      int index = compactIndex(item);
+
+      if (index < 0) {
+        return null;
+      }
+      item = compactElement(compact, index);
+      System.arraycopy(
+        compact, index + 1, compact, index, nodeCount - index - 1
+      );
+      compact[--nodeCount] = null;
+      if (nodeCount == 0) {
+        compact = null;
+      }
+      return item;
+    }
     // Uses Ben Pfaff's algorithm DTR, which can be found at
     // http://www.msu.edu/user/pfaffben/avl.  Algorithm DT is based on
     // Knuth's Algorithms 6.2.2D (Tree deletion), 6.2.3A (Balanced tree
@@ -940,6 +1320,20 @@ public abstract class RightThreadedAVLTree<Contained extends Object>
   (Contained item)
   {
     Node<Contained> marker;
+    int slot = denseSlot(item);
+
+    if ((slot >= 0)&&(dense[slot] != null)) {
+      return compactElement(dense, slot);
+    } else if (root == null) {
+      int index = compactIndex(item);
+
+      if (index >= 0) {
+        return compactElement(compact, index);
+      } else if (nodeCount < getCompactCapacity()) {
+        compactInsert(-(index + 1), item);
+        return null;
+      }
+    }
     marker = probe(item);
     return (marker.element == item) ? null : marker.element;
   }
@@ -955,12 +1349,28 @@ public abstract class RightThreadedAVLTree<Contained extends Object>
   (Contained item)
   {
     Node<Contained> marker;
+
+    if (root == null) {
+      int index = compactIndex(item);
+
+      if (index >= 0) {
+        Contained r = compactElement(compact, index);
+
+        compact[index] = item;
+        denseAdd(item);
+        return r;
+      } else if (nodeCount < getCompactCapacity()) {
+        compactInsert(-(index + 1), item);
+        return null;
+      }
+    }
     marker = probe(item);
     if (marker.element == item) {
       return null;
     } else {
       Contained r = marker.element;
       marker.element = item;
+      denseAdd(item);
       return r;
     }
   }
@@ -150,6 +150,21 @@ public class SetContextDomain
     }
   }
 
+  /**
+   * Find the element in this domain with the same value (as per
+   * Context.compare()) as the given Context.
+   *
+   * @param context The Context to look for.
+   * @return The element in this domain, or null if there was none.
+   */
+  protected VersionElement findElement
+  (Context context)
+  {
+    RightThreadedAVLTree.Node<VersionElement> node = domain.find(context);
+
+    return (node != null) ? node.element : null;
+  }
+
   /**
    * Subclasses must define a means for inserting a Context (or ContextBinder,
    * etc) into a domain.
@@ -152,6 +152,12 @@ public class StringBaseValue
     }
   }
 
+  public int hashCode
+  ()
+  {
+    return string.hashCode();
+  }
+
   public boolean refinesTo
   (BaseValue bv)
   {
@@ -168,8 +174,8 @@ public class StringBaseValue
   (BaseValue bv)
   {
     if (bv.getType() != STRING) {
-      // No comparing incompatible types:
-      return false;
+      // Incompatible types are ordered by type:
+      return typeLessThan(bv);
     } else {
       return canonical().compareTo(bv.canonical()) < 0;
     }
@@ -196,7 +202,7 @@ public class StringBaseValue
    * XDRBaseSerialiser.
    */
   void serialise
-  (DataOutputStream out)
+  (DataOutput out)
     throws IOException
   {
     byte[] bytes = string.getBytes("UTF-8");
@@ -212,7 +218,7 @@ public class StringBaseValue
    * XDRBaseSerialiser.
    */
   void deserialise
-  (DataInputStream in)
+  (DataInput in)
     throws IOException
   {
     int length = in.readInt();
@@ -230,7 +236,7 @@ public class StringBaseValue
       try {
         in.readFully(buffer);
       } catch (EOFException e) {
-        throw new IOException("EOF reached deserialising StringBaseValue");
+        throw new EOFException("EOF reached deserialising StringBaseValue");
       }
     }
     string = new String(buffer, 0, length, "UTF-8");
@@ -27,11 +27,25 @@ package intense;
 
 
 import java.io.*;
+import java.lang.ref.*;
 import java.util.*;
+import java.util.concurrent.*;
 
 
 /**
  * String-valued Context dimensions.
+ *
+ * <p>The Context and ContextOp lexers share one instance per name (and
+ * quoting) through a global symbol table, with intern(), so that equal
+ * dimensions are usually the same object, and compareTo() can usually
+ * decide on identity, or on an ordering key precomputed from the first
+ * characters of the name, rather than comparing the names in full.  The
+ * table holds its instances weakly, so names drop out of it once nothing
+ * uses them.  Interned instances are immutable.
+ *
+ * <p>Names received from other processes, by deserialisation or by the
+ * AETP lexer, are only interned after setInterningReceived(true), so that
+ * peers cannot fill the table with names of their choosing.
  */
 public class StringDimension
   extends Dimension {
@@ -41,10 +55,62 @@ public class StringDimension
   // Personally, I think this is generous:
   private static final int maxStringDimensionLength = 1024;
 
+  /**
+   * The maximum number of names interned at once, with and without quotes;
+   * beyond it, intern() returns unshared instances.
+   */
+  public static final int MAX_INTERNED = 65536;
+
+  /**
+   * A weakly held entry in a symbol table.
+   */
+  private static class Symbol
+    extends WeakReference<StringDimension> {
+
+    protected ConcurrentHashMap<String, Symbol> table;
+
+    protected String value;
+
+    protected Symbol
+    (StringDimension dimension, ConcurrentHashMap<String, Symbol> table)
+    {
+      super(dimension, collected);
+      this.table = table;
+      value = dimension.value;
+    }
+
+  }
+
+  private static final ConcurrentHashMap<String, Symbol> symbols =
+    new ConcurrentHashMap<String, Symbol>();
+
+  private static final ConcurrentHashMap<String, Symbol> quotedSymbols =
+    new ConcurrentHashMap<String, Symbol>();
+
+  /**
+   * Symbols whose dimensions have been collected, to be removed from their
+   * tables.
+   */
+  private static final ReferenceQueue<StringDimension> collected =
+    new ReferenceQueue<StringDimension>();
+
+  private static volatile boolean interningReceived = false;
+
   private String value;
 
   private boolean requiresQuotes;
 
+  /**
+   * Whether this is the shared instance in a symbol table.
+   */
+  private transient boolean interned;
+
+  /**
+   * The first four chars of value, packed so that unequal keys order as
+   * their values do.
+   */
+  private transient long key;
+
   /**
    * Void constructor.
    */
@@ -52,6 +118,7 @@ public class StringDimension
   ()
   {
     this.value = null;
+    key = 0;
   }
 
   /**
@@ -64,6 +131,134 @@ public class StringDimension
   {
     this.value = value;
     this.requiresQuotes = requiresQuotes;
+    key = orderingKey(value);
+  }
+
+  /**
+   * Get the shared instance from the symbol table, adding it if there is
+   * none.
+   *
+   * @param value The value of the StringDimension.
+   * @return An immutable StringDimension, which must not be deserialised
+   * into.
+   */
+  public static StringDimension intern
+  (String value, boolean requiresQuotes)
+  {
+    ConcurrentHashMap<String, Symbol> table =
+      requiresQuotes ? quotedSymbols : symbols;
+    Symbol symbol;
+    StringDimension dimension;
+    StringDimension existing;
+
+    expunge();
+    symbol = table.get(value);
+    if ((symbol != null)&&((dimension = symbol.get()) != null)) {
+      return dimension;
+    } else if (table.size() >= MAX_INTERNED) {
+      return new StringDimension(value, requiresQuotes);
+    }
+    // Share the name with the other table, too:
+    symbol = (requiresQuotes ? symbols : quotedSymbols).get(value);
+    existing = (symbol != null) ? symbol.get() : null;
+    dimension = new StringDimension(
+      (existing != null) ? existing.value : value, requiresQuotes
+    );
+    dimension.interned = true;
+    while (true) {
+      symbol =
+        table.putIfAbsent(dimension.value, new Symbol(dimension, table));
+      if (symbol == null) {
+        return dimension;
+      } else if ((existing = symbol.get()) != null) {
+        return existing;
+      }
+      // Collected, but not yet expunged:
+      table.remove(dimension.value, symbol);
+    }
+  }
+
+  /**
+   * Remove the symbols of collected dimensions from their tables.
+   */
+  private static void expunge
+  ()
+  {
+    Symbol symbol;
+
+    while ((symbol = (Symbol)collected.poll()) != null) {
+      symbol.table.remove(symbol.value, symbol);
+    }
+  }
+
+  /**
+   * @param value The value of the StringDimension.
+   * @return The shared instance, if received names are interned, or a new
+   * one.
+   */
+  public static StringDimension internReceived
+  (String value, boolean requiresQuotes)
+  {
+    if (interningReceived) {
+      return intern(value, requiresQuotes);
+    }
+    return new StringDimension(value, requiresQuotes);
+  }
+
+  /**
+   * Set whether names received from other processes, by deserialisation
+   * or by the AETP lexer, are interned.  They are not, by default.
+   */
+  public static void setInterningReceived
+  (boolean interningReceived)
+  {
+    StringDimension.interningReceived = interningReceived;
+  }
+
+  public static boolean isInterningReceived
+  ()
+  {
+    return interningReceived;
+  }
+
+  /**
+   * @return The shared instance equal to this one.
+   */
+  public Dimension intern
+  ()
+  {
+    return (interned) ? this : intern(value, requiresQuotes);
+  }
+
+  /**
+   * @return The shared instance equal to this one, if received names are
+   * interned, or this.
+   */
+  public Dimension internReceived
+  ()
+  {
+    return (interningReceived) ? intern() : this;
+  }
+
+  /**
+   * @return Whether this is a shared, immutable instance.
+   */
+  public boolean isInterned
+  ()
+  {
+    return interned;
+  }
+
+  private static long orderingKey
+  (String value)
+  {
+    int length = value.length();
+    long key = 0;
+
+    for (int i = 0; i < 4; i++) {
+      key = (key << 16)|((i < length) ? value.charAt(i) : 0);
+    }
+    return key;
   }
 
   /**
@@ -154,7 +349,17 @@ public class StringDimension
   {
     switch (dim.getType()) {
     case STRING:
-      return value.compareTo(((StringDimension)dim).value);
+      {
+        StringDimension stringDim = (StringDimension)dim;
+
+        if (value == stringDim.value) {
+          return 0;
+        } else if (key != stringDim.key) {
+          return ((key^Long.MIN_VALUE) < (stringDim.key^Long.MIN_VALUE)) ?
+            -1 : 1;
+        }
+        return value.compareTo(stringDim.value);
+      }
     case INTEGER:
       return 1;
     default:
@@ -163,12 +368,23 @@ public class StringDimension
     }
   }
 
+  /**
+   * Hash code, consistent with equals(Dimension).
+   *
+   * @return The hash code.
+   */
+  public int hashCode
+  ()
+  {
+    return value.hashCode();
+  }
+
   /**
    * Outbound serialisation, compatable with the C++ libintense-serial
    * XDRBaseSerialiser.
    */
   public void serialise
-  (DataOutputStream out)
+  (DataOutput out)
     throws IOException
   {
     byte[] bytes = value.getBytes("UTF-8");
@@ -189,12 +405,17 @@ public class StringDimension
    * XDRBaseSerialiser.
    */
   public void deserialise
-  (DataInputStream in)
+  (DataInput in)
     throws IOException
   {
     int length;
     byte[] buffer;
 
+    if (interned) {
+      throw new IOException(
+        "Attempt to deserialise into interned StringDimension " + canonical()
+      );
+    }
     requiresQuotes = (in.readByte() == 1);
     length = in.readInt();
     if (length > maxStringDimensionLength) {
@@ -209,10 +430,19 @@ public class StringDimension
       try {
         in.readFully(buffer);
       } catch (EOFException e) {
-        throw new IOException("EOF reached deserialising StringDimension");
+        throw new EOFException("EOF reached deserialising StringDimension");
       }
     }
     value = new String(buffer, 0, length, "UTF-8");
+    key = orderingKey(value);
+  }
+
+  private void readObject
+  (ObjectInputStream in)
+    throws IOException, ClassNotFoundException
+  {
+    in.defaultReadObject();
+    key = orderingKey(value);
   }
 
 }
@@ -0,0 +1,140 @@
+// ****************************************************************************
+//
+// AEPAccumulationPolicy.java : When an AEPServer.AEther applies the
+// asynchronous tokens it has accumulated.
+//
+// Copyright 2026 the Intense project contributors.
+//
+// This file is part of the Intense project.
+//
+// Intense is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// Intense is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with Intense; if not, write to the Free Software Foundation, Inc.,
+// 59 Temple Place, Suite 330, Boston, MA 02111-1307, USA.
+//
+// ****************************************************************************
+
+
+package intense.aep;
+
+
+import intense.log.*;
+
+
+/**
+ * Decides when an apply lane of an AEPServer.AEther (its ear thread, or a
+ * partition) applies its accumulated asynchronous tokens, trading the
+ * throughput of large accumulations against the latency of the
+ * notifications they produce.  Accumulations are always applied when the
+ * lane runs out of tokens, at fences, and beyond the AEther's maximum
+ * accumulated count; a policy may apply them sooner.
+ *
+ * <p>Each lane has its own copy of the policy, made with copy() from the
+ * factory every subclass defines.  AEPDefaultAccumulationPolicy is the
+ * policy of new AEthers, with the settings given by the system property
+ * "intense.aep.accumulation" (see AEPDefaultAccumulationPolicy.parse()).
+ */
+public abstract class AEPAccumulationPolicy {
+
+  public static final String propertyName = "intense.aep.accumulation";
+
+  /**
+   * Void constructor.
+   */
+  public AEPAccumulationPolicy
+  ()
+  {
+  }
+
+  /**
+   * @param log The Log to report an invalid system property to, or null.
+   * @param logLevel The log level.
+   * @return The policy given by the system property propertyName, or a
+   * policy which never applies early if it is not set or is invalid.
+   */
+  public static AEPDefaultAccumulationPolicy getDefault
+  (Log log, int logLevel)
+  {
+    String spec = System.getProperty(propertyName);
+
+    if (spec != null) {
+      try {
+        return AEPDefaultAccumulationPolicy.parse(spec);
+      } catch (AEPException e) {
+        if ((log != null)&&(logLevel >= Log.ERROR)) {
+          log.priority(Log.ERROR).add(
+            "Ignoring system property " + propertyName + ": " +
+            e.getMessage()
+          ).end();
+        }
+      }
+    }
+    return new AEPDefaultAccumulationPolicy();
+  }
+
+  /**
+   * A subclass must define this factory, returning an instance of the
+   * subclass.
+   *
+   * @return A policy of the same class, with the same settings and no
+   * observations, for another apply lane.
+   */
+  protected abstract AEPAccumulationPolicy accumulationPolicyFactory
+  ();
+
+  /**
+   * @return A policy for another apply lane, from
+   * accumulationPolicyFactory().
+   * @throws AEPException If the factory did not return a new instance of
+   * this policy's class (as when a subclass of a subclass does not define
+   * its own factory).
+   */
+  public final AEPAccumulationPolicy copy
+  ()
+    throws AEPException
+  {
+    AEPAccumulationPolicy lanePolicy = accumulationPolicyFactory();
+
+    if ((lanePolicy == null)||(lanePolicy == this)||
+        (lanePolicy.getClass() != getClass())) {
+      throw new AEPException(
+        getClass().getName() +
+        " does not define its own accumulationPolicyFactory()"
+      );
+    }
+    return lanePolicy;
+  }
+
+  /**
+   * Called by an apply lane each time it accumulates a token.
+   *
+   * @param accumulatedCount The number of tokens in the accumulation.
+   * @param lingerNanos How long the oldest of them has waited.
+   * @param now The current System.nanoTime().
+   * @return True if the accumulation should be applied now.
+   */
+  public abstract boolean shouldApply
+  (int accumulatedCount, long lingerNanos, long now);
+
+  /**
+   * Called by an apply lane after it applies an accumulation.  This does
+   * nothing, unless overridden.
+   *
+   * @param tokenCount The number of tokens accumulated.
+   * @param nanos The time taken to apply them.
+   */
+  public void applied
+  (int tokenCount, long nanos)
+  {
+  }
+
+}
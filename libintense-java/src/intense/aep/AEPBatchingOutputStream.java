@@ -0,0 +1,346 @@
+// ****************************************************************************
+//
+// AEPBatchingOutputStream.java : An OutputStream which coalesces the tokens
+// written to it into batched writes.
+//
+// Copyright 2026 the Intense project contributors.
+//
+// This file is part of the Intense project.
+//
+// Intense is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// Intense is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with Intense; if not, write to the Free Software Foundation, Inc.,
+// 59 Temple Place, Suite 330, Boston, MA 02111-1307, USA.
+//
+// ****************************************************************************
+
+
+package intense.aep;
+
+
+import java.util.concurrent.*;
+import java.util.concurrent.locks.*;
+import java.io.*;
+
+
+/**
+ * Buffers the serialised tokens written by an AEP stream client or server.
+ * Each token is terminated with endToken(), and the buffered tokens are
+ * written to the underlying stream, in order, with a single write and
+ * flush once maxBatchSize tokens have accumulated, or maxLinger
+ * milliseconds after the first of them was buffered, or on an explicit
+ * flush(), whichever comes first.  With a maxBatchSize of 1 (the default),
+ * every token is written as soon as it is complete.
+ *
+ * <p>Lingering batches are timed by a single thread shared by all streams,
+ * which never writes itself: it hands each expired batch to a pooled thread,
+ * so that a stream blocked writing to a slow peer holds up only its own
+ * flush, and not those of every other stream.
+ */
+class AEPBatchingOutputStream
+  extends OutputStream {
+
+  public static final int defaultMaxBatchSize = 1;
+
+  public static final long defaultMaxLinger = 5;
+
+  private static final int initialBufferSize = 1024;
+
+  private static ScheduledExecutorService lingerTimer = null;
+
+  private static ExecutorService lingerFlusher = null;
+
+  protected OutputStream out;
+
+  protected byte[] buffer;
+
+  protected int count;
+
+  protected int batchedTokens;
+
+  protected int maxBatchSize;
+
+  protected long maxLinger;
+
+  protected ScheduledFuture<?> lingerFlush;
+
+  /**
+   * Counts the scheduled linger flushes, so that one which was overtaken by
+   * a regular flush (and perhaps by another linger flush being scheduled)
+   * before it could run does nothing.
+   */
+  protected long lingerGeneration;
+
+  /**
+   * A failure of a linger flush, reported by the next write or flush.
+   */
+  protected IOException deferredException;
+
+  protected ReentrantLock mutex;
+
+  AEPBatchingOutputStream
+  (OutputStream out)
+  {
+    this.out = out;
+    buffer = new byte[initialBufferSize];
+    count = 0;
+    batchedTokens = 0;
+    maxBatchSize = defaultMaxBatchSize;
+    maxLinger = defaultMaxLinger;
+    lingerFlush = null;
+    lingerGeneration = 0;
+    deferredException = null;
+    mutex = new ReentrantLock();
+  }
+
+  private static ThreadFactory newDaemonThreadFactory
+  ()
+  {
+    return new ThreadFactory() {
+        public Thread newThread
+        (Runnable runnable)
+        {
+          Thread thread = AEPThreadFactory.getDefault().newThread(runnable);
+
+          thread.setDaemon(true);
+          return thread;
+        }
+      };
+  }
+
+  private static synchronized ScheduledExecutorService getLingerTimer
+  ()
+  {
+    if (lingerTimer == null) {
+      lingerTimer =
+        Executors.newSingleThreadScheduledExecutor(newDaemonThreadFactory());
+    }
+    return lingerTimer;
+  }
+
+  /**
+   * The threads which write out lingering batches; idle ones are retired
+   * after a minute.
+   */
+  private static synchronized ExecutorService getLingerFlusher
+  ()
+  {
+    if (lingerFlusher == null) {
+      lingerFlusher = Executors.newCachedThreadPool(newDaemonThreadFactory());
+    }
+    return lingerFlusher;
+  }
+
+  /**
+   * @param maxBatchSize The maximum number of tokens buffered before they
+   * are written (1 disables batching).
+   * @param maxLinger The maximum time, in milliseconds, that a token is
+   * buffered before it is written.
+   */
+  void setBatching
+  (int maxBatchSize, long maxLinger)
+    throws IOException
+  {
+    mutex.lock();
+    try {
+      this.maxBatchSize = (maxBatchSize > 0) ? maxBatchSize : 1;
+      this.maxLinger = (maxLinger >= 0) ? maxLinger : 0;
+      if (batchedTokens > 0) {
+        flushBuffer();
+      }
+    } finally {
+      mutex.unlock();
+    }
+  }
+
+  int getMaxBatchSize
+  ()
+  {
+    return maxBatchSize;
+  }
+
+  long getMaxLinger
+  ()
+  {
+    return maxLinger;
+  }
+
+  private void ensureCapacity
+  (int length)
+  {
+    if (count + length > buffer.length) {
+      byte[] newBuffer =
+        new byte[Math.max(buffer.length*2, count + length)];
+
+      System.arraycopy(buffer, 0, newBuffer, 0, count);
+      buffer = newBuffer;
+    }
+  }
+
+  private void checkDeferredException
+  ()
+    throws IOException
+  {
+    if (deferredException != null) {
+      IOException e = deferredException;
+
+      deferredException = null;
+      throw e;
+    }
+  }
+
+  public void write
+  (int b)
+    throws IOException
+  {
+    mutex.lock();
+    try {
+      checkDeferredException();
+      ensureCapacity(1);
+      buffer[count++] = (byte)b;
+    } finally {
+      mutex.unlock();
+    }
+  }
+
+  public void write
+  (byte[] bytes, int offset, int length)
+    throws IOException
+  {
+    mutex.lock();
+    try {
+      checkDeferredException();
+      ensureCapacity(length);
+      System.arraycopy(bytes, offset, buffer, count, length);
+      count += length;
+    } finally {
+      mutex.unlock();
+    }
+  }
+
+  /**
+   * Mark the end of a serialised token, writing out the batch if it is
+   * full.
+   */
+  void endToken
+  ()
+    throws IOException
+  {
+    mutex.lock();
+    try {
+      batchedTokens++;
+      if ((batchedTokens >= maxBatchSize)||(maxLinger == 0)) {
+        flushBuffer();
+      } else if (lingerFlush == null) {
+        final long generation = ++lingerGeneration;
+
+        lingerFlush = getLingerTimer().schedule(
+          new Runnable() {
+            public void run
+            ()
+            {
+              getLingerFlusher().execute(
+                new Runnable() {
+                  public void run
+                  ()
+                  {
+                    lingerFlush(generation);
+                  }
+                }
+              );
+            }
+          },
+          maxLinger, TimeUnit.MILLISECONDS
+        );
+      }
+    } finally {
+      mutex.unlock();
+    }
+  }
+
+  private void lingerFlush
+  (long generation)
+  {
+    mutex.lock();
+    try {
+      if ((lingerFlush == null)||(generation != lingerGeneration)) {
+        return;
+      }
+      lingerFlush = null;
+      if (count > 0) {
+        flushBuffer();
+      }
+    } catch (IOException e) {
+      deferredException = e;
+    } finally {
+      mutex.unlock();
+    }
+  }
+
+  /**
+   * mutex must be held.
+   */
+  private void flushBuffer
+  ()
+    throws IOException
+  {
+    if (lingerFlush != null) {
+      lingerFlush.cancel(false);
+      lingerFlush = null;
+    }
+    batchedTokens = 0;
+    if (count > 0) {
+      int length = count;
+
+      count = 0;
+      out.write(buffer, 0, length);
+    }
+    out.flush();
+  }
+
+  /**
+   * Write out any buffered tokens.
+   */
+  public void flush
+  ()
+    throws IOException
+  {
+    mutex.lock();
+    try {
+      checkDeferredException();
+      if (count > 0) {
+        flushBuffer();
+      }
+    } finally {
+      mutex.unlock();
+    }
+  }
+
+  public void close
+  ()
+    throws IOException
+  {
+    mutex.lock();
+    try {
+      try {
+        if (count > 0) {
+          flushBuffer();
+        }
+      } finally {
+        out.close();
+      }
+    } finally {
+      mutex.unlock();
+    }
+  }
+
+}
@@ -0,0 +1,237 @@
+// ****************************************************************************
+//
+// AEPBinaryClient.java : AEP 2.0 compact binary streamed client, for the
+// AEPBinaryServer and AEPSocketServer.
+//
+// Copyright 2026 the Intense project contributors.
+//
+// This file is part of the Intense project.
+//
+// Intense is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// Intense is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with Intense; if not, write to the Free Software Foundation, Inc.,
+// 59 Temple Place, Suite 330, Boston, MA 02111-1307, USA.
+//
+// ****************************************************************************
+
+
+package intense.aep;
+
+
+import java.lang.*;
+import java.util.*;
+import java.util.concurrent.locks.*;
+import java.io.*;
+import intense.*;
+import intense.log.*;
+
+
+/**
+ * A client which exchanges the same tokens as an AEPXDRClient in the
+ * compact, framed encoding of AEPBinaryCodec.  It may connect to an
+ * AEPBinaryServer, or to an AEPSocketServer, which recognises the
+ * preamble sent before the client's first token and speaks BINARY for
+ * the rest of the connection.
+ */
+public class AEPBinaryClient
+  extends AEPStreamClient {
+
+  protected AEPBinaryCodec.Framer framer;
+
+  protected AEPBatchingOutputStream batchingStream;
+
+  protected void construct
+  ()
+  {
+    framer = new AEPBinaryCodec.Framer(BINARY);
+    batchingStream = new AEPBatchingOutputStream(outputStream);
+  }
+
+  public AEPBinaryClient
+  (InputStream is, OutputStream os)
+    throws AEPException
+  {
+    super(is, os, null, Log.NOTICE, true, false, 0);
+    construct();
+  }
+
+  public AEPBinaryClient
+  (InputStream is, OutputStream os, Log log)
+    throws AEPException
+  {
+    super(is, os, log, Log.NOTICE, true, false, 0);
+    construct();
+  }
+
+  public AEPBinaryClient
+  (InputStream is, OutputStream os, Log log, int logLevel)
+    throws AEPException
+  {
+    super(is, os, log, logLevel, true, false, 0);
+    construct();
+  }
+
+  public AEPBinaryClient
+  (InputStream is, OutputStream os, Log log, int logLevel,
+   boolean errorTolerant)
+    throws AEPException
+  {
+    super(is, os, log, logLevel, errorTolerant, false, 0);
+    construct();
+  }
+
+  public AEPBinaryClient
+  (InputStream is, OutputStream os, Log log, int logLevel,
+   boolean errorTolerant, boolean useReceiverThread)
+    throws AEPException
+  {
+    super(is, os, log, logLevel, errorTolerant, useReceiverThread, 0);
+    construct();
+  }
+
+  public AEPBinaryClient
+  (InputStream is, OutputStream os, Log log, int logLevel,
+   boolean errorTolerant, boolean useReceiverThread, int maxReceiveSize)
+    throws AEPException
+  {
+    super(
+      is, os, log, logLevel, errorTolerant, useReceiverThread, maxReceiveSize
+    );
+    construct();
+  }
+
+  protected void send
+  (AEPServer.Token token)
+    throws IOException, AEPException
+  {
+    AEPServer.Token.factorySerialise(
+      (AEPServer.Token)token, framer.beginFrame()
+    );
+    framer.endFrame(batchingStream);
+    batchingStream.endToken();
+  }
+
+  /**
+   * Batch outgoing tokens: up to maxBatchSize serialised tokens are
+   * coalesced into a single write, which is made once the batch is full,
+   * maxLinger milliseconds after its first token, or on flush().  Tokens
+   * are always written in the order they were sent.
+   *
+   * @param maxBatchSize The maximum number of tokens per write (1, the
+   * default, writes each token as it is sent).
+   * @param maxLinger The maximum time, in milliseconds, that a token is
+   * held before it is written.
+   */
+  public void setBatching
+  (int maxBatchSize, long maxLinger)
+    throws IOException
+  {
+    batchingStream.setBatching(maxBatchSize, maxLinger);
+  }
+
+  public int getMaxBatchSize
+  ()
+  {
+    return batchingStream.getMaxBatchSize();
+  }
+
+  public long getMaxLinger
+  ()
+  {
+    return batchingStream.getMaxLinger();
+  }
+
+  /**
+   * Set the size of the dimension dictionary kept for the tokens this client
+   * receives, which is offered to the server before the first token is sent.
+   *
+   * @param maxDictionarySize The number of dimensions, and of compound
+   * dimensions, that the server may define (0 disables dictionary
+   * compression in both directions).
+   * @throws AEPException If a token has already been sent.
+   */
+  public void setMaxDictionarySize
+  (int maxDictionarySize)
+    throws AEPException
+  {
+    if (framer.isStarted()) {
+      throw new AEPException(
+        getName() + ": the dictionary size must be set before the first " +
+        "token is sent", Log.ERROR
+      );
+    }
+    framer.setMaxDictionarySize(maxDictionarySize);
+  }
+
+  public int getMaxDictionarySize
+  ()
+  {
+    return framer.getMaxDictionarySize();
+  }
+
+  /**
+   * Compress the tokens this client sends which serialise to at least
+   * compressionThreshold bytes, if the server accepts compressed tokens.
+   * Compression carries over from token to token, so that repeated
+   * dimensions and values are cheap even in tokens just over the
+   * threshold.
+   *
+   * @param compressionThreshold The size, in bytes, from which tokens are
+   * compressed (0, the default, disables compression).
+   * @throws AEPException If a token has already been sent.
+   */
+  public void setCompressionThreshold
+  (int compressionThreshold)
+    throws AEPException
+  {
+    if (framer.isStarted()) {
+      throw new AEPException(
+        getName() + ": the compression threshold must be set before the " +
+        "first token is sent", Log.ERROR
+      );
+    }
+    framer.setCompressionThreshold(compressionThreshold);
+  }
+
+  public int getCompressionThreshold
+  ()
+  {
+    return framer.getCompressionThreshold();
+  }
+
+  public void flush
+  ()
+    throws IOException
+  {
+    batchingStream.flush();
+  }
+
+  protected Token receive
+  ()
+    throws IOException, IntenseException, AEPException
+  {
+    return AEPClient.Token.factoryDeserialise(framer.readFrame(inputStream));
+  }
+
+  protected String getName
+  ()
+  {
+    return "AEPBinaryClient";
+  }
+
+  protected boolean locksReception
+  ()
+  {
+    return true;
+  }
+
+}
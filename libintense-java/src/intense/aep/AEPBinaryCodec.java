@@ -0,0 +1,1220 @@
+// ****************************************************************************
+//
+// AEPBinaryCodec.java : The compact binary encoding of AEP tokens, with
+// variable-length integers and length-prefixed, optionally compressed,
+// frames.
+//
+// Copyright 2026 the Intense project contributors.
+//
+// This file is part of the Intense project.
+//
+// Intense is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// Intense is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with Intense; if not, write to the Free Software Foundation, Inc.,
+// 59 Temple Place, Suite 330, Boston, MA 02111-1307, USA.
+//
+// ****************************************************************************
+
+
+package intense.aep;
+
+
+import java.io.*;
+import java.nio.*;
+import java.util.zip.*;
+import intense.*;
+import intense.log.*;
+
+
+/**
+ * The BINARY mode AEP encoding.  Tokens are serialised by the same
+ * serialise() and deserialise() methods as in XDR mode, but through a
+ * DataOutput and DataInput which write every int and long as a zig-zag
+ * varint, so that type tags, flags and small lengths take a single byte,
+ * and sequence numbers and participant ids rarely more than three.
+ *
+ * <p>Each token is sent as a frame, by a Framer: a varint header holding
+ * the payload length and a compression bit, followed by the payload, so
+ * that a receiver can find the end of a token without decoding it.  Each
+ * side of a connection writes a preamble before its first frame: a magic
+ * byte (binaryMagic, or xdrMagic for framed XDR payloads), the protocol
+ * version, a flags byte, and a varint giving the size of the
+ * DimensionDictionary it will keep for the frames it reads (0 for none).
+ * Each side only sends dictionary references, or compressed frames, once
+ * it has seen the other's preamble offer them.  No plain XDR token begins
+ * with either magic byte, so a server can tell the three kinds of client
+ * apart by the first byte they send.
+ */
+class AEPBinaryCodec {
+
+  public static final int binaryMagic = 0xae;
+
+  public static final int xdrMagic = 0xaf;
+
+  public static final int version = 1;
+
+  /**
+   * Preamble flag: the sender accepts compressed frames.
+   */
+  public static final int COMPRESSION = 1;
+
+  /**
+   * The largest frame accepted from a peer.
+   */
+  public static final int maxFrameSize = 1<<28;
+
+  private static final int initialBufferSize = 256;
+
+  /**
+   * A varint is at most 10 bytes long.
+   */
+  private static final int maxVarintSize = 10;
+
+
+  /**
+   * A DataOutput which encodes into a growable byte array.
+   */
+  static class Output
+    implements DataOutput, DimensionDictionary.Holder,
+      BinaryBaseValue.BufferWriter {
+
+    protected byte[] buffer;
+
+    protected int count;
+
+    protected DimensionDictionary dictionary;
+
+    /**
+     * Whether shorts, chars, ints and longs are written at their full
+     * width, as by a DataOutputStream (for XDR payloads), rather than as
+     * varints.
+     */
+    protected boolean fixedWidth;
+
+    Output
+    ()
+    {
+      this(false);
+    }
+
+    Output
+    (boolean fixedWidth)
+    {
+      buffer = new byte[initialBufferSize];
+      count = 0;
+      dictionary = null;
+      this.fixedWidth = fixedWidth;
+    }
+
+    public DimensionDictionary getDimensionDictionary
+    ()
+    {
+      return dictionary;
+    }
+
+    void setDimensionDictionary
+    (DimensionDictionary dictionary)
+    {
+      this.dictionary = dictionary;
+    }
+
+    void reset
+    ()
+    {
+      count = 0;
+    }
+
+    int size
+    ()
+    {
+      return count;
+    }
+
+    byte[] toByteArray
+    ()
+    {
+      byte[] bytes = new byte[count];
+
+      System.arraycopy(buffer, 0, bytes, 0, count);
+      return bytes;
+    }
+
+    private void ensureCapacity
+    (int length)
+    {
+      if (count + length > buffer.length) {
+        byte[] newBuffer =
+          new byte[Math.max(buffer.length*2, count + length)];
+
+        System.arraycopy(buffer, 0, newBuffer, 0, count);
+        buffer = newBuffer;
+      }
+    }
+
+    private void writeVarint
+    (long value)
+    {
+      ensureCapacity(maxVarintSize);
+      count = encodeVarint(value, buffer, count);
+    }
+
+    private void writeFixed
+    (long value, int size)
+    {
+      ensureCapacity(size);
+      for (int shift = 8*(size - 1); shift >= 0; shift -= 8) {
+        buffer[count++] = (byte)(value >>> shift);
+      }
+    }
+
+    public void write
+    (int b)
+    {
+      ensureCapacity(1);
+      buffer[count++] = (byte)b;
+    }
+
+    public void write
+    (byte[] bytes)
+    {
+      write(bytes, 0, bytes.length);
+    }
+
+    public void write
+    (byte[] bytes, int offset, int length)
+    {
+      ensureCapacity(length);
+      System.arraycopy(bytes, offset, buffer, count, length);
+      count += length;
+    }
+
+    /**
+     * Copy a buffer's content (such as a BinaryBaseValue's) in one bulk
+     * get, whether or not it is direct.
+     */
+    public void writeBuffer
+    (ByteBuffer source)
+    {
+      int length = source.remaining();
+
+      ensureCapacity(length);
+      source.get(buffer, count, length);
+      count += length;
+    }
+
+    public void writeBoolean
+    (boolean value)
+    {
+      write((value) ? 1 : 0);
+    }
+
+    public void writeByte
+    (int value)
+    {
+      write(value);
+    }
+
+    public void writeShort
+    (int value)
+    {
+      if (fixedWidth) {
+        writeFixed(value, 2);
+      } else {
+        writeVarint(zigZag((short)value));
+      }
+    }
+
+    public void writeChar
+    (int value)
+    {
+      if (fixedWidth) {
+        writeFixed(value, 2);
+      } else {
+        writeVarint(value&0xffff);
+      }
+    }
+
+    public void writeInt
+    (int value)
+    {
+      if (fixedWidth) {
+        writeFixed(value, 4);
+      } else {
+        writeVarint(zigZag(value));
+      }
+    }
+
+    public void writeLong
+    (long value)
+    {
+      if (fixedWidth) {
+        writeFixed(value, 8);
+      } else {
+        writeVarint(zigZag(value));
+      }
+    }
+
+    public void writeFloat
+    (float value)
+    {
+      writeFixed(Float.floatToIntBits(value), 4);
+    }
+
+    public void writeDouble
+    (double value)
+    {
+      writeFixed(Double.doubleToLongBits(value), 8);
+    }
+
+    public void writeBytes
+    (String string)
+    {
+      int length = string.length();
+
+      ensureCapacity(length);
+      for (int i = 0; i < length; i++) {
+        buffer[count++] = (byte)string.charAt(i);
+      }
+    }
+
+    public void writeChars
+    (String string)
+    {
+      for (int i = 0; i < string.length(); i++) {
+        writeChar(string.charAt(i));
+      }
+    }
+
+    /**
+     * Write a string as UTF-8, preceded by its length in bytes (a varint,
+     * even when fixedWidth).
+     */
+    public void writeUTF
+    (String string)
+      throws IOException
+    {
+      byte[] bytes = string.getBytes("UTF-8");
+
+      writeVarint(bytes.length);
+      write(bytes, 0, bytes.length);
+    }
+
+  }
+
+
+  /**
+   * A DataInput which decodes from a byte array, normally a single frame.
+   */
+  static class Input
+    implements DataInput, DimensionDictionary.Holder {
+
+    protected byte[] buffer;
+
+    protected int position;
+
+    protected int limit;
+
+    protected DimensionDictionary dictionary;
+
+    protected boolean fixedWidth;
+
+    /**
+     * This Input's own array, which buffer is, unless wrap() was called.
+     */
+    protected byte[] ownBuffer;
+
+    /**
+     * @param dictionarySize The size of the dictionary kept for the frames
+     * read (0 for none).
+     * @param fixedWidth Whether shorts, chars, ints and longs are read at
+     * their full width, as by a DataInputStream, rather than as varints.
+     */
+    Input
+    (int dictionarySize, boolean fixedWidth)
+    {
+      ownBuffer = new byte[initialBufferSize];
+      buffer = ownBuffer;
+      position = 0;
+      limit = 0;
+      dictionary = (dictionarySize > 0) ?
+        new DimensionDictionary(dictionarySize) : null;
+      this.fixedWidth = fixedWidth;
+    }
+
+    Input
+    (int dictionarySize)
+    {
+      this(dictionarySize, false);
+    }
+
+    public DimensionDictionary getDimensionDictionary
+    ()
+    {
+      return dictionary;
+    }
+
+    /**
+     * Decode from part of an external array.
+     */
+    void wrap
+    (byte[] bytes, int offset, int length)
+    {
+      buffer = bytes;
+      position = offset;
+      limit = offset + length;
+    }
+
+    /**
+     * Prepare to decode bytes, which the caller fills in, from the start of
+     * this Input's own array.  The array is not grown here: the caller
+     * grows it, with grow(), as the bytes arrive, and then sets the limit
+     * with filled().
+     *
+     * @return The array.
+     */
+    byte[] fill
+    ()
+    {
+      buffer = ownBuffer;
+      position = 0;
+      limit = 0;
+      return buffer;
+    }
+
+    /**
+     * Grow this Input's own array, keeping its contents, to hold at least
+     * length bytes.
+     *
+     * @return The array.
+     */
+    byte[] grow
+    (int length)
+    {
+      if (ownBuffer.length < length) {
+        byte[] larger = new byte[Math.max(length, 2*ownBuffer.length)];
+
+        System.arraycopy(ownBuffer, 0, larger, 0, ownBuffer.length);
+        ownBuffer = larger;
+      }
+      buffer = ownBuffer;
+      return buffer;
+    }
+
+    /**
+     * Decode the first length bytes of this Input's own array, once the
+     * caller has filled them in.
+     */
+    void filled
+    (int length)
+    {
+      limit = length;
+    }
+
+    int remaining
+    ()
+    {
+      return limit - position;
+    }
+
+    private void require
+    (int length)
+      throws EOFException
+    {
+      if (limit - position < length) {
+        throw new EOFException("EOF reached decoding AEP binary frame");
+      }
+    }
+
+    private long readFixed
+    (int size)
+      throws IOException
+    {
+      long value = 0;
+
+      require(size);
+      for (int i = 0; i < size; i++) {
+        value = (value << 8)|(buffer[position++]&0xff);
+      }
+      return value;
+    }
+
+    private long readVarint
+    ()
+      throws IOException
+    {
+      long value = 0;
+
+      for (int shift = 0; shift < 64; shift += 7) {
+        int b;
+
+        require(1);
+        b = buffer[position++];
+        value |= (long)(b&0x7f) << shift;
+        if ((b&0x80) == 0) {
+          return value;
+        }
+      }
+      throw new IOException("Malformed varint in AEP binary frame");
+    }
+
+    public void readFully
+    (byte[] bytes)
+      throws IOException
+    {
+      readFully(bytes, 0, bytes.length);
+    }
+
+    public void readFully
+    (byte[] bytes, int offset, int length)
+      throws IOException
+    {
+      require(length);
+      System.arraycopy(buffer, position, bytes, offset, length);
+      position += length;
+    }
+
+    public int skipBytes
+    (int n)
+    {
+      n = Math.max(0, Math.min(n, limit - position));
+      position += n;
+      return n;
+    }
+
+    public boolean readBoolean
+    ()
+      throws IOException
+    {
+      return readByte() != 0;
+    }
+
+    public byte readByte
+    ()
+      throws IOException
+    {
+      require(1);
+      return buffer[position++];
+    }
+
+    public int readUnsignedByte
+    ()
+      throws IOException
+    {
+      return readByte()&0xff;
+    }
+
+    public short readShort
+    ()
+      throws IOException
+    {
+      if (fixedWidth) {
+        return (short)readFixed(2);
+      }
+      return (short)unZigZag(readVarint());
+    }
+
+    public int readUnsignedShort
+    ()
+      throws IOException
+    {
+      return readShort()&0xffff;
+    }
+
+    public char readChar
+    ()
+      throws IOException
+    {
+      if (fixedWidth) {
+        return (char)readFixed(2);
+      }
+      return (char)readVarint();
+    }
+
+    public int readInt
+    ()
+      throws IOException
+    {
+      if (fixedWidth) {
+        return (int)readFixed(4);
+      }
+      return (int)unZigZag(readVarint());
+    }
+
+    public long readLong
+    ()
+      throws IOException
+    {
+      if (fixedWidth) {
+        return readFixed(8);
+      }
+      return unZigZag(readVarint());
+    }
+
+    public float readFloat
+    ()
+      throws IOException
+    {
+      return Float.intBitsToFloat((int)readFixed(4));
+    }
+
+    public double readDouble
+    ()
+      throws IOException
+    {
+      return Double.longBitsToDouble(readFixed(8));
+    }
+
+    public String readLine
+    ()
+      throws IOException
+    {
+      throw new IOException("readLine is not supported in AEP binary frames");
+    }
+
+    public String readUTF
+    ()
+      throws IOException
+    {
+      long length = readVarint();
+      String string;
+
+      if ((length < 0)||(length > limit - position)) {
+        throw new EOFException("EOF reached decoding AEP binary frame");
+      }
+      string = new String(buffer, position, (int)length, "UTF-8");
+      position += (int)length;
+      return string;
+    }
+
+  }
+
+
+  /**
+   * The framing of one end of a connection: its preamble, and the header,
+   * and optional compression, of each frame.  A Framer is written by one
+   * thread at a time (beginFrame() and endFrame()), and read by one thread
+   * at a time (readPreamble() and readFrame()).
+   *
+   * <p>Frames of at least compressionThreshold bytes are compressed, once
+   * the peer's preamble has said that it accepts compressed frames.  The
+   * deflater (and the peer's inflater) last for the whole connection, and
+   * each frame is only sync-flushed, so that later frames can refer back to
+   * the dimensions, values and node encodings of earlier ones.
+   */
+  static class Framer {
+
+    /**
+     * The level at which frames are compressed.  Frames are compressed as
+     * they are sent, so this favours speed.
+     */
+    public static final int compressionLevel = Deflater.BEST_SPEED;
+
+    protected int mode;
+
+    /**
+     * The first byte of our preamble, and of the peer's.
+     */
+    protected int magic;
+
+    protected Output output;
+
+    protected Input input;
+
+    protected int maxDictionarySize;
+
+    /**
+     * The size from which frames are compressed (0 for never).
+     */
+    protected int compressionThreshold;
+
+    protected boolean preambleSent;
+
+    /**
+     * Whether the peer's preamble has been read; peerDictionarySize and
+     * peerFlags are set before it is.
+     */
+    protected volatile boolean preambleReceived;
+
+    protected int peerDictionarySize;
+
+    protected int peerFlags;
+
+    /**
+     * Whether the settings for the frames we write have been agreed with
+     * the peer.
+     */
+    protected boolean negotiated;
+
+    protected boolean compressing;
+
+    protected Deflater deflater;
+
+    protected Inflater inflater;
+
+    /**
+     * The compressed payload of the frame being written.
+     */
+    protected byte[] compressed;
+
+    /**
+     * The compressed payload of the frame being read from a stream.
+     */
+    protected byte[] compressedInput;
+
+    protected byte[] header;
+
+    /**
+     * @param mode BINARY, for varint payloads, or XDR, for payloads encoded
+     * exactly as on an unframed XDR connection.
+     */
+    Framer
+    (int mode)
+    {
+      this.mode = mode;
+      magic = (mode == AEPCommon.BINARY) ? binaryMagic : xdrMagic;
+      output = new Output(mode == AEPCommon.XDR);
+      maxDictionarySize = (mode == AEPCommon.BINARY) ?
+        DimensionDictionary.defaultMaxSize : 0;
+      input = new Input(maxDictionarySize, mode == AEPCommon.XDR);
+      compressionThreshold = 0;
+      preambleSent = false;
+      preambleReceived = false;
+      peerDictionarySize = 0;
+      peerFlags = 0;
+      negotiated = false;
+      compressing = false;
+      deflater = null;
+      inflater = null;
+      compressed = null;
+      compressedInput = null;
+      header = new byte[maxVarintSize];
+    }
+
+    /**
+     * Whether the preamble has been sent, after which the dictionary size
+     * and compression threshold are fixed.
+     */
+    boolean isStarted
+    ()
+    {
+      return preambleSent;
+    }
+
+    void setMaxDictionarySize
+    (int maxDictionarySize)
+    {
+      this.maxDictionarySize = (maxDictionarySize > 0) ? maxDictionarySize : 0;
+      input = new Input(this.maxDictionarySize, mode == AEPCommon.XDR);
+    }
+
+    int getMaxDictionarySize
+    ()
+    {
+      return maxDictionarySize;
+    }
+
+    void setCompressionThreshold
+    (int compressionThreshold)
+    {
+      this.compressionThreshold =
+        (compressionThreshold > 0) ? compressionThreshold : 0;
+    }
+
+    int getCompressionThreshold
+    ()
+    {
+      return compressionThreshold;
+    }
+
+    /**
+     * Whether the frames we write may refer to a dimension dictionary (in
+     * which case their encodings cannot be shared with other connections),
+     * as far as is known from the peer's preamble.
+     */
+    boolean usesDictionary
+    ()
+    {
+      return (preambleReceived)&&
+        (Math.min(maxDictionarySize, peerDictionarySize) > 0);
+    }
+
+    /**
+     * Start a frame.
+     *
+     * @return The DataOutput to serialise the frame's token to.
+     */
+    DataOutput beginFrame
+    ()
+    {
+      if ((!negotiated)&&(preambleReceived)) {
+        // Now that the peer has said what it accepts:
+        output.setDimensionDictionary(
+          newDictionary(maxDictionarySize, peerDictionarySize)
+        );
+        compressing =
+          (compressionThreshold > 0)&&((peerFlags&COMPRESSION) != 0);
+        negotiated = true;
+      }
+      output.reset();
+      return output;
+    }
+
+    /**
+     * Write the frame begun by beginFrame(), preceded by our preamble if
+     * it has not yet been sent.
+     */
+    void endFrame
+    (OutputStream out)
+      throws IOException
+    {
+      if (!preambleSent) {
+        int length;
+
+        header[0] = (byte)magic;
+        header[1] = (byte)version;
+        // We can always decompress:
+        header[2] = (byte)COMPRESSION;
+        length = encodeVarint(maxDictionarySize, header, 3);
+        out.write(header, 0, length);
+        preambleSent = true;
+      }
+      if ((compressing)&&(output.count >= compressionThreshold)) {
+        int length = deflate();
+
+        out.write(header, 0, encodeVarint(((long)length << 1)|1, header, 0));
+        out.write(compressed, 0, length);
+      } else {
+        out.write(header, 0, encodeVarint((long)output.count << 1, header, 0));
+        out.write(output.buffer, 0, output.count);
+      }
+    }
+
+    /**
+     * Compress the output into compressed, preceded by its uncompressed
+     * length.
+     *
+     * @return The length of the compressed payload.
+     */
+    private int deflate
+    ()
+    {
+      int length = output.count;
+      int position;
+
+      if (deflater == null) {
+        deflater = new Deflater(compressionLevel, true);
+      }
+      if ((compressed == null)||(compressed.length < length/2 + 64)) {
+        compressed = new byte[length/2 + 64];
+      }
+      position = encodeVarint(length, compressed, 0);
+      deflater.setInput(output.buffer, 0, length);
+      while (true) {
+        int room = compressed.length - position;
+
+        position += deflater.deflate(
+          compressed, position, room, Deflater.SYNC_FLUSH
+        );
+        if (position < compressed.length) {
+          return position;
+        }
+        // The flush may be incomplete:
+        byte[] larger = new byte[2*compressed.length];
+
+        System.arraycopy(compressed, 0, larger, 0, position);
+        compressed = larger;
+      }
+    }
+
+    private void checkPreamble
+    (int peerMagic, int peerVersion, long dictionarySize)
+      throws AEPException
+    {
+      if (peerMagic != magic) {
+        throw new AEPException(
+          "Peer is not speaking framed " + AEPCommon.modeTypeStrings[mode] +
+          " AEP (received " + peerMagic + " instead of the preamble)",
+          Log.ERROR
+        );
+      }
+      if (peerVersion != version) {
+        throw new AEPException(
+          "Unsupported framed AEP protocol version " + peerVersion, Log.ERROR
+        );
+      }
+      if ((dictionarySize < 0)||(dictionarySize > Integer.MAX_VALUE)) {
+        throw new AEPException(
+          "Bad framed AEP dictionary size " + dictionarySize, Log.ERROR
+        );
+      }
+    }
+
+    /**
+     * Read the peer's preamble from a stream.
+     */
+    void readPreamble
+    (InputStream in)
+      throws IOException, AEPException
+    {
+      int peerMagic = in.read();
+      int peerVersion = in.read();
+      int flags = in.read();
+      long dictionarySize;
+
+      if (flags < 0) {
+        throw new EOFException("EOF reached reading AEP frame preamble");
+      }
+      dictionarySize = AEPBinaryCodec.readVarint(in);
+      checkPreamble(peerMagic, peerVersion, dictionarySize);
+      peerDictionarySize = (int)dictionarySize;
+      peerFlags = flags;
+      preambleReceived = true;
+    }
+
+    /**
+     * Read the peer's preamble from the front of a buffer, for incremental
+     * decoding.
+     *
+     * @return true, with the buffer's position advanced past the preamble,
+     * or false, with the position unchanged, if the buffer does not yet
+     * hold the whole preamble.
+     */
+    boolean readPreamble
+    (ByteBuffer buffer)
+      throws IOException, AEPException
+    {
+      int start = buffer.position();
+      int peerMagic;
+      int peerVersion;
+      int flags;
+      long dictionarySize;
+
+      if (buffer.remaining() < 4) {
+        return false;
+      }
+      peerMagic = buffer.get()&0xff;
+      peerVersion = buffer.get()&0xff;
+      flags = buffer.get()&0xff;
+      dictionarySize = AEPBinaryCodec.readVarint(buffer);
+      if (dictionarySize < 0) {
+        buffer.position(start);
+        return false;
+      }
+      checkPreamble(peerMagic, peerVersion, dictionarySize);
+      peerDictionarySize = (int)dictionarySize;
+      peerFlags = flags;
+      preambleReceived = true;
+      return true;
+    }
+
+    private static int checkFrameLength
+    (long length)
+      throws IOException
+    {
+      if ((length < 0)||(length > maxFrameSize)) {
+        throw new IOException("Bad AEP frame length " + length);
+      }
+      return (int)length;
+    }
+
+    /**
+     * Read a whole frame from a stream, preceded by the peer's preamble if
+     * it has not yet been read.
+     *
+     * @return The DataInput to deserialise the frame's token from.
+     * @throws EOFException If the stream ends before the frame does.
+     */
+    DataInput readFrame
+    (InputStream in)
+      throws IOException, AEPException
+    {
+      long header;
+      int length;
+
+      if (!preambleReceived) {
+        readPreamble(in);
+      }
+      header = AEPBinaryCodec.readVarint(in);
+      length = checkFrameLength(header >>> 1);
+      if ((header&1) == 0) {
+        byte[] target = input.fill();
+        int offset = 0;
+
+        while (offset < length) {
+          if (offset == target.length) {
+            target = input.grow((int)Math.min(length, 2L*offset));
+          }
+          offset += readSome(
+            in, target, offset, Math.min(length, target.length) - offset
+          );
+        }
+        input.filled(length);
+      } else {
+        int offset = 0;
+
+        if (compressedInput == null) {
+          compressedInput = new byte[1024];
+        }
+        while (offset < length) {
+          if (offset == compressedInput.length) {
+            byte[] larger = new byte[(int)Math.min(length, 2L*offset)];
+
+            System.arraycopy(compressedInput, 0, larger, 0, offset);
+            compressedInput = larger;
+          }
+          offset += readSome(
+            in, compressedInput, offset,
+            Math.min(length, compressedInput.length) - offset
+          );
+        }
+        inflate(compressedInput, 0, length);
+      }
+      return input;
+    }
+
+    /**
+     * Read part of a frame.  Frames are read into buffers which grow as
+     * their bytes arrive, rather than to the length the peer declares, so
+     * that a peer cannot make us allocate up to maxFrameSize bytes for
+     * each frame it merely starts.
+     *
+     * @return The number of bytes read, at least 1.
+     */
+    private static int readSome
+    (InputStream in, byte[] bytes, int offset, int length)
+      throws IOException
+    {
+      int count = in.read(bytes, offset, length);
+
+      if (count < 0) {
+        throw new EOFException("EOF reached reading AEP frame");
+      }
+      return count;
+    }
+
+    /**
+     * Read a frame from the front of a buffer, for incremental decoding.
+     * An uncompressed frame is decoded in place, so the buffer must not be
+     * changed until the frame's token has been deserialised.
+     *
+     * @return The DataInput to deserialise the frame's token from, with
+     * the buffer's position advanced past the frame, or null, with the
+     * position unchanged, if the buffer does not yet hold the whole frame.
+     */
+    DataInput readFrame
+    (ByteBuffer buffer)
+      throws IOException
+    {
+      int start = buffer.position();
+      long header = AEPBinaryCodec.readVarint(buffer);
+      int length;
+
+      if (header < 0) {
+        return null;
+      }
+      length = checkFrameLength(header >>> 1);
+      if (buffer.remaining() < length) {
+        buffer.position(start);
+        return null;
+      }
+      if ((header&1) == 0) {
+        input.wrap(
+          buffer.array(), buffer.arrayOffset() + buffer.position(), length
+        );
+      } else {
+        inflate(
+          buffer.array(), buffer.arrayOffset() + buffer.position(), length
+        );
+      }
+      buffer.position(buffer.position() + length);
+      return input;
+    }
+
+    /**
+     * Decompress a compressed payload into input.
+     */
+    private void inflate
+    (byte[] bytes, int offset, int length)
+      throws IOException
+    {
+      ByteBuffer payload = ByteBuffer.wrap(bytes, offset, length);
+      long size = AEPBinaryCodec.readVarint(payload);
+      byte[] target;
+      int count = 0;
+
+      if ((size < 0)||(size > maxFrameSize)) {
+        throw new IOException("Bad compressed AEP frame length " + size);
+      }
+      if (inflater == null) {
+        inflater = new Inflater(true);
+      }
+      target = input.fill();
+      inflater.setInput(bytes, payload.position(), payload.remaining());
+      try {
+        // Consume the flush marker, as well as the data:
+        while (!inflater.needsInput()) {
+          int inflated;
+
+          // The buffer grows as the data is inflated, not to the size the
+          // peer declares, up to one more byte than needed, to catch
+          // overlong frames:
+          if (count == target.length) {
+            target = input.grow((int)Math.min(size + 1, 2L*count));
+          }
+          inflated = inflater.inflate(
+            target, count, (int)Math.min(size + 1, target.length) - count
+          );
+
+          if ((inflated == 0)&&(!inflater.needsInput())) {
+            throw new IOException("Corrupt compressed AEP frame");
+          }
+          count += inflated;
+          if (count > size) {
+            throw new IOException("Overlong compressed AEP frame");
+          }
+        }
+      } catch (DataFormatException e) {
+        throw new IOException(
+          "Corrupt compressed AEP frame: " + e.getMessage()
+        );
+      }
+      if (count < size) {
+        throw new IOException("Truncated compressed AEP frame");
+      }
+      input.filled((int)size);
+    }
+
+  }
+
+
+  static long zigZag
+  (long value)
+  {
+    return (value << 1)^(value >> 63);
+  }
+
+  static long unZigZag
+  (long value)
+  {
+    return (value >>> 1)^-(value&1);
+  }
+
+  /**
+   * @return The offset following the encoded value.
+   */
+  static int encodeVarint
+  (long value, byte[] bytes, int offset)
+  {
+    while ((value&~0x7fL) != 0) {
+      bytes[offset++] = (byte)((value&0x7f)|0x80);
+      value >>>= 7;
+    }
+    bytes[offset++] = (byte)value;
+    return offset;
+  }
+
+  /**
+   * Read an unsigned varint from a stream.
+   *
+   * @throws EOFException If the stream ends first.
+   */
+  static long readVarint
+  (InputStream in)
+    throws IOException
+  {
+    long value = 0;
+
+    for (int shift = 0; shift < 64; shift += 7) {
+      int b = in.read();
+
+      if (b < 0) {
+        throw new EOFException("EOF reached reading AEP binary varint");
+      }
+      value |= (long)(b&0x7f) << shift;
+      if ((b&0x80) == 0) {
+        return value;
+      }
+    }
+    throw new IOException("Malformed AEP binary varint");
+  }
+
+  /**
+   * Read an unsigned varint from the front of a buffer, for incremental
+   * decoding.
+   *
+   * @return The value, with the buffer's position advanced past it, or -1,
+   * with the position unchanged, if the buffer does not yet hold all of it.
+   */
+  static long readVarint
+  (ByteBuffer buffer)
+    throws IOException
+  {
+    int start = buffer.position();
+    long value = 0;
+
+    for (int shift = 0; shift < 64; shift += 7) {
+      int b;
+
+      if (!buffer.hasRemaining()) {
+        buffer.position(start);
+        return -1;
+      }
+      b = buffer.get();
+      value |= (long)(b&0x7f) << shift;
+      if ((b&0x80) == 0) {
+        if (value < 0) {
+          break;
+        }
+        return value;
+      }
+    }
+    throw new IOException("Malformed AEP binary varint");
+  }
+
+  /**
+   * The dictionary with which to write frames, given the sizes of our own
+   * and the peer's dictionaries.
+   *
+   * @return null, if either is 0.
+   */
+  static DimensionDictionary newDictionary
+  (int dictionarySize, int peerDictionarySize)
+  {
+    int size = Math.min(dictionarySize, peerDictionarySize);
+
+    return (size > 0) ? new DimensionDictionary(size) : null;
+  }
+
+  /**
+   * Serialise a Context node on its own, in the given mode (BINARY or XDR),
+   * for NotifyToken node encodings.
+   */
+  static byte[] encodeNode
+  (Context node, int mode)
+    throws IOException
+  {
+    if (mode == AEPCommon.BINARY) {
+      Output out = new Output();
+
+      Context.factorySerialise(node, out);
+      return out.toByteArray();
+    } else {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      DataOutputStream out = new DataOutputStream(bytes);
+
+      Context.factorySerialise(node, out);
+      out.flush();
+      return bytes.toByteArray();
+    }
+  }
+
+}
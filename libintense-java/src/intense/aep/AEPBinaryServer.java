@@ -0,0 +1,232 @@
+// ****************************************************************************
+//
+// AEPBinaryServer.java : AEP 2.0 compact binary streamed server, for the
+// AEPBinaryClient.
+//
+// Copyright 2026 the Intense project contributors.
+//
+// This file is part of the Intense project.
+//
+// Intense is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// Intense is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with Intense; if not, write to the Free Software Foundation, Inc.,
+// 59 Temple Place, Suite 330, Boston, MA 02111-1307, USA.
+//
+// ****************************************************************************
+
+
+package intense.aep;
+
+
+import java.lang.*;
+import java.util.*;
+import java.util.concurrent.locks.*;
+import java.io.*;
+import intense.*;
+import intense.log.*;
+
+
+/**
+ * A server for BINARY mode clients, which exchanges the same tokens as an
+ * AEPXDRServer in the compact, framed encoding of AEPBinaryCodec.
+ */
+public class AEPBinaryServer
+  extends AEPStreamServer {
+
+  protected AEPBinaryCodec.Framer framer;
+
+  protected AEPBatchingOutputStream batchingStream;
+
+  protected void construct
+  ()
+  {
+    framer = new AEPBinaryCodec.Framer(BINARY);
+    batchingStream = new AEPBatchingOutputStream(outputStream);
+  }
+
+  public AEPBinaryServer
+  (AEther aether, InputStream is, OutputStream os)
+  {
+    super(aether, is, os, null, Log.NOTICE, true);
+    construct();
+  }
+
+  public AEPBinaryServer
+  (AEther aether, InputStream is, OutputStream os, Log log)
+  {
+    super(aether, is, os, log, Log.NOTICE, true);
+    construct();
+  }
+
+  public AEPBinaryServer
+  (AEther aether, InputStream is, OutputStream os, Log log,
+   int logLevel)
+  {
+    super(aether, is, os, log, logLevel, true);
+    construct();
+  }
+
+  public AEPBinaryServer
+  (AEther aether, InputStream is, OutputStream os, Log log,
+   int logLevel, boolean errorTolerant)
+  {
+    super(aether, is, os, log, logLevel, errorTolerant);
+    construct();
+  }
+
+  protected void send
+  (AEPClient.Token token)
+    throws IOException, AEPException
+  {
+    AEPClient.Token.factorySerialise(token, framer.beginFrame());
+    framer.endFrame(batchingStream);
+    batchingStream.endToken();
+    if ((log != null)&&(logLevel >= Log.DEBUG2)) {
+      log.priority(Log.DEBUG2).add("AEPBinaryServer.send: sent token: ");
+      token.print(log, (logLevel > Log.DEBUG2) ? logLevel : Log.DEBUG);
+      log.end();
+    }
+  }
+
+  /**
+   * Batch outgoing tokens: up to maxBatchSize serialised tokens are
+   * coalesced into a single write, which is made once the batch is full,
+   * maxLinger milliseconds after its first token, or on flush().  Tokens
+   * are always written in the order they were sent.
+   *
+   * @param maxBatchSize The maximum number of tokens per write (1, the
+   * default, writes each token as it is sent).
+   * @param maxLinger The maximum time, in milliseconds, that a token is
+   * held before it is written.
+   */
+  public void setBatching
+  (int maxBatchSize, long maxLinger)
+    throws IOException
+  {
+    batchingStream.setBatching(maxBatchSize, maxLinger);
+  }
+
+  public int getMaxBatchSize
+  ()
+  {
+    return batchingStream.getMaxBatchSize();
+  }
+
+  public long getMaxLinger
+  ()
+  {
+    return batchingStream.getMaxLinger();
+  }
+
+  /**
+   * Set the size of the dimension dictionary kept for the tokens this server
+   * receives, which is offered to the client before the first token is sent.
+   *
+   * @param maxDictionarySize The number of dimensions, and of compound
+   * dimensions, that the client may define (0 disables dictionary
+   * compression in both directions).
+   * @throws AEPException If a token has already been sent.
+   */
+  public void setMaxDictionarySize
+  (int maxDictionarySize)
+    throws AEPException
+  {
+    if (framer.isStarted()) {
+      throw new AEPException(
+        getName() + ": the dictionary size must be set before the first " +
+        "token is sent", Log.ERROR
+      );
+    }
+    framer.setMaxDictionarySize(maxDictionarySize);
+  }
+
+  public int getMaxDictionarySize
+  ()
+  {
+    return framer.getMaxDictionarySize();
+  }
+
+  /**
+   * Compress the tokens this server sends which serialise to at least
+   * compressionThreshold bytes, if the client accepts compressed tokens.
+   * Compression carries over from token to token, so that repeated
+   * dimensions and values are cheap even in tokens just over the
+   * threshold.
+   *
+   * @param compressionThreshold The size, in bytes, from which tokens are
+   * compressed (0, the default, disables compression).
+   * @throws AEPException If a token has already been sent.
+   */
+  public void setCompressionThreshold
+  (int compressionThreshold)
+    throws AEPException
+  {
+    if (framer.isStarted()) {
+      throw new AEPException(
+        getName() + ": the compression threshold must be set before the " +
+        "first token is sent", Log.ERROR
+      );
+    }
+    framer.setCompressionThreshold(compressionThreshold);
+  }
+
+  public int getCompressionThreshold
+  ()
+  {
+    return framer.getCompressionThreshold();
+  }
+
+  public void flush
+  ()
+    throws IOException
+  {
+    batchingStream.flush();
+  }
+
+  protected boolean supportsOutboundQueue
+  ()
+  {
+    return true;
+  }
+
+  protected int getWireMode
+  ()
+  {
+    return BINARY;
+  }
+
+  protected boolean sharesNodeEncodings
+  ()
+  {
+    return !framer.usesDictionary();
+  }
+
+  protected Token receive
+  ()
+    throws IOException, IntenseException, AEPException
+  {
+    return AEPServer.Token.factoryDeserialise(framer.readFrame(inputStream));
+  }
+
+  public String getName
+  ()
+  {
+    return "AEPBinaryServer";
+  }
+
+  protected boolean locksReception
+  ()
+  {
+    return true;
+  }
+
+}
@@ -28,6 +28,7 @@ package intense.aep;
 
 import java.lang.*;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.locks.*;
 import java.io.*;
 import intense.*;
@@ -1108,6 +1109,139 @@ public abstract class AEPClient
       client.unlock();
     }
 
+    // Asynchronous variants of the above (see AEPClient.assignAsync()):
+
+    /**
+     * Join this participant under a specific dimension of a new client,
+     * without waiting for the reply.  If the participant is already joined,
+     * it first leaves, synchronously.
+     *
+     * @param newClient A new AEPClient for this participant.
+     * @param notify If true, the participant's assignNotify method will be
+     * called with the initial context, before the future completes.
+     * @param dimension A CompoundDimension under which to join.
+     * @return A future for the server sequence of the AEP join.
+     */
+    public CompletableFuture<Long> joinAsync
+    (AEPClient newClient, boolean notify, CompoundDimension dimension)
+      throws IOException, IntenseException, AEPException
+    {
+      if ((client != null)&&(getId() >= 0)) {
+        leave();
+      }
+      if (newClient != null) {
+        client = newClient;
+      } else {
+        if (client == null) {
+          throw new AEPException(
+            "null AEPClient in AEPClient.Participant.joinAsync()", Log.ERROR
+          );
+        }
+      }
+      client.lock();
+      client.addParticipant(this);
+      return client.asynchronousTransaction(
+        new AEPServer.JoinToken(
+          client.nextSequence(), getId(), notify, dimension
+        ),
+        true
+      );
+    }
+
+    /**
+     * Assign a Context to the AEther in which this Participant is registered,
+     * without waiting for the reply.
+     *
+     * @param context The Context to assign to the AEther.
+     * @param dim The relative dimension to which the Context is assigned (null
+     * if the desired target node in the AEther is the same as the
+     * Participant's node in the AEther).
+     * @param flags Optional bit flags may be supplied: AEPServer.preFenceBit,
+     * AEPServer.postFenceBit, AEPServer.notifySelfBit,
+     * AEPServer.notifyClientBit.
+     * @return A future for the server sequence of the AEP assign.
+     */
+    public CompletableFuture<Long> assignAsync
+    (Context context, CompoundDimension dim, int flags)
+      throws IOException, IntenseException, AEPException
+    {
+      checkValidClientAndJoined("AEPClient.Participant.assignAsync");
+      client.lock();
+      return client.asynchronousTransaction(
+        new AEPServer.AssignToken(
+          client.nextSequence(), getId(), context, dim, flags
+        ),
+        true
+      );
+    }
+
+    /**
+     * Apply a ContextOp to the AEther in which this Participant is registered,
+     * without waiting for the reply.
+     *
+     * @param op The ContextOp to apply to the AEther.
+     * @param dim The relative dimension to which op is applied (null if the
+     * desired target node in the AEther is the same as the Participant's node
+     * in the AEther).
+     * @param flags Optional bit flags may be supplied: AEPServer.preFenceBit,
+     * AEPServer.postFenceBit, AEPServer.notifySelfBit,
+     * AEPServer.notifyClientBit.
+     * @return A future for the server sequence of the AEP apply.
+     */
+    public CompletableFuture<Long> applyAsync
+    (ContextOp op, CompoundDimension dim, int flags)
+      throws IOException, IntenseException, AEPException
+    {
+      checkValidClientAndJoined("AEPClient.Participant.applyAsync");
+      client.lock();
+      return client.asynchronousTransaction(
+        new AEPServer.ApplyToken(
+          client.nextSequence(), getId(), op, dim, flags
+        ),
+        true
+      );
+    }
+
+    /**
+     * Clear the AEther in which this Participant is registered, without
+     * waiting for the reply.
+     *
+     * @param dim The relative dimension under which the clear is performed
+     * (null if the desired target node in the AEther is the same as the
+     * Participant's node in the AEther).
+     * @param flags Optional bit flags may be supplied: AEPServer.preFenceBit,
+     * AEPServer.postFenceBit, AEPServer.notifySelfBit,
+     * AEPServer.notifyClientBit.
+     * @return A future for the server sequence of the AEP clear.
+     */
+    public CompletableFuture<Long> clearAsync
+    (CompoundDimension dim, int flags)
+      throws IOException, AEPException
+    {
+      checkValidClientAndJoined("AEPClient.Participant.clearAsync");
+      client.lock();
+      return client.asynchronousTransaction(
+        new AEPServer.ClearToken(client.nextSequence(), getId(), dim, flags),
+        true
+      );
+    }
+
+    /**
+     * Send an AEP synch token through this participant's client, without
+     * waiting for the reply.
+     *
+     * @return A future for the server sequence of the AEP synch.
+     */
+    public CompletableFuture<Long> synchAsync
+    ()
+      throws IOException, AEPException
+    {
+      client.lock();
+      return client.asynchronousTransaction(
+        new AEPServer.SynchToken(client.nextSequence()), true
+      );
+    }
+
     private void checkValidClientAndJoined
     (String location)
       throws AEPException
@@ -1207,7 +1341,7 @@ public abstract class AEPClient
     }
 
     public static void factorySerialise
-    (Token token, DataOutputStream out)
+    (Token token, DataOutput out)
       throws IOException, AEPException
     {
       int type;
@@ -1224,7 +1358,7 @@ public abstract class AEPClient
     }
 
     public static Token factoryDeserialise
-    (DataInputStream in)
+    (DataInput in)
       throws IOException, IntenseException, AEPException
     {
       int type;
@@ -1276,7 +1410,7 @@ public abstract class AEPClient
      * XDRBaseSerialiser.
      */
     public void serialise
-    (DataOutputStream out)
+    (DataOutput out)
       throws IOException, AEPException
     {
       throw new AEPException(
@@ -1289,7 +1423,7 @@ public abstract class AEPClient
      * XDRBaseSerialiser.
      */
     public void deserialise
-    (DataInputStream in)
+    (DataInput in)
       throws IOException, AEPException
     {
       throw new AEPException(
@@ -1360,7 +1494,7 @@ public abstract class AEPClient
      * XDRBaseSerialiser.
      */
     public void serialise
-    (DataOutputStream out)
+    (DataOutput out)
       throws IOException, AEPException
     {
       out.writeLong(serverSequence);
@@ -1371,7 +1505,7 @@ public abstract class AEPClient
      * XDRBaseSerialiser.
      */
     public void deserialise
-    (DataInputStream in)
+    (DataInput in)
       throws IOException, AEPException
     {
       serverSequence = in.readLong();
@@ -1454,7 +1588,7 @@ public abstract class AEPClient
        * XDRBaseSerialiser.
        */
       public abstract void serialise
-      (DataOutputStream out)
+      (DataOutput out)
         throws IOException, AEPException;
 
       /**
@@ -1462,7 +1596,7 @@ public abstract class AEPClient
        * XDRBaseSerialiser.
        */
       public abstract void deserialise
-      (DataInputStream in)
+      (DataInput in)
         throws IOException, IntenseException, AEPException;
 
       public abstract void print
@@ -1492,6 +1626,15 @@ public abstract class AEPClient
       (NotifyToken token)
         throws IntenseException, AEPException;
 
+      /**
+       * Shift the index of any node this target refers to, when its token
+       * is appended to another.
+       */
+      protected void offsetNodeIndex
+      (int offset)
+      {
+      }
+
       public static Target factory
       (int type)
         throws AEPException
@@ -1513,7 +1656,7 @@ public abstract class AEPClient
       }
 
       public static void factorySerialise
-      (Target target, DataOutputStream os)
+      (Target target, DataOutput os)
         throws IOException, AEPException
       {
         int type;
@@ -1537,7 +1680,7 @@ public abstract class AEPClient
       }
 
       public static Target factoryDeserialise
-      (DataInputStream is)
+      (DataInput is)
         throws IOException, IntenseException, AEPException
       {
         int type;
@@ -1555,6 +1698,21 @@ public abstract class AEPClient
         this.participantId = participantId;
       }
 
+      public long getParticipantId
+      ()
+      {
+        return participantId;
+      }
+
+      /**
+       * @return The index of the node this target refers to, or -1.
+       */
+      public int getNodeIndex
+      ()
+      {
+        return -1;
+      }
+
       private Target
       ()
       {}
@@ -1611,7 +1769,7 @@ public abstract class AEPClient
       }
 
       public void serialise
-      (DataOutputStream os)
+      (DataOutput os)
         throws IOException, AEPException
       {
         int haveDimension = (dimension != null) ? 1 : 0;
@@ -1628,7 +1786,7 @@ public abstract class AEPClient
       }
 
       public void deserialise
-      (DataInputStream is)
+      (DataInput is)
         throws IOException, IntenseException, AEPException
       {
         int haveDimension;
@@ -1718,6 +1876,35 @@ public abstract class AEPClient
         }
       }
 
+      public int getNodeIndex
+      ()
+      {
+        return contextNodeIndex;
+      }
+
+      public CompoundDimension getDimension
+      ()
+      {
+        return dimension;
+      }
+
+      /**
+       * @return True if the dimension is the one under which the node is to
+       * be assigned or applied, rather than the path to the participant's
+       * context within the node.
+       */
+      public boolean isDimensionExternal
+      ()
+      {
+        return dimensionIsExternal;
+      }
+
+      protected void offsetNodeIndex
+      (int offset)
+      {
+        contextNodeIndex += offset;
+      }
+
       public int getType
       ()
       {
@@ -1776,7 +1963,7 @@ public abstract class AEPClient
       }
 
       public void serialise
-      (DataOutputStream os)
+      (DataOutput os)
         throws IOException, AEPException
       {
         int haveDimension = (dimension != null) ? 1 : 0;
@@ -1793,7 +1980,7 @@ public abstract class AEPClient
       }
 
       public void deserialise
-      (DataInputStream is)
+      (DataInput is)
         throws IOException, IntenseException, AEPException
       {
         int haveDimension;
@@ -1880,6 +2067,35 @@ public abstract class AEPClient
         }
       }
 
+      public int getNodeIndex
+      ()
+      {
+        return opNodeIndex;
+      }
+
+      public CompoundDimension getDimension
+      ()
+      {
+        return dimension;
+      }
+
+      /**
+       * @return True if the dimension is the one under which the node is to
+       * be assigned or applied, rather than the path to the participant's
+       * context within the node.
+       */
+      public boolean isDimensionExternal
+      ()
+      {
+        return dimensionIsExternal;
+      }
+
+      protected void offsetNodeIndex
+      (int offset)
+      {
+        opNodeIndex += offset;
+      }
+
       public int getType
       ()
       {
@@ -1916,7 +2132,7 @@ public abstract class AEPClient
       }
 
       public void serialise
-      (DataOutputStream os)
+      (DataOutput os)
         throws IOException, AEPException
       {
         int haveDimension = (dimension != null) ? 1 : 0;
@@ -1929,7 +2145,7 @@ public abstract class AEPClient
       }
 
       public void deserialise
-      (DataInputStream is)
+      (DataInput is)
         throws IOException, IntenseException, AEPException
       {
         int haveDimension;
@@ -1944,6 +2160,12 @@ public abstract class AEPClient
         }
       }
 
+      public CompoundDimension getDimension
+      ()
+      {
+        return dimension;
+      }
+
       public void print
       (PrintStream os, int logLevel)
         throws IOException
@@ -2005,14 +2227,14 @@ public abstract class AEPClient
       }
 
       public void serialise
-      (DataOutputStream os)
+      (DataOutput os)
         throws IOException, AEPException
       {
         os.writeLong(participantId);
       }
 
       public void deserialise
-      (DataInputStream is)
+      (DataInput is)
         throws IOException, AEPException
       {
         participantId = is.readLong();
@@ -2055,12 +2277,37 @@ public abstract class AEPClient
 
     protected Vector<Context> nodes;
 
+    /**
+     * Serialised forms of nodes, shared by all of the notification tokens
+     * sent for a single operation, or null if this token serialises its own
+     * nodes.
+     */
+    protected Map<Context, byte[]> nodeEncodings;
+
+    /**
+     * Serialised nodes captured by snapshot(), or null if the nodes are
+     * serialised when the token is.
+     */
+    protected Vector<byte[]> nodeSnapshots;
+
+    /**
+     * The mode (AEPCommon.XDR or AEPCommon.BINARY) of nodeEncodings and
+     * nodeSnapshots, which must match the stream this token is serialised
+     * to.
+     */
+    protected int encodingMode;
+
+    private static byte[][] emptyNodeEncodings = new byte[2][];
+
     public NotifyToken
     ()
     {
       super(-1);
       targets = new Vector<Target>();
       nodes = new Vector<Context>();
+      nodeEncodings = null;
+      nodeSnapshots = null;
+      encodingMode = AEPCommon.XDR;
     }
 
     public NotifyToken
@@ -2069,6 +2316,170 @@ public abstract class AEPClient
       super(serverSequence);
       targets = new Vector<Target>();
       nodes = new Vector<Context>();
+      nodeEncodings = null;
+      nodeSnapshots = null;
+      encodingMode = AEPCommon.XDR;
+    }
+
+    /**
+     * Share node serialisations with other tokens.  A node is serialised
+     * once, by the first token to send it, and the bytes are reused by the
+     * rest; the nodes must not change while the map is in use.
+     *
+     * @param nodeEncodings Serialised nodes, keyed by identity (null to
+     * serialise nodes afresh).
+     */
+    public void setNodeEncodings
+    (Map<Context, byte[]> nodeEncodings)
+    {
+      setNodeEncodings(nodeEncodings, AEPCommon.XDR);
+    }
+
+    /**
+     * @param nodeEncodings Serialised nodes, keyed by identity (null to
+     * serialise nodes afresh).
+     * @param mode The mode of the encodings, and of the stream this token
+     * will be serialised to (AEPCommon.XDR or AEPCommon.BINARY).
+     */
+    public void setNodeEncodings
+    (Map<Context, byte[]> nodeEncodings, int mode)
+    {
+      this.nodeEncodings = nodeEncodings;
+      if (nodeSnapshots == null) {
+        encodingMode = mode;
+      }
+    }
+
+    protected byte[] getNodeEncoding
+    (Context node)
+      throws IOException
+    {
+      byte[] encoding =
+        (nodeEncodings != null) ? nodeEncodings.get(node) : null;
+
+      if (encoding == null) {
+        encoding = AEPBinaryCodec.encodeNode(node, encodingMode);
+        if (nodeEncodings != null) {
+          nodeEncodings.put(node, encoding);
+        }
+      }
+      return encoding;
+    }
+
+    /**
+     * Capture the serialised form of every node, so that this token may be
+     * serialised later (by an AEPServer outbound writer thread) without
+     * reading nodes which the AEther may since have changed.
+     */
+    public void snapshot
+    ()
+      throws IOException
+    {
+      snapshot(AEPCommon.XDR);
+    }
+
+    /**
+     * @param mode The mode of the stream this token will be serialised to
+     * (AEPCommon.XDR or AEPCommon.BINARY).
+     */
+    public void snapshot
+    (int mode)
+      throws IOException
+    {
+      if (nodeSnapshots == null) {
+        boolean[] referenced = new boolean[nodes.size()];
+
+        encodingMode = mode;
+        for (int i = 0; i < targets.size(); i++) {
+          int nodeIndex = targets.get(i).getNodeIndex();
+
+          if ((nodeIndex >= 0)&&(nodeIndex < referenced.length)) {
+            referenced[nodeIndex] = true;
+          }
+        }
+        nodeSnapshots = new Vector<byte[]>(nodes.size());
+        for (int i = 0; i < nodes.size(); i++) {
+          if (referenced[i]) {
+            nodeSnapshots.add(getNodeEncoding(nodes.get(i)));
+          } else {
+            nodeSnapshots.add(getEmptyNodeEncoding(mode));
+          }
+        }
+      }
+    }
+
+    /**
+     * The serialised form of an empty Context, sent in place of nodes which
+     * no target refers to.
+     */
+    protected static synchronized byte[] getEmptyNodeEncoding
+    (int mode)
+      throws IOException
+    {
+      if (emptyNodeEncodings[mode] == null) {
+        emptyNodeEncodings[mode] =
+          AEPBinaryCodec.encodeNode(new Context(), mode);
+      }
+      return emptyNodeEncodings[mode];
+    }
+
+    protected boolean isNodeReferenced
+    (int nodeIndex)
+    {
+      for (int i = 0; i < targets.size(); i++) {
+        if (targets.get(i).getNodeIndex() == nodeIndex) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    /**
+     * Remove a target (which has been conflated into a later notification)
+     * from a snapshot token, dropping its node if no other target refers to
+     * it.
+     */
+    public void removeTarget
+    (Target target)
+      throws IOException
+    {
+      int nodeIndex = target.getNodeIndex();
+
+      targets.remove(target);
+      if ((nodeSnapshots != null)&&(nodeIndex >= 0)&&
+          (!isNodeReferenced(nodeIndex))) {
+        nodeSnapshots.set(nodeIndex, getEmptyNodeEncoding(encodingMode));
+      }
+    }
+
+    /**
+     * Append the targets and nodes of a later notification to this one, so
+     * that they are delivered as a single token.  Both tokens must have
+     * been snapshot; the merged token carries the later server sequence.
+     */
+    public void append
+    (NotifyToken other)
+      throws AEPException
+    {
+      int offset = nodes.size();
+
+      if ((nodeSnapshots == null)||(other.nodeSnapshots == null)||
+          (encodingMode != other.encodingMode)) {
+        throw new AEPException(
+          "INTERNAL ERROR: AEPClient.NotifyToken.append of unsnapshot or " +
+          "differently encoded token",
+          Log.FATAL
+        );
+      }
+      for (int i = 0; i < other.targets.size(); i++) {
+        Target target = other.targets.get(i);
+
+        target.offsetNodeIndex(offset);
+        targets.add(target);
+      }
+      nodes.addAll(other.nodes);
+      nodeSnapshots.addAll(other.nodeSnapshots);
+      serverSequence = other.serverSequence;
     }
 
     public Context getContext
@@ -2220,7 +2631,7 @@ public abstract class AEPClient
     }
 
     public void serialise
-    (DataOutputStream out)
+    (DataOutput out)
       throws IOException, AEPException
     {
       int targetsSize = targets.size();
@@ -2233,12 +2644,18 @@ public abstract class AEPClient
       }
       out.writeInt(nodesSize);
       for (int i = 0; i < nodesSize; i++) {
-        Context.factorySerialise(nodes.get(i), out);
+        if (nodeSnapshots != null) {
+          out.write(nodeSnapshots.get(i));
+        } else if (nodeEncodings != null) {
+          out.write(getNodeEncoding(nodes.get(i)));
+        } else {
+          Context.factorySerialise(nodes.get(i), out);
+        }
       }
     }
 
     public void deserialise
-    (DataInputStream in)
+    (DataInput in)
       throws IOException, IntenseException, AEPException
     {
       int targetsSize = targets.size();
@@ -2343,7 +2760,7 @@ public abstract class AEPClient
     }
 
     public void serialise
-    (DataOutputStream os)
+    (DataOutput os)
       throws IOException, AEPException
     {
       os.writeLong(serverSequence);
@@ -2351,7 +2768,7 @@ public abstract class AEPClient
     }
 
     public void deserialise
-    (DataInputStream is)
+    (DataInput is)
       throws IOException, AEPException
     {
       serverSequence = is.readLong();
@@ -2403,7 +2820,7 @@ public abstract class AEPClient
     }
 
     public void serialise
-    (DataOutputStream os)
+    (DataOutput os)
       throws IOException, AEPException
     {
       os.writeLong(serverSequence);
@@ -2411,7 +2828,7 @@ public abstract class AEPClient
     }
 
     public void deserialise
-    (DataInputStream is)
+    (DataInput is)
       throws IOException, AEPException
     {
       serverSequence = is.readLong();
@@ -2469,7 +2886,7 @@ public abstract class AEPClient
     }
 
     public void serialise
-    (DataOutputStream os)
+    (DataOutput os)
       throws IOException, AEPException
     {
       os.writeLong(serverSequence);
@@ -2477,7 +2894,7 @@ public abstract class AEPClient
     }
 
     public void deserialise
-    (DataInputStream is)
+    (DataInput is)
       throws IOException, AEPException
     {
       serverSequence = is.readLong();
@@ -2535,7 +2952,7 @@ public abstract class AEPClient
     }
 
     public void serialise
-    (DataOutputStream os)
+    (DataOutput os)
       throws IOException, AEPException
     {
       os.writeLong(serverSequence);
@@ -2543,7 +2960,7 @@ public abstract class AEPClient
     }
 
     public void deserialise
-    (DataInputStream is)
+    (DataInput is)
       throws IOException, AEPException
     {
       serverSequence = is.readLong();
@@ -2583,6 +3000,22 @@ public abstract class AEPClient
 
     protected Condition condition;
 
+    /**
+     * Completed with the server sequence of the reply, for asynchronous
+     * operations (null if a thread is blocked on condition).
+     */
+    protected CompletableFuture<Long> future;
+
+    protected String location;
+
+    protected boolean allowDeny;
+
+    /**
+     * Set once the binder has been resumed, so that a thread which binds
+     * before it starts waiting cannot miss the reply.
+     */
+    protected boolean resumed;
+
     public SequenceBinder
     (long sequence, boolean terminate, Condition condition)
     {
@@ -2590,6 +3023,47 @@ public abstract class AEPClient
       token = null;
       this.terminate = terminate;
       this.condition = condition;
+      future = null;
+      location = null;
+      allowDeny = false;
+      resumed = false;
+    }
+
+    public SequenceBinder
+    (long sequence, String location, boolean allowDeny)
+    {
+      this.sequence = sequence;
+      token = null;
+      terminate = false;
+      condition = null;
+      future = new CompletableFuture<Long>();
+      this.location = location;
+      this.allowDeny = allowDeny;
+      resumed = false;
+    }
+
+    /**
+     * Complete the future of a resumed asynchronous binder.  The client
+     * must not be locked, since completion runs dependent actions.
+     */
+    protected void complete
+    ()
+    {
+      if (token == null) {
+        future.completeExceptionally(new AEPException(
+          "ERROR: NULL reply Token in " + location +
+          " (perhaps the client was stopped with operations outstanding)",
+          Log.CRITICAL
+        ));
+        return;
+      }
+      try {
+        future.complete(
+          AEPClient.getReplyServerSequence(token, location, allowDeny)
+        );
+      } catch (AEPException e) {
+        future.completeExceptionally(e);
+      }
     }
 
   }
@@ -2603,11 +3077,18 @@ public abstract class AEPClient
 
     protected AEPClient client;
 
+    /**
+     * Asynchronous binders resumed while the client was locked, awaiting
+     * completion.
+     */
+    protected LinkedList<SequenceBinder> resumed;
+
     public SequenceBinderMap
     (AEPClient client)
     {
       super();
       this.client = client;
+      resumed = new LinkedList<SequenceBinder>();
     }
 
     /**
@@ -2627,18 +3108,113 @@ public abstract class AEPClient
     public ReplyToken sequenceWait
     (long sequence, boolean terminate, Condition condition)
     {
-      ReplyToken returnValue;
+      return binderWait(sequenceBind(sequence, terminate, condition));
+    }
+
+    /**
+     * client.lock() must be acquired prior to call.  The client may then be
+     * unlocked and relocked before binderWait() is called, without missing
+     * the reply.
+     *
+     * @return The binder for the given sequence.
+     */
+    public SequenceBinder sequenceBind
+    (long sequence, boolean terminate, Condition condition)
+    {
       SequenceBinder binder = new SequenceBinder(
         sequence, terminate,
         (condition != null) ? condition : client.newCondition()
       );
 
-      put(new Long(sequence), binder);
-      binder.condition.awaitUninterruptibly();
-      returnValue = binder.token;
+      put(Long.valueOf(sequence), binder);
+      return binder;
+    }
+
+    /**
+     * client.lock() must be acquired prior to call, and is reacquired,
+     * after call.
+     *
+     * @return The reply with which the binder was resumed (null if it was
+     * resumed without one).
+     */
+    public ReplyToken binderWait
+    (SequenceBinder binder)
+    {
+      while (!binder.resumed) {
+        binder.condition.awaitUninterruptibly();
+      }
+      return binder.token;
+    }
+
+    /**
+     * client.lock() must be acquired prior to call.
+     *
+     * @return A future completed with the server sequence of the reply to
+     * the given client sequence.
+     */
+    public CompletableFuture<Long> sequenceFuture
+    (long sequence, String location, boolean allowDeny)
+    {
+      SequenceBinder binder = new SequenceBinder(sequence, location, allowDeny);
+
+      put(Long.valueOf(sequence), binder);
+      return binder.future;
+    }
+
+    /**
+     * Wake a resumed binder: blocked threads are signalled, and asynchronous
+     * binders are held until takeResumed().
+     */
+    private void wake
+    (SequenceBinder binder)
+    {
+      binder.resumed = true;
+      if (binder.future != null) {
+        resumed.addLast(binder);
+      } else {
+        // The condition may be shared by several blocked threads:
+        binder.condition.signalAll();
+      }
+    }
+
+    /**
+     * client.lock() must be acquired prior to call.
+     *
+     * @return The asynchronous binders resumed since the last call, which
+     * must be completed once the client has been unlocked.
+     */
+    public List<SequenceBinder> takeResumed
+    ()
+    {
+      List<SequenceBinder> returnValue;
+
+      if (resumed.size() == 0) {
+        return Collections.emptyList();
+      }
+      returnValue = resumed;
+      resumed = new LinkedList<SequenceBinder>();
       return returnValue;
     }
 
+    /**
+     * client.lock() must be acquired prior to call.  Resumes (with no reply)
+     * only the asynchronous binders.
+     */
+    public void resumeAsynchronous
+    ()
+    {
+      Iterator<SequenceBinder> itr = values().iterator();
+
+      while (itr.hasNext()) {
+        SequenceBinder binder = itr.next();
+
+        if (binder.future != null) {
+          resumed.addLast(binder);
+          itr.remove();
+        }
+      }
+    }
+
     /**
      * client.lock() must be acquired prior to call.
      */
@@ -2651,7 +3227,7 @@ public abstract class AEPClient
       while (itr.hasNext()) {
         SequenceBinder binder = (SequenceBinder)get(itr.next());
 
-        binder.condition.signal();
+        wake(binder);
         if (binder.terminate) {
           keepRunning = false;
         }
@@ -2680,7 +3256,7 @@ public abstract class AEPClient
         );
       }
       binder.token = token;
-      binder.condition.signal();
+      wake(binder);
       if (binder.terminate) {
         keepRunning = false;
       }
@@ -2703,7 +3279,7 @@ public abstract class AEPClient
         if (binder.sequence > sequence) {
           break;
         }
-        binder.condition.signal();
+        wake(binder);
         if (binder.terminate) {
           keepRunning = false;
         }
@@ -2794,14 +3370,12 @@ public abstract class AEPClient
   }
 
   protected ReplyToken waitForReply
-  (long clientSequence, String location, boolean terminate,
-   Condition optionalBlockCondition)
+  (SequenceBinder binder, String location)
     throws AEPException
   {
     ReplyToken reply;
 
-    if ((reply = clientSequenceBinderMap.
-         sequenceWait(clientSequence, terminate, condition)) == null) {
+    if ((reply = clientSequenceBinderMap.binderWait(binder)) == null) {
       throw new AEPException(
         "ERROR: NULL reply Token in " + location +
         " (perhaps the client was killed with active participants joined)",
@@ -2813,7 +3387,7 @@ public abstract class AEPClient
 
 
   protected class EarThread
-    extends Thread {
+    implements Runnable {
 
     public void run
     ()
@@ -2918,7 +3492,7 @@ public abstract class AEPClient
 
 
   protected class ReceiverThread
-    extends Thread {
+    implements Runnable {
 
     public void run
     ()
@@ -3104,7 +3678,10 @@ public abstract class AEPClient
       }
       return keepRunning;
     } finally {
+      List<SequenceBinder> resumed = clientSequenceBinderMap.takeResumed();
+
       unlock();
+      completeResumed(resumed);
     }
   }
 
@@ -3121,6 +3698,8 @@ public abstract class AEPClient
     Token reply = null;
     String typeString = outgoing.getTypeString();
     long clientSequence = outgoing.getClientSequence();
+    SequenceBinder binder;
+    boolean sent = false;
 
     try {
       if ((log != null)&&(logLevel >= Log.DEBUG1)) {
@@ -3128,56 +3707,37 @@ public abstract class AEPClient
         outgoing.print(log, logLevel);
         log.end();
       }
-      send(outgoing);
+      binder = clientSequenceBinderMap.sequenceBind(
+        clientSequence, terminate, condition
+      );
+      // As in asynchronousTransaction(), the client is not held locked
+      // while sending, or waiting to send:
+      unlock();
+      sendLock();
+      try {
+        send(outgoing);
+        // Nothing batched may be held back while we wait:
+        flush();
+        sent = true;
+      } finally {
+        sendUnlock();
+        lock();
+        if (!sent) {
+          clientSequenceBinderMap.remove(Long.valueOf(clientSequence));
+        }
+      }
       if ((log != null)&&(logLevel >= Log.DEBUG1)) {
         log.priority(Log.DEBUG1).add("AEPClient.transaction: ").
           add("token sent; waiting for reply...").end();
       }
-      reply =
-        waitForReply(clientSequence, typeString, terminate, blockCondition);
+      reply = waitForReply(binder, typeString);
       if ((log != null)&&(logLevel >= Log.DEBUG1)) {
         log.priority(Log.DEBUG1).
           add("AEPClient.transaction: received reply: ");
         reply.print(log, logLevel);
         log.end();
       }
-      switch (reply.getType()) {
-      case Token.ACK:
-        // Success:
-        serverSequence = ((AckToken)reply).getServerSequence();
-        break;
-      case Token.DENY:
-        if (allowDeny) {
-          String message = ((DenyToken)reply).getMessage();
-          StringBuffer buffer = new StringBuffer();
-
-          buffer.append(typeString + " DENIED");
-          if (message != null) {
-            buffer.append(": " + message);
-          }
-          throw new AEPException(buffer.toString(), Log.WARN);
-        }
-        // else fall through:
-      case Token.ERROR:
-        {
-          String message = ((ErrorToken)reply).getMessage();
-          StringBuffer buffer = new StringBuffer();
-
-          buffer.append(typeString + " ERROR");
-          if (message != null) {
-            buffer.append(": " + message);
-          }
-          throw new AEPException(buffer.toString(), Log.ERROR);
-        }
-      default:
-        {
-          throw new AEPException(
-            "INTERNAL ERROR: Bad Token type " + reply.getTypeString() +
-            " in " + typeString,
-            Log.FATAL
-          );
-        }
-      }
+      serverSequence = getReplyServerSequence(reply, typeString, allowDeny);
       reply = null;
     } finally {
       unlock();
@@ -3185,6 +3745,130 @@ public abstract class AEPClient
     return serverSequence;
   }
 
+  /**
+   * Assumes client has been locked and unlocks it before returning.
+   *
+   * @return A future completed, by the ear thread, with the server sequence
+   * of the reply, or exceptionally as the blocking transaction would have
+   * thrown.
+   */
+  private CompletableFuture<Long> asynchronousTransaction
+  (AEPCommon.Token outgoingToken, boolean allowDeny)
+    throws IOException, AEPException
+  {
+    AEPServer.Token outgoing = (AEPServer.Token)outgoingToken;
+    long clientSequence = outgoing.getClientSequence();
+    CompletableFuture<Long> future;
+    boolean sent = false;
+
+    try {
+      if ((log != null)&&(logLevel >= Log.DEBUG1)) {
+        log.priority(Log.DEBUG1).add(
+          "AEPClient.asynchronousTransaction: sending: "
+        );
+        outgoing.print(log, logLevel);
+        log.end();
+      }
+      future = clientSequenceBinderMap.sequenceFuture(
+        clientSequence, outgoing.getTypeString(), allowDeny
+      );
+    } finally {
+      unlock();
+    }
+    // The client is not held locked while sending, or while waiting for
+    // another thread's send, since a send may block on a full connection
+    // until the ear has taken the lock to process replies.  Sends from
+    // different threads may therefore go out of sequence order, but those
+    // from any one thread do not:
+    sendLock();
+    try {
+      send(outgoing);
+      sent = true;
+    } finally {
+      sendUnlock();
+      if (!sent) {
+        lock();
+        clientSequenceBinderMap.remove(Long.valueOf(clientSequence));
+        unlock();
+      }
+    }
+    return future;
+  }
+
+  /**
+   * Write out any batched outgoing tokens, such as those sent by the
+   * asynchronous operations.  Clients which do not batch their sends need
+   * not override this.
+   */
+  public void flush
+  ()
+    throws IOException
+  {
+  }
+
+  /**
+   * Complete asynchronous operations resumed while the client was locked.
+   * Must be called with the client unlocked.
+   */
+  private static void completeResumed
+  (List<SequenceBinder> resumed)
+  {
+    Iterator<SequenceBinder> itr = resumed.iterator();
+
+    while (itr.hasNext()) {
+      itr.next().complete();
+    }
+  }
+
+  /**
+   * Interpret the reply to a transaction.
+   *
+   * @return The server sequence of an ack.
+   * @throws AEPException For a deny (at WARN, if allowDeny is true) or an
+   * error.
+   */
+  static long getReplyServerSequence
+  (Token reply, String typeString, boolean allowDeny)
+    throws AEPException
+  {
+    switch (reply.getType()) {
+    case Token.ACK:
+      // Success:
+      return ((AckToken)reply).getServerSequence();
+    case Token.DENY:
+      if (allowDeny) {
+        String message = ((DenyToken)reply).getMessage();
+        StringBuffer buffer = new StringBuffer();
+
+        buffer.append(typeString + " DENIED");
+        if (message != null) {
+          buffer.append(": " + message);
+        }
+        throw new AEPException(buffer.toString(), Log.WARN);
+      }
+      // else fall through:
+    case Token.ERROR:
+      {
+        String message = ((ErrorToken)reply).getMessage();
+        StringBuffer buffer = new StringBuffer();
+
+        buffer.append(typeString + " ERROR");
+        if (message != null) {
+          buffer.append(": " + message);
+        }
+        throw new AEPException(buffer.toString(), Log.ERROR);
+      }
+    default:
+      {
+        throw new AEPException(
+          "INTERNAL ERROR: Bad Token type " + reply.getTypeString() +
+          " in " + typeString,
+          Log.FATAL
+        );
+      }
+    }
+  }
+
   // Direct operations on the remote aether, with no use of participants.
   // These have the same effect as assign, apply and clear operations on
   // a root-node participant:
@@ -3437,6 +4121,140 @@ public abstract class AEPClient
     );
   }
 
+  // Asynchronous operations, which return as soon as the token has been
+  // sent, so that many operations may be outstanding on one connection.
+  // The returned futures are completed by the ear thread, in reply order,
+  // and dependent actions run in the ear thread unless an asynchronous
+  // variant (thenApplyAsync(), etc) is used; they must not block on replies
+  // to this client.
+
+  /**
+   * Assign a Context to the AEther to which this client is connected,
+   * without waiting for the reply.
+   *
+   * @param context The Context to assign to the AEther.
+   * @return A future for the server sequence of the AEP assign.
+   */
+  public CompletableFuture<Long> assignAsync
+  (Context context)
+    throws IOException, IntenseException, AEPException
+  {
+    return assignAsync(context, null, 0);
+  }
+
+  /**
+   * Assign a Context to the AEther to which this client is connected,
+   * without waiting for the reply.
+   *
+   * @param context The Context to assign to the AEther.
+   * @param dim The relative dimension to which the Context is assigned (null
+   * if the desired target node in the AEther is the same as the client's root
+   * node in the AEther).
+   * @param flags Optional bit flags may be supplied: AEPServer.preFenceBit,
+   * AEPServer.postFenceBit, AEPServer.notifySelfBit,
+   * AEPServer.notifyClientBit.
+   * @return A future for the server sequence of the AEP assign.
+   */
+  public CompletableFuture<Long> assignAsync
+  (Context context, CompoundDimension dim, int flags)
+    throws IOException, IntenseException, AEPException
+  {
+    lock();
+    return asynchronousTransaction(
+      new AEPServer.AssignToken(nextSequence(), -1, context, dim, flags), true
+    );
+  }
+
+  /**
+   * Apply a ContextOp to the AEther to which this client is connected,
+   * without waiting for the reply.
+   *
+   * @param op The ContextOp to apply to the AEther.
+   * @return A future for the server sequence of the AEP apply.
+   */
+  public CompletableFuture<Long> applyAsync
+  (ContextOp op)
+    throws IOException, IntenseException, AEPException
+  {
+    return applyAsync(op, null, 0);
+  }
+
+  /**
+   * Apply a ContextOp to the AEther to which this client is connected,
+   * without waiting for the reply.
+   *
+   * @param op The ContextOp to apply to the AEther.
+   * @param dim The relative dimension to which the ContextOp is applied (null
+   * if the desired target node in the AEther is the same as the client's root
+   * node in the AEther).
+   * @param flags Optional bit flags may be supplied: AEPServer.preFenceBit,
+   * AEPServer.postFenceBit, AEPServer.notifySelfBit,
+   * AEPServer.notifyClientBit.
+   * @return A future for the server sequence of the AEP apply.
+   */
+  public CompletableFuture<Long> applyAsync
+  (ContextOp op, CompoundDimension dim, int flags)
+    throws IOException, IntenseException, AEPException
+  {
+    lock();
+    return asynchronousTransaction(
+      new AEPServer.ApplyToken(nextSequence(), -1, op, dim, flags), true
+    );
+  }
+
+  /**
+   * Clear the AEther to which this client is connected, without waiting for
+   * the reply.
+   *
+   * @return A future for the server sequence of the AEP clear.
+   */
+  public CompletableFuture<Long> clearAsync
+  ()
+    throws IOException, AEPException
+  {
+    return clearAsync(null, 0);
+  }
+
+  /**
+   * Clear the AEther to which this client is connected, without waiting for
+   * the reply.
+   *
+   * @param dim The relative dimension under which the clear is to be performed
+   * (null if the desired target node in the AEther is the same as the client's
+   * root node in the AEther).
+   * @param flags Optional bit flags may be supplied: AEPServer.preFenceBit,
+   * AEPServer.postFenceBit, AEPServer.notifySelfBit,
+   * AEPServer.notifyClientBit.
+   * @return A future for the server sequence of the AEP clear.
+   */
+  public CompletableFuture<Long> clearAsync
+  (CompoundDimension dim, int flags)
+    throws IOException, AEPException
+  {
+    lock();
+    return asynchronousTransaction(
+      new AEPServer.ClearToken(nextSequence(), -1, dim, flags), true
+    );
+  }
+
+  /**
+   * Send an AEP synch token through the server to which this client is
+   * connected, without waiting for the reply.
+   *
+   * @return A future for the server sequence of the AEP synch.  When it
+   * completes, all tokens with smaller server sequences will have been
+   * processed by the remote AEPServer.AEther.
+   */
+  public CompletableFuture<Long> synchAsync
+  ()
+    throws IOException, AEPException
+  {
+    lock();
+    return asynchronousTransaction(
+      new AEPServer.SynchToken(nextSequence()), true
+    );
+  }
+
   /**
    * Wait for a given server sequence to be seen by this client.  If the same
    * sequence, or a greater sequence, has already been seen, the method
@@ -3515,7 +4333,7 @@ public abstract class AEPClient
     stopped = false;
     if (usingReceiverThread) {
       receiverQueueMutex.lock();
-      earThread = new EarThread();
+      earThread = threadFactory.newThread(new EarThread());
       try {
         earThread.start();
       } catch (IllegalThreadStateException e) {
@@ -3531,7 +4349,7 @@ public abstract class AEPClient
       }
       receiverQueueCondition.awaitUninterruptibly();
       // Ear is now waiting on receiverCondition in aep()...
-      receiverThread = new ReceiverThread();
+      receiverThread = threadFactory.newThread(new ReceiverThread());
       try {
         receiverThread.start();
       } catch (IllegalThreadStateException e) {
@@ -3547,7 +4365,7 @@ public abstract class AEPClient
       }
       receiverQueueMutex.unlock();
     } else {
-      earThread = new EarThread();
+      earThread = threadFactory.newThread(new EarThread());
       try {
         earThread.start();
       } catch (IllegalThreadStateException e) {
@@ -3631,6 +4449,12 @@ public abstract class AEPClient
       }
     }
     sendUnlock();
+    // No replies will arrive for outstanding asynchronous operations now:
+    lock();
+    clientSequenceBinderMap.resumeAsynchronous();
+    List<SequenceBinder> resumed = clientSequenceBinderMap.takeResumed();
+    unlock();
+    completeResumed(resumed);
   }
 
   protected abstract void closeConnection
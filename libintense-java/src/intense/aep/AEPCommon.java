@@ -29,6 +29,7 @@ package intense.aep;
 
 import java.lang.*;
 import java.util.*;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.locks.*;
 import java.io.*;
 import intense.*;
@@ -79,7 +80,7 @@ abstract class AEPCommon {
      * XDRBaseSerialiser.
      */
     public abstract void serialise
-    (DataOutputStream out)
+    (DataOutput out)
       throws IOException, AEPException;
 
     /**
@@ -87,7 +88,7 @@ abstract class AEPCommon {
      * XDRBaseSerialiser.
      */
     public abstract void deserialise
-    (DataInputStream in)
+    (DataInput in)
       throws IOException, IntenseException, AEPException;
 
     public abstract boolean handle
@@ -165,6 +166,11 @@ abstract class AEPCommon {
 
   protected ReentrantLock receptionMutex;
 
+  /**
+   * Creates the ear and receiver threads of this server or client.
+   */
+  protected ThreadFactory threadFactory;
+
   protected AEPCommon
   (Log log, int logLevel, boolean errorTolerant)
   {
@@ -177,6 +183,28 @@ abstract class AEPCommon {
     condition = mutex.newCondition();
     sendMutex = new ReentrantLock();
     receptionMutex = new ReentrantLock();
+    threadFactory = AEPThreadFactory.getDefault();
+  }
+
+  /**
+   * Set the factory for threads created by subsequent calls to start().
+   *
+   * @param threadFactory The new factory (null restores
+   * AEPThreadFactory.getDefault()).
+   */
+  public void setThreadFactory
+  (ThreadFactory threadFactory)
+  {
+    lock();
+    this.threadFactory = (threadFactory != null) ?
+      threadFactory : AEPThreadFactory.getDefault();
+    unlock();
+  }
+
+  public ThreadFactory getThreadFactory
+  ()
+  {
+    return threadFactory;
   }
 
   protected long addParticipant
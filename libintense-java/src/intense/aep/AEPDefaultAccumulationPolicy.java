@@ -0,0 +1,229 @@
+// ****************************************************************************
+//
+// AEPDefaultAccumulationPolicy.java : An AEPAccumulationPolicy which
+// applies accumulations by depth and linger time, and adaptively.
+//
+// Copyright 2026 the Intense project contributors.
+//
+// This file is part of the Intense project.
+//
+// Intense is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// Intense is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with Intense; if not, write to the Free Software Foundation, Inc.,
+// 59 Temple Place, Suite 330, Boston, MA 02111-1307, USA.
+//
+// ****************************************************************************
+
+
+package intense.aep;
+
+
+import java.util.*;
+import intense.log.*;
+
+
+/**
+ * The default AEPAccumulationPolicy, which applies an accumulation once it
+ * holds maxDepth tokens, or once its oldest token has waited maxLinger
+ * milliseconds.  If it is adaptive, it also applies an accumulation once it
+ * holds as many tokens as can arrive, at the observed incoming rate, in the
+ * latency budget (the linger time, or defaultLatencyBudget) less the
+ * observed cost of an application.
+ *
+ * <p>A subclass must define its own accumulationPolicyFactory(), or the
+ * AEther will refuse it.
+ */
+public class AEPDefaultAccumulationPolicy
+  extends AEPAccumulationPolicy {
+
+  /**
+   * The latency budget, in milliseconds, of an adaptive policy with no
+   * linger time.
+   */
+  public static final long defaultLatencyBudget = 10;
+
+  /**
+   * The weight of each new observation in the moving averages of an
+   * adaptive policy.
+   */
+  private static final double smoothing = 0.125;
+
+  protected int maxDepth;
+
+  protected long maxLinger;
+
+  protected boolean adaptive;
+
+  /**
+   * Moving average of the time between accumulated tokens, in nanoseconds.
+   */
+  protected double arrivalNanos;
+
+  /**
+   * Moving average of the time taken to apply an accumulation, in
+   * nanoseconds.
+   */
+  protected double applyNanos;
+
+  protected long lastArrival;
+
+  /**
+   * Construct a policy which never applies early.
+   */
+  public AEPDefaultAccumulationPolicy
+  ()
+  {
+    this(0, 0, false);
+  }
+
+  /**
+   * @param maxDepth The number of tokens at which an accumulation is
+   * applied (0 for no limit, beyond the AEther's maximum accumulated
+   * count).
+   * @param maxLinger The time, in milliseconds, after which an accumulation
+   * is applied (0 for no limit).
+   * @param adaptive Whether to size accumulations by the observed incoming
+   * rate and application cost.
+   */
+  public AEPDefaultAccumulationPolicy
+  (int maxDepth, long maxLinger, boolean adaptive)
+  {
+    this.maxDepth = (maxDepth > 0) ? maxDepth : 0;
+    this.maxLinger = (maxLinger > 0) ? maxLinger : 0;
+    this.adaptive = adaptive;
+    arrivalNanos = 0;
+    applyNanos = 0;
+    lastArrival = 0;
+  }
+
+  /**
+   * Parse a policy specification: a comma-separated list of "depth=N",
+   * "linger=MILLISECONDS" and "adaptive", any of which may be omitted.
+   */
+  public static AEPDefaultAccumulationPolicy parse
+  (String spec)
+    throws AEPException
+  {
+    int maxDepth = 0;
+    long maxLinger = 0;
+    boolean adaptive = false;
+    StringTokenizer tokenizer = new StringTokenizer(spec, ",");
+
+    while (tokenizer.hasMoreTokens()) {
+      String term = tokenizer.nextToken().trim();
+
+      try {
+        if (term.startsWith("depth=")) {
+          maxDepth = Integer.parseInt(term.substring(6));
+        } else if (term.startsWith("linger=")) {
+          maxLinger = Long.parseLong(term.substring(7));
+        } else if (term.equals("adaptive")) {
+          adaptive = true;
+        } else if (term.length() > 0) {
+          throw new AEPException(
+            "Bad accumulation policy term \"" + term + "\"", Log.ERROR
+          );
+        }
+      } catch (NumberFormatException e) {
+        throw new AEPException(
+          "Bad accumulation policy term \"" + term + "\"", e
+        );
+      }
+    }
+    return new AEPDefaultAccumulationPolicy(maxDepth, maxLinger, adaptive);
+  }
+
+  protected AEPDefaultAccumulationPolicy accumulationPolicyFactory
+  ()
+  {
+    return new AEPDefaultAccumulationPolicy(maxDepth, maxLinger, adaptive);
+  }
+
+  public boolean shouldApply
+  (int accumulatedCount, long lingerNanos, long now)
+  {
+    if (adaptive) {
+      if (lastArrival != 0) {
+        arrivalNanos = average(arrivalNanos, now - lastArrival);
+      }
+      lastArrival = now;
+    }
+    if ((maxDepth > 0)&&(accumulatedCount >= maxDepth)) {
+      return true;
+    }
+    if ((maxLinger > 0)&&(lingerNanos >= maxLinger*1000000L)) {
+      return true;
+    }
+    return (adaptive)&&(accumulatedCount >= getAdaptiveDepth());
+  }
+
+  public void applied
+  (int tokenCount, long nanos)
+  {
+    if (adaptive) {
+      applyNanos = average(applyNanos, nanos);
+    }
+  }
+
+  private static double average
+  (double average, long sample)
+  {
+    return (average == 0) ? sample : average + (sample - average)*smoothing;
+  }
+
+  /**
+   * @return The number of tokens an adaptive policy currently accumulates,
+   * at most.
+   */
+  public int getAdaptiveDepth
+  ()
+  {
+    double budget =
+      ((maxLinger > 0) ? maxLinger : defaultLatencyBudget)*1e6 - applyNanos;
+    double depth;
+
+    if (arrivalNanos <= 0) {
+      return Integer.MAX_VALUE;
+    }
+    depth = Math.max(1, budget/arrivalNanos);
+    if ((maxDepth > 0)&&(depth > maxDepth)) {
+      return maxDepth;
+    }
+    return (depth > Integer.MAX_VALUE) ? Integer.MAX_VALUE : (int)depth;
+  }
+
+  public int getMaxDepth
+  ()
+  {
+    return maxDepth;
+  }
+
+  public long getMaxLinger
+  ()
+  {
+    return maxLinger;
+  }
+
+  public boolean isAdaptive
+  ()
+  {
+    return adaptive;
+  }
+
+  public String toString
+  ()
+  {
+    return "depth=" + maxDepth + ",linger=" + maxLinger +
+      ((adaptive) ? ",adaptive" : "");
+  }
+
+}
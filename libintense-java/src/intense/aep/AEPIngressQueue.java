@@ -0,0 +1,194 @@
+// ****************************************************************************
+//
+// AEPIngressQueue.java : A lock-free multiple-producer, single-consumer
+// queue of the tokens bound for an AEPServer.AEther.
+//
+// Copyright 2026 the Intense project contributors.
+//
+// This file is part of the Intense project.
+//
+// Intense is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// Intense is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with Intense; if not, write to the Free Software Foundation, Inc.,
+// 59 Temple Place, Suite 330, Boston, MA 02111-1307, USA.
+//
+// ****************************************************************************
+
+
+package intense.aep;
+
+
+import java.util.concurrent.atomic.*;
+import java.util.concurrent.locks.*;
+
+
+/**
+ * A bounded ring of slots, filled by any number of producers and emptied,
+ * in order, by a single consumer, without locks.
+ *
+ * <p>A producer first claims a ticket, which is the position of its element
+ * in the queue (AEthers use it as the server sequence of the token), and
+ * then publishes the element in the ticket's slot.  The consumer takes
+ * elements strictly in ticket order, so an element published out of order
+ * waits for its predecessors.  An idle consumer parks, and is unparked by
+ * the producer of the next element.
+ */
+public class AEPIngressQueue<E> {
+
+  public static final int defaultCapacity = 4096;
+
+  private static final int roomSpins = 64;
+
+  private AtomicReferenceArray<E> slots;
+
+  private int mask;
+
+  /**
+   * The next ticket to be claimed.
+   */
+  private AtomicLong tail;
+
+  /**
+   * The next ticket to be consumed; written only by the consumer.
+   */
+  private volatile long head;
+
+  private volatile boolean consumerWaiting;
+
+  private volatile Thread consumer;
+
+  /**
+   * @param capacity The number of slots, rounded up to a power of two.
+   * Producers wait for room when this many elements are queued.
+   */
+  public AEPIngressQueue
+  (int capacity)
+  {
+    int size = 1;
+
+    while (size < capacity) {
+      size <<= 1;
+    }
+    slots = new AtomicReferenceArray<E>(size);
+    mask = size - 1;
+    tail = new AtomicLong(0);
+    head = 0;
+    consumerWaiting = false;
+    consumer = null;
+  }
+
+  /**
+   * Claim the next ticket, waiting until its slot is free.  Every claimed
+   * ticket must be published, since the consumer waits for it.
+   */
+  public long claim
+  ()
+  {
+    long ticket = tail.getAndIncrement();
+
+    for (int spins = 0; ticket - head > mask; spins++) {
+      if (spins < roomSpins) {
+        Thread.yield();
+      } else {
+        LockSupport.parkNanos(this, 100000);
+      }
+    }
+    return ticket;
+  }
+
+  /**
+   * Publish the element for a claimed ticket.
+   */
+  public void publish
+  (long ticket, E element)
+  {
+    slots.set((int)ticket&mask, element);
+    if (consumerWaiting) {
+      LockSupport.unpark(consumer);
+    }
+  }
+
+  /**
+   * Take up to batch.length consecutive elements, for the consumer.
+   *
+   * @return The number of elements taken, which may be 0.
+   */
+  public int drain
+  (E[] batch)
+  {
+    long ticket = head;
+    int count = 0;
+
+    while (count < batch.length) {
+      int index = (int)ticket&mask;
+      E element = slots.get(index);
+
+      if (element == null) {
+        break;
+      }
+      slots.set(index, null);
+      batch[count++] = element;
+      ticket++;
+    }
+    if (count > 0) {
+      head = ticket;
+    }
+    return count;
+  }
+
+  /**
+   * Register the consumer thread, before it first calls await(), so that
+   * wake() cannot be missed.
+   */
+  public void setConsumer
+  (Thread consumer)
+  {
+    this.consumer = consumer;
+  }
+
+  /**
+   * Park the consumer until an element may have been published, or wake()
+   * is called.  May return spuriously.
+   */
+  public void await
+  ()
+  {
+    consumerWaiting = true;
+    if (slots.get((int)head&mask) == null) {
+      LockSupport.park(this);
+    }
+    consumerWaiting = false;
+  }
+
+  /**
+   * Unpark the consumer, if it is waiting.
+   */
+  public void wake
+  ()
+  {
+    Thread thread = consumer;
+
+    if (thread != null) {
+      LockSupport.unpark(thread);
+    }
+  }
+
+  /**
+   * @return The number of claimed tickets not yet consumed.
+   */
+  public int size
+  ()
+  {
+    return (int)(tail.get() - head);
+  }
+
+}
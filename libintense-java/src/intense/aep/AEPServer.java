@@ -28,6 +28,7 @@ package intense.aep;
 
 import java.lang.*;
 import java.util.*;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.locks.*;
 import java.io.*;
 import intense.*;
@@ -49,15 +50,28 @@ public abstract class AEPServer
 
       protected AEther aether;
 
-      protected HashMap<AEPServer, intense.AEther> serverMap;
+      protected HashMap<AEPServer, AEPClient.NotifyToken> serverMap;
 
       protected AEPServer.AsynchronousToken sourceToken;
 
+      /**
+       * Nodes serialised while sending this operation's notifications, so
+       * that a node seen by many servers is only serialised once.
+       */
+      protected IdentityHashMap<Context, byte[]> nodeEncodings;
+
+      /**
+       * As nodeEncodings, for servers in BINARY mode.
+       */
+      protected IdentityHashMap<Context, byte[]> binaryNodeEncodings;
+
       protected Origin
       (AEther aether)
       {
         this.aether = aether;
-        serverMap = new HashMap<AEPServer, intense.AEther>();
+        serverMap = new HashMap<AEPServer, AEPClient.NotifyToken>();
+        nodeEncodings = new IdentityHashMap<Context, byte[]>();
+        binaryNodeEncodings = new IdentityHashMap<Context, byte[]>();
       }
 
       protected void beginOperation
@@ -74,6 +88,18 @@ public abstract class AEPServer
       }
 
       protected void execute
+      ()
+        throws AEPException
+      {
+        try {
+          executeNotifications();
+        } finally {
+          nodeEncodings.clear();
+          binaryNodeEncodings.clear();
+        }
+      }
+
+      private void executeNotifications
       ()
         throws AEPException
       {
@@ -81,10 +107,15 @@ public abstract class AEPServer
 
         while (itr.hasNext()) {
           AEPServer server = (AEPServer)itr.next();
+          AEPClient.NotifyToken token = serverMap.get(server);
 
-          AEPClient.NotifyToken token =
-            (AEPClient.NotifyToken)(server.getCurrentNotifyToken());
-
+          if (!server.sharesNodeEncodings()) {
+            token.setNodeEncodings(null, server.getWireMode());
+          } else if (server.getWireMode() == AEPCommon.BINARY) {
+            token.setNodeEncodings(binaryNodeEncodings, AEPCommon.BINARY);
+          } else {
+            token.setNodeEncodings(nodeEncodings, AEPCommon.XDR);
+          }
           try {
             Log log = aether.log;
             int logLevel = aether.logLevel;
@@ -100,20 +131,29 @@ public abstract class AEPServer
           } catch (Throwable t) {
             token.shallowClear();
             throw new AEPException(new Exception(t));
+          } finally {
+            token.setNodeEncodings(null);
           }
         }
       }
 
-      protected void addServerMapEntry
-      (AEPServer server, intense.AEther node)
+      /**
+       * Get the notification token being built for a given server during the
+       * current operation, creating it on first use.  Notification tokens
+       * are held per Origin (rather than per server), so that partitions of
+       * the same AEther can notify the same server concurrently.
+       */
+      protected AEPClient.NotifyToken addServerMapEntry
+      (AEPServer server)
         throws AEPException
       {
-        if (!(serverMap.containsKey(server))) {
-          serverMap.put(server, node);
-          server.setCurrentNotifyToken(
-            new AEPClient.NotifyToken(sourceToken.getServerSequence())
-          );
+        AEPClient.NotifyToken token = serverMap.get(server);
+
+        if (token == null) {
+          token = new AEPClient.NotifyToken(sourceToken.getServerSequence());
+          serverMap.put(server, token);
         }
+        return token;
       }
 
       public AEPServer.AsynchronousToken getSourceToken
@@ -133,43 +173,562 @@ public abstract class AEPServer
 
     }
 
-    protected long serverSequence;
+    /**
+     * An apply lane of an AEther.  A Partition owns a queue of asynchronous
+     * tokens, the accumulation of those tokens, and an Origin for their
+     * notifications.  The ear thread uses an unthreaded Partition for tokens
+     * that it applies itself; in a partitioned AEther, each additional
+     * Partition has its own apply thread.
+     */
+    protected static class Partition {
+
+      protected AEther aether;
+
+      protected int index;
+
+      protected Origin origin;
+
+      /**
+       * The accumulations in progress, one for each of a number of disjoint
+       * target subtrees, in server sequence order.
+       */
+      protected LinkedList<AEPServer.AsynchronousToken> accumulated;
+
+      protected int accumulatedCount;
+
+      /**
+       * When the oldest token in the accumulations was accumulated, by
+       * System.nanoTime().
+       */
+      protected long accumulationStart;
+
+      /**
+       * This lane's copy of the AEther's accumulation policy.
+       */
+      protected volatile AEPAccumulationPolicy policy;
+
+      protected Thread applyThread;
+
+      protected boolean running;
+
+      protected boolean busy;
+
+      protected ReentrantLock mutex;
+
+      protected Condition condition;
+
+      protected Condition drained;
+
+      protected LinkedList<AEPServer.AsynchronousToken> incoming;
+
+      protected Partition
+      (AEther aether, int index, Origin origin, AEPAccumulationPolicy policy)
+      {
+        this.aether = aether;
+        this.index = index;
+        this.origin = origin;
+        accumulated = new LinkedList<AEPServer.AsynchronousToken>();
+        accumulatedCount = 0;
+        accumulationStart = 0;
+        this.policy = policy;
+        applyThread = null;
+        running = false;
+        busy = false;
+        mutex = new ReentrantLock();
+        condition = mutex.newCondition();
+        drained = mutex.newCondition();
+        incoming = new LinkedList<AEPServer.AsynchronousToken>();
+      }
+
+      public void accumulate
+      (AEPServer.AsynchronousToken token)
+        throws IOException, IntenseException
+      {
+        Log log = aether.log;
+        int logLevel = aether.logLevel;
+        int flags = token.flags;
+        long now;
+        boolean policyApply;
+
+        // Target nodes may be created here, so resolve them with the rest of
+        // the tree held still:
+        aether.applyLock();
+        try {
+          token.getTargetNode();
+        } finally {
+          aether.applyUnlock();
+        }
+        if ((flags&AEPServer.preFenceBit) != 0) {
+          if ((log != null)&&(logLevel >= Log.DEBUG)) {
+            log.priority(Log.DEBUG).add(
+              "AEther thread " + Thread.currentThread() +
+              ": preFenceBit set in token"
+            ).end();
+          }
+          applyAccumulated();
+          accumulated.add(token);
+        } else {
+          accumulateSlot(token);
+        }
+        now = System.nanoTime();
+        if (accumulatedCount++ == 0) {
+          accumulationStart = now;
+        }
+        policyApply = policy.shouldApply(
+          accumulatedCount, now - accumulationStart, now
+        );
+        if (((flags&AEPServer.postFenceBit) != 0)||
+            (accumulatedCount > aether.maxAccumulatedCount)||(policyApply)) {
+          if ((log != null)&&(logLevel >= Log.DEBUG)) {
+            if ((flags&AEPServer.postFenceBit) != 0) {
+              log.priority(Log.DEBUG).add(
+                "AEther thread " + Thread.currentThread() +
+                ": postFenceBit set in token"
+              ).end();
+            }
+            if (accumulatedCount > aether.maxAccumulatedCount) {
+              log.priority(Log.DEBUG).add(
+                "AEther thread " + Thread.currentThread() +
+                ": maximum accumulated count (" + aether.maxAccumulatedCount +
+                ") reached."
+              ).end();
+            }
+            if (policyApply) {
+              log.priority(Log.DEBUG).add(
+                "AEther thread " + Thread.currentThread() +
+                ": accumulation policy (" + policy + ") applies " +
+                accumulatedCount + " tokens."
+              ).end();
+            }
+          }
+          applyAccumulated();
+        }
+      }
+
+      /**
+       * Accumulate a token into the accumulation of the subtree containing
+       * its target.  Operations on disjoint subtrees commute, so a token
+       * unrelated to every accumulation starts a new one; a token related
+       * to several of them (i.e., an ancestor of their targets) is applied
+       * after them.
+       */
+      protected void accumulateSlot
+      (AEPServer.AsynchronousToken token)
+        throws IOException, IntenseException
+      {
+        intense.AEther target = token.getTargetNode();
+        int relatedCount = 0;
+        int lastRelated = -1;
+        AEPServer.AsynchronousToken related = null;
+        int i = 0;
+
+        for (AEPServer.AsynchronousToken slot : accumulated) {
+          intense.AEther slotTarget = slot.getTargetNode();
+
+          if ((slotTarget == target)||(slotTarget.isAncestor(target))||
+              (target.isAncestor(slotTarget))) {
+            related = slot;
+            relatedCount++;
+            lastRelated = i;
+          }
+          i++;
+        }
+        if (relatedCount == 1) {
+          AEPServer.AsynchronousToken result = related.accumulate(token);
+
+          if (result != null) {
+            accumulated.remove(related);
+            insertAccumulation(result);
+            return;
+          }
+        }
+        if (relatedCount > 0) {
+          // Everything before the last related accumulation lands first, so
+          // that notifications keep to server sequence order:
+          applyAccumulated(lastRelated + 1);
+        } else if (accumulated.size() >= aether.maxAccumulationSlots) {
+          applyAccumulated(1);
+        }
+        insertAccumulation(token);
+      }
+
+      /**
+       * Insert an accumulation in server sequence order.
+       */
+      private void insertAccumulation
+      (AEPServer.AsynchronousToken token)
+      {
+        int index = accumulated.size();
+
+        while ((index > 0)&&
+               (accumulated.get(index - 1).serverSequence >
+                token.serverSequence)) {
+          index--;
+        }
+        accumulated.add(index, token);
+      }
+
+      public void applyAccumulated
+      ()
+        throws IOException, IntenseException
+      {
+        int count = accumulatedCount;
+        long start;
+
+        if (accumulated.size() == 0) {
+          applyAccumulated(0);
+          return;
+        }
+        start = System.nanoTime();
+        accumulatedCount = 0;
+        try {
+          applyAccumulated(accumulated.size());
+        } finally {
+          policy.applied(count, System.nanoTime() - start);
+        }
+        aether.publishSnapshot();
+      }
+
+      /**
+       * Apply the first count accumulations.
+       */
+      protected void applyAccumulated
+      (int count)
+        throws IOException, IntenseException
+      {
+        Log log = aether.log;
+        int logLevel = aether.logLevel;
+
+        if (accumulated.size() > 0) {
+          for (int i = 0; (i < count)&&(accumulated.size() > 0); i++) {
+            // Remove the accumulation first, so that a failed token is
+            // dropped rather than retried forever:
+            AEPServer.AsynchronousToken token = accumulated.removeFirst();
+
+            if ((log != null)&&(logLevel >= Log.DEBUG)) {
+              log.priority(Log.DEBUG).add(
+                "AEther thread " + Thread.currentThread() +
+                ": applying accumulated asynchronous token: "
+              );
+              token.print(log, Log.DEBUG);
+              log.end();
+            }
+            token.aetherHandle(aether, origin);
+          }
+        } else {
+          if ((log != null)&&(logLevel >= Log.DEBUG)) {
+            log.priority(Log.DEBUG).add(
+              "AEther thread " + Thread.currentThread() +
+              ": no accumulated asynchronous operations to apply."
+            ).end();
+          }
+        }
+      }
+
+      /**
+       * Queue a token for the apply thread of this Partition.
+       */
+      public void append
+      (AEPServer.AsynchronousToken token)
+      {
+        mutex.lock();
+        incoming.addLast(token);
+        busy = true;
+        condition.signal();
+        mutex.unlock();
+      }
+
+      /**
+       * Block until every token queued to this Partition has been applied.
+       */
+      public void drain
+      ()
+      {
+        mutex.lock();
+        while (busy) {
+          drained.awaitUninterruptibly();
+        }
+        mutex.unlock();
+      }
+
+
+      private class ApplyThread
+        implements Runnable {
+
+        public void run
+        ()
+        {
+          try {
+            main();
+          } catch (Throwable ignored) {
+          }
+        }
+
+      }
+
+
+      protected void main
+      ()
+      {
+        Log log = aether.log;
+        int logLevel = aether.logLevel;
+
+        if ((log != null)&&(logLevel >= Log.NOTICE)) {
+          log.priority(Log.NOTICE).add(
+            "AEther partition " + index + " thread " + Thread.currentThread() +
+            ": starting execution..."
+          ).end();
+        }
+        mutex.lock();
+        while (running) {
+          if (incoming.size() > 0) {
+            AEPServer.AsynchronousToken token = incoming.removeFirst();
+
+            mutex.unlock();
+            processToken(token);
+            mutex.lock();
+          } else if (accumulated.size() > 0) {
+            // Before reporting this partition as drained, always apply any
+            // outstanding accumulated asynchronous tokens:
+            mutex.unlock();
+            processToken(null);
+            mutex.lock();
+          } else {
+            busy = false;
+            drained.signalAll();
+            condition.awaitUninterruptibly();
+          }
+        }
+        busy = false;
+        drained.signalAll();
+        mutex.unlock();
+        if ((log != null)&&(logLevel >= Log.NOTICE)) {
+          log.priority(Log.NOTICE).add(
+            "AEther partition " + index + " thread " + Thread.currentThread() +
+            ": END OF LINE."
+          ).end();
+        }
+      }
+
+      /**
+       * Accumulate a token, or apply the current accumulation if the token
+       * is null.
+       */
+      protected void processToken
+      (AEPServer.AsynchronousToken token)
+      {
+        Log log = aether.log;
+        int logLevel = aether.logLevel;
+
+        try {
+          if (token != null) {
+            accumulate(token);
+          } else {
+            applyAccumulated();
+          }
+        } catch (AEPException e) {
+          if ((log != null)&&(logLevel >= e.getPriority())) {
+            log.priority(e.getPriority()).add(
+              "Caught AEPException in AEPServer.AEther partition " + index +
+              ": " + e.getMessage() + "\nTrace:\n\n" + Log.getTrace(e)
+            ).end();
+          }
+        } catch (IntenseException e) {
+          if ((log != null)&&(logLevel >= Log.CRITICAL)) {
+            log.priority(Log.CRITICAL).add(
+              "Caught IntenseException in AEPServer.AEther partition " +
+              index + ": " + e.getMessage() + "\nTrace:\n\n" + Log.getTrace(e)
+            ).end();
+          }
+        } catch (Exception e) {
+          if ((log != null)&&(logLevel >= Log.CRITICAL)) {
+            log.priority(Log.CRITICAL).add(
+              "Caught Exception in AEPServer.AEther partition " + index +
+              ": " + e.getMessage() + "\nTrace:\n\n" + Log.getTrace(e)
+            ).end();
+          }
+        } catch (Throwable t) {
+          if ((log != null)&&(logLevel >= Log.CRITICAL)) {
+            log.priority(Log.CRITICAL).add(
+              "Caught unknown object in AEPServer.AEther partition " + index +
+              "\nTrace:\n\n" + Log.getTrace(t)
+            ).end();
+          }
+        }
+      }
+
+      public void start
+      ()
+        throws AEPException
+      {
+        mutex.lock();
+        try {
+          if (running) {
+            return;
+          }
+          running = true;
+          applyThread = aether.threadFactory.newThread(new ApplyThread());
+          try {
+            applyThread.start();
+          } catch (IllegalThreadStateException e) {
+            running = false;
+            throw new AEPException(
+              "Could not create AEPServer.AEther partition thread", e
+            );
+          }
+        } finally {
+          mutex.unlock();
+        }
+      }
+
+      public void stop
+      ()
+        throws InterruptedException
+      {
+        mutex.lock();
+        running = false;
+        condition.signal();
+        mutex.unlock();
+        if (applyThread != null) {
+          applyThread.join();
+          applyThread = null;
+        }
+      }
+
+    }
 
     protected Thread earThread;
 
-    protected boolean running;
+    /**
+     * Creates the ear thread and the partition apply threads.
+     */
+    protected ThreadFactory threadFactory;
+
+    protected volatile boolean running;
 
     protected ReentrantLock mutex;
 
-    protected Condition condition;
+    /**
+     * Tokens from the ears of every server, in server sequence order; the
+     * ticket of each token is its server sequence.
+     */
+    protected AEPIngressQueue<AEPServer.Token> incoming;
 
-    protected LinkedList<AEPServer.Token> incoming;
+    /**
+     * The maximum number of tokens the ear thread takes from incoming at
+     * once.
+     */
+    public static final int ingressBatchSize = 64;
 
     protected Origin origin;
 
-    protected AEPServer.AsynchronousToken accumulated;
+    /**
+     * The ear thread's own accumulation, for tokens that are not handed to
+     * a partition.
+     */
+    protected Partition spine;
+
+    /**
+     * The apply lanes of a partitioned AEther, or null if every token is
+     * applied by the ear thread.
+     */
+    protected Partition[] partitions;
+
+    /**
+     * The number of leading dimensions of a token's target path used to
+     * select its partition.
+     */
+    protected int partitionDepth;
+
+    /**
+     * Held while the tree itself is modified.  Every change to a node is
+     * propagated (basecounts, cached canonical forms) through all of its
+     * ancestors, so partitions share this lock for the modification, and
+     * run accumulation and notification delivery in parallel.
+     */
+    protected ReentrantLock applyMutex;
+
+    /**
+     * Whether a snapshot of the tree is published after each applied
+     * batch.
+     */
+    protected volatile boolean publishingSnapshots;
+
+    protected volatile ContextSnapshot publishedSnapshot;
+
+    /**
+     * How often, in milliseconds, the ear thread prunes empty nodes with no
+     * participants from the tree, or 0 if it does not.
+     */
+    protected volatile long pruneInterval;
+
+    public static final long defaultPruneInterval = 0;
+
+    /**
+     * When the tree was last pruned, by System.nanoTime().
+     */
+    protected long lastPrune;
 
     public static final int defaultMaxAccumulatedCount = 1000;
 
-    protected int accumulatedCount;
-
     protected int maxAccumulatedCount;
 
+    public static final int defaultMaxAccumulationSlots = 16;
+
+    /**
+     * The policy copied to each apply lane.
+     */
+    protected AEPAccumulationPolicy accumulationPolicy;
+
+    /**
+     * The maximum number of disjoint subtrees accumulated at once, by the
+     * ear thread and by each partition.
+     */
+    protected int maxAccumulationSlots;
+
     Log log;
 
     int logLevel;
 
     private void construct
-    (int maxAccumulatedCount, Log log, int logLevel)
+    (int maxAccumulatedCount, int partitionDepth, int partitionCount,
+     Log log, int logLevel)
     {
-      serverSequence = 0;
+      AEPDefaultAccumulationPolicy defaultPolicy;
+
       earThread = null;
+      threadFactory = AEPThreadFactory.getDefault();
       running = false;
       mutex = new ReentrantLock();
-      condition = mutex.newCondition();
-      incoming = new LinkedList<AEPServer.Token>();
+      incoming = new AEPIngressQueue<AEPServer.Token>(
+        AEPIngressQueue.defaultCapacity
+      );
       origin = new Origin(this);
+      defaultPolicy = AEPAccumulationPolicy.getDefault(log, logLevel);
+      accumulationPolicy = defaultPolicy;
+      spine = new Partition(
+        this, -1, origin, defaultPolicy.accumulationPolicyFactory()
+      );
+      if ((partitionDepth > 0)&&(partitionCount > 0)) {
+        this.partitionDepth = partitionDepth;
+        partitions = new Partition[partitionCount];
+        for (int i = 0; i < partitionCount; i++) {
+          partitions[i] = new Partition(
+            this, i, new Origin(this),
+            defaultPolicy.accumulationPolicyFactory()
+          );
+        }
+      } else {
+        this.partitionDepth = 0;
+        partitions = null;
+      }
+      applyMutex = new ReentrantLock();
+      publishingSnapshots = false;
+      publishedSnapshot = null;
+      pruneInterval = defaultPruneInterval;
+      lastPrune = 0;
       this.maxAccumulatedCount = maxAccumulatedCount;
+      maxAccumulationSlots = defaultMaxAccumulationSlots;
       this.log = log;
       this.logLevel = logLevel;
     }
@@ -178,40 +737,86 @@ public abstract class AEPServer
     ()
     {
       super();
-      construct(defaultMaxAccumulatedCount, null, Log.NOTICE);
+      construct(defaultMaxAccumulatedCount, 0, 0, null, Log.NOTICE);
     }
 
     public AEther
     (int maxAccumulatedCount)
     {
       super();
-      construct(maxAccumulatedCount, null, Log.NOTICE);
+      construct(maxAccumulatedCount, 0, 0, null, Log.NOTICE);
     }
 
     public AEther
     (int maxAccumulatedCount, Log log)
     {
       super();
-      construct(maxAccumulatedCount, log, Log.NOTICE);
+      construct(maxAccumulatedCount, 0, 0, log, Log.NOTICE);
     }
 
     public AEther
     (int maxAccumulatedCount, Log log, int logLevel)
     {
       super();
-      construct(maxAccumulatedCount, log, logLevel);
+      construct(maxAccumulatedCount, 0, 0, log, logLevel);
+    }
+
+    /**
+     * Partitioned AEther constructor.  Asynchronous tokens are assigned to
+     * one of partitionCount apply threads by the first partitionDepth
+     * dimensions of their target paths, so that operations on disjoint
+     * subtrees are accumulated and notified in parallel.  Tokens with
+     * shorter target paths, and all synchronous tokens, wait for every
+     * partition to drain and are then applied by the ear thread, so that
+     * operations crossing partitions take effect in server sequence order.
+     *
+     * @param maxAccumulatedCount The maximum number of tokens accumulated
+     * before application, per partition.
+     * @param partitionDepth The number of leading target path dimensions
+     * that select a partition (1 partitions by top-level dimension).
+     * @param partitionCount The number of partition apply threads.  If this
+     * or partitionDepth is less than 1, the AEther is not partitioned.
+     * @param log The Log for ear and partition threads.
+     * @param logLevel The log level for ear and partition threads.
+     */
+    public AEther
+    (int maxAccumulatedCount, int partitionDepth, int partitionCount,
+     Log log, int logLevel)
+    {
+      super();
+      construct(
+        maxAccumulatedCount, partitionDepth, partitionCount, log, logLevel
+      );
     }
 
+    /**
+     * Claim the next server sequence for a token, waiting if the AEther is
+     * too far behind.  The token must then be queued with append(), without
+     * delay, since the ear thread processes tokens in sequence order.
+     */
+    public long claimServerSequence
+    ()
+    {
+      return incoming.claim();
+    }
+
+    /**
+     * Queue a token for the ear thread, with the server sequence claimed
+     * for it.  Neither this nor claimServerSequence() takes a lock.
+     */
     public void append
     (AEPServer.Token token)
     {
-      incoming.addLast(token);
+      incoming.publish(token.serverSequence, token);
     }
 
+    /**
+     * Wake the ear thread.
+     */
     public void signal
     ()
     {
-      condition.signal();
+      incoming.wake();
     }
 
     public void condWait
@@ -224,80 +829,269 @@ public abstract class AEPServer
     (AEPServer.AsynchronousToken token)
       throws IOException, IntenseException
     {
-      int flags = token.flags;
+      spine.accumulate(token);
+    }
 
-      if ((flags&AEPServer.preFenceBit) != 0) {
-        if ((log != null)&&(logLevel >= Log.DEBUG)) {
-          log.priority(Log.DEBUG).add(
-            "AEther thread " + Thread.currentThread() +
-            ": preFenceBit set in token"
-          ).end();
+    public void applyAccumulated
+    ()
+      throws IOException, IntenseException
+    {
+      spine.applyAccumulated();
+    }
+
+    /**
+     * Get the partition that applies a given asynchronous token.
+     *
+     * @param token The token to route.
+     * @return The Partition, or null if this AEther is not partitioned or the
+     * target path of the token is shallower than the partition depth.
+     */
+    protected Partition getPartition
+    (AEPServer.AsynchronousToken token)
+    {
+      StringBuffer key = new StringBuffer();
+      int depth = 0;
+
+      if (partitions == null) {
+        return null;
+      }
+      if ((token.participant != null)&&(token.participant.dimension != null)) {
+        depth = appendPartitionKey(
+          key, token.participant.dimension, depth
+        );
+      }
+      if (token.dimension != null) {
+        depth = appendPartitionKey(key, token.dimension, depth);
+      }
+      if (depth < partitionDepth) {
+        return null;
+      }
+      return partitions[(key.toString().hashCode()&0x7fffffff)%
+                        partitions.length];
+    }
+
+    private int appendPartitionKey
+    (StringBuffer key, CompoundDimension dimension, int depth)
+    {
+      java.util.Iterator itr = dimension.iterator();
+
+      while ((depth < partitionDepth)&&(itr.hasNext())) {
+        key.append(((Dimension)itr.next()).canonical()).append(':');
+        depth++;
+      }
+      return depth;
+    }
+
+    /**
+     * Block until every partition has applied all tokens queued to it.
+     */
+    protected void drainPartitions
+    ()
+    {
+      if (partitions != null) {
+        for (int i = 0; i < partitions.length; i++) {
+          partitions[i].drain();
         }
-        applyAccumulated();
-        accumulated = token;
-      } else if (accumulated != null) {
-        //    AsynchronousToken* accumulationResult = null;
-        AsynchronousToken accumulationResult = accumulated.accumulate(token);
+      }
+    }
 
-        if (accumulationResult == token) {
-          accumulated = accumulationResult;
-        } else if (accumulationResult != null) {
-          accumulated = accumulationResult;
-        } else {
-          applyAccumulated();
-          accumulated = token;
+    public int getPartitionCount
+    ()
+    {
+      return (partitions != null) ? partitions.length : 0;
+    }
+
+    public int getPartitionDepth
+    ()
+    {
+      return partitionDepth;
+    }
+
+    /**
+     * Set the number of disjoint target subtrees accumulated at once.  When
+     * a token for yet another subtree arrives, the oldest accumulation is
+     * applied.
+     *
+     * @param maxAccumulationSlots The number of slots (1 accumulates a
+     * single subtree at a time).
+     */
+    public void setMaxAccumulationSlots
+    (int maxAccumulationSlots)
+    {
+      lock();
+      this.maxAccumulationSlots =
+        (maxAccumulationSlots > 0) ? maxAccumulationSlots : 1;
+      unlock();
+    }
+
+    public int getMaxAccumulationSlots
+    ()
+    {
+      return maxAccumulationSlots;
+    }
+
+    /**
+     * Set the policy which decides when accumulated tokens are applied, for
+     * the ear thread and every partition.  This may be changed while the
+     * AEther is running; each lane starts with no observations.
+     *
+     * @param accumulationPolicy The new policy (null restores
+     * AEPAccumulationPolicy.getDefault()).
+     * @throws AEPException If the policy cannot be copied for each lane (see
+     * AEPAccumulationPolicy.copy()), in which case the policy is unchanged.
+     */
+    public void setAccumulationPolicy
+    (AEPAccumulationPolicy accumulationPolicy)
+      throws AEPException
+    {
+      AEPAccumulationPolicy spinePolicy;
+      AEPAccumulationPolicy[] partitionPolicies = null;
+
+      if (accumulationPolicy == null) {
+        accumulationPolicy = AEPAccumulationPolicy.getDefault(log, logLevel);
+      }
+      spinePolicy = accumulationPolicy.copy();
+      if (partitions != null) {
+        partitionPolicies = new AEPAccumulationPolicy[partitions.length];
+        for (int i = 0; i < partitions.length; i++) {
+          partitionPolicies[i] = accumulationPolicy.copy();
         }
-      } else {
-        accumulated = token;
       }
-      accumulatedCount++;
-      if (((flags&AEPServer.postFenceBit) != 0)||
-          (accumulatedCount > maxAccumulatedCount)) {
-        if ((log != null)&&(logLevel >= Log.DEBUG)) {
-          if ((flags&AEPServer.postFenceBit) != 0) {
-            log.priority(Log.DEBUG).add(
-              "AEther thread " + Thread.currentThread() +
-              ": postFenceBit set in token"
-            ).end();
-          }
-          if (accumulatedCount > maxAccumulatedCount) {
-            log.priority(Log.DEBUG).add(
-              "AEther thread " + Thread.currentThread() +
-              ": maximum accumulated count (" + maxAccumulatedCount +
-              ") reached."
-            ).end();
+      lock();
+      this.accumulationPolicy = accumulationPolicy;
+      spine.policy = spinePolicy;
+      if (partitions != null) {
+        for (int i = 0; i < partitions.length; i++) {
+          partitions[i].policy = partitionPolicies[i];
+        }
+      }
+      unlock();
+    }
+
+    public AEPAccumulationPolicy getAccumulationPolicy
+    ()
+    {
+      return accumulationPolicy;
+    }
+
+    /**
+     * Start or stop publishing a snapshot of the tree after each batch of
+     * tokens the ear thread processes, and after each accumulation applied.
+     * Each snapshot only copies the nodes changed since the last.
+     */
+    public void setPublishingSnapshots
+    (boolean publishingSnapshots)
+    {
+      applyLock();
+      try {
+        this.publishingSnapshots = publishingSnapshots;
+        publishedSnapshot = publishingSnapshots ? snapshot() : null;
+      } finally {
+        applyUnlock();
+      }
+    }
+
+    public boolean getPublishingSnapshots
+    ()
+    {
+      return publishingSnapshots;
+    }
+
+    /**
+     * Get the latest published snapshot of the tree, which may be read
+     * without locks while the tree changes.
+     *
+     * @return The snapshot, or null if snapshots are not published.
+     */
+    public ContextSnapshot getSnapshot
+    ()
+    {
+      return publishedSnapshot;
+    }
+
+    protected void publishSnapshot
+    ()
+    {
+      if (publishingSnapshots) {
+        applyLock();
+        try {
+          if (publishingSnapshots) {
+            publishedSnapshot = snapshot();
           }
+        } finally {
+          applyUnlock();
         }
-        applyAccumulated();
       }
     }
 
-    public void applyAccumulated
+    /**
+     * Set how often the ear thread removes the empty nodes with no
+     * participants, such as those created for the targets of tokens which
+     * did not assign anything, from the tree.  Pruning is off by default:
+     * each pass walks the whole tree with the apply lock held, stalling
+     * every operation on the AEther meanwhile, so it should only be enabled
+     * for trees which accumulate many empty nodes.
+     *
+     * @param pruneInterval The interval in milliseconds, or 0 (the default)
+     * to stop pruning.
+     */
+    public void setPruneInterval
+    (long pruneInterval)
+    {
+      this.pruneInterval = (pruneInterval > 0) ? pruneInterval : 0;
+    }
+
+    public long getPruneInterval
+    ()
+    {
+      return pruneInterval;
+    }
+
+    /**
+     * Prune the tree, if pruneInterval has passed since it was last pruned.
+     * Only called by the ear thread, which first applies every outstanding
+     * accumulation, its own and the partitions', so that no token still
+     * holds a target node which could be pruned.
+     */
+    protected void pruneIfDue
     ()
       throws IOException, IntenseException
     {
-      if (accumulated != null) {
-        if ((log != null)&&(logLevel >= Log.DEBUG)) {
-          log.priority(Log.DEBUG).add(
-            "AEther thread " + Thread.currentThread() +
-            ": applying accumulated asynchronous token: "
-          );
-          accumulated.print(log, Log.DEBUG);
-          log.end();
-        }
-        accumulated.aetherHandle(this);
-        accumulated = null;
-        accumulatedCount = 0;
-      } else {
-        if ((log != null)&&(logLevel >= Log.DEBUG)) {
-          log.priority(Log.DEBUG).add(
-            "AEther thread " + Thread.currentThread() +
-            ": no accumulated asynchronous operations to apply."
-          ).end();
-        }
+      long interval = pruneInterval;
+      int count;
+
+      if ((interval == 0)||
+          (System.nanoTime() - lastPrune < interval*1000000L)) {
+        return;
+      }
+      applyAccumulated();
+      drainPartitions();
+      applyLock();
+      try {
+        count = prune();
+      } finally {
+        applyUnlock();
+      }
+      lastPrune = System.nanoTime();
+      if ((log != null)&&(logLevel >= Log.DEBUG)) {
+        log.priority(Log.DEBUG).add(
+          "AEther thread: pruned " + count + " empty nodes."
+        ).end();
       }
     }
 
+    public void applyLock
+    ()
+    {
+      applyMutex.lock();
+    }
+
+    public void applyUnlock
+    ()
+    {
+      applyMutex.unlock();
+    }
+
     public void lock
     ()
     {
@@ -316,12 +1110,6 @@ public abstract class AEPServer
       mutex.unlock();
     }
 
-    public long nextServerSequence
-    ()
-    {
-      return serverSequence++;
-    }
-
     public void setLogLevel
     (int logLevel)
     {
@@ -330,9 +1118,30 @@ public abstract class AEPServer
       unlock();
     }
 
+    /**
+     * Set the factory for threads created by subsequent calls to start().
+     *
+     * @param threadFactory The new factory (null restores
+     * AEPThreadFactory.getDefault()).
+     */
+    public void setThreadFactory
+    (ThreadFactory threadFactory)
+    {
+      lock();
+      this.threadFactory = (threadFactory != null) ?
+        threadFactory : AEPThreadFactory.getDefault();
+      unlock();
+    }
+
+    public ThreadFactory getThreadFactory
+    ()
+    {
+      return threadFactory;
+    }
+
 
     private class EarThread
-      extends Thread {
+      implements Runnable {
 
       public void run
       ()
@@ -356,15 +1165,21 @@ public abstract class AEPServer
         ).end();
       }
       try {
-        lock();
-        // Signal constructor:
-        signal();
+        AEPServer.Token[] batch = new AEPServer.Token[ingressBatchSize];
+
+        incoming.setConsumer(Thread.currentThread());
         while (running) {
-          if (incoming.size() > 0) {
-            AEPServer.Token token = (AEPServer.Token)incoming.removeFirst();
-            unlock();
-            processToken(token);
-            lock();
+          int count = incoming.drain(batch);
+
+          if (count > 0) {
+            for (int i = 0; i < count; i++) {
+              AEPServer.Token token = batch[i];
+
+              batch[i] = null;
+              processToken(token);
+            }
+            publishSnapshot();
+            pruneIfDue();
           } else {
             // Before waiting for more tokens, always apply any outstanding
             // accumulated asynchronous tokens:
@@ -374,7 +1189,8 @@ public abstract class AEPServer
               ).end();
             }
             applyAccumulated();
-            condition.awaitUninterruptibly();
+            pruneIfDue();
+            incoming.await();
           }
         }
         // Destructor is now waiting to join() this thread.
@@ -393,7 +1209,6 @@ public abstract class AEPServer
             ).end();
         }
       }
-      unlock();
       if ((log != null)&&(logLevel >= Log.NOTICE)) {
         log.priority(Log.NOTICE).add(
           "AEther thread " + Thread.currentThread() + ": END OF LINE."
@@ -410,8 +1225,19 @@ public abstract class AEPServer
         unlock();
         return;
       }
+      if (partitions != null) {
+        try {
+          for (int i = 0; i < partitions.length; i++) {
+            partitions[i].start();
+          }
+        } catch (AEPException e) {
+          unlock();
+          throw e;
+        }
+      }
       running = true;
-      earThread = new EarThread();
+      lastPrune = System.nanoTime();
+      earThread = threadFactory.newThread(new EarThread());
       try {
         earThread.start();
       } catch (IllegalThreadStateException e) {
@@ -459,6 +1285,12 @@ public abstract class AEPServer
           "AEPServer.stop: joined ear thread " + earThread + '.'
         ).end();
       }
+      if (partitions != null) {
+        drainPartitions();
+        for (int i = 0; i < partitions.length; i++) {
+          partitions[i].stop();
+        }
+      }
     }
 
     protected void processToken
@@ -486,12 +1318,12 @@ public abstract class AEPServer
         case AEPServer.Token.JOIN:
         case AEPServer.Token.LEAVE:
         case AEPServer.Token.KICK:
-          // Synchronous tokens are implicitly associative pre-fences:
+          // Synchronous tokens are implicitly associative pre-fences, over
+          // all partitions:
+          drainPartitions();
           applyAccumulated();
           token.aetherHandle(this);
-          lock();
           ((SynchronousToken)token).resumeServer();
-          unlock();
           // AEPServer deletes synchronous tokens:
           break;
         case AEPServer.Token.ASSIGN:
@@ -499,7 +1331,21 @@ public abstract class AEPServer
         case AEPServer.Token.CLEAR:
           // AEPServer.AEther must decrement the reference count of (and
           // possibly delete) asynchronous tokens, under accumulate somewhere:
-          accumulate(((AsynchronousToken)token));
+          {
+            Partition partition = getPartition((AsynchronousToken)token);
+
+            if (partition != null) {
+              // Earlier tokens applied by the ear thread may enclose the
+              // target of this one, so they must land first:
+              applyAccumulated();
+              partition.append((AsynchronousToken)token);
+            } else {
+              // Tokens above the partition depth cross partitions, so every
+              // earlier token must land first:
+              drainPartitions();
+              accumulate(((AsynchronousToken)token));
+            }
+          }
           break;
         default:
           {
@@ -600,6 +1446,22 @@ public abstract class AEPServer
       throws IntenseException
     {
       super.leave();
+      server.setConflating(id, false);
+    }
+
+    /**
+     * @see AEPServer#setConflating
+     */
+    public void setConflating
+    (boolean conflating)
+    {
+      server.setConflating(id, conflating);
+    }
+
+    public boolean isConflating
+    ()
+    {
+      return server.isConflating(id);
     }
 
     public void join
@@ -642,7 +1504,6 @@ public abstract class AEPServer
       );
       AEPClient.NotifyToken.AssignTarget assignTarget;
       AEPServer.AsynchronousToken sourceToken = origin.getSourceToken();
-      intense.AEther aether = (intense.AEther)(this.aether);
       AEPClient.NotifyToken notifyToken;
 
       if (((sourceToken.flags&AEPServer.preFenceBit) != 0)&&
@@ -668,8 +1529,7 @@ public abstract class AEPServer
           return;
         }
       }
-      origin.addServerMapEntry(server, aether);
-      notifyToken = (AEPClient.NotifyToken)(server.currentNotifyToken);
+      notifyToken = origin.addServerMapEntry(server);
       notifyToken.addNode((Context)value, addNodeResult);
       if (dim != null) {
         if (addNodeResult.internalDimension != null) {
@@ -705,7 +1565,6 @@ public abstract class AEPServer
       );
       AEPClient.NotifyToken.ApplyTarget applyTarget;
       AEPServer.AsynchronousToken sourceToken = origin.getSourceToken();
-      intense.AEther aether = this.aether;
       AEPClient.NotifyToken notifyToken;
 
       if (((sourceToken.flags&AEPServer.preFenceBit) != 0)&&
@@ -731,8 +1590,7 @@ public abstract class AEPServer
           return;
         }
       }
-      origin.addServerMapEntry(server, aether);
-      notifyToken = (AEPClient.NotifyToken)(server.currentNotifyToken);
+      notifyToken = origin.addServerMapEntry(server);
       notifyToken.addNode(op, addNodeResult);
       if (dim != null) {
         if (addNodeResult.internalDimension != null) {
@@ -766,7 +1624,6 @@ public abstract class AEPServer
       );
       AEPClient.NotifyToken.ClearTarget clearTarget;
       AEPServer.AsynchronousToken sourceToken = origin.getSourceToken();
-      intense.AEther aether = this.aether;
       AEPClient.NotifyToken notifyToken;
 
       if (((sourceToken.flags&AEPServer.preFenceBit) != 0)&&
@@ -792,8 +1649,7 @@ public abstract class AEPServer
           return;
         }
       }
-      origin.addServerMapEntry(server, aether);
-      notifyToken = (AEPClient.NotifyToken)(server.currentNotifyToken);
+      notifyToken = origin.addServerMapEntry(server);
       if (dim != null) {
         clearTarget = new AEPClient.NotifyToken.ClearTarget(
           getId(), new CompoundDimension(dim)
@@ -949,7 +1805,7 @@ public abstract class AEPServer
       throws IntenseException, AEPException;
 
     public static void factorySerialise
-    (Token token, DataOutputStream out)
+    (Token token, DataOutput out)
       throws IOException, AEPException
     {
       int type;
@@ -966,7 +1822,7 @@ public abstract class AEPServer
     }
 
     public static Token factoryDeserialise
-    (DataInputStream in)
+    (DataInput in)
       throws IOException, IntenseException, AEPException
     {
       int type;
@@ -1020,10 +1876,18 @@ public abstract class AEPServer
       reply = null;
     }
 
+    /**
+     * The server thread waiting in aetherTransaction().
+     */
+    protected Thread waiter;
+
+    protected volatile boolean resumed;
+
     protected void resumeServer
     ()
     {
-      server.aetherCondition.signal();
+      resumed = true;
+      LockSupport.unpark(waiter);
     }
 
     public boolean aetherTransaction
@@ -1033,12 +1897,13 @@ public abstract class AEPServer
       String errorMessage = null;
       boolean successful = false;
 
-      server.aether.lock();
-      serverSequence = server.aether.nextServerSequence();
+      waiter = Thread.currentThread();
+      resumed = false;
+      serverSequence = server.aether.claimServerSequence();
       server.aether.append(this);
-      server.aether.signal();
-      server.aether.condWait(server.aetherCondition);
-      server.aether.unlock();
+      while (!resumed) {
+        LockSupport.park(this);
+      }
       if (reply == null) {
         return true;
       } else if (reply.getType() == AEPClient.Token.ACK) {
@@ -1099,14 +1964,14 @@ public abstract class AEPServer
     }
 
     public void serialise
-    (DataOutputStream os)
+    (DataOutput os)
       throws IOException, AEPException
     {
       os.writeLong(clientSequence);
     }
 
     public void deserialise
-    (DataInputStream is)
+    (DataInput is)
       throws IOException, AEPException
     {
       clientSequence = is.readLong();
@@ -1168,14 +2033,14 @@ public abstract class AEPServer
     }
 
     public void serialise
-    (DataOutputStream os)
+    (DataOutput os)
       throws IOException, AEPException
     {
       os.writeLong(clientSequence);
     }
 
     public void deserialise
-    (DataInputStream is)
+    (DataInput is)
       throws IOException, AEPException
     {
       clientSequence = is.readLong();
@@ -1266,7 +2131,7 @@ public abstract class AEPServer
     }
 
     public void serialise
-    (DataOutputStream os)
+    (DataOutput os)
       throws IOException, AEPException
     {
       os.writeLong(clientSequence);
@@ -1285,7 +2150,7 @@ public abstract class AEPServer
     }
 
     public void deserialise
-    (DataInputStream is)
+    (DataInput is)
       throws IOException, IntenseException, AEPException
     {
       int hasDimension;
@@ -1437,7 +2302,7 @@ public abstract class AEPServer
     }
 
     public void serialise
-    (DataOutputStream os)
+    (DataOutput os)
       throws IOException, AEPException
     {
       os.writeLong(clientSequence);
@@ -1445,7 +2310,7 @@ public abstract class AEPServer
     }
 
     public void deserialise
-    (DataInputStream is)
+    (DataInput is)
       throws IOException, AEPException
     {
       clientSequence = is.readLong();
@@ -1539,7 +2404,7 @@ public abstract class AEPServer
     }
 
     public void serialise
-    (DataOutputStream os)
+    (DataOutput os)
       throws IOException, AEPException
     {
       throw new AEPException(
@@ -1548,7 +2413,7 @@ public abstract class AEPServer
     }
 
     public void deserialise
-    (DataInputStream is)
+    (DataInput is)
       throws IOException, AEPException
     {
       throw new AEPException(
@@ -1678,19 +2543,20 @@ public abstract class AEPServer
     (String location)
       throws IOException, IntenseException, AEPException
     {
-      server.aether.lock();
-      serverSequence = server.aether.nextServerSequence();
+      // The sequence is claimed (waiting for room) before sendLock() is
+      // taken, since the AEther thread may need it to drain earlier tokens:
+      serverSequence = server.aether.claimServerSequence();
       server.sendLock();
+      // Notifications of this token cannot be sent before its ack, as they
+      // need sendLock():
       server.aether.append(this);
-      server.aether.signal();
-      server.aether.unlock();
       // server sendLock still held
       try {
         AEPClient.AckToken ackToken = new AEPClient.AckToken(
           serverSequence, clientSequence
         );
 
-        server.send(ackToken);
+        server.deliver(ackToken);
       } catch (Exception e) {
         if ((server.log != null)&&(server.logLevel >= Log.ERROR)) {
           server.log.priority(Log.ERROR).add(
@@ -1722,7 +2588,7 @@ public abstract class AEPServer
           }
         } else if (server != null) {
           if (dimension != null) {
-            targetNode = (AEther)server.aether.value(dimension);
+            targetNode = (intense.AEther)server.aether.value(dimension);
           } else {
             targetNode = server.aether;
           }
@@ -1742,6 +2608,21 @@ public abstract class AEPServer
       targetNode = aether;
     }
 
+    public void aetherHandle
+    (AEther aether)
+      throws IntenseException, AEPException
+    {
+      aetherHandle(aether, aether.origin);
+    }
+
+    /**
+     * Apply this token to its target node, building notifications in the
+     * given Origin (which belongs to the Partition applying the token).
+     */
+    public abstract void aetherHandle
+    (AEther aether, AEther.Origin origin)
+      throws IntenseException, AEPException;
+
     // Returns a pointer to the result of accumulation.  If null,
     // accumulation was not possible (and this token must be applied prior
     // to the argument token).  If the return value is this, then the
@@ -1799,7 +2680,7 @@ public abstract class AEPServer
     }
 
     public void serialise
-    (DataOutputStream os)
+    (DataOutput os)
       throws IOException, AEPException
     {
       os.writeLong(clientSequence);
@@ -1815,7 +2696,7 @@ public abstract class AEPServer
     }
 
     public void deserialise
-    (DataInputStream is)
+    (DataInput is)
       throws IOException, IntenseException, AEPException
     {
       int hasDimension;
@@ -1864,12 +2745,17 @@ public abstract class AEPServer
     }
 
     public void aetherHandle
-    (AEther aether)
+    (AEther aether, AEther.Origin origin)
       throws IntenseException, AEPException
     {
-      aether.origin.beginOperation(this);
-      getTargetNode().assign(context, aether.origin);
-      aether.origin.execute();
+      origin.beginOperation(this);
+      aether.applyLock();
+      try {
+        getTargetNode().assign(context, origin);
+      } finally {
+        aether.applyUnlock();
+      }
+      origin.execute();
     }
 
     public AsynchronousToken accumulate
@@ -2042,7 +2928,7 @@ public abstract class AEPServer
     }
 
     public void serialise
-    (DataOutputStream os)
+    (DataOutput os)
       throws IOException, AEPException
     {
       os.writeLong(clientSequence);
@@ -2058,7 +2944,7 @@ public abstract class AEPServer
     }
 
     public void deserialise
-    (DataInputStream is)
+    (DataInput is)
       throws IOException, IntenseException, AEPException
     {
       int hasDimension;
@@ -2107,12 +2993,17 @@ public abstract class AEPServer
     }
 
     public void aetherHandle
-    (AEther aether)
+    (AEther aether, AEther.Origin origin)
       throws IntenseException, AEPException
     {
-      aether.origin.beginOperation(this);
-      getTargetNode().apply(op, aether.origin);
-      aether.origin.execute();
+      origin.beginOperation(this);
+      aether.applyLock();
+      try {
+        getTargetNode().apply(op, origin);
+      } finally {
+        aether.applyUnlock();
+      }
+      origin.execute();
     }
 
     public AsynchronousToken accumulate
@@ -2280,7 +3171,7 @@ public abstract class AEPServer
     }
 
     public void serialise
-    (DataOutputStream os)
+    (DataOutput os)
       throws IOException, AEPException
     {
       os.writeLong(clientSequence);
@@ -2295,7 +3186,7 @@ public abstract class AEPServer
     }
 
     public void deserialise
-    (DataInputStream is)
+    (DataInput is)
       throws IOException, IntenseException, AEPException
     {
       int hasDimension;
@@ -2342,12 +3233,17 @@ public abstract class AEPServer
     }
 
     public void aetherHandle
-    (AEther aether)
+    (AEther aether, AEther.Origin origin)
       throws IntenseException, AEPException
     {
-      aether.origin.beginOperation(this);
-      getTargetNode().clear(aether.origin);
-      aether.origin.execute();
+      origin.beginOperation(this);
+      aether.applyLock();
+      try {
+        getTargetNode().clear(origin);
+      } finally {
+        aether.applyUnlock();
+      }
+      origin.execute();
     }
 
     public AsynchronousToken accumulate
@@ -2492,34 +3388,334 @@ public abstract class AEPServer
   }
 
 
+  /**
+   * A notification of a conflating participant which is still waiting in
+   * the outbound queue, held as a private copy of its value so that later
+   * notifications of the same participant can be composed with it, by the
+   * rules of AsynchronousToken.accumulate().  Paths are relative to the
+   * participant's context (null for the context itself).
+   */
+  protected static class PendingNotification {
+
+    protected int type;
+
+    protected CompoundDimension path;
+
+    protected Context context;
+
+    protected ContextOp op;
+
+    /**
+     * The queued token which carries this notification, and its target.
+     */
+    protected AEPClient.NotifyToken token;
+
+    protected AEPClient.NotifyToken.Target target;
+
+    /**
+     * @return The pending form of a target of an unsent notification token,
+     * or null if the target cannot be conflated.
+     */
+    protected static PendingNotification factory
+    (AEPClient.NotifyToken token, AEPClient.NotifyToken.Target target)
+      throws IntenseException
+    {
+      PendingNotification pending = new PendingNotification();
+
+      pending.type = target.getType();
+      pending.token = token;
+      pending.target = target;
+      switch (pending.type) {
+      case AEPClient.NotifyToken.Target.ASSIGN:
+        {
+          AEPClient.NotifyToken.AssignTarget assignTarget =
+            (AEPClient.NotifyToken.AssignTarget)target;
+          Context node = token.nodes.get(assignTarget.getNodeIndex());
+          CompoundDimension dimension = assignTarget.getDimension();
+
+          if (dimension == null) {
+            pending.context = new Context(node);
+          } else if (assignTarget.isDimensionExternal()) {
+            pending.path = new CompoundDimension(dimension);
+            pending.context = new Context(node);
+          } else {
+            pending.context = new Context(node.value(dimension));
+          }
+          return pending;
+        }
+      case AEPClient.NotifyToken.Target.APPLY:
+        {
+          AEPClient.NotifyToken.ApplyTarget applyTarget =
+            (AEPClient.NotifyToken.ApplyTarget)target;
+          ContextOp node =
+            (ContextOp)token.nodes.get(applyTarget.getNodeIndex());
+          CompoundDimension dimension = applyTarget.getDimension();
+
+          if (dimension == null) {
+            pending.op = new ContextOp(node);
+          } else if (applyTarget.isDimensionExternal()) {
+            pending.path = new CompoundDimension(dimension);
+            pending.op = new ContextOp(node);
+          } else {
+            pending.op = new ContextOp((ContextOp)node.value(dimension));
+          }
+          return pending;
+        }
+      case AEPClient.NotifyToken.Target.CLEAR:
+        {
+          CompoundDimension dimension =
+            ((AEPClient.NotifyToken.ClearTarget)target).getDimension();
+
+          if (dimension != null) {
+            pending.path = new CompoundDimension(dimension);
+          }
+          return pending;
+        }
+      default:
+        return null;
+      }
+    }
+
+    /**
+     * As Context.getAncestry(), for paths from the participant's context.
+     *
+     * @return 0 if the paths are the same, -1 if to is an ancestor of from,
+     * 1 if from is an ancestor of to, and 2 if neither is an ancestor of the
+     * other; relative is set to the path between ancestor and descendant.
+     */
+    protected static int getAncestry
+    (CompoundDimension from, CompoundDimension to,
+     CompoundDimension relative)
+    {
+      Iterator fromItr = (from != null) ? from.iterator() : null;
+      Iterator toItr = (to != null) ? to.iterator() : null;
+
+      relative.clear();
+      while (true) {
+        boolean fromNext = (fromItr != null)&&(fromItr.hasNext());
+        boolean toNext = (toItr != null)&&(toItr.hasNext());
+
+        if ((!fromNext)&&(!toNext)) {
+          return 0;
+        } else if (!fromNext) {
+          while (toItr.hasNext()) {
+            relative.append((Dimension)toItr.next());
+          }
+          return 1;
+        } else if (!toNext) {
+          while (fromItr.hasNext()) {
+            relative.append((Dimension)fromItr.next());
+          }
+          return -1;
+        } else if (!fromItr.next().equals(toItr.next())) {
+          return 2;
+        }
+      }
+    }
+
+    private void become
+    (PendingNotification later)
+    {
+      type = later.type;
+      path = later.path;
+      context = later.context;
+      op = later.op;
+    }
+
+    /**
+     * Compose a later notification of the same participant into this one.
+     *
+     * @return False if the notifications are to unrelated parts of the
+     * participant's context, and cannot be composed.
+     */
+    protected boolean accumulate
+    (PendingNotification later)
+      throws IntenseException
+    {
+      CompoundDimension relative = new CompoundDimension();
+      int ancestry = getAncestry(path, later.path, relative);
+
+      if (ancestry == 2) {
+        return false;
+      }
+      switch (later.type) {
+      case AEPClient.NotifyToken.Target.ASSIGN:
+        if (ancestry <= 0) {
+          become(later);
+        } else if (type == AEPClient.NotifyToken.Target.ASSIGN) {
+          context.value(relative).assign(later.context);
+        } else if (type == AEPClient.NotifyToken.Target.APPLY) {
+          ((ContextOp)op.value(relative)).apply(later.context);
+        } else {
+          type = AEPClient.NotifyToken.Target.ASSIGN;
+          context = new Context();
+          context.value(relative).assign(later.context);
+        }
+        return true;
+      case AEPClient.NotifyToken.Target.APPLY:
+        if (ancestry < 0) {
+          ContextOp composed = new ContextOp();
+          ContextOp earlier = (ContextOp)composed.value(relative);
+
+          if (type == AEPClient.NotifyToken.Target.ASSIGN) {
+            earlier.apply(context);
+          } else if (type == AEPClient.NotifyToken.Target.APPLY) {
+            earlier.apply(op);
+          } else {
+            earlier.setClearBaseFlag();
+            earlier.setClearDimsFlag();
+          }
+          composed.apply(later.op);
+          type = AEPClient.NotifyToken.Target.APPLY;
+          path = later.path;
+          context = null;
+          op = composed;
+        } else if (type == AEPClient.NotifyToken.Target.ASSIGN) {
+          context.value(relative).apply(later.op);
+        } else {
+          if (type == AEPClient.NotifyToken.Target.CLEAR) {
+            type = AEPClient.NotifyToken.Target.APPLY;
+            op = new ContextOp();
+            op.setClearBaseFlag();
+            op.setClearDimsFlag();
+          }
+          ((ContextOp)op.value(relative)).apply(later.op);
+        }
+        return true;
+      case AEPClient.NotifyToken.Target.CLEAR:
+        if (ancestry <= 0) {
+          become(later);
+        } else if (type == AEPClient.NotifyToken.Target.ASSIGN) {
+          context.value(relative).clear();
+        } else if (type == AEPClient.NotifyToken.Target.APPLY) {
+          ContextOp cleared = (ContextOp)op.value(relative);
+
+          cleared.clear();
+          cleared.setClearBaseFlag();
+          cleared.setClearDimsFlag();
+        }
+        return true;
+      default:
+        return false;
+      }
+    }
+
+    /**
+     * Add this notification, as a new target and node, to a token.
+     */
+    protected AEPClient.NotifyToken.Target addTo
+    (AEPClient.NotifyToken token, long participantId)
+    {
+      int nodeIndex;
+
+      switch (type) {
+      case AEPClient.NotifyToken.Target.ASSIGN:
+        token.addNode(context);
+        nodeIndex = token.nodes.size() - 1;
+        if (path == null) {
+          return new AEPClient.NotifyToken.AssignTarget(
+            participantId, nodeIndex
+          );
+        } else {
+          return new AEPClient.NotifyToken.AssignTarget(
+            participantId, nodeIndex, path, true
+          );
+        }
+      case AEPClient.NotifyToken.Target.APPLY:
+        token.addNode(op);
+        nodeIndex = token.nodes.size() - 1;
+        if (path == null) {
+          return new AEPClient.NotifyToken.ApplyTarget(
+            participantId, nodeIndex
+          );
+        } else {
+          return new AEPClient.NotifyToken.ApplyTarget(
+            participantId, nodeIndex, path, true
+          );
+        }
+      default:
+        if (path == null) {
+          return new AEPClient.NotifyToken.ClearTarget(participantId);
+        } else {
+          return new AEPClient.NotifyToken.ClearTarget(participantId, path);
+        }
+      }
+    }
+
+  }
+
+
+  /**
+   * Outbound queue overflow policy: the sending thread (usually an AEther
+   * thread) waits until the writer thread has made room.
+   */
+  public static final int OVERFLOW_BLOCK = 0;
+
+  /**
+   * Outbound queue overflow policy: the queued tokens are discarded and the
+   * client is disconnected.
+   */
+  public static final int OVERFLOW_DISCONNECT = 1;
+
+  /**
+   * Outbound queue overflow policy: a notification is merged into the last
+   * queued notification, so that the number of queued tokens is bounded
+   * (their size is not).
+   */
+  public static final int OVERFLOW_CONFLATE = 2;
+
+  public static String overflowPolicyStrings[] = {
+    "BLOCK", "DISCONNECT", "CONFLATE"
+  };
+
   protected AEther aether;
 
   protected Thread earThread;
 
-  protected Condition aetherCondition;
-
   protected boolean running;
 
-  protected AEPCommon.Token currentNotifyToken;
+  /**
+   * Tokens waiting to be sent by the writer thread, or null if tokens are
+   * sent by the threads which generate them.
+   */
+  protected LinkedList<AEPClient.Token> outbound;
 
-  protected AEPCommon.Token getCurrentNotifyToken
-  ()
-    throws AEPException
-  {
-    if (currentNotifyToken == null) {
-      throw new AEPException(
-        "INTERNAL ERROR: NULL token in AEPServer.getCurrentNotificationToken",
-        Log.FATAL
-      );
-    }
-    return currentNotifyToken;
-  }
+  protected int maxOutboundSize;
 
-  protected void setCurrentNotifyToken
-  (AEPCommon.Token newToken)
-  {
-    currentNotifyToken = newToken;
-  }
+  protected int overflowPolicy;
+
+  protected int outboundHighWater;
+
+  protected long outboundOverflows;
+
+  /**
+   * Set when the outbound queue overflowed with OVERFLOW_DISCONNECT, or the
+   * writer thread failed; subsequent tokens are dropped.
+   */
+  protected boolean outboundFailed;
+
+  protected boolean writerRunning;
+
+  protected Thread writerThread;
+
+  protected ReentrantLock outboundMutex;
+
+  /**
+   * Signalled when a token is queued, or the writer thread makes room.
+   */
+  protected Condition outboundCondition;
+
+  /**
+   * Ids of the participants whose queued notifications are conflated.
+   */
+  protected HashSet<Long> conflatingParticipants;
+
+  /**
+   * The queued notification of each conflating participant, by id.
+   */
+  protected HashMap<Long, PendingNotification> pendingNotifications;
+
+  protected long conflations;
 
   protected abstract void send
   (AEPClient.Token token)
@@ -2534,12 +3730,24 @@ public abstract class AEPServer
   {
     super(log, logLevel, errorTolerant);
     this.aether = aether;
-    this.aetherCondition = aether.newCondition();
+    outbound = null;
+    maxOutboundSize = 0;
+    overflowPolicy = OVERFLOW_BLOCK;
+    outboundHighWater = 0;
+    outboundOverflows = 0;
+    outboundFailed = false;
+    writerRunning = false;
+    writerThread = null;
+    outboundMutex = new ReentrantLock();
+    outboundCondition = outboundMutex.newCondition();
+    conflatingParticipants = new HashSet<Long>();
+    pendingNotifications = new HashMap<Long, PendingNotification>();
+    conflations = 0;
   }
 
 
   protected class EarThread
-    extends Thread {
+    implements Runnable {
 
     public void run
     ()
@@ -2697,12 +3905,460 @@ public abstract class AEPServer
   {
     sendLock();
     try {
+      deliver(token);
+    } finally {
+      sendUnlock();
+    }
+  }
+
+  /**
+   * Send a token, or queue it for the writer thread if this server has an
+   * outbound queue.  sendLock() must be held, so that tokens are queued in
+   * the order in which they would otherwise have been sent.
+   */
+  protected void deliver
+  (AEPClient.Token token)
+    throws IOException, AEPException
+  {
+    boolean disconnect = false;
+
+    if (outbound == null) {
       send(token);
+      return;
+    }
+    outboundMutex.lock();
+    try {
+      if (outboundFailed) {
+        return;
+      }
+      if (token.getType() == AEPClient.Token.NOTIFY) {
+        if (conflatingParticipants.size() > 0) {
+          conflate((AEPClient.NotifyToken)token);
+        }
+        ((AEPClient.NotifyToken)token).snapshot(getWireMode());
+      }
+      if (outbound.size() >= maxOutboundSize) {
+        outboundOverflows++;
+        switch (overflowPolicy) {
+        case OVERFLOW_BLOCK:
+          while ((outbound.size() >= maxOutboundSize)&&(writerRunning)&&
+                 (!outboundFailed)) {
+            outboundCondition.awaitUninterruptibly();
+          }
+          if (outboundFailed) {
+            return;
+          }
+          break;
+        case OVERFLOW_DISCONNECT:
+          failOutbound();
+          disconnect = true;
+          break;
+        case OVERFLOW_CONFLATE:
+          if ((token.getType() == AEPClient.Token.NOTIFY)&&
+              (outbound.getLast().getType() == AEPClient.Token.NOTIFY)) {
+            ((AEPClient.NotifyToken)outbound.getLast()).append(
+              (AEPClient.NotifyToken)token
+            );
+            retargetPending(
+              (AEPClient.NotifyToken)token,
+              (AEPClient.NotifyToken)outbound.getLast()
+            );
+            return;
+          }
+          // Replies are never merged, and are bounded by the client's
+          // outstanding requests:
+          break;
+        }
+      }
+      if (!disconnect) {
+        outbound.addLast(token);
+        if (outbound.size() > outboundHighWater) {
+          outboundHighWater = outbound.size();
+        }
+        outboundCondition.signalAll();
+      }
+    } finally {
+      outboundMutex.unlock();
+    }
+    if (disconnect) {
+      if ((log != null)&&(logLevel >= Log.WARN)) {
+        log.priority(Log.WARN).add(
+          getName() + ": outbound queue overflow (" + maxOutboundSize +
+          " tokens); disconnecting client"
+        ).end();
+      }
+      closeConnection();
+    }
+  }
+
+  /**
+   * Compose the notifications of conflating participants in a token with
+   * their notifications which are still queued, so that a lagging client
+   * receives only the net effect of them.  The composed notification
+   * replaces the later one, and the earlier one is removed from its token.
+   * outboundMutex must be held.
+   */
+  protected void conflate
+  (AEPClient.NotifyToken token)
+    throws IOException, AEPException
+  {
+    try {
+      for (int i = 0; i < token.targets.size(); i++) {
+        AEPClient.NotifyToken.Target target = token.targets.get(i);
+        Long id = Long.valueOf(target.getParticipantId());
+        PendingNotification pending;
+        PendingNotification later;
+
+        if (!conflatingParticipants.contains(id)) {
+          continue;
+        }
+        pending = pendingNotifications.get(id);
+        later = PendingNotification.factory(token, target);
+        if (later == null) {
+          pendingNotifications.remove(id);
+        } else if ((pending != null)&&(pending.accumulate(later))) {
+          AEPClient.NotifyToken.Target composed =
+            pending.addTo(token, id.longValue());
+
+          token.targets.set(i, composed);
+          pending.token.removeTarget(pending.target);
+          if (pending.token == token) {
+            i--;
+          }
+          pending.token = token;
+          pending.target = composed;
+          conflations++;
+        } else {
+          pendingNotifications.put(id, later);
+        }
+      }
+    } catch (IntenseException e) {
+      throw new AEPException("Could not conflate notifications", e);
+    }
+  }
+
+  /**
+   * Pending notifications carried by one token are now carried by another.
+   * outboundMutex must be held.
+   */
+  protected void retargetPending
+  (AEPClient.NotifyToken from, AEPClient.NotifyToken to)
+  {
+    Iterator<PendingNotification> itr =
+      pendingNotifications.values().iterator();
+
+    while (itr.hasNext()) {
+      PendingNotification pending = itr.next();
+
+      if (pending.token == from) {
+        pending.token = to;
+      }
+    }
+  }
+
+  /**
+   * Forget the pending notifications carried by a token which is no longer
+   * queued.  outboundMutex must be held.
+   */
+  protected void removePending
+  (AEPClient.Token token)
+  {
+    Iterator<PendingNotification> itr =
+      pendingNotifications.values().iterator();
+
+    while (itr.hasNext()) {
+      if (itr.next().token == token) {
+        itr.remove();
+      }
+    }
+  }
+
+  /**
+   * Conflate (or stop conflating) the notifications of a participant of
+   * this server: while the client is lagging, the participant's queued
+   * assignments, applications and clears of related parts of its context
+   * are composed, and the client is sent only their net effect.  This has
+   * no effect unless the server has an outbound queue.
+   */
+  public void setConflating
+  (long participantId, boolean conflating)
+  {
+    Long id = Long.valueOf(participantId);
+
+    outboundMutex.lock();
+    try {
+      if (conflating) {
+        conflatingParticipants.add(id);
+      } else {
+        conflatingParticipants.remove(id);
+        pendingNotifications.remove(id);
+      }
+    } finally {
+      outboundMutex.unlock();
+    }
+  }
+
+  public boolean isConflating
+  (long participantId)
+  {
+    outboundMutex.lock();
+    try {
+      return conflatingParticipants.contains(Long.valueOf(participantId));
+    } finally {
+      outboundMutex.unlock();
+    }
+  }
+
+  /**
+   * @return The number of notifications which have been composed with a
+   * queued notification.
+   */
+  public long getConflationCount
+  ()
+  {
+    return conflations;
+  }
+
+  /**
+   * Discard queued tokens and drop any further ones.  outboundMutex must be
+   * held.
+   */
+  protected void failOutbound
+  ()
+  {
+    outboundFailed = true;
+    outbound.clear();
+    pendingNotifications.clear();
+    outboundCondition.signalAll();
+  }
+
+  /**
+   * @return The encoding of tokens sent by this server (AEPCommon.XDR or
+   * AEPCommon.BINARY), which determines how notified nodes are
+   * serialised in advance of being sent.
+   */
+  protected int getWireMode
+  ()
+  {
+    return XDR;
+  }
+
+  /**
+   * @return False if this server serialises notified nodes itself, rather
+   * than sharing their encodings with the other servers notified of the
+   * same operation (as when nodes are encoded against a per-connection
+   * DimensionDictionary).
+   */
+  protected boolean sharesNodeEncodings
+  ()
+  {
+    return true;
+  }
+
+  /**
+   * @return True if this server can send its tokens from an outbound queue.
+   * Queued notifications are serialised after the AEther has moved on, from
+   * snapshots of their nodes, so only servers which send serialised tokens
+   * may have outbound queues.
+   */
+  protected boolean supportsOutboundQueue
+  ()
+  {
+    return false;
+  }
+
+  /**
+   * Send tokens to the client from a bounded outbound queue, drained by a
+   * writer thread of this server, so that a slow client cannot stall the
+   * AEther threads which notify it.
+   *
+   * @param maxOutboundSize The maximum number of queued tokens (0 sends
+   * each token from the thread which generates it, the default).
+   * @param overflowPolicy What to do with a token when the queue is full:
+   * OVERFLOW_BLOCK, OVERFLOW_DISCONNECT or OVERFLOW_CONFLATE.
+   */
+  public void setOutboundQueue
+  (int maxOutboundSize, int overflowPolicy)
+    throws AEPException, InterruptedException
+  {
+    if ((overflowPolicy < OVERFLOW_BLOCK)||
+        (overflowPolicy > OVERFLOW_CONFLATE)) {
+      throw new AEPException(
+        "Bad AEPServer outbound queue overflow policy " + overflowPolicy,
+        Log.ERROR
+      );
+    }
+    if ((maxOutboundSize > 0)&&(!supportsOutboundQueue())) {
+      throw new AEPException(
+        getName() + " does not support outbound queues", Log.ERROR
+      );
+    }
+    sendLock();
+    try {
+      outboundMutex.lock();
+      this.maxOutboundSize = (maxOutboundSize > 0) ? maxOutboundSize : 0;
+      this.overflowPolicy = overflowPolicy;
+      // Room may have been made for blocked senders:
+      outboundCondition.signalAll();
+      outboundMutex.unlock();
+      if ((maxOutboundSize > 0)&&(outbound == null)) {
+        outbound = new LinkedList<AEPClient.Token>();
+        outboundFailed = false;
+        writerRunning = true;
+        writerThread = threadFactory.newThread(new WriterThread());
+        try {
+          writerThread.start();
+        } catch (IllegalThreadStateException e) {
+          outbound = null;
+          writerRunning = false;
+          throw new AEPException(
+            "Could not create AEPServer writer thread", e
+          );
+        }
+      } else if ((maxOutboundSize <= 0)&&(outbound != null)) {
+        stopWriter();
+        outbound = null;
+        outboundMutex.lock();
+        pendingNotifications.clear();
+        outboundMutex.unlock();
+      }
     } finally {
       sendUnlock();
     }
   }
 
+  public int getMaxOutboundSize
+  ()
+  {
+    return maxOutboundSize;
+  }
+
+  public int getOverflowPolicy
+  ()
+  {
+    return overflowPolicy;
+  }
+
+  /**
+   * @return The number of tokens waiting in the outbound queue.
+   */
+  public int getOutboundQueueDepth
+  ()
+  {
+    outboundMutex.lock();
+    try {
+      return (outbound != null) ? outbound.size() : 0;
+    } finally {
+      outboundMutex.unlock();
+    }
+  }
+
+  /**
+   * @return The greatest number of tokens which have waited in the outbound
+   * queue at once.
+   */
+  public int getOutboundHighWater
+  ()
+  {
+    return outboundHighWater;
+  }
+
+  /**
+   * @return The number of tokens which found the outbound queue full.
+   */
+  public long getOutboundOverflowCount
+  ()
+  {
+    return outboundOverflows;
+  }
+
+
+  protected class WriterThread
+    implements Runnable {
+
+    public void run
+    ()
+    {
+      try {
+        writerMain();
+      } catch (Throwable ignored) {
+      }
+    }
+
+  }
+
+
+  /**
+   * Send queued tokens, flushing whenever the queue has been drained, until
+   * stopWriter() is called and the queue is empty.
+   */
+  protected void writerMain
+  ()
+  {
+    AEPClient.Token token;
+    boolean drained;
+
+    while (true) {
+      outboundMutex.lock();
+      try {
+        while ((outbound.size() == 0)&&(writerRunning)) {
+          outboundCondition.awaitUninterruptibly();
+        }
+        if (outbound.size() == 0) {
+          break;
+        }
+        token = outbound.removeFirst();
+        if (pendingNotifications.size() > 0) {
+          removePending(token);
+        }
+        drained = (outbound.size() == 0);
+        outboundCondition.signalAll();
+      } finally {
+        outboundMutex.unlock();
+      }
+      try {
+        send(token);
+        if (drained) {
+          flush();
+        }
+      } catch (Exception e) {
+        if ((log != null)&&(logLevel >= Log.ERROR)) {
+          log.priority(Log.ERROR).add(
+            "AEPServer writer thread caught exception: " + e.getMessage()
+          ).end();
+        }
+        outboundMutex.lock();
+        failOutbound();
+        outboundMutex.unlock();
+        try {
+          closeConnection();
+        } catch (IOException ignored) {
+        }
+        break;
+      }
+    }
+  }
+
+  /**
+   * Stop the writer thread, once it has sent the queued tokens.
+   */
+  protected void stopWriter
+  ()
+    throws InterruptedException
+  {
+    Thread thread;
+
+    outboundMutex.lock();
+    writerRunning = false;
+    thread = writerThread;
+    writerThread = null;
+    outboundCondition.signalAll();
+    outboundMutex.unlock();
+    if (thread != null) {
+      thread.join();
+    }
+  }
+
   protected void lockedAndLoggedSend
   (AEPClient.Token token, String location, long serverSequence,
    long clientSequence)
@@ -2785,10 +4441,36 @@ public abstract class AEPServer
       }
       if (running) {
         running = processToken(token);
+        // Replies to pipelined tokens may be batched, but not beyond the
+        // last of them, or the reply to a disconnect:
+        if ((!running)||(!hasAvailableData())) {
+          flush();
+        }
       }
     }
   }
 
+  /**
+   * Write out any batched outgoing tokens.  Servers which do not batch
+   * their sends need not override this.
+   */
+  public void flush
+  ()
+    throws IOException
+  {
+  }
+
+  /**
+   * @return True if another incoming token can be read without blocking,
+   * as far as is known.
+   */
+  protected boolean hasAvailableData
+  ()
+    throws IOException
+  {
+    return false;
+  }
+
   /**
    * Start this server.
    */
@@ -2801,7 +4483,7 @@ public abstract class AEPServer
       unlock();
       return;
     }
-    earThread = new EarThread();
+    earThread = threadFactory.newThread(new EarThread());
     try {
       earThread.start();
     } catch (IllegalThreadStateException e) {
@@ -2827,6 +4509,9 @@ public abstract class AEPServer
   {
     boolean runningFlag;
 
+    // Queued replies and notifications are sent before the connection is
+    // closed:
+    stopWriter();
     lock();
     runningFlag = running;
     if (running) {
@@ -0,0 +1,1119 @@
+// ****************************************************************************
+//
+// AEPSocketServer.java : AEP 2.0 XDR and binary network server,
+// multiplexing many client connections over a small pool of non-blocking
+// I/O threads.
+//
+// Copyright 2026 the Intense project contributors.
+//
+// This file is part of the Intense project.
+//
+// Intense is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// Intense is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with Intense; if not, write to the Free Software Foundation, Inc.,
+// 59 Temple Place, Suite 330, Boston, MA 02111-1307, USA.
+//
+// ****************************************************************************
+
+
+package intense.aep;
+
+
+import java.lang.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.locks.*;
+import java.io.*;
+import java.net.*;
+import java.nio.*;
+import java.nio.channels.*;
+import intense.*;
+import intense.log.*;
+
+
+/**
+ * A listening AEP server for XDR and BINARY clients (such as AEPXDRClient
+ * or AEPBinaryClient over a Socket).  The mode of each connection is
+ * chosen by the first byte the client sends: the AEPBinaryCodec preambles
+ * select BINARY or framed XDR, and anything else plain XDR.  Rather than
+ * a thread per connection, connections are multiplexed over a small pool
+ * of Selector-driven I/O threads, which decode incoming AEPServer.Tokens
+ * incrementally and hand them to a pool of handler threads.  Tokens from
+ * any one connection are handled in order, by one handler thread at a
+ * time, and all connections share a single AEPServer.AEther.
+ *
+ * <p>A plain XDR token carries no length, so it is decoded again from its
+ * start each time more of it arrives, and a token of n bytes may cost
+ * O(n^2) time to receive.  Plain XDR is therefore meant for small tokens,
+ * and tokens beyond getMaxPlainXDRTokenSize() bytes drop their connection.
+ * Clients sending large tokens should speak framed XDR (see
+ * AEPXDRClient.setCompressionThreshold()), or BINARY, whose frames are
+ * each decoded once, when the whole frame has arrived.
+ */
+public class AEPSocketServer {
+
+  public static final int defaultIOThreadCount = 2;
+
+  public static final int defaultHandlerThreadCount = 4;
+
+  /**
+   * The number of decoded tokens that may wait for a handler, per
+   * connection, before reading from that connection is suspended.
+   */
+  public static final int maxPendingTokens = 256;
+
+  private static final int initialReceiveBufferSize = 4096;
+
+  public static final int defaultMaxPlainXDRTokenSize =
+    AEPBinaryCodec.maxFrameSize;
+
+  protected AEPServer.AEther aether;
+
+  protected int port;
+
+  protected int ioThreadCount;
+
+  protected int handlerThreadCount;
+
+  protected Log log;
+
+  protected int logLevel;
+
+  protected boolean errorTolerant;
+
+  protected ServerSocketChannel serverChannel;
+
+  protected IOThread[] ioThreads;
+
+  protected int nextIOThread;
+
+  protected ExecutorService handlers;
+
+  /**
+   * Creates the handler threads, which process decoded tokens (and block
+   * in the AEther on synchronous ones).
+   */
+  protected ThreadFactory threadFactory;
+
+  protected Set<Connection> connections;
+
+  protected ReentrantLock mutex;
+
+  protected boolean running;
+
+  /**
+   * The size of the dimension dictionary kept for each BINARY connection.
+   */
+  protected int maxDictionarySize;
+
+  /**
+   * The size from which tokens sent to BINARY and framed XDR connections
+   * are compressed (0 for never).
+   */
+  protected int compressionThreshold;
+
+  /**
+   * The largest plain XDR token accepted from a client.
+   */
+  protected int maxPlainXDRTokenSize;
+
+
+  /**
+   * An InputStream over the remaining bytes of a ByteBuffer, so that tokens
+   * can be deserialised from partially-received data.  Running out of bytes
+   * causes an EOFException in the DataInputStream reading the token.
+   */
+  private static class ByteBufferInputStream
+    extends InputStream {
+
+    private ByteBuffer buffer;
+
+    ByteBufferInputStream
+    (ByteBuffer buffer)
+    {
+      this.buffer = buffer;
+    }
+
+    public int read
+    ()
+    {
+      return buffer.hasRemaining() ? (buffer.get()&0xff) : -1;
+    }
+
+    public int read
+    (byte[] bytes, int offset, int length)
+    {
+      if (length == 0) {
+        return 0;
+      } else if (!buffer.hasRemaining()) {
+        return -1;
+      }
+      length = Math.min(length, buffer.remaining());
+      buffer.get(bytes, offset, length);
+      return length;
+    }
+
+    public int available
+    ()
+    {
+      return buffer.remaining();
+    }
+
+  }
+
+
+  /**
+   * The AEPServer for a single client connection.  A Connection has no ear
+   * thread of its own; its tokens are decoded by an IOThread and handled by
+   * the handler pool.
+   */
+  protected class Connection
+    extends AEPServer implements Runnable {
+
+    protected SocketChannel channel;
+
+    protected SelectionKey key;
+
+    protected IOThread ioThread;
+
+    protected ByteBuffer receiveBuffer;
+
+    protected LinkedList<Token> pending;
+
+    protected boolean scheduled;
+
+    protected boolean reading;
+
+    protected LinkedList<ByteBuffer> outbound;
+
+    protected ReentrantLock outboundMutex;
+
+    protected boolean closed;
+
+    /**
+     * Set once a ClientDisconnectToken has been queued, after which the
+     * client's participants are sure to leave the AEther.
+     */
+    protected boolean departing;
+
+    /**
+     * XDR or BINARY, or -1 until the client's first byte arrives.
+     */
+    protected int mode;
+
+    /**
+     * Frames the tokens of a BINARY or framed XDR client, or null for a
+     * plain XDR client.  Uncompressed frames are decoded in place in the
+     * receive buffer.
+     */
+    protected AEPBinaryCodec.Framer framer;
+
+    protected int maxDictionarySize;
+
+    protected int compressionThreshold;
+
+    protected int maxPlainXDRTokenSize;
+
+    protected Connection
+    (SocketChannel channel, IOThread ioThread)
+    {
+      super(
+        AEPSocketServer.this.aether, AEPSocketServer.this.log,
+        AEPSocketServer.this.logLevel, AEPSocketServer.this.errorTolerant
+      );
+      this.channel = channel;
+      this.ioThread = ioThread;
+      key = null;
+      receiveBuffer = ByteBuffer.allocate(initialReceiveBufferSize);
+      pending = new LinkedList<Token>();
+      scheduled = false;
+      reading = true;
+      outbound = new LinkedList<ByteBuffer>();
+      outboundMutex = new ReentrantLock();
+      closed = false;
+      departing = false;
+      mode = -1;
+      framer = null;
+      maxDictionarySize = AEPSocketServer.this.maxDictionarySize;
+      compressionThreshold = AEPSocketServer.this.compressionThreshold;
+      maxPlainXDRTokenSize = AEPSocketServer.this.maxPlainXDRTokenSize;
+      running = true;
+    }
+
+    protected void send
+    (AEPClient.Token token)
+      throws IOException, AEPException
+    {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+      if (framer != null) {
+        AEPClient.Token.factorySerialise(token, framer.beginFrame());
+        framer.endFrame(bytes);
+      } else {
+        DataOutputStream out = new DataOutputStream(bytes);
+
+        AEPClient.Token.factorySerialise(token, out);
+        out.flush();
+      }
+      queueOutbound(ByteBuffer.wrap(bytes.toByteArray()));
+      if ((log != null)&&(logLevel >= Log.DEBUG2)) {
+        log.priority(Log.DEBUG2).add("AEPSocketServer.send: sent token: ");
+        token.print(log, (logLevel > Log.DEBUG2) ? logLevel : Log.DEBUG);
+        log.end();
+      }
+    }
+
+    /**
+     * Queue bytes for the client.  The bytes are written immediately if
+     * nothing else is queued and the socket will take them; otherwise the
+     * IOThread writes them when the socket becomes writable.
+     */
+    protected void queueOutbound
+    (ByteBuffer buffer)
+      throws IOException
+    {
+      outboundMutex.lock();
+      try {
+        if (closed) {
+          throw new IOException("AEPSocketServer connection is closed");
+        }
+        outbound.addLast(buffer);
+        if ((outbound.size() == 1)&&(!flushOutbound())) {
+          setInterest(SelectionKey.OP_WRITE, 0);
+        }
+      } finally {
+        outboundMutex.unlock();
+      }
+    }
+
+    /**
+     * Write as much queued outbound data as the socket will take, with the
+     * outbound mutex held.
+     *
+     * @return true if the outbound queue is now empty.
+     */
+    protected boolean flushOutbound
+    ()
+      throws IOException
+    {
+      while (outbound.size() > 0) {
+        ByteBuffer buffer = outbound.getFirst();
+
+        channel.write(buffer);
+        if (buffer.hasRemaining()) {
+          return false;
+        }
+        outbound.removeFirst();
+      }
+      return true;
+    }
+
+    /**
+     * Change the interest set of this connection's SelectionKey, from any
+     * thread.
+     */
+    protected void setInterest
+    (int add, int remove)
+    {
+      outboundMutex.lock();
+      try {
+        if ((key != null)&&(key.isValid())) {
+          key.interestOps((key.interestOps()|add)&~remove);
+          key.selector().wakeup();
+        }
+      } finally {
+        outboundMutex.unlock();
+      }
+    }
+
+    /**
+     * Called by the IOThread when the socket becomes writable.
+     */
+    protected void writable
+    ()
+      throws IOException
+    {
+      boolean finished = false;
+
+      outboundMutex.lock();
+      try {
+        if (flushOutbound()) {
+          setInterest(0, SelectionKey.OP_WRITE);
+          finished = closed;
+        }
+      } finally {
+        outboundMutex.unlock();
+      }
+      if (finished) {
+        close();
+      }
+    }
+
+    /**
+     * Called by the IOThread when the socket becomes readable.  Reads what
+     * is available and decodes as many complete tokens as it holds.
+     */
+    protected void readable
+    ()
+      throws IOException, IntenseException, AEPException
+    {
+      int count;
+
+      if (!receiveBuffer.hasRemaining()) {
+        int capacity = 2*receiveBuffer.capacity();
+        ByteBuffer larger;
+
+        // A frame's length is checked as soon as its header arrives, but a
+        // plain XDR token's is not known until all of it has, so a full
+        // buffer holds part of a single token:
+        if (framer == null) {
+          if (receiveBuffer.capacity() >= maxPlainXDRTokenSize) {
+            throw new AEPException(
+              "Plain XDR token exceeds " + maxPlainXDRTokenSize +
+              " bytes (large tokens need framed XDR)", Log.ERROR
+            );
+          }
+          capacity = Math.min(capacity, maxPlainXDRTokenSize);
+        }
+        larger = ByteBuffer.allocate(capacity);
+        receiveBuffer.flip();
+        larger.put(receiveBuffer);
+        receiveBuffer = larger;
+      }
+      count = channel.read(receiveBuffer);
+      if (count < 0) {
+        disconnected();
+        return;
+      }
+      receiveBuffer.flip();
+      if ((mode < 0)&&(receiveBuffer.hasRemaining())) {
+        int first = receiveBuffer.get(receiveBuffer.position())&0xff;
+
+        if ((first == AEPBinaryCodec.binaryMagic)||
+            (first == AEPBinaryCodec.xdrMagic)) {
+          int framedMode = (first == AEPBinaryCodec.binaryMagic) ?
+            BINARY : XDR;
+
+          if (framer == null) {
+            framer = new AEPBinaryCodec.Framer(framedMode);
+            if (framedMode == BINARY) {
+              framer.setMaxDictionarySize(maxDictionarySize);
+            }
+            framer.setCompressionThreshold(compressionThreshold);
+          }
+          if (!framer.readPreamble(receiveBuffer)) {
+            receiveBuffer.compact();
+            return;
+          }
+          mode = framedMode;
+        } else {
+          mode = XDR;
+        }
+      }
+      while (receiveBuffer.hasRemaining()) {
+        int start = receiveBuffer.position();
+        Token token;
+
+        if (framer != null) {
+          // A frame is only decoded once all of it has arrived:
+          DataInput in = framer.readFrame(receiveBuffer);
+
+          if (in == null) {
+            break;
+          }
+          token = AEPServer.Token.factoryDeserialise(in);
+        } else {
+          // Decoded from the token's start, whether or not it is all here
+          // (see above):
+          try {
+            token = AEPServer.Token.factoryDeserialise(
+              new DataInputStream(new ByteBufferInputStream(receiveBuffer))
+            );
+          } catch (EOFException e) {
+            // Incomplete token; wait for the rest of it:
+            receiveBuffer.position(start);
+            break;
+          }
+        }
+        if (token == null) {
+          throw new AEPException(
+            "INTERNAL ERROR: Received null AEPServer.Token"
+          );
+        }
+        enqueue(token);
+      }
+      receiveBuffer.compact();
+    }
+
+    /**
+     * The client has gone away without (or after) disconnecting, so stop
+     * reading, and make sure its participants leave the AEther once any
+     * pending tokens have been handled.
+     */
+    protected void disconnected
+    ()
+    {
+      receptionMutex.lock();
+      try {
+        if (!reading) {
+          return;
+        }
+        reading = false;
+      } finally {
+        receptionMutex.unlock();
+      }
+      if (key != null) {
+        key.cancel();
+      }
+      depart();
+    }
+
+    /**
+     * Make sure that the client's participants leave the AEther, in a
+     * handler thread, however the connection ends.
+     */
+    protected void depart
+    ()
+    {
+      receptionMutex.lock();
+      try {
+        if (!departing) {
+          enqueue(new AEPServer.ClientDisconnectToken(-1));
+        }
+      } finally {
+        receptionMutex.unlock();
+      }
+    }
+
+    protected void enqueue
+    (Token token)
+    {
+      receptionMutex.lock();
+      try {
+        if (token.getType() == Token.CLIENT_DISCONNECT) {
+          departing = true;
+        }
+        pending.addLast(token);
+        if ((reading)&&(pending.size() >= maxPendingTokens)) {
+          setInterest(0, SelectionKey.OP_READ);
+        }
+        if (!scheduled) {
+          scheduled = true;
+          handlers.execute(this);
+        }
+      } finally {
+        receptionMutex.unlock();
+      }
+    }
+
+    /**
+     * Handle pending tokens, in order, in a handler thread.
+     */
+    public void run
+    ()
+    {
+      Token token;
+
+      while (true) {
+        receptionMutex.lock();
+        try {
+          if (closed) {
+            // Of the tokens still pending, only the departure is handled:
+            while ((pending.size() > 0)&&
+                   (pending.getFirst().getType() != Token.CLIENT_DISCONNECT)) {
+              pending.removeFirst();
+            }
+          }
+          if (pending.size() == 0) {
+            scheduled = false;
+            return;
+          }
+          token = pending.removeFirst();
+          if ((reading)&&(pending.size() == maxPendingTokens/2)) {
+            setInterest(SelectionKey.OP_READ, 0);
+          }
+        } finally {
+          receptionMutex.unlock();
+        }
+        try {
+          if (!processToken(token)) {
+            closeConnection();
+          }
+        } catch (Throwable t) {
+          if ((log != null)&&(logLevel >= Log.ERROR)) {
+            log.priority(Log.ERROR).add(
+              "AEPSocketServer handler caught exception: " + t.getMessage() +
+              "\nTrace:\n\n" + Log.getTrace(t)
+            ).end();
+          }
+          try {
+            closeConnection();
+          } catch (IOException ignored) {
+          }
+        }
+      }
+    }
+
+    protected Token receive
+    ()
+      throws IOException, IntenseException, AEPException
+    {
+      throw new AEPException(
+        "INTERNAL ERROR: AEPSocketServer connections are read by I/O threads",
+        Log.FATAL
+      );
+    }
+
+    protected boolean blockForAvailableData
+    ()
+      throws IOException
+    {
+      return false;
+    }
+
+    protected int getWireMode
+    ()
+    {
+      return (mode == BINARY) ? BINARY : XDR;
+    }
+
+    protected boolean sharesNodeEncodings
+    ()
+    {
+      return (framer == null)||(!framer.usesDictionary());
+    }
+
+    protected boolean locksReception
+    ()
+    {
+      return false;
+    }
+
+    public void start
+    ()
+    {
+    }
+
+    /**
+     * Close this connection immediately, discarding unsent data.  The
+     * client's participants still leave the AEther.
+     */
+    public void stop
+    ()
+    {
+      outboundMutex.lock();
+      closed = true;
+      outbound.clear();
+      outboundMutex.unlock();
+      close();
+      depart();
+    }
+
+    public String getName
+    ()
+    {
+      return "AEPSocketServer";
+    }
+
+    /**
+     * Close this connection once everything already sent to the client has
+     * been written.
+     */
+    protected void closeConnection
+    ()
+      throws IOException
+    {
+      boolean flushed;
+
+      receptionMutex.lock();
+      reading = false;
+      receptionMutex.unlock();
+      depart();
+      outboundMutex.lock();
+      try {
+        if (closed) {
+          return;
+        }
+        closed = true;
+        flushed = (outbound.size() == 0);
+        if (!flushed) {
+          setInterest(0, SelectionKey.OP_READ);
+        }
+      } finally {
+        outboundMutex.unlock();
+      }
+      if (flushed) {
+        close();
+      }
+    }
+
+    private void close
+    ()
+    {
+      int remaining;
+
+      if (!channel.isOpen()) {
+        return;
+      }
+      try {
+        channel.close();
+      } catch (IOException ignored) {
+      }
+      mutex.lock();
+      connections.remove(this);
+      remaining = connections.size();
+      mutex.unlock();
+      if ((log != null)&&(logLevel >= Log.DEBUG)) {
+        log.priority(Log.DEBUG).add(
+          "AEPSocketServer: closed connection (" + remaining + " remaining)"
+        ).end();
+      }
+    }
+
+  }
+
+
+  /**
+   * A Selector-driven thread, which accepts connections (the first
+   * IOThread only) and reads and writes for the connections registered
+   * with it.
+   */
+  protected class IOThread
+    extends Thread {
+
+    protected Selector selector;
+
+    protected LinkedList<Connection> registrations;
+
+    protected IOThread
+    (int index)
+      throws IOException
+    {
+      super("AEPSocketServer I/O thread " + index);
+      selector = Selector.open();
+      registrations = new LinkedList<Connection>();
+    }
+
+    protected void register
+    (Connection connection)
+    {
+      synchronized (registrations) {
+        registrations.addLast(connection);
+      }
+      selector.wakeup();
+    }
+
+    private void processRegistrations
+    ()
+    {
+      synchronized (registrations) {
+        while (registrations.size() > 0) {
+          Connection connection = registrations.removeFirst();
+
+          try {
+            connection.outboundMutex.lock();
+            try {
+              int ops = SelectionKey.OP_READ;
+
+              if (connection.outbound.size() > 0) {
+                ops |= SelectionKey.OP_WRITE;
+              }
+              connection.key = connection.channel.register(
+                selector, ops, connection
+              );
+            } finally {
+              connection.outboundMutex.unlock();
+            }
+          } catch (IOException e) {
+            if ((log != null)&&(logLevel >= Log.ERROR)) {
+              log.priority(Log.ERROR).add(
+                "AEPSocketServer: could not register connection: " +
+                e.getMessage()
+              ).end();
+            }
+            connection.stop();
+          }
+        }
+      }
+    }
+
+    public void run
+    ()
+    {
+      if ((log != null)&&(logLevel >= Log.NOTICE)) {
+        log.priority(Log.NOTICE).add(
+          getName() + ": starting execution..."
+        ).end();
+      }
+      while (isRunning()) {
+        try {
+          selector.select();
+          processRegistrations();
+          java.util.Iterator<SelectionKey> itr =
+            selector.selectedKeys().iterator();
+
+          while (itr.hasNext()) {
+            SelectionKey selected = itr.next();
+
+            itr.remove();
+            if (selected.isValid()) {
+              ready(selected);
+            }
+          }
+        } catch (Throwable t) {
+          if ((log != null)&&(logLevel >= Log.ERROR)) {
+            log.priority(Log.ERROR).add(
+              getName() + " caught exception: " + t.getMessage() +
+              "\nTrace:\n\n" + Log.getTrace(t)
+            ).end();
+          }
+        }
+      }
+      try {
+        selector.close();
+      } catch (IOException ignored) {
+      }
+      if ((log != null)&&(logLevel >= Log.NOTICE)) {
+        log.priority(Log.NOTICE).add(getName() + ": END OF LINE.").end();
+      }
+    }
+
+    private void ready
+    (SelectionKey selected)
+    {
+      if (selected.isAcceptable()) {
+        accept();
+        return;
+      }
+
+      Connection connection = (Connection)selected.attachment();
+
+      try {
+        if (selected.isWritable()) {
+          connection.writable();
+        }
+        if ((selected.isValid())&&(selected.isReadable())) {
+          connection.readable();
+        }
+      } catch (ClosedChannelException e) {
+        // Closed by a handler thread since selection:
+        connection.disconnected();
+      } catch (CancelledKeyException e) {
+        connection.disconnected();
+      } catch (Exception e) {
+        if ((log != null)&&(logLevel >= Log.ERROR)) {
+          log.priority(Log.ERROR).add(
+            "AEPSocketServer: dropping connection after exception: " +
+            e.getMessage()
+          ).end();
+        }
+        connection.disconnected();
+      }
+    }
+
+  }
+
+
+  /**
+   * Construct a server listening on AEP_DEFAULT_PORT.
+   */
+  public AEPSocketServer
+  (AEPServer.AEther aether, Log log, int logLevel)
+  {
+    this(
+      aether, AEPCommon.AEP_DEFAULT_PORT, defaultIOThreadCount,
+      defaultHandlerThreadCount, log, logLevel, true
+    );
+  }
+
+  public AEPSocketServer
+  (AEPServer.AEther aether, int port, Log log, int logLevel)
+  {
+    this(
+      aether, port, defaultIOThreadCount, defaultHandlerThreadCount, log,
+      logLevel, true
+    );
+  }
+
+  /**
+   * @param aether The AEther shared by all connections.
+   * @param port The TCP port to listen on (0 for any free port).
+   * @param ioThreadCount The number of Selector threads.
+   * @param handlerThreadCount The number of threads handling decoded
+   * tokens.  Synchronous tokens block a handler thread until the AEther has
+   * processed them.
+   * @param log The Log for the server and its connections.
+   * @param logLevel The log level for the server and its connections.
+   * @param errorTolerant Whether connections survive non-fatal errors.
+   */
+  public AEPSocketServer
+  (AEPServer.AEther aether, int port, int ioThreadCount,
+   int handlerThreadCount, Log log, int logLevel, boolean errorTolerant)
+  {
+    this.aether = aether;
+    this.port = port;
+    this.ioThreadCount = (ioThreadCount > 0) ? ioThreadCount : 1;
+    this.handlerThreadCount =
+      (handlerThreadCount > 0) ? handlerThreadCount : 1;
+    this.log = log;
+    this.logLevel = logLevel;
+    this.errorTolerant = errorTolerant;
+    serverChannel = null;
+    ioThreads = null;
+    nextIOThread = 0;
+    handlers = null;
+    threadFactory = AEPThreadFactory.getDefault();
+    connections = new HashSet<Connection>();
+    mutex = new ReentrantLock();
+    running = false;
+    maxDictionarySize = DimensionDictionary.defaultMaxSize;
+    compressionThreshold = 0;
+    maxPlainXDRTokenSize = defaultMaxPlainXDRTokenSize;
+  }
+
+  protected boolean isRunning
+  ()
+  {
+    mutex.lock();
+    try {
+      return running;
+    } finally {
+      mutex.unlock();
+    }
+  }
+
+  /**
+   * Get the port this server is listening on (useful when constructed with
+   * port 0).
+   */
+  public int getPort
+  ()
+  {
+    return port;
+  }
+
+  /**
+   * Set the size of the dimension dictionary kept for, and offered to, each
+   * subsequently accepted BINARY connection.
+   *
+   * @param maxDictionarySize The number of dimensions, and of compound
+   * dimensions, that a client may define (0 disables dictionary
+   * compression).
+   */
+  public void setMaxDictionarySize
+  (int maxDictionarySize)
+  {
+    mutex.lock();
+    this.maxDictionarySize = (maxDictionarySize > 0) ? maxDictionarySize : 0;
+    mutex.unlock();
+  }
+
+  public int getMaxDictionarySize
+  ()
+  {
+    return maxDictionarySize;
+  }
+
+  /**
+   * Set the size from which tokens sent to each subsequently accepted
+   * BINARY or framed XDR connection are compressed, if the client accepts
+   * compressed tokens.  Plain XDR connections are never compressed.
+   *
+   * @param compressionThreshold The size, in bytes, from which tokens are
+   * compressed (0, the default, disables compression).
+   */
+  public void setCompressionThreshold
+  (int compressionThreshold)
+  {
+    mutex.lock();
+    this.compressionThreshold =
+      (compressionThreshold > 0) ? compressionThreshold : 0;
+    mutex.unlock();
+  }
+
+  public int getCompressionThreshold
+  ()
+  {
+    return compressionThreshold;
+  }
+
+  /**
+   * Set the size of the largest plain XDR token accepted from each
+   * subsequently accepted plain XDR connection.  A connection sending a
+   * larger one is dropped.  BINARY and framed XDR connections are limited
+   * to AEPBinaryCodec.maxFrameSize.
+   *
+   * @param maxPlainXDRTokenSize The size, in bytes (at most, and by
+   * default, defaultMaxPlainXDRTokenSize).
+   */
+  public void setMaxPlainXDRTokenSize
+  (int maxPlainXDRTokenSize)
+  {
+    mutex.lock();
+    this.maxPlainXDRTokenSize = ((maxPlainXDRTokenSize > 0)&&
+      (maxPlainXDRTokenSize < defaultMaxPlainXDRTokenSize)) ?
+      maxPlainXDRTokenSize : defaultMaxPlainXDRTokenSize;
+    mutex.unlock();
+  }
+
+  public int getMaxPlainXDRTokenSize
+  ()
+  {
+    return maxPlainXDRTokenSize;
+  }
+
+  /**
+   * Set the factory for handler threads created by a subsequent start().
+   *
+   * @param threadFactory The new factory (null restores
+   * AEPThreadFactory.getDefault()).
+   */
+  public void setThreadFactory
+  (ThreadFactory threadFactory)
+  {
+    mutex.lock();
+    this.threadFactory = (threadFactory != null) ?
+      threadFactory : AEPThreadFactory.getDefault();
+    mutex.unlock();
+  }
+
+  public ThreadFactory getThreadFactory
+  ()
+  {
+    return threadFactory;
+  }
+
+  /**
+   * Get the number of open client connections.
+   */
+  public int getConnectionCount
+  ()
+  {
+    mutex.lock();
+    try {
+      return connections.size();
+    } finally {
+      mutex.unlock();
+    }
+  }
+
+  private void accept
+  ()
+  {
+    SocketChannel channel;
+
+    try {
+      while ((channel = serverChannel.accept()) != null) {
+        IOThread ioThread;
+        Connection connection;
+
+        channel.configureBlocking(false);
+        channel.socket().setTcpNoDelay(true);
+        mutex.lock();
+        ioThread = ioThreads[nextIOThread];
+        nextIOThread = (nextIOThread + 1)%ioThreads.length;
+        connection = new Connection(channel, ioThread);
+        connections.add(connection);
+        mutex.unlock();
+        ioThread.register(connection);
+        if ((log != null)&&(logLevel >= Log.DEBUG)) {
+          log.priority(Log.DEBUG).add(
+            "AEPSocketServer: accepted connection from " +
+            channel.socket().getRemoteSocketAddress()
+          ).end();
+        }
+      }
+    } catch (IOException e) {
+      if ((log != null)&&(logLevel >= Log.ERROR)) {
+        log.priority(Log.ERROR).add(
+          "AEPSocketServer: accept failed: " + e.getMessage()
+        ).end();
+      }
+    }
+  }
+
+  /**
+   * Start listening.
+   */
+  public void start
+  ()
+    throws IOException, AEPException
+  {
+    mutex.lock();
+    try {
+      if (running) {
+        return;
+      }
+      serverChannel = ServerSocketChannel.open();
+      serverChannel.socket().setReuseAddress(true);
+      serverChannel.socket().bind(new InetSocketAddress(port));
+      serverChannel.configureBlocking(false);
+      port = serverChannel.socket().getLocalPort();
+      handlers =
+        Executors.newFixedThreadPool(handlerThreadCount, threadFactory);
+      ioThreads = new IOThread[ioThreadCount];
+      for (int i = 0; i < ioThreadCount; i++) {
+        ioThreads[i] = new IOThread(i);
+      }
+      serverChannel.register(ioThreads[0].selector, SelectionKey.OP_ACCEPT);
+      running = true;
+      for (int i = 0; i < ioThreadCount; i++) {
+        ioThreads[i].start();
+      }
+    } finally {
+      mutex.unlock();
+    }
+    if ((log != null)&&(logLevel >= Log.NOTICE)) {
+      log.priority(Log.NOTICE).add(
+        "AEPSocketServer.start: listening on port " + port + "."
+      ).end();
+    }
+  }
+
+  /**
+   * Stop listening, and close all client connections.
+   */
+  public void stop
+  ()
+    throws InterruptedException
+  {
+    ArrayList<Connection> open;
+
+    mutex.lock();
+    if (!running) {
+      mutex.unlock();
+      return;
+    }
+    running = false;
+    open = new ArrayList<Connection>(connections);
+    mutex.unlock();
+    for (int i = 0; i < ioThreads.length; i++) {
+      ioThreads[i].selector.wakeup();
+      ioThreads[i].join();
+    }
+    try {
+      serverChannel.close();
+    } catch (IOException ignored) {
+    }
+    for (int i = 0; i < open.size(); i++) {
+      open.get(i).stop();
+    }
+    handlers.shutdown();
+    handlers.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+    if ((log != null)&&(logLevel >= Log.NOTICE)) {
+      log.priority(Log.NOTICE).add(
+        "AEPSocketServer.stop: stopped listening on port " + port + "."
+      ).end();
+    }
+  }
+
+}
@@ -61,6 +61,13 @@ abstract class AEPStreamServer
     return false;
   }
 
+  protected boolean hasAvailableData
+  ()
+    throws IOException
+  {
+    return inputStream.available() > 0;
+  }
+
   public String getName
   ()
   {
@@ -0,0 +1,166 @@
+// ****************************************************************************
+//
+// AEPThreadFactory.java : Creation of the threads used by AEP servers,
+// clients and AEthers.
+//
+// Copyright 2026 the Intense project contributors.
+//
+// This file is part of the Intense project.
+//
+// Intense is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// Intense is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with Intense; if not, write to the Free Software Foundation, Inc.,
+// 59 Temple Place, Suite 330, Boston, MA 02111-1307, USA.
+//
+// ****************************************************************************
+
+
+package intense.aep;
+
+
+import java.lang.reflect.*;
+import java.util.concurrent.*;
+import intense.log.*;
+
+
+/**
+ * A ThreadFactory for the ear, receiver and apply threads of AEPServers,
+ * AEPClients and AEPServer.AEthers, which may create either platform or
+ * virtual threads.
+ *
+ * <p>Every blocking wait in the AEP classes is on a ReentrantLock Condition,
+ * and no monitor is held across a wait or across stream I/O, so these
+ * threads may be virtual threads without pinning their carriers.  Virtual
+ * threads are located reflectively, and are only available when running on
+ * a JVM that supports them.
+ */
+public class AEPThreadFactory
+  implements ThreadFactory {
+
+  public static final int PLATFORM = 0;
+
+  public static final int VIRTUAL = 1;
+
+  private static ThreadFactory defaultFactory = new AEPThreadFactory();
+
+  private int kind;
+
+  private ThreadFactory virtualFactory;
+
+  /**
+   * Construct a factory for platform threads.
+   */
+  public AEPThreadFactory
+  ()
+  {
+    kind = PLATFORM;
+    virtualFactory = null;
+  }
+
+  /**
+   * @param kind PLATFORM or VIRTUAL.
+   * @throws AEPException If virtual threads were requested, and this JVM
+   * does not support them.
+   */
+  public AEPThreadFactory
+  (int kind)
+    throws AEPException
+  {
+    switch (kind) {
+    case PLATFORM:
+      virtualFactory = null;
+      break;
+    case VIRTUAL:
+      virtualFactory = getVirtualFactory();
+      if (virtualFactory == null) {
+        throw new AEPException(
+          "Virtual threads are not supported by this JVM", Log.ERROR
+        );
+      }
+      break;
+    default:
+      throw new AEPException(
+        "Bad AEPThreadFactory thread kind: " + kind, Log.ERROR
+      );
+    }
+    this.kind = kind;
+  }
+
+  /**
+   * Obtain Thread.ofVirtual().factory(), if it exists.
+   *
+   * @return A virtual thread factory, or null if virtual threads are not
+   * supported.
+   */
+  private static ThreadFactory getVirtualFactory
+  ()
+  {
+    try {
+      Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+      Method factory =
+        Class.forName("java.lang.Thread$Builder").getMethod("factory");
+
+      return (ThreadFactory)factory.invoke(builder);
+    } catch (Exception e) {
+      return null;
+    }
+  }
+
+  /**
+   * @return True if this JVM supports virtual threads.
+   */
+  public static boolean isVirtualSupported
+  ()
+  {
+    return getVirtualFactory() != null;
+  }
+
+  /**
+   * The factory used by AEPServers, AEPClients and AEPServer.AEthers which
+   * have not been given one of their own.
+   */
+  public static synchronized ThreadFactory getDefault
+  ()
+  {
+    return defaultFactory;
+  }
+
+  /**
+   * Set the factory used by subsequently constructed AEPServers, AEPClients
+   * and AEPServer.AEthers.
+   *
+   * @param factory The new default factory (null restores the default
+   * platform thread factory).
+   */
+  public static synchronized void setDefault
+  (ThreadFactory factory)
+  {
+    defaultFactory = (factory != null) ? factory : new AEPThreadFactory();
+  }
+
+  public int getKind
+  ()
+  {
+    return kind;
+  }
+
+  public Thread newThread
+  (Runnable runnable)
+  {
+    if (kind == VIRTUAL) {
+      return virtualFactory.newThread(runnable);
+    } else {
+      return new Thread(runnable);
+    }
+  }
+
+}
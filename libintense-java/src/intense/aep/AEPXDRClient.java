@@ -35,6 +35,12 @@ import intense.*;
 import intense.log.*;
 
 
+/**
+ * A client for XDR mode servers.  By default, tokens are sent in plain XDR,
+ * as understood by every AEP server; with a compression threshold, they
+ * are sent as framed XDR (see AEPBinaryCodec), which only the Java
+ * AEPXDRServer and AEPSocketServer understand.
+ */
 public class AEPXDRClient
   extends AEPStreamClient {
 
@@ -42,11 +48,27 @@ public class AEPXDRClient
 
   protected DataOutputStream os;
 
+  protected AEPBatchingOutputStream batchingStream;
+
+  /**
+   * Frames our tokens, and the server's, in framed XDR, or null for plain
+   * XDR.
+   */
+  protected AEPBinaryCodec.Framer framer;
+
+  /**
+   * Whether a token has been sent, after which the framing is fixed.
+   */
+  protected boolean started;
+
   protected void construct
   ()
   {
     this.is = new DataInputStream(inputStream);
-    this.os = new DataOutputStream(outputStream);
+    this.batchingStream = new AEPBatchingOutputStream(outputStream);
+    this.os = new DataOutputStream(batchingStream);
+    framer = null;
+    started = false;
   }
 
   public AEPXDRClient
@@ -106,14 +128,98 @@ public class AEPXDRClient
   (AEPServer.Token token)
     throws IOException, AEPException
   {
-    AEPServer.Token.factorySerialise((AEPServer.Token)token, os);
-    os.flush();
+    started = true;
+    if (framer != null) {
+      AEPServer.Token.factorySerialise(
+        (AEPServer.Token)token, framer.beginFrame()
+      );
+      framer.endFrame(batchingStream);
+    } else {
+      AEPServer.Token.factorySerialise((AEPServer.Token)token, os);
+    }
+    batchingStream.endToken();
+  }
+
+  /**
+   * Batch outgoing tokens: up to maxBatchSize serialised tokens are
+   * coalesced into a single write, which is made once the batch is full,
+   * maxLinger milliseconds after its first token, or on flush().  Tokens
+   * are always written in the order they were sent.
+   *
+   * @param maxBatchSize The maximum number of tokens per write (1, the
+   * default, writes each token as it is sent).
+   * @param maxLinger The maximum time, in milliseconds, that a token is
+   * held before it is written.
+   */
+  public void setBatching
+  (int maxBatchSize, long maxLinger)
+    throws IOException
+  {
+    batchingStream.setBatching(maxBatchSize, maxLinger);
+  }
+
+  public int getMaxBatchSize
+  ()
+  {
+    return batchingStream.getMaxBatchSize();
+  }
+
+  public long getMaxLinger
+  ()
+  {
+    return batchingStream.getMaxLinger();
+  }
+
+  /**
+   * Speak framed XDR, compressing the tokens this client sends which
+   * serialise to at least compressionThreshold bytes.  The server may
+   * compress the tokens it sends in turn.  Framed XDR is only understood
+   * by the Java AEPXDRServer and AEPSocketServer.
+   *
+   * @param compressionThreshold The size, in bytes, from which tokens are
+   * compressed (0, the default, restores plain XDR).
+   * @throws AEPException If a token has already been sent.
+   */
+  public void setCompressionThreshold
+  (int compressionThreshold)
+    throws AEPException
+  {
+    if (started) {
+      throw new AEPException(
+        getName() + ": the compression threshold must be set before the " +
+        "first token is sent", Log.ERROR
+      );
+    }
+    if (compressionThreshold > 0) {
+      framer = new AEPBinaryCodec.Framer(XDR);
+      framer.setCompressionThreshold(compressionThreshold);
+    } else {
+      framer = null;
+    }
+  }
+
+  public int getCompressionThreshold
+  ()
+  {
+    return (framer != null) ? framer.getCompressionThreshold() : 0;
+  }
+
+  public void flush
+  ()
+    throws IOException
+  {
+    batchingStream.flush();
   }
 
   protected Token receive
   ()
     throws IOException, IntenseException, AEPException
   {
+    if (framer != null) {
+      return AEPClient.Token.factoryDeserialise(
+        framer.readFrame(inputStream)
+      );
+    }
     return AEPClient.Token.factoryDeserialise(is);
   }
 
@@ -35,6 +35,12 @@ import intense.*;
 import intense.log.*;
 
 
+/**
+ * A server for XDR mode clients.  A client which begins with the framed
+ * XDR preamble of AEPBinaryCodec (an AEPXDRClient with a compression
+ * threshold) has its tokens, in both directions, sent as frames, which may
+ * be compressed; any other client is spoken to in plain XDR.
+ */
 public class AEPXDRServer
   extends AEPStreamServer {
 
@@ -42,11 +48,29 @@ public class AEPXDRServer
 
   protected DataOutputStream os;
 
+  protected AEPBatchingOutputStream batchingStream;
+
+  /**
+   * Whether the client's first byte has been seen.
+   */
+  protected boolean framingChecked;
+
+  /**
+   * Frames the tokens of a framed XDR client, or null.
+   */
+  protected volatile AEPBinaryCodec.Framer framer;
+
+  protected int compressionThreshold;
+
   protected void construct
   ()
   {
     this.is = new DataInputStream(inputStream);
-    this.os = new DataOutputStream(outputStream);
+    this.batchingStream = new AEPBatchingOutputStream(outputStream);
+    this.os = new DataOutputStream(batchingStream);
+    framingChecked = false;
+    framer = null;
+    compressionThreshold = 0;
   }
 
   public AEPXDRServer
@@ -83,8 +107,15 @@ public class AEPXDRServer
   (AEPClient.Token token)
     throws IOException, AEPException
   {
-    AEPClient.Token.factorySerialise(token, os);
-    os.flush();
+    AEPBinaryCodec.Framer framer = this.framer;
+
+    if (framer != null) {
+      AEPClient.Token.factorySerialise(token, framer.beginFrame());
+      framer.endFrame(batchingStream);
+    } else {
+      AEPClient.Token.factorySerialise(token, os);
+    }
+    batchingStream.endToken();
     if ((log != null)&&(logLevel >= Log.DEBUG2)) {
       log.priority(Log.ERROR).add("AEPXDRServer.send: sent token: ");
       token.print(log, (logLevel > Log.DEBUG2) ? logLevel : Log.DEBUG);
@@ -92,10 +123,110 @@ public class AEPXDRServer
     }
   }
 
+  /**
+   * Batch outgoing tokens: up to maxBatchSize serialised tokens are
+   * coalesced into a single write, which is made once the batch is full,
+   * maxLinger milliseconds after its first token, or on flush().  Tokens
+   * are always written in the order they were sent.
+   *
+   * @param maxBatchSize The maximum number of tokens per write (1, the
+   * default, writes each token as it is sent).
+   * @param maxLinger The maximum time, in milliseconds, that a token is
+   * held before it is written.
+   */
+  public void setBatching
+  (int maxBatchSize, long maxLinger)
+    throws IOException
+  {
+    batchingStream.setBatching(maxBatchSize, maxLinger);
+  }
+
+  public int getMaxBatchSize
+  ()
+  {
+    return batchingStream.getMaxBatchSize();
+  }
+
+  public long getMaxLinger
+  ()
+  {
+    return batchingStream.getMaxLinger();
+  }
+
+  /**
+   * Compress the tokens sent to a framed XDR client which serialise to at
+   * least compressionThreshold bytes, if the client accepts compressed
+   * tokens.  Plain XDR clients are unaffected.
+   *
+   * @param compressionThreshold The size, in bytes, from which tokens are
+   * compressed (0, the default, disables compression).
+   * @throws AEPException If a token has already been sent to a framed
+   * client.
+   */
+  public void setCompressionThreshold
+  (int compressionThreshold)
+    throws AEPException
+  {
+    AEPBinaryCodec.Framer framer = this.framer;
+
+    if ((framer != null)&&(framer.isStarted())) {
+      throw new AEPException(
+        getName() + ": the compression threshold must be set before the " +
+        "first token is sent", Log.ERROR
+      );
+    }
+    this.compressionThreshold =
+      (compressionThreshold > 0) ? compressionThreshold : 0;
+    if (framer != null) {
+      framer.setCompressionThreshold(compressionThreshold);
+    }
+  }
+
+  public int getCompressionThreshold
+  ()
+  {
+    return compressionThreshold;
+  }
+
+  public void flush
+  ()
+    throws IOException
+  {
+    batchingStream.flush();
+  }
+
+  protected boolean supportsOutboundQueue
+  ()
+  {
+    return true;
+  }
+
   protected Token receive
   ()
     throws IOException, IntenseException, AEPException
   {
+    if (!framingChecked) {
+      int first;
+
+      inputStream.mark(1);
+      first = inputStream.read();
+      if (first < 0) {
+        throw new EOFException("EOF reached before the first token");
+      }
+      inputStream.reset();
+      if (first == AEPBinaryCodec.xdrMagic) {
+        AEPBinaryCodec.Framer framer = new AEPBinaryCodec.Framer(XDR);
+
+        framer.setCompressionThreshold(compressionThreshold);
+        this.framer = framer;
+      }
+      framingChecked = true;
+    }
+    if (framer != null) {
+      return AEPServer.Token.factoryDeserialise(
+        framer.readFrame(inputStream)
+      );
+    }
     return AEPServer.Token.factoryDeserialise(is);
   }
 
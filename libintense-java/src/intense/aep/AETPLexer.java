@@ -979,7 +979,7 @@ type = -1;
           }
         case 82: break;
         case 37: 
-          { addToCompoundDimension(new StringDimension(
+          { addToCompoundDimension(StringDimension.internReceived(
     yytext().substring(0, yytext().length() - 1), false)
   );
           }
@@ -1023,13 +1023,13 @@ type = -1;
         case 22: 
           { if (inDimension) {
     yybegin(IN_DIMENSION);
-    addToCompoundDimension(new StringDimension(
+    addToCompoundDimension(StringDimension.internReceived(
       currentString.toString(),
       stringBufferRequiresQuotes||stringBufferIsAllIntChars
     ));
   } else if (inContext) {
     yybegin(IN_CONTEXT);
-    return lval.setStringDimension(new StringDimension(
+    return lval.setStringDimension(StringDimension.internReceived(
       currentString.toString(),
       stringBufferRequiresQuotes||stringBufferIsAllIntChars
     ));
@@ -1207,7 +1207,7 @@ type = -1;
         case 6: 
           { CompoundDimension dimension;
 
-  addToCompoundDimension(new StringDimension(yytext(), false));
+  addToCompoundDimension(StringDimension.internReceived(yytext(), false));
   dimension = compoundDimension;
   yybegin(IN_TOKEN);
   inDimension = false;
@@ -1284,7 +1284,7 @@ type = -1;
           }
         case 111: break;
         case 40: 
-          { return lval.setStringDimension(new StringDimension(
+          { return lval.setStringDimension(StringDimension.internReceived(
     yytext().substring(0, yytext().length() - 1), false
   ));
           }
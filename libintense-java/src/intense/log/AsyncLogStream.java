@@ -0,0 +1,303 @@
+// ****************************************************************************
+//
+// AsyncLogStream.java - A LogStream which writes its messages from a
+// background thread, through a bounded ring buffer.
+//
+// Copyright 2026 the Intense project contributors.
+//
+// This file is part of the Intense project.
+//
+// Intense is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// Intense is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with Intense; if not, write to the Free Software Foundation, Inc.,
+// 59 Temple Place, Suite 330, Boston, MA 02111-1307, USA.
+//
+// ****************************************************************************
+
+
+package intense.log;
+
+
+import java.util.concurrent.locks.*;
+import java.io.*;
+
+
+/**
+ * A LogStream which hands each message to a background writer thread,
+ * through a bounded ring buffer, rather than formatting and printing it on
+ * the logging thread.  A logging thread only blocks if the ring is full
+ * (so memory stays bounded, and no message is lost); otherwise, ending a
+ * message costs a short critical section to fill a pre-allocated slot.
+ * The writer formats and prints every message waiting in the ring before
+ * flushing the underlying stream once.
+ *
+ * <p>Messages from one thread are printed in the order they were ended.
+ * flush() waits for every message already ended to be printed, and
+ * close() prints any waiting messages before stopping the writer.
+ */
+public class AsyncLogStream
+  extends LogStream {
+
+  public static final int defaultCapacity = 8192;
+
+  protected long[] times;
+
+  protected int[] priorities;
+
+  protected String[] messages;
+
+  /**
+   * The index of the oldest message in the ring.
+   */
+  protected int head;
+
+  protected int count;
+
+  /**
+   * Whether the writer is printing messages it has taken from the ring.
+   */
+  protected boolean writing;
+
+  protected boolean closing;
+
+  protected ReentrantLock ringMutex;
+
+  protected Condition notEmpty;
+
+  protected Condition notFull;
+
+  protected Condition drained;
+
+  protected Thread writer;
+
+  private void construct
+  (int capacity)
+  {
+    capacity = (capacity > 0) ? capacity : defaultCapacity;
+    times = new long[capacity];
+    priorities = new int[capacity];
+    messages = new String[capacity];
+    head = 0;
+    count = 0;
+    writing = false;
+    closing = false;
+    ringMutex = new ReentrantLock();
+    notEmpty = ringMutex.newCondition();
+    notFull = ringMutex.newCondition();
+    drained = ringMutex.newCondition();
+    writer = new Thread(
+      new Runnable() {
+        public void run
+        ()
+        {
+          writeLoop();
+        }
+      },
+      "AsyncLogStream"
+    );
+    writer.setDaemon(true);
+    writer.start();
+  }
+
+  /**
+   * @param os A destination PrintStream.
+   */
+  public AsyncLogStream
+  (PrintStream os)
+    throws LogException
+  {
+    super(os);
+    construct(defaultCapacity);
+  }
+
+  /**
+   * @param os A destination PrintStream.
+   * @param logLevel The priority of log messages accepted by this stream
+   * (messages with less significant priorities are dropped).
+   */
+  public AsyncLogStream
+  (PrintStream os, int logLevel)
+    throws LogException
+  {
+    super(os, logLevel);
+    construct(defaultCapacity);
+  }
+
+  /**
+   * @param os A destination PrintStream.
+   * @param logLevel The priority of log messages accepted by this stream
+   * (messages with less significant priorities are dropped).
+   * @param useTimestamps Denotes whether this LogStream will print timestamps
+   * before each log message.
+   * @param usePriorities Denotes whether this LogStream will print a message
+   * priority (log level) before each log message.
+   */
+  public AsyncLogStream
+  (PrintStream os, int logLevel, boolean useTimestamps,
+   boolean usePriorities)
+    throws LogException
+  {
+    super(os, logLevel, useTimestamps, usePriorities);
+    construct(defaultCapacity);
+  }
+
+  /**
+   * @param os A destination PrintStream.
+   * @param logLevel The priority of log messages accepted by this stream
+   * (messages with less significant priorities are dropped).
+   * @param useTimestamps Denotes whether this LogStream will print timestamps
+   * before each log message.
+   * @param usePriorities Denotes whether this LogStream will print a message
+   * priority (log level) before each log message.
+   * @param capacity The number of messages the ring holds, beyond which
+   * logging threads wait for the writer.
+   */
+  public AsyncLogStream
+  (PrintStream os, int logLevel, boolean useTimestamps,
+   boolean usePriorities, int capacity)
+    throws LogException
+  {
+    super(os, logLevel, useTimestamps, usePriorities);
+    construct(capacity);
+  }
+
+  public int getCapacity
+  ()
+  {
+    return messages.length;
+  }
+
+  /**
+   * Queue a message for the writer, waiting for room if the ring is full.
+   */
+  protected void write
+  (long time, int priority, String message)
+  {
+    ringMutex.lock();
+    try {
+      int slot;
+
+      while ((count == messages.length)&&(!closing)) {
+        notFull.awaitUninterruptibly();
+      }
+      if (closing) {
+        return;
+      }
+      slot = (head + count)%messages.length;
+      times[slot] = time;
+      priorities[slot] = priority;
+      messages[slot] = message;
+      if (count++ == 0) {
+        notEmpty.signal();
+      }
+    } finally {
+      ringMutex.unlock();
+    }
+  }
+
+  private void writeLoop
+  ()
+  {
+    int capacity = messages.length;
+    long[] batchTimes = new long[capacity];
+    int[] batchPriorities = new int[capacity];
+    String[] batchMessages = new String[capacity];
+    StringBuilder line = new StringBuilder(256);
+
+    while (true) {
+      int batchSize;
+
+      ringMutex.lock();
+      try {
+        writing = false;
+        if (count == 0) {
+          drained.signalAll();
+        }
+        while ((count == 0)&&(!closing)) {
+          notEmpty.awaitUninterruptibly();
+        }
+        if (count == 0) {
+          return;
+        }
+        // Take every waiting message, so that they are printed together:
+        batchSize = count;
+        for (int i = 0; i < batchSize; i++) {
+          int slot = (head + i)%capacity;
+
+          batchTimes[i] = times[slot];
+          batchPriorities[i] = priorities[slot];
+          batchMessages[i] = messages[slot];
+          messages[slot] = null;
+        }
+        head = (head + batchSize)%capacity;
+        count = 0;
+        writing = true;
+        notFull.signalAll();
+      } finally {
+        ringMutex.unlock();
+      }
+      lock();
+      try {
+        if (os != null) {
+          for (int i = 0; i < batchSize; i++) {
+            line.setLength(0);
+            format(line, batchTimes[i], batchPriorities[i], batchMessages[i]);
+            os.println(line);
+            batchMessages[i] = null;
+          }
+          os.flush();
+        }
+      } finally {
+        unlock();
+      }
+    }
+  }
+
+  /**
+   * Wait until every message already ended has been printed.
+   */
+  public void flush
+  ()
+  {
+    ringMutex.lock();
+    try {
+      while (((count > 0)||(writing))&&(writer.isAlive())) {
+        drained.awaitUninterruptibly();
+      }
+    } finally {
+      ringMutex.unlock();
+    }
+  }
+
+  /**
+   * Print any waiting messages, stop the writer, and close this
+   * LogStream's output stream.
+   */
+  public void close
+  ()
+  {
+    ringMutex.lock();
+    closing = true;
+    notEmpty.signal();
+    notFull.signalAll();
+    ringMutex.unlock();
+    if (Thread.currentThread() != writer) {
+      try {
+        writer.join();
+      } catch (InterruptedException ignored) {
+        Thread.currentThread().interrupt();
+      }
+    }
+    super.close();
+  }
+
+}
@@ -29,15 +29,14 @@ package intense.log;
 import java.lang.*;
 import java.util.*;
 import java.util.concurrent.locks.*;
-import java.text.*;
 import java.io.*;
 import intense.*;
 
 
 public class Log {
 
-  protected static SimpleDateFormat dateFormatter =
-    new SimpleDateFormat("yyyy/MM/dd HH:mm:ss:SSS");
+  static final TimestampFormatter timestampFormatter =
+    new TimestampFormatter();
 
   /**
    * The most significant log priority.  Never use this unless you really mean
@@ -133,7 +132,7 @@ public class Log {
 
   protected LogStream logStream;
 
-  protected StringBuffer message;
+  protected StringBuilder message;
 
   protected int priority;
 
@@ -176,7 +175,7 @@ public class Log {
   (LogStream logStream)
   {
     this.logStream = logStream;
-    message = new StringBuffer();
+    message = new StringBuilder();
     defaultPriority = NOTICE;
     messageStarted = false;
     autoTimestamp = true;
@@ -334,33 +333,14 @@ public class Log {
   ()
   {
     lock();
-    logStream.lock();
-    if (!(logStream.isOpen())) {
-      unlock();
-      logStream.unlock();
-      return;
+    if ((logStream.isOpen())&&(logStream.logLevel >= priority)) {
+      logStream.write(
+        autoTimestamp ? System.currentTimeMillis() : timestamp.getTime(),
+        priority, message.toString()
+      );
     }
-    if (logStream.logLevel >= priority) {
-      PrintStream streamRef = logStream.streamRef();
-      if (logStream.useTimestamps) {
-        if (autoTimestamp) {
-          updateTimestamp();
-        }
-        streamRef.print("[");
-        streamRef.print(dateFormatter.format(timestamp));
-        streamRef.print("] ");
-      }
-      if (logStream.usePriorities) {
-        streamRef.print("[");
-        streamRef.print(priorityStrings[priority]);
-        streamRef.print("] ");
-      }
-      streamRef.println(message.toString());
-      streamRef.flush();
-    }
-    logStream.unlock();
     autoTimestamp = true;
-    message = new StringBuffer();
+    message.setLength(0);
     priority = defaultPriority;
     unlock();
   }
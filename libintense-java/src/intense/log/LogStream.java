@@ -152,6 +152,65 @@ public class LogStream {
     unlock();
   }
 
+  /**
+   * Format a message as it is printed, without the line terminator.
+   *
+   * @param line The buffer to append to.
+   * @param time The message timestamp, in milliseconds since the epoch.
+   * @param priority The message priority.
+   * @param message The message.
+   */
+  protected void format
+  (StringBuilder line, long time, int priority, String message)
+  {
+    if (useTimestamps) {
+      line.append('[');
+      Log.timestampFormatter.append(line, time);
+      line.append("] ");
+    }
+    if (usePriorities) {
+      line.append('[');
+      line.append(Log.priorityStrings[priority]);
+      line.append("] ");
+    }
+    line.append(message);
+  }
+
+  /**
+   * Print a message accepted by this stream, if it is open.  Called by
+   * Log.end(); subclasses may instead hand the message to another thread.
+   *
+   * @param time The message timestamp, in milliseconds since the epoch.
+   * @param priority The message priority.
+   * @param message The message.
+   */
+  protected void write
+  (long time, int priority, String message)
+  {
+    StringBuilder line = new StringBuilder(message.length() + 40);
+
+    format(line, time, priority, message);
+    lock();
+    try {
+      if (os != null) {
+        os.println(line);
+        os.flush();
+      }
+    } finally {
+      unlock();
+    }
+  }
+
+  /**
+   * Wait until every message accepted by this stream has been printed.
+   * Messages are printed before Log.end() returns, unless a subclass
+   * defers them.
+   */
+  public void flush
+  ()
+  {
+  }
+
   /**
    * Set the priority of log messages accepted by this stream
    * (messages with less significant priorities are dropped).
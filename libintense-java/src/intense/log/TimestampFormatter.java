@@ -0,0 +1,106 @@
+// ****************************************************************************
+//
+// TimestampFormatter.java - Thread-safe log timestamp formatting, with the
+// date and time cached to the second.
+//
+// Copyright 2026 the Intense project contributors.
+//
+// This file is part of the Intense project.
+//
+// Intense is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// Intense is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with Intense; if not, write to the Free Software Foundation, Inc.,
+// 59 Temple Place, Suite 330, Boston, MA 02111-1307, USA.
+//
+// ****************************************************************************
+
+
+package intense.log;
+
+
+import java.time.*;
+import java.time.format.*;
+
+
+/**
+ * Formats log timestamps as yyyy/MM/dd HH:mm:ss:SSS, in the default time
+ * zone.  Everything up to the milliseconds is formatted at most once per
+ * second and cached in an immutable holder, so that formatting is cheap and
+ * needs no lock; the milliseconds are appended digit by digit.
+ */
+class TimestampFormatter {
+
+  private static final DateTimeFormatter secondFormatter =
+    DateTimeFormatter.ofPattern("yyyy/MM/dd HH:mm:ss:");
+
+  private static class Second {
+
+    final long second;
+
+    final String prefix;
+
+    Second
+    (long second, String prefix)
+    {
+      this.second = second;
+      this.prefix = prefix;
+    }
+
+  }
+
+  private final ZoneId zone;
+
+  private volatile Second cached;
+
+  TimestampFormatter
+  ()
+  {
+    zone = ZoneId.systemDefault();
+    cached = null;
+  }
+
+  /**
+   * Append a timestamp.
+   *
+   * @param buffer The buffer to append to.
+   * @param millis The time, in milliseconds since the epoch.
+   */
+  void append
+  (StringBuilder buffer, long millis)
+  {
+    long second = Math.floorDiv(millis, 1000L);
+    int milli = (int)Math.floorMod(millis, 1000L);
+    Second cached = this.cached;
+
+    if ((cached == null)||(cached.second != second)) {
+      cached = new Second(
+        second,
+        secondFormatter.format(Instant.ofEpochSecond(second).atZone(zone))
+      );
+      this.cached = cached;
+    }
+    buffer.append(cached.prefix);
+    buffer.append((char)('0' + milli/100));
+    buffer.append((char)('0' + (milli/10)%10));
+    buffer.append((char)('0' + milli%10));
+  }
+
+  String format
+  (long millis)
+  {
+    StringBuilder buffer = new StringBuilder(24);
+
+    append(buffer, millis);
+    return buffer.toString();
+  }
+
+}
@@ -24,6 +24,7 @@
 
 
 import java.io.*;
+import java.net.*;
 import java.util.*;
 import java.util.regex.*;
 import intense.*;
@@ -405,6 +406,148 @@ abstract class IntenseAEPTest
       xdrClient.start();
     }
 
+    public XDRClientServerPair
+    (String name, AEPServer.AEther aether, Log log, int logLevel,
+     int maxBatchSize, long maxLinger)
+      throws InterruptedException, IOException, IntenseException, AEPException
+    {
+      this(name, aether, log, logLevel);
+      ((AEPXDRServer)server).setBatching(maxBatchSize, maxLinger);
+      ((AEPXDRClient)client).setBatching(maxBatchSize, maxLinger);
+    }
+
+  }
+
+
+  /**
+   * An AEPXDRServer and client over a socket with small buffers, which, as
+   * a stream server, blocks writing to a client which is not reading.
+   */
+  protected class XDRSocketClientServerPair
+    extends ClientServerPair {
+
+    protected Socket clientSocket;
+
+    protected Socket serverSocket;
+
+    public XDRSocketClientServerPair
+    (String name, AEPServer.AEther aether, Log log, int logLevel,
+     int bufferSize)
+      throws InterruptedException, IOException, IntenseException, AEPException
+    {
+      super(name, log, logLevel);
+
+      ServerSocket listener = new ServerSocket();
+
+      try {
+        listener.setReceiveBufferSize(bufferSize);
+        listener.bind(new InetSocketAddress("localhost", 0));
+        clientSocket = new Socket();
+        clientSocket.setSendBufferSize(bufferSize);
+        clientSocket.setReceiveBufferSize(bufferSize);
+        clientSocket.connect(listener.getLocalSocketAddress());
+        serverSocket = listener.accept();
+        serverSocket.setSendBufferSize(bufferSize);
+      } finally {
+        listener.close();
+      }
+
+      AEPXDRServer xdrServer = new AEPXDRServer(
+        aether, serverSocket.getInputStream(), serverSocket.getOutputStream(),
+        log, logLevel, true
+      );
+      AEPXDRClient xdrClient = new AEPXDRClient(
+        clientSocket.getInputStream(), clientSocket.getOutputStream(), log,
+        logLevel
+      );
+      setServer(xdrServer);
+      setClient(xdrClient);
+      xdrServer.start();
+      xdrClient.start();
+    }
+
+    public void stop
+    ()
+      throws InterruptedException, IOException, AEPException
+    {
+      super.stop();
+      clientSocket.close();
+      serverSocket.close();
+    }
+
+  }
+
+
+  protected class BinaryClientServerPair
+    extends StreamClientServerPair {
+
+    public BinaryClientServerPair
+    (String name, AEPServer.AEther aether, Log log, int logLevel)
+      throws InterruptedException, IOException, IntenseException, AEPException
+    {
+      super(name, log, logLevel);
+
+      AEPBinaryServer binaryServer = new AEPBinaryServer(
+        aether, serverIn, serverOut, log, logLevel, true
+      );
+      AEPBinaryClient binaryClient = new AEPBinaryClient(
+        clientIn, clientOut, log, logLevel
+      );
+      setServer(binaryServer);
+      setClient(binaryClient);
+      binaryServer.start();
+      binaryClient.start();
+    }
+
+  }
+
+
+  protected class SocketClientServerPair
+    extends ClientServerPair {
+
+    protected Socket socket;
+
+    public SocketClientServerPair
+    (String name, AEPSocketServer socketServer, Log log, int logLevel)
+      throws InterruptedException, IOException, IntenseException, AEPException
+    {
+      this(name, socketServer, log, logLevel, false);
+    }
+
+    public SocketClientServerPair
+    (String name, AEPSocketServer socketServer, Log log, int logLevel,
+     boolean binary)
+      throws InterruptedException, IOException, IntenseException, AEPException
+    {
+      super(name, log, logLevel);
+      socket = new Socket("localhost", socketServer.getPort());
+      socket.setTcpNoDelay(true);
+
+      AEPClient socketClient;
+
+      if (binary) {
+        socketClient = new AEPBinaryClient(
+          socket.getInputStream(), socket.getOutputStream(), log, logLevel
+        );
+      } else {
+        socketClient = new AEPXDRClient(
+          socket.getInputStream(), socket.getOutputStream(), log, logLevel
+        );
+      }
+      setClient(socketClient);
+      socketClient.start();
+    }
+
+    public void stop
+    ()
+      throws InterruptedException, IOException, AEPException
+    {
+      // The server side of the connection closes itself on disconnect:
+      client.disconnect();
+      client.stop();
+      socket.close();
+    }
+
   }
 
 
@@ -0,0 +1,172 @@
+// ****************************************************************************
+//
+// IntenseAEPTest10.java : A test of the conflation of the queued
+// notifications of a lagging participant.
+//
+// Copyright 2026 the Intense project contributors.
+//
+// This file is part of the Intense project.
+//
+// Intense is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// Intense is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with Intense; if not, write to the Free Software Foundation, Inc.,
+// 59 Temple Place, Suite 330, Boston, MA 02111-1307, USA.
+//
+// ****************************************************************************
+
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+import intense.*;
+import intense.log.*;
+import intense.aep.*;
+
+
+public class IntenseAEPTest10
+  extends IntenseAEPTest {
+
+  public static final int logLevel = Log.ERROR;
+
+  public static final int operationCount = 300;
+
+  public IntenseAEPTest10
+  ()
+  {
+    super("IntenseAEPTest10");
+  }
+
+
+  /**
+   * A participant which takes its time over notifications, so that its
+   * client falls behind.
+   */
+  protected class SlowParticipant
+    extends TestParticipant {
+
+    public SlowParticipant
+    (AEPClient client, String name, Log log)
+    {
+      super(client, name, log, Log.DEBUG);
+    }
+
+    private void pause
+    ()
+    {
+      try {
+        Thread.sleep(2);
+      } catch (InterruptedException ignored) {
+      }
+    }
+
+    public void assignNotify
+    (Context c, CompoundDimension dim, intense.Origin origin)
+      throws IntenseException
+    {
+      pause();
+      super.assignNotify(c, dim, origin);
+    }
+
+    public void applyNotify
+    (ContextOp o, CompoundDimension dim, intense.Origin origin)
+      throws IntenseException
+    {
+      pause();
+      super.applyNotify(o, dim, origin);
+    }
+
+    public void clearNotify
+    (CompoundDimension dim, intense.Origin origin)
+      throws IntenseException
+    {
+      pause();
+      super.clearNotify(dim, origin);
+    }
+
+  }
+
+
+  protected void test
+  ()
+    throws Exception
+  {
+    LogStream logStream = new LogStream(System.err, logLevel, true, true);
+    Log log = new Log(logStream);
+    AEPServer.AEther aether = new AEPServer.AEther(10, log, logLevel);
+    List<CompletableFuture<Long>> futures =
+      new LinkedList<CompletableFuture<Long>>();
+    CompoundDimension b = new CompoundDimension("b");
+    Context expected = new Context();
+
+    aether.start();
+    setLog(log);
+
+    XDRClientServerPair w1 =
+      new XDRClientServerPair("w1", aether, log, logLevel);
+    XDRClientServerPair c1 =
+      new XDRClientServerPair("c1", aether, log, logLevel);
+
+    addPair(w1);
+    addPair(c1);
+    c1.server.setOutboundQueue(10000, AEPServer.OVERFLOW_BLOCK);
+
+    TestParticipant writer = w1.newParticipant(1);
+    TestParticipant reader = new SlowParticipant(c1.client, "slow", log);
+
+    writer.join(true);
+    reader.join(true);
+    c1.server.setConflating(reader.getId(), true);
+    if (!c1.server.isConflating(reader.getId())) {
+      throw new TestException(1, "Participant is not conflating");
+    }
+
+    // Assignments, applications and clears of the root and of nested
+    // dimensions, all composable:
+    for (int i = 0; i < operationCount; i++) {
+      Context context = new Context(
+        "<a:<\"" + i + "\">+b:<\"" + i + "\">>"
+      );
+      ContextOp op = new ContextOp("[a:[x:<\"" + i + "\">]]");
+
+      if (i%2 == 0) {
+        futures.add(writer.assignAsync(context, null, 0));
+        expected.assign(context);
+      }
+      futures.add(writer.applyAsync(op, null, 0));
+      expected.apply(op);
+      if (i%10 == 0) {
+        futures.add(writer.clearAsync(b, 0));
+        expected.value(b).clear();
+      }
+    }
+    futures.add(writer.synchAsync());
+    for (CompletableFuture<Long> future : futures) {
+      future.get(60, TimeUnit.SECONDS);
+    }
+    c1.client.synch(null);
+    reader.checkContext(10, expected.canonical());
+    if (c1.server.getConflationCount() == 0) {
+      throw new TestException(
+        20, "No notifications of the lagging participant were conflated"
+      );
+    }
+    deletePairs();
+    aether.stop();
+  }
+
+  public static void main(String[] argv)
+  {
+    IntenseAEPTest10 test = new IntenseAEPTest10();
+    test.testMain(argv);
+  }
+
+}
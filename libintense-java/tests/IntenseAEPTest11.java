@@ -0,0 +1,147 @@
+// ****************************************************************************
+//
+// IntenseAEPTest11.java : A test of the accumulation of interleaved
+// operations on disjoint subtrees.
+//
+// Copyright 2026 the Intense project contributors.
+//
+// This file is part of the Intense project.
+//
+// Intense is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// Intense is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with Intense; if not, write to the Free Software Foundation, Inc.,
+// 59 Temple Place, Suite 330, Boston, MA 02111-1307, USA.
+//
+// ****************************************************************************
+
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+import intense.*;
+import intense.log.*;
+import intense.aep.*;
+
+
+public class IntenseAEPTest11
+  extends IntenseAEPTest {
+
+  public static final int logLevel = Log.ERROR;
+
+  public static final int operationCount = 200;
+
+  public IntenseAEPTest11
+  ()
+  {
+    super("IntenseAEPTest11");
+  }
+
+  protected void test
+  ()
+    throws Exception
+  {
+    LogStream logStream = new LogStream(System.err, logLevel, true, true);
+    Log log = new Log(logStream);
+    AEPServer.AEther aether = new AEPServer.AEther(10000, log, logLevel);
+    List<CompletableFuture<Long>> futures =
+      new LinkedList<CompletableFuture<Long>>();
+    Context expected = new Context();
+
+    aether.start();
+    setLog(log);
+
+    XDRClientServerPair x1 =
+      new XDRClientServerPair("x1", aether, log, logLevel);
+    XDRClientServerPair x2 =
+      new XDRClientServerPair("x2", aether, log, logLevel);
+    XDRClientServerPair x3 =
+      new XDRClientServerPair("x3", aether, log, logLevel);
+
+    addPair(x1);
+    addPair(x2);
+    addPair(x3);
+
+    TestParticipant a = x1.newParticipant(1);
+    TestParticipant b = x2.newParticipant(1);
+    TestParticipant root = x3.newParticipant(1);
+    TestParticipant reader = x3.newParticipant(2);
+
+    a.joinAsync(null, true, new CompoundDimension("a")).get();
+    b.joinAsync(null, true, new CompoundDimension("b")).get();
+    root.join(true);
+    reader.join(true);
+
+    // Unfenced operations on the disjoint subtrees a and b interleave in the
+    // AEther, and each subtree accumulates; the operations of root enclose
+    // both subtrees, but change neither:
+    for (int i = 0; i < operationCount; i++) {
+      Context context = new Context("<\"" + i + "\"+n:<\"" + i + "\">>");
+      ContextOp op = new ContextOp("[m:[x:<\"" + i + "\">]]");
+
+      futures.add(a.assignAsync(context, null, 0));
+      futures.add(b.applyAsync(op, null, 0));
+      futures.add(a.applyAsync(op, null, 0));
+      futures.add(b.assignAsync(context, new CompoundDimension("k"), 0));
+      if (i%25 == 0) {
+        futures.add(
+          root.applyAsync(new ContextOp("[c:<\"" + i + "\">]"), null, 0)
+        );
+      }
+      expected.value(new CompoundDimension("a")).assign(context);
+      expected.value(new CompoundDimension("b")).apply(op);
+      expected.value(new CompoundDimension("a")).apply(op);
+      expected.value(new CompoundDimension("b:k")).assign(context);
+      if (i%25 == 0) {
+        expected.value(new CompoundDimension("c")).assign(
+          new Context("<\"" + i + "\">")
+        );
+      }
+    }
+    futures.add(a.synchAsync());
+    futures.add(b.synchAsync());
+    futures.add(root.synchAsync());
+    for (CompletableFuture<Long> future : futures) {
+      future.get(60, TimeUnit.SECONDS);
+    }
+    x3.client.synch(null);
+    reader.checkContext(10, expected.canonical());
+
+    aether.setMaxAccumulationSlots(0);
+    if (aether.getMaxAccumulationSlots() != 1) {
+      throw new TestException(
+        20, "Unexpected accumulation slot count " +
+        aether.getMaxAccumulationSlots()
+      );
+    }
+    futures.clear();
+    futures.add(a.clearAsync(null, 0));
+    futures.add(b.clearAsync(null, 0));
+    futures.add(root.synchAsync());
+    for (CompletableFuture<Long> future : futures) {
+      future.get(60, TimeUnit.SECONDS);
+    }
+    x3.client.synch(null);
+    expected.value(new CompoundDimension("a")).clear();
+    expected.value(new CompoundDimension("b")).clear();
+    reader.checkContext(30, expected.canonical());
+
+    deletePairs();
+    aether.stop();
+  }
+
+  public static void main(String[] argv)
+  {
+    IntenseAEPTest11 test = new IntenseAEPTest11();
+    test.testMain(argv);
+  }
+
+}
@@ -0,0 +1,271 @@
+// ****************************************************************************
+//
+// IntenseAEPTest12.java : A test of accumulation policies.
+//
+// Copyright 2026 the Intense project contributors.
+//
+// This file is part of the Intense project.
+//
+// Intense is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// Intense is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with Intense; if not, write to the Free Software Foundation, Inc.,
+// 59 Temple Place, Suite 330, Boston, MA 02111-1307, USA.
+//
+// ****************************************************************************
+
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import intense.*;
+import intense.log.*;
+import intense.aep.*;
+
+
+public class IntenseAEPTest12
+  extends IntenseAEPTest {
+
+  public static final int logLevel = Log.ERROR;
+
+  public static final int operationCount = 200;
+
+  /**
+   * A policy which counts its copies, and the decisions they make.
+   */
+  private static class CountingPolicy
+    extends AEPDefaultAccumulationPolicy {
+
+    protected AtomicInteger copies;
+
+    protected AtomicInteger decisions;
+
+    public CountingPolicy
+    (int maxDepth, AtomicInteger copies, AtomicInteger decisions)
+    {
+      super(maxDepth, 0, false);
+      this.copies = copies;
+      this.decisions = decisions;
+    }
+
+    protected CountingPolicy accumulationPolicyFactory
+    ()
+    {
+      copies.incrementAndGet();
+      return new CountingPolicy(maxDepth, copies, decisions);
+    }
+
+    public boolean shouldApply
+    (int accumulatedCount, long lingerNanos, long now)
+    {
+      decisions.incrementAndGet();
+      return super.shouldApply(accumulatedCount, lingerNanos, now);
+    }
+
+  }
+
+  /**
+   * A policy which does not define its own accumulationPolicyFactory().
+   */
+  private static class UncopyablePolicy
+    extends AEPDefaultAccumulationPolicy {
+
+    public boolean shouldApply
+    (int accumulatedCount, long lingerNanos, long now)
+    {
+      return true;
+    }
+
+  }
+
+  public IntenseAEPTest12
+  ()
+  {
+    super("IntenseAEPTest12");
+  }
+
+  protected void testPolicy
+  ()
+    throws Exception
+  {
+    AEPDefaultAccumulationPolicy policy =
+      AEPDefaultAccumulationPolicy.parse(" adaptive, linger=2,depth=8");
+
+    if (!policy.toString().equals("depth=8,linger=2,adaptive")) {
+      throw new TestException(1, "Bad parsed policy " + policy);
+    }
+    try {
+      AEPDefaultAccumulationPolicy.parse("depth=x");
+      throw new TestException(2, "Parsed a bad policy");
+    } catch (AEPException e) {
+    }
+    policy = new AEPDefaultAccumulationPolicy(4, 0, false);
+    if ((policy.shouldApply(3, 0, 1))||(!policy.shouldApply(4, 0, 2))) {
+      throw new TestException(3, "Bad depth-limited policy");
+    }
+    policy = new AEPDefaultAccumulationPolicy(0, 1, false);
+    if ((policy.shouldApply(100, 999999, 1))||
+        (!policy.shouldApply(1, 1000000, 2))) {
+      throw new TestException(4, "Bad linger-limited policy");
+    }
+    // Tokens arriving every millisecond, against a 2ms budget, of which
+    // applications take 1ms:
+    policy = new AEPDefaultAccumulationPolicy(0, 2, true);
+    for (int i = 1; i <= 10; i++) {
+      policy.shouldApply(1, 0, i*1000000L);
+    }
+    policy.applied(10, 1000000);
+    if (policy.getAdaptiveDepth() != 1) {
+      throw new TestException(
+        5, "Unexpected adaptive depth " + policy.getAdaptiveDepth()
+      );
+    }
+    // The system property gives the default policy, unless it is invalid:
+    System.setProperty(AEPAccumulationPolicy.propertyName, "depth=3");
+    policy = AEPAccumulationPolicy.getDefault(null, logLevel);
+    if (!policy.toString().equals("depth=3,linger=0")) {
+      throw new TestException(6, "Bad default policy " + policy);
+    }
+    System.setProperty(AEPAccumulationPolicy.propertyName, "depth=x");
+    policy = AEPAccumulationPolicy.getDefault(null, logLevel);
+    System.clearProperty(AEPAccumulationPolicy.propertyName);
+    if (!policy.toString().equals("depth=0,linger=0")) {
+      throw new TestException(7, "Bad default policy " + policy);
+    }
+  }
+
+  /**
+   * Every lane of a partitioned AEther decides with its own copy of a
+   * subclassed policy, and subclasses which cannot be copied are refused.
+   */
+  protected void testSubclass
+  (Log log)
+    throws Exception
+  {
+    AEPServer.AEther aether = new AEPServer.AEther(10000, 1, 2, log, logLevel);
+    AtomicInteger copies = new AtomicInteger();
+    AtomicInteger decisions = new AtomicInteger();
+    CountingPolicy policy = new CountingPolicy(4, copies, decisions);
+    List<CompletableFuture<Long>> futures =
+      new LinkedList<CompletableFuture<Long>>();
+
+    aether.setAccumulationPolicy(policy);
+    // One copy for the ear thread, and one for each partition:
+    if ((copies.get() != 3)||(aether.getAccumulationPolicy() != policy)) {
+      throw new TestException(
+        30, "Policy copied " + copies.get() + " times, instead of 3"
+      );
+    }
+    try {
+      aether.setAccumulationPolicy(new UncopyablePolicy());
+      throw new TestException(31, "Set a policy which cannot be copied");
+    } catch (AEPException e) {
+    }
+    if (aether.getAccumulationPolicy() != policy) {
+      throw new TestException(32, "Refused policy replaced the old one");
+    }
+    aether.start();
+
+    XDRClientServerPair x3 =
+      new XDRClientServerPair("x3", aether, log, logLevel);
+
+    addPair(x3);
+
+    TestParticipant writer = x3.newParticipant(1);
+
+    writer.join(true);
+    for (int i = 0; i < operationCount; i++) {
+      futures.add(writer.applyAsync(
+        new ContextOp("[p" + (i%4) + ":[n:<\"" + i + "\">]]"), null, 0
+      ));
+    }
+    futures.add(writer.synchAsync());
+    for (CompletableFuture<Long> future : futures) {
+      future.get(60, TimeUnit.SECONDS);
+    }
+    if ((copies.get() != 3)||(decisions.get() == 0)) {
+      throw new TestException(
+        33,
+        "Lanes made " + decisions.get() + " decisions with " + copies.get() +
+        " copies of the policy"
+      );
+    }
+
+    deletePairs();
+    aether.stop();
+  }
+
+  protected void test
+  ()
+    throws Exception
+  {
+    LogStream logStream = new LogStream(System.err, logLevel, true, true);
+    Log log = new Log(logStream);
+    AEPServer.AEther aether = new AEPServer.AEther(10000, log, logLevel);
+    List<CompletableFuture<Long>> futures =
+      new LinkedList<CompletableFuture<Long>>();
+    Context expected = new Context();
+
+    testPolicy();
+    aether.setAccumulationPolicy(
+      AEPDefaultAccumulationPolicy.parse("depth=8,linger=2,adaptive")
+    );
+    aether.start();
+    setLog(log);
+
+    XDRClientServerPair x1 =
+      new XDRClientServerPair("x1", aether, log, logLevel);
+    XDRClientServerPair x2 =
+      new XDRClientServerPair("x2", aether, log, logLevel);
+
+    addPair(x1);
+    addPair(x2);
+
+    TestParticipant writer = x1.newParticipant(1);
+    TestParticipant reader = x2.newParticipant(1);
+
+    writer.join(true);
+    reader.join(true);
+
+    for (int i = 0; i < operationCount; i++) {
+      ContextOp op = new ContextOp("[n:<\"" + i + "\">]");
+
+      futures.add(writer.applyAsync(op, null, 0));
+      expected.apply(op);
+      if (i == operationCount/2) {
+        // Changing the policy mid-stream takes effect in every lane:
+        aether.setAccumulationPolicy(null);
+        if (!aether.getAccumulationPolicy().toString().equals(
+              "depth=0,linger=0")) {
+          throw new TestException(10, "Policy not restored to default");
+        }
+      }
+    }
+    futures.add(writer.synchAsync());
+    for (CompletableFuture<Long> future : futures) {
+      future.get(60, TimeUnit.SECONDS);
+    }
+    x2.client.synch(null);
+    reader.checkContext(20, expected.canonical());
+
+    deletePairs();
+    aether.stop();
+
+    testSubclass(log);
+  }
+
+  public static void main(String[] argv)
+  {
+    IntenseAEPTest12 test = new IntenseAEPTest12();
+    test.testMain(argv);
+  }
+
+}
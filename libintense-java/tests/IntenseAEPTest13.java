@@ -0,0 +1,85 @@
+// ****************************************************************************
+//
+// IntenseAEPTest13.java : A sanity test for binary mode AEP 2, alongside XDR
+// mode, over streams and AEPSocketServer connections.
+//
+// Copyright 2026 the Intense project contributors.
+//
+// This file is part of the Intense project.
+//
+// Intense is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// Intense is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with Intense; if not, write to the Free Software Foundation, Inc.,
+// 59 Temple Place, Suite 330, Boston, MA 02111-1307, USA.
+//
+// ****************************************************************************
+
+
+import java.io.*;
+import java.util.*;
+import java.util.regex.*;
+import intense.*;
+import intense.log.*;
+import intense.aep.*;
+
+
+public class IntenseAEPTest13
+  extends IntenseAEPTest {
+
+  public static final int logLevel = Log.ERROR;
+
+  public IntenseAEPTest13
+  ()
+  {
+    super("IntenseAEPTest13");
+  }
+
+  protected void test
+  ()
+    throws Exception
+  {
+    LogStream logStream = new LogStream(System.err, logLevel, true, true);
+    Log log = new Log(logStream);
+    AEPServer.AEther aether = new AEPServer.AEther(10, log, logLevel);
+    AEPSocketServer socketServer = new AEPSocketServer(
+      aether, 0, 2, 2, log, logLevel, true
+    );
+
+    aether.start();
+    socketServer.start();
+    setLog(log);
+    addPair(new BinaryClientServerPair("b1", aether, log, logLevel));
+    addPair(new BinaryClientServerPair("b2", aether, log, logLevel));
+    addPair(new XDRClientServerPair("x1", aether, log, logLevel));
+    // The socket server negotiates the mode of each connection:
+    addPair(
+      new SocketClientServerPair("n1", socketServer, log, logLevel, true)
+    );
+    addPair(
+      new SocketClientServerPair("n2", socketServer, log, logLevel, false)
+    );
+    addPair(
+      new SocketClientServerPair("n3", socketServer, log, logLevel, true)
+    );
+    aepTest();
+    deletePairs();
+    socketServer.stop();
+    aether.stop();
+  }
+
+  public static void main(String[] argv)
+  {
+    IntenseAEPTest13 test = new IntenseAEPTest13();
+    test.testMain(argv);
+  }
+
+}
@@ -0,0 +1,95 @@
+// ****************************************************************************
+//
+// IntenseAEPTest14.java : A sanity test for binary mode AEP 2 connections
+// with differently sized dimension dictionaries.
+//
+// Copyright 2026 the Intense project contributors.
+//
+// This file is part of the Intense project.
+//
+// Intense is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// Intense is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with Intense; if not, write to the Free Software Foundation, Inc.,
+// 59 Temple Place, Suite 330, Boston, MA 02111-1307, USA.
+//
+// ****************************************************************************
+
+
+import java.io.*;
+import java.util.*;
+import java.util.regex.*;
+import intense.*;
+import intense.log.*;
+import intense.aep.*;
+
+
+public class IntenseAEPTest14
+  extends IntenseAEPTest {
+
+  public static final int logLevel = Log.ERROR;
+
+  public IntenseAEPTest14
+  ()
+  {
+    super("IntenseAEPTest14");
+  }
+
+  protected void test
+  ()
+    throws Exception
+  {
+    LogStream logStream = new LogStream(System.err, logLevel, true, true);
+    Log log = new Log(logStream);
+    AEPServer.AEther aether = new AEPServer.AEther(10, log, logLevel);
+    AEPSocketServer socketServer = new AEPSocketServer(
+      aether, 0, 2, 2, log, logLevel, true
+    );
+
+    aether.start();
+    socketServer.start();
+    setLog(log);
+    BinaryClientServerPair b1 =
+      new BinaryClientServerPair("b1", aether, log, logLevel);
+    BinaryClientServerPair b2 =
+      new BinaryClientServerPair("b2", aether, log, logLevel);
+    BinaryClientServerPair b3 =
+      new BinaryClientServerPair("b3", aether, log, logLevel);
+
+    // No dictionary in either direction:
+    ((AEPBinaryClient)b2.client).setMaxDictionarySize(0);
+    // Dictionaries which fill up almost at once:
+    ((AEPBinaryServer)b3.server).setMaxDictionarySize(2);
+    ((AEPBinaryClient)b3.client).setMaxDictionarySize(3);
+    socketServer.setMaxDictionarySize(5);
+    addPair(b1);
+    addPair(b2);
+    addPair(b3);
+    addPair(
+      new SocketClientServerPair("n1", socketServer, log, logLevel, true)
+    );
+    addPair(
+      new SocketClientServerPair("n2", socketServer, log, logLevel, true)
+    );
+    addPair(new XDRClientServerPair("x1", aether, log, logLevel));
+    aepTest();
+    deletePairs();
+    socketServer.stop();
+    aether.stop();
+  }
+
+  public static void main(String[] argv)
+  {
+    IntenseAEPTest14 test = new IntenseAEPTest14();
+    test.testMain(argv);
+  }
+
+}
@@ -0,0 +1,177 @@
+// ****************************************************************************
+//
+// IntenseAEPTest15.java : A sanity test for compressed binary and framed
+// XDR mode AEP 2 connections.
+//
+// Copyright 2026 the Intense project contributors.
+//
+// This file is part of the Intense project.
+//
+// Intense is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// Intense is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with Intense; if not, write to the Free Software Foundation, Inc.,
+// 59 Temple Place, Suite 330, Boston, MA 02111-1307, USA.
+//
+// ****************************************************************************
+
+
+import java.io.*;
+import java.lang.management.*;
+import java.util.*;
+import java.util.regex.*;
+import intense.*;
+import intense.log.*;
+import intense.aep.*;
+
+
+public class IntenseAEPTest15
+  extends IntenseAEPTest {
+
+  public static final int logLevel = Log.ERROR;
+
+  public IntenseAEPTest15
+  ()
+  {
+    super("IntenseAEPTest15");
+  }
+
+  /**
+   * @return The number of bytes allocated so far by the live threads.
+   */
+  private static long allocatedBytes
+  ()
+  {
+    com.sun.management.ThreadMXBean threads =
+      (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+    long total = 0;
+
+    for (long bytes : threads.getThreadAllocatedBytes(
+           threads.getAllThreadIds())) {
+      if (bytes > 0) {
+        total += bytes;
+      }
+    }
+    return total;
+  }
+
+  /**
+   * A frame which declares the largest length, but does not deliver it,
+   * does not make a server allocate that length.
+   */
+  private void testDeclaredLength
+  (int i, AEPServer.AEther aether, byte[] frameStart)
+    throws Exception
+  {
+    PipedOutputStream peer = new PipedOutputStream();
+    AEPBinaryServer server = new AEPBinaryServer(
+      aether, new PipedInputStream(peer), new ByteArrayOutputStream(), null,
+      logLevel, true
+    );
+    long before;
+    long allocated;
+
+    server.start();
+    before = allocatedBytes();
+    // A binary preamble, with no dimension dictionary:
+    peer.write(new byte[] { (byte)0xae, 1, 0, 0 });
+    peer.write(frameStart);
+    peer.flush();
+    Thread.sleep(500);
+    allocated = allocatedBytes() - before;
+    peer.close();
+    server.stop();
+    if (allocated > 1<<24) {
+      throw new IntenseTestException(
+        i, "ERROR: Server allocated " + allocated + " bytes for a frame it " +
+        "did not receive!"
+      );
+    }
+  }
+
+  protected void test
+  ()
+    throws Exception
+  {
+    LogStream logStream = new LogStream(System.err, logLevel, true, true);
+    Log log = new Log(logStream);
+    AEPServer.AEther aether = new AEPServer.AEther(10, log, logLevel);
+    AEPSocketServer socketServer = new AEPSocketServer(
+      aether, 0, 2, 2, log, logLevel, true
+    );
+
+    aether.start();
+    socketServer.start();
+    setLog(log);
+    // An uncompressed frame of 1<<28 bytes, of which 64 arrive, and a
+    // compressed frame of 16 bytes, which claims to inflate to 1<<28:
+    testDeclaredLength(
+      1, aether, Arrays.copyOf(new byte[] { -128, -128, -128, -128, 2 }, 69)
+    );
+    testDeclaredLength(
+      2, aether,
+      Arrays.copyOf(new byte[] { 33, -128, -128, -128, -128, 1 }, 17)
+    );
+    BinaryClientServerPair b1 =
+      new BinaryClientServerPair("b1", aether, log, logLevel);
+    BinaryClientServerPair b2 =
+      new BinaryClientServerPair("b2", aether, log, logLevel);
+    BinaryClientServerPair b3 =
+      new BinaryClientServerPair("b3", aether, log, logLevel);
+    XDRClientServerPair x1 =
+      new XDRClientServerPair("x1", aether, log, logLevel);
+    XDRClientServerPair x2 =
+      new XDRClientServerPair("x2", aether, log, logLevel);
+
+    // Every token compressed, in both directions:
+    ((AEPBinaryServer)b1.server).setCompressionThreshold(1);
+    ((AEPBinaryClient)b1.client).setCompressionThreshold(1);
+    // Only larger tokens, with no dimension dictionary:
+    ((AEPBinaryServer)b2.server).setCompressionThreshold(64);
+    ((AEPBinaryClient)b2.client).setCompressionThreshold(64);
+    ((AEPBinaryClient)b2.client).setMaxDictionarySize(0);
+    // Compressed in one direction only:
+    ((AEPBinaryClient)b3.client).setCompressionThreshold(1);
+    // Framed XDR, compressed in both directions, and in one:
+    ((AEPXDRServer)x1.server).setCompressionThreshold(1);
+    ((AEPXDRClient)x1.client).setCompressionThreshold(1);
+    ((AEPXDRClient)x2.client).setCompressionThreshold(32);
+    socketServer.setCompressionThreshold(32);
+    addPair(b1);
+    addPair(b2);
+    addPair(b3);
+    addPair(x1);
+    addPair(x2);
+    SocketClientServerPair n1 =
+      new SocketClientServerPair("n1", socketServer, log, logLevel, true);
+    SocketClientServerPair n2 =
+      new SocketClientServerPair("n2", socketServer, log, logLevel, false);
+
+    ((AEPBinaryClient)n1.client).setCompressionThreshold(1);
+    ((AEPXDRClient)n2.client).setCompressionThreshold(1);
+    addPair(n1);
+    addPair(n2);
+    // Plain XDR alongside:
+    addPair(new XDRClientServerPair("x3", aether, log, logLevel));
+    addPair(new SocketClientServerPair("n3", socketServer, log, logLevel));
+    aepTest();
+    deletePairs();
+    socketServer.stop();
+    aether.stop();
+  }
+
+  public static void main(String[] argv)
+  {
+    IntenseAEPTest15 test = new IntenseAEPTest15();
+    test.testMain(argv);
+  }
+
+}
@@ -0,0 +1,272 @@
+// ****************************************************************************
+//
+// IntenseAEPTest16.java : A test of the AEPIngressQueue, with a small ring.
+//
+// Copyright 2026 the Intense project contributors.
+//
+// This file is part of the Intense project.
+//
+// Intense is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// Intense is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with Intense; if not, write to the Free Software Foundation, Inc.,
+// 59 Temple Place, Suite 330, Boston, MA 02111-1307, USA.
+//
+// ****************************************************************************
+
+
+import intense.*;
+import intense.aep.*;
+
+
+public class IntenseAEPTest16
+  extends IntenseAEPTest {
+
+  public static final int capacity = 4;
+
+  public static final int producerCount = 8;
+
+  public static final int perProducer = 20000;
+
+  public IntenseAEPTest16
+  ()
+  {
+    super("IntenseAEPTest16");
+  }
+
+  /**
+   * Wait for a thread to park, or to finish.
+   */
+  private static void waitForParked
+  (int i, Thread thread)
+    throws Exception
+  {
+    for (int tries = 0; tries < 1000; tries++) {
+      Thread.State state = thread.getState();
+
+      if ((state == Thread.State.WAITING)||
+          (state == Thread.State.TERMINATED)) {
+        return;
+      }
+      Thread.sleep(5);
+    }
+    throw new IntenseTestException(i, "ERROR: Thread did not park!");
+  }
+
+  /**
+   * A single thread, going round the ring many times, with elements
+   * published out of order.
+   */
+  private void testWrapAround
+  ()
+    throws Exception
+  {
+    AEPIngressQueue<Long> queue = new AEPIngressQueue<Long>(capacity);
+    Long[] batch = new Long[3];
+    long expected = 0;
+
+    for (int round = 0; round < 10; round++) {
+      long first = queue.claim();
+      long second = queue.claim();
+
+      if ((first != 2*round)||(second != first + 1)||(queue.size() != 2)) {
+        throw new IntenseTestException(
+          10, "ERROR: Claimed tickets " + first + " and " + second + "!"
+        );
+      }
+      // The second element waits for the first:
+      queue.publish(second, second);
+      if (queue.drain(batch) != 0) {
+        throw new IntenseTestException(
+          11, "ERROR: Drained an element ahead of its predecessor!"
+        );
+      }
+      queue.publish(first, first);
+      if ((queue.drain(batch) != 2)||(batch[0].longValue() != expected)||
+          (batch[1].longValue() != expected + 1)||(queue.size() != 0)) {
+        throw new IntenseTestException(
+          12, "ERROR: Drained the wrong elements at " + expected + "!"
+        );
+      }
+      expected += 2;
+    }
+  }
+
+  /**
+   * Many producers, each publishing in its own order, through a ring much
+   * smaller than their number, to a consumer which parks when it is empty.
+   */
+  private void testProducers
+  ()
+    throws Exception
+  {
+    final AEPIngressQueue<long[]> queue =
+      new AEPIngressQueue<long[]>(capacity);
+    Thread[] producers = new Thread[producerCount];
+    long[] next = new long[producerCount];
+    long[][] batch = new long[3][];
+    long lastTicket = -1;
+    int received = 0;
+
+    queue.setConsumer(Thread.currentThread());
+    for (int i = 0; i < producerCount; i++) {
+      final int producer = i;
+
+      producers[i] = new Thread() {
+          public void run
+          ()
+          {
+            for (int j = 0; j < perProducer; j++) {
+              long ticket = queue.claim();
+
+              queue.publish(ticket, new long[] { producer, j, ticket });
+            }
+          }
+        };
+      producers[i].start();
+    }
+    while (received < producerCount*perProducer) {
+      int count = queue.drain(batch);
+
+      if (count == 0) {
+        queue.await();
+      }
+      for (int i = 0; i < count; i++) {
+        int producer = (int)batch[i][0];
+
+        if ((batch[i][1] != next[producer])||(batch[i][2] != lastTicket + 1)) {
+          throw new IntenseTestException(
+            20,
+            "ERROR: Producer " + producer + " element " + batch[i][1] +
+            " (ticket " + batch[i][2] + ") received after ticket " +
+            lastTicket + ", instead of element " + next[producer] + "!"
+          );
+        }
+        next[producer]++;
+        lastTicket = batch[i][2];
+        received++;
+      }
+    }
+    for (int i = 0; i < producerCount; i++) {
+      producers[i].join();
+    }
+    if (queue.size() != 0) {
+      throw new IntenseTestException(
+        21, "ERROR: " + queue.size() + " elements left in the queue!"
+      );
+    }
+  }
+
+  /**
+   * A producer waits for room in a full ring, and a parked consumer is
+   * woken by a publication, and by wake().
+   */
+  private void testWaiting
+  ()
+    throws Exception
+  {
+    final AEPIngressQueue<Integer> queue =
+      new AEPIngressQueue<Integer>(capacity);
+    final Integer[] batch = new Integer[capacity];
+    final int[] taken = new int[1];
+    Thread producer;
+    Thread consumer;
+
+    for (int i = 0; i < capacity; i++) {
+      queue.publish(queue.claim(), i);
+    }
+    producer = new Thread() {
+        public void run
+        ()
+        {
+          queue.publish(queue.claim(), capacity);
+        }
+      };
+    producer.start();
+    Thread.sleep(100);
+    if ((!producer.isAlive())||(queue.size() != capacity + 1)) {
+      throw new IntenseTestException(
+        30, "ERROR: Producer did not wait for room in a full ring!"
+      );
+    }
+    if (queue.drain(new Integer[1]) != 1) {
+      throw new IntenseTestException(31, "ERROR: Could not drain full ring!");
+    }
+    producer.join(10000);
+    if ((producer.isAlive())||(queue.drain(batch) != capacity)||
+        (batch[capacity - 1].intValue() != capacity)) {
+      throw new IntenseTestException(
+        32, "ERROR: Producer did not proceed once there was room!"
+      );
+    }
+
+    // The consumer parks, with nothing to take, until a publication:
+    consumer = new Thread() {
+        public void run
+        ()
+        {
+          while ((taken[0] = queue.drain(batch)) == 0) {
+            queue.await();
+          }
+        }
+      };
+    queue.setConsumer(consumer);
+    consumer.start();
+    waitForParked(40, consumer);
+    if (!consumer.isAlive()) {
+      throw new IntenseTestException(
+        41, "ERROR: Consumer took from an empty queue!"
+      );
+    }
+    queue.publish(queue.claim(), -1);
+    consumer.join(10000);
+    if ((consumer.isAlive())||(taken[0] != 1)||(batch[0].intValue() != -1)) {
+      throw new IntenseTestException(
+        42, "ERROR: Parked consumer was not woken by a publication!"
+      );
+    }
+
+    // wake() unparks the consumer, with nothing published:
+    consumer = new Thread() {
+        public void run
+        ()
+        {
+          queue.await();
+        }
+      };
+    queue.setConsumer(consumer);
+    consumer.start();
+    waitForParked(50, consumer);
+    queue.wake();
+    consumer.join(10000);
+    if (consumer.isAlive()) {
+      throw new IntenseTestException(
+        51, "ERROR: Parked consumer was not woken by wake()!"
+      );
+    }
+  }
+
+  protected void test
+  ()
+    throws Exception
+  {
+    testWrapAround();
+    testProducers();
+    testWaiting();
+  }
+
+  public static void main(String[] argv)
+  {
+    IntenseAEPTest16 test = new IntenseAEPTest16();
+    test.testMain(argv);
+  }
+
+}
@@ -0,0 +1,352 @@
+// ****************************************************************************
+//
+// IntenseAEPTest17.java : A test of node encodings shared between the
+// notifications of a single operation.
+//
+// Copyright 2026 the Intense project contributors.
+//
+// This file is part of the Intense project.
+//
+// Intense is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// Intense is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with Intense; if not, write to the Free Software Foundation, Inc.,
+// 59 Temple Place, Suite 330, Boston, MA 02111-1307, USA.
+//
+// ****************************************************************************
+
+
+import java.io.*;
+import java.util.*;
+import intense.*;
+import intense.log.*;
+import intense.aep.*;
+
+
+public class IntenseAEPTest17
+  extends IntenseAEPTest {
+
+  public static final int logLevel = Log.ERROR;
+
+  public static final int rounds = 20;
+
+  /**
+   * A NotifyToken whose nodes can be inspected.
+   */
+  private static class NodeToken
+    extends AEPClient.NotifyToken {
+
+    Context getNode
+    (int i)
+    {
+      return nodes.get(i);
+    }
+
+    int getNodeCount
+    ()
+    {
+      return nodes.size();
+    }
+
+  }
+
+  /**
+   * An OutputStream which counts the bytes written through it.
+   */
+  private static class CountingOutputStream
+    extends FilterOutputStream {
+
+    long count = 0;
+
+    CountingOutputStream
+    (OutputStream out)
+    {
+      super(out);
+    }
+
+    public void write
+    (int b)
+      throws IOException
+    {
+      out.write(b);
+      count++;
+    }
+
+    public void write
+    (byte[] b, int off, int len)
+      throws IOException
+    {
+      out.write(b, off, len);
+      count += len;
+    }
+
+  }
+
+  /**
+   * A BINARY mode pair which counts the bytes sent by the server.
+   */
+  private class CountedClientServerPair
+    extends StreamClientServerPair {
+
+    CountingOutputStream counter;
+
+    CountedClientServerPair
+    (String name, AEPServer.AEther aether, Log log, int logLevel,
+     boolean dictionary)
+      throws InterruptedException, IOException, IntenseException, AEPException
+    {
+      super(name, log, logLevel);
+      counter = new CountingOutputStream(serverOut);
+
+      AEPBinaryServer binaryServer = new AEPBinaryServer(
+        aether, serverIn, counter, log, logLevel, true
+      );
+      AEPBinaryClient binaryClient = new AEPBinaryClient(
+        clientIn, clientOut, log, logLevel
+      );
+
+      if (!dictionary) {
+        binaryClient.setMaxDictionarySize(0);
+      }
+      setServer(binaryServer);
+      setClient(binaryClient);
+      binaryServer.start();
+      binaryClient.start();
+    }
+
+  }
+
+  public IntenseAEPTest17
+  ()
+  {
+    super("IntenseAEPTest17");
+  }
+
+  private static NodeToken newToken
+  (Context[] nodes)
+  {
+    NodeToken token = new NodeToken();
+
+    for (int i = 0; i < nodes.length; i++) {
+      token.addNode(nodes[i]);
+    }
+    return token;
+  }
+
+  private static byte[] serialise
+  (AEPClient.NotifyToken token)
+    throws Exception
+  {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(bytes);
+
+    token.serialise(out);
+    out.flush();
+    return bytes.toByteArray();
+  }
+
+  private static NodeToken deserialise
+  (byte[] bytes)
+    throws Exception
+  {
+    NodeToken token = new NodeToken();
+
+    token.deserialise(new DataInputStream(new ByteArrayInputStream(bytes)));
+    return token;
+  }
+
+  /**
+   * Tokens sharing an encoding map serialise each node once, and reuse
+   * the bytes, in the mode given with the map.
+   */
+  private void testTokens
+  ()
+    throws Exception
+  {
+    Context[] nodes = {
+      new Context("<a:<\"1\">+b:<c:<2>+d:<\"three\">>>"),
+      new Context("<e:<4>+f:<\"five\">>")
+    };
+    String[] canonicals = { nodes[0].canonical(), nodes[1].canonical() };
+    Map<Context, byte[]> xdrEncodings = new IdentityHashMap<Context, byte[]>();
+    Map<Context, byte[]> binaryEncodings =
+      new IdentityHashMap<Context, byte[]>();
+    AEPClient.NotifyToken first = newToken(nodes);
+    AEPClient.NotifyToken second = newToken(nodes);
+    AEPClient.NotifyToken binary = newToken(nodes);
+    byte[] fresh = serialise(newToken(nodes));
+    byte[] firstBytes;
+    byte[] secondBytes;
+    byte[][] encodings = new byte[nodes.length][];
+    NodeToken decoded;
+
+    // In XDR mode, the shared encodings are those of Context.serialise():
+    first.setNodeEncodings(xdrEncodings);
+    firstBytes = serialise(first);
+    if ((!Arrays.equals(firstBytes, fresh))||(xdrEncodings.size() != 2)) {
+      throw new IntenseTestException(
+        10, "ERROR: Shared XDR encodings differ from fresh ones!"
+      );
+    }
+    for (int i = 0; i < nodes.length; i++) {
+      encodings[i] = xdrEncodings.get(nodes[i]);
+    }
+
+    // The nodes are not serialised again by a second token (so it still
+    // sends them as they were), or by the first:
+    nodes[0].value("a").setBase("changed");
+    second.setNodeEncodings(xdrEncodings);
+    secondBytes = serialise(second);
+    if ((!Arrays.equals(secondBytes, firstBytes))||
+        (!Arrays.equals(serialise(first), firstBytes))||
+        (xdrEncodings.size() != 2)||
+        (xdrEncodings.get(nodes[0]) != encodings[0])||
+        (xdrEncodings.get(nodes[1]) != encodings[1])) {
+      throw new IntenseTestException(
+        11, "ERROR: A shared node encoding was not reused!"
+      );
+    }
+    if (Arrays.equals(serialise(newToken(nodes)), firstBytes)) {
+      throw new IntenseTestException(
+        12, "ERROR: Changed node serialised as before!"
+      );
+    }
+
+    // Every token decodes the same nodes:
+    for (byte[] bytes : new byte[][] { fresh, firstBytes, secondBytes }) {
+      decoded = deserialise(bytes);
+      if ((decoded.getNodeCount() != 2)||
+          (!decoded.getNode(0).canonical().equals(canonicals[0]))||
+          (!decoded.getNode(1).canonical().equals(canonicals[1]))) {
+        throw new IntenseTestException(
+          13, "ERROR: Shared encodings decoded differently!"
+        );
+      }
+    }
+
+    // BINARY encodings are kept apart from XDR ones:
+    binary.setNodeEncodings(binaryEncodings, AEPClient.BINARY);
+    serialise(binary);
+    if ((binaryEncodings.size() != 2)||(xdrEncodings.size() != 2)||
+        (Arrays.equals(binaryEncodings.get(nodes[1]), encodings[1]))) {
+      throw new IntenseTestException(
+        20, "ERROR: BINARY encodings mixed with XDR ones!"
+      );
+    }
+
+    // A token switched back to XDR mode sends the XDR encodings:
+    binary.setNodeEncodings(xdrEncodings, AEPClient.XDR);
+    if ((!Arrays.equals(serialise(binary), firstBytes))||
+        (binaryEncodings.size() != 2)||(xdrEncodings.size() != 2)) {
+      throw new IntenseTestException(
+        21, "ERROR: Token did not switch back to XDR encodings!"
+      );
+    }
+  }
+
+  /**
+   * Participants on XDR and BINARY connections, some of which share node
+   * encodings (XDR and dictionary-less BINARY), and some of which opt out
+   * (BINARY, with dimension dictionaries), all see the same values.  The
+   * connections which opt out benefit from their dictionaries.
+   */
+  private void testConnections
+  (Log log)
+    throws Exception
+  {
+    AEPServer.AEther aether = new AEPServer.AEther(10, log, logLevel);
+    AEPSocketServer socketServer = new AEPSocketServer(
+      aether, 0, 2, 2, log, logLevel, true
+    );
+    int flags = AEPServer.notifySelfBit|AEPServer.notifyClientBit;
+    CountedClientServerPair shared;
+    CountedClientServerPair unshared;
+    TestParticipant writer;
+
+    aether.start();
+    socketServer.start();
+    addPair(new XDRClientServerPair("x1", aether, log, logLevel));
+    addPair(new XDRClientServerPair("x2", aether, log, logLevel));
+    addPair(
+      shared = new CountedClientServerPair("b1", aether, log, logLevel, false)
+    );
+    addPair(new CountedClientServerPair("b2", aether, log, logLevel, false));
+    addPair(
+      unshared = new CountedClientServerPair("d1", aether, log, logLevel, true)
+    );
+    addPair(new CountedClientServerPair("d2", aether, log, logLevel, true));
+    addPair(
+      new SocketClientServerPair("n1", socketServer, log, logLevel, false)
+    );
+    addPair(
+      new SocketClientServerPair("n2", socketServer, log, logLevel, true)
+    );
+    for (ClientServerPair pair : pairs) {
+      pair.newParticipant(1).join(true, "n");
+      pair.newParticipant(2).join(true, "n");
+      pair.newParticipant(3).join(true, "n:reading");
+    }
+    writer = pairs.get(0).newParticipant(0);
+    writer.join(true);
+    for (int round = 0; round < rounds; round++) {
+      Context value = new Context(
+        "<reading:<\"" + round + "\"+temperature:<" + round +
+        ">>+location:<\"core\"+pressure:<" + round + ">>+sensor" +
+        (round%3) + ":<\"" + round + "\">>"
+      );
+
+      writer.assign(value, "n", flags);
+      writer.synch();
+      for (int i = 0; i < pairs.size(); i++) {
+        ClientServerPair pair = pairs.get(i);
+
+        pair.get(1).synch();
+        pair.get(1).checkContext(100 + 10*i, value.canonical());
+        pair.get(2).checkContext(101 + 10*i, value.canonical());
+        pair.get(3).checkContext(
+          102 + 10*i, value.lookup("reading").canonical()
+        );
+      }
+    }
+
+    // The connection with a dictionary sends nodes it encoded itself, and
+    // so sends fewer bytes than the one which shares node encodings:
+    if (unshared.counter.count*4 > shared.counter.count*3) {
+      throw new IntenseTestException(
+        200,
+        "ERROR: Connection with a dictionary sent " + unshared.counter.count +
+        " bytes, and the one without, " + shared.counter.count + "!"
+      );
+    }
+    deletePairs();
+    socketServer.stop();
+    aether.stop();
+  }
+
+  protected void test
+  ()
+    throws Exception
+  {
+    LogStream logStream = new LogStream(System.err, logLevel, true, true);
+    Log log = new Log(logStream);
+
+    setLog(log);
+    testTokens();
+    testConnections(log);
+  }
+
+  public static void main(String[] argv)
+  {
+    IntenseAEPTest17 test = new IntenseAEPTest17();
+    test.testMain(argv);
+  }
+
+}
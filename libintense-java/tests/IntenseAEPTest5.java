@@ -0,0 +1,186 @@
+// ****************************************************************************
+//
+// IntenseAEPTest5.java : A sanity test for AEP 2 over AEPSocketServer connections.
+//
+// Copyright 2026 the Intense project contributors.
+//
+// This file is part of the Intense project.
+//
+// Intense is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// Intense is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with Intense; if not, write to the Free Software Foundation, Inc.,
+// 59 Temple Place, Suite 330, Boston, MA 02111-1307, USA.
+//
+// ****************************************************************************
+
+
+import java.io.*;
+import java.net.*;
+import java.util.*;
+import java.util.regex.*;
+import intense.*;
+import intense.log.*;
+import intense.aep.*;
+
+
+public class IntenseAEPTest5
+  extends IntenseAEPTest {
+
+  public static final int logLevel = Log.ERROR;
+
+  public IntenseAEPTest5
+  ()
+  {
+    super("IntenseAEPTest5");
+  }
+
+  /**
+   * Connect a client, without a pair to disconnect it, and join it to the
+   * AEther with two participants.
+   */
+  private Socket joinUnpaired
+  (AEPSocketServer socketServer, Log log)
+    throws Exception
+  {
+    Socket socket = new Socket("localhost", socketServer.getPort());
+    AEPClient client = new AEPXDRClient(
+      socket.getInputStream(), socket.getOutputStream(), log, logLevel
+    );
+
+    client.start();
+    new TestParticipant(client, "unpaired 1", log, logLevel).join(true);
+    new TestParticipant(client, "unpaired 2", log, logLevel).join(
+      true, new CompoundDimension("unpaired")
+    );
+    return socket;
+  }
+
+  /**
+   * Wait for the AEther's headcount to reach the expected value.
+   */
+  private static void waitForHeadCount
+  (int i, AEPServer.AEther aether, int expected)
+    throws Exception
+  {
+    for (int tries = 0; (tries < 3000)&&(aether.headCount() != expected);
+         tries++) {
+      Thread.sleep(10);
+    }
+    if (aether.headCount() != expected) {
+      throw new IntenseTestException(
+        i,
+        "ERROR: AEther headcount is " + aether.headCount() + ", instead of " +
+        expected + "!"
+      );
+    }
+  }
+
+  /**
+   * A plain XDR token larger than a server's limit drops its connection,
+   * before all of it has been received.
+   */
+  private void testLargePlainToken
+  (AEPServer.AEther aether)
+    throws Exception
+  {
+    AEPSocketServer limitedServer = new AEPSocketServer(
+      aether, 0, 1, 1, null, logLevel, true
+    );
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(bytes);
+    StringBuilder value = new StringBuilder();
+    Context context;
+    byte[] token;
+    Socket socket;
+
+    limitedServer.setMaxPlainXDRTokenSize(1<<14);
+    limitedServer.start();
+    while (value.length() < 1<<15) {
+      value.append("0123456789");
+    }
+    context = new Context("<\"" + value + "\">");
+    AEPServer.Token.factorySerialise(
+      new AEPServer.AssignToken(0, 0, context, null), out
+    );
+    out.flush();
+    token = bytes.toByteArray();
+    socket = new Socket("localhost", limitedServer.getPort());
+    socket.setSoTimeout(30000);
+    try {
+      socket.getOutputStream().write(token, 0, token.length - 1);
+      if (socket.getInputStream().read() >= 0) {
+        throw new IntenseTestException(
+          1100, "ERROR: Server replied to part of an oversized token!"
+        );
+      }
+    } catch (SocketTimeoutException e) {
+      throw new IntenseTestException(
+        1101, "ERROR: Server kept the connection of an oversized token!"
+      );
+    } catch (SocketException e) {
+      // The connection was reset, having been dropped.
+    }
+    socket.close();
+    limitedServer.stop();
+  }
+
+  protected void test
+  ()
+    throws Exception
+  {
+    LogStream logStream = new LogStream(System.err, logLevel, true, true);
+    Log log = new Log(logStream);
+    AEPServer.AEther aether = new AEPServer.AEther(10, log, logLevel);
+    AEPSocketServer socketServer = new AEPSocketServer(
+      aether, 0, 2, 2, log, logLevel, true
+    );
+
+    aether.start();
+    socketServer.start();
+    setLog(log);
+    addPair(new SocketClientServerPair("n1", socketServer, log, logLevel));
+    addPair(new SocketClientServerPair("n2", socketServer, log, logLevel));
+    addPair(new SocketClientServerPair("n3", socketServer, log, logLevel));
+    addPair(new SocketClientServerPair("n4", socketServer, log, logLevel));
+    addPair(new SocketClientServerPair("n5", socketServer, log, logLevel));
+    addPair(new SocketClientServerPair("n6", socketServer, log, logLevel));
+    aepTest();
+    deletePairs();
+    waitForHeadCount(1000, aether, 0);
+    testLargePlainToken(aether);
+
+    // A client which goes away mid-session, without disconnecting, leaves
+    // the AEther:
+    {
+      Socket killed = joinUnpaired(socketServer, log);
+
+      waitForHeadCount(1010, aether, 2);
+      killed.setSoLinger(true, 0);
+      killed.close();
+      waitForHeadCount(1020, aether, 0);
+    }
+
+    // So does a client still connected when the server stops:
+    joinUnpaired(socketServer, log);
+    waitForHeadCount(1030, aether, 2);
+    socketServer.stop();
+    waitForHeadCount(1040, aether, 0);
+    aether.stop();
+  }
+
+  public static void main(String[] argv)
+  {
+    IntenseAEPTest5 test = new IntenseAEPTest5();
+    test.testMain(argv);
+  }
+
+}
@@ -0,0 +1,140 @@
+// ****************************************************************************
+//
+// IntenseAEPTest6.java : A sanity test for AEP 2 with AEP threads created by
+// an AEPThreadFactory.
+//
+// Copyright 2026 the Intense project contributors.
+//
+// This file is part of the Intense project.
+//
+// Intense is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// Intense is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with Intense; if not, write to the Free Software Foundation, Inc.,
+// 59 Temple Place, Suite 330, Boston, MA 02111-1307, USA.
+//
+// ****************************************************************************
+
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.regex.*;
+import intense.*;
+import intense.log.*;
+import intense.aep.*;
+
+
+public class IntenseAEPTest6
+  extends IntenseAEPTest {
+
+  public static final int logLevel = Log.ERROR;
+
+  public IntenseAEPTest6
+  ()
+  {
+    super("IntenseAEPTest6");
+  }
+
+
+  /**
+   * Records every thread it creates, using virtual threads where the JVM
+   * supports them.
+   */
+  private static class RecordingThreadFactory
+    implements ThreadFactory {
+
+    private ThreadFactory factory;
+
+    private List<Thread> threads;
+
+    private RecordingThreadFactory
+    ()
+      throws AEPException
+    {
+      factory = AEPThreadFactory.isVirtualSupported() ?
+        new AEPThreadFactory(AEPThreadFactory.VIRTUAL) :
+        new AEPThreadFactory(AEPThreadFactory.PLATFORM);
+      threads = new LinkedList<Thread>();
+    }
+
+    public synchronized Thread newThread
+    (Runnable runnable)
+    {
+      Thread thread = factory.newThread(runnable);
+
+      threads.add(thread);
+      return thread;
+    }
+
+    private synchronized List<Thread> getThreads
+    ()
+    {
+      return new ArrayList<Thread>(threads);
+    }
+
+  }
+
+
+  protected void test
+  ()
+    throws Exception
+  {
+    LogStream logStream = new LogStream(System.err, logLevel, true, true);
+    Log log = new Log(logStream);
+    RecordingThreadFactory factory = new RecordingThreadFactory();
+    AEPServer.AEther aether;
+
+    AEPThreadFactory.setDefault(factory);
+    try {
+      aether = new AEPServer.AEther(10, 2, 2, log, logLevel);
+      aether.start();
+      setLog(log);
+      addPair(new SharedClientServerPair("s1", aether, log, logLevel));
+      addPair(new SharedClientServerPair("s2", aether, log, logLevel));
+      addPair(new XDRClientServerPair("x1", aether, log, logLevel));
+      addPair(new XDRClientServerPair("x2", aether, log, logLevel));
+      addPair(new XDRClientServerPair("x3", aether, log, logLevel));
+      aepTest();
+      deletePairs();
+      aether.stop();
+    } finally {
+      AEPThreadFactory.setDefault(null);
+    }
+
+    // An ear thread and two partition threads for the AEther, and an ear
+    // thread for each server and client:
+    List<Thread> threads = factory.getThreads();
+
+    if (threads.size() != 3 + 5*2) {
+      throw new IntenseTestException(
+        1000,
+        "ERROR: AEPThreadFactory created " + threads.size() +
+        " threads.\nExpected:\n\t" + (3 + 5*2)
+      );
+    }
+    for (Thread thread : threads) {
+      thread.join(10000);
+      if (thread.isAlive()) {
+        throw new IntenseTestException(
+          1001, "ERROR: AEP thread " + thread + " outlived its owner."
+        );
+      }
+    }
+  }
+
+  public static void main(String[] argv)
+  {
+    IntenseAEPTest6 test = new IntenseAEPTest6();
+    test.testMain(argv);
+  }
+
+}
@@ -0,0 +1,221 @@
+// ****************************************************************************
+//
+// IntenseAEPTest7.java : A test of pipelined, asynchronous AEPClient
+// operations.
+//
+// Copyright 2026 the Intense project contributors.
+//
+// This file is part of the Intense project.
+//
+// Intense is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// Intense is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with Intense; if not, write to the Free Software Foundation, Inc.,
+// 59 Temple Place, Suite 330, Boston, MA 02111-1307, USA.
+//
+// ****************************************************************************
+
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.regex.*;
+import intense.*;
+import intense.log.*;
+import intense.aep.*;
+
+
+
+public class IntenseAEPTest7
+  extends IntenseAEPTest {
+
+  public static final int logLevel = Log.ERROR;
+
+  public static final int pipelineLength = 500;
+
+  public static final int smallBufferSize = 2048;
+
+  public static final int blockingLength = 100;
+
+  public IntenseAEPTest7
+  ()
+  {
+    super("IntenseAEPTest7");
+  }
+
+  private static void checkSequences
+  (int testId, List<CompletableFuture<Long>> futures, long previous)
+    throws Exception
+  {
+    Iterator<CompletableFuture<Long>> itr = futures.iterator();
+
+    while (itr.hasNext()) {
+      long serverSequence = itr.next().get(30, TimeUnit.SECONDS).longValue();
+
+      if (serverSequence <= previous) {
+        throw new IntenseTestException(
+          testId,
+          "ERROR: Pipelined server sequence " + serverSequence +
+          " follows " + previous
+        );
+      }
+      previous = serverSequence;
+    }
+  }
+
+  protected void test
+  ()
+    throws Exception
+  {
+    LogStream logStream = new LogStream(System.err, logLevel, true, true);
+    Log log = new Log(logStream);
+    AEPServer.AEther aether = new AEPServer.AEther(10, log, logLevel);
+    AEPSocketServer socketServer = new AEPSocketServer(
+      aether, 0, 1, 2, log, logLevel, true
+    );
+    List<CompletableFuture<Long>> futures =
+      new LinkedList<CompletableFuture<Long>>();
+    CompoundDimension dimension = new CompoundDimension("pipeline");
+
+    aether.start();
+    socketServer.start();
+    setLog(log);
+
+    ClientServerPair x1 = new XDRClientServerPair("x1", aether, log, logLevel);
+    ClientServerPair n1 =
+      new SocketClientServerPair("n1", socketServer, log, logLevel);
+
+    addPair(x1);
+    addPair(n1);
+
+    TestParticipant writer = x1.newParticipant(1);
+    TestParticipant reader = n1.newParticipant(1);
+
+    // Sequences are only ordered within a connection:
+    futures.add(writer.joinAsync(null, true, null));
+    checkSequences(10, futures, -1);
+    futures.clear();
+    futures.add(reader.joinAsync(null, true, dimension));
+    checkSequences(11, futures, -1);
+    futures.clear();
+
+    // Many operations outstanding on one connection, from one thread:
+    for (int i = 0; i < pipelineLength; i++) {
+      futures.add(writer.assignAsync(
+        new Context("<pipeline:<\"" + i + "\">>"), null, 0
+      ));
+      futures.add(writer.applyAsync(
+        new ContextOp("[pipeline:[count:<\"" + i + "\">]]"), null, 0
+      ));
+    }
+    futures.add(writer.synchAsync());
+    checkSequences(20, futures, -1);
+    n1.client.synch(null);
+    reader.checkContext(
+      30,
+      "<\"" + (pipelineLength - 1) + "\"+count:<\"" + (pipelineLength - 1) +
+      "\">>"
+    );
+    futures.clear();
+
+    futures.add(n1.client.clearAsync(dimension, 0));
+    futures.add(n1.client.synchAsync());
+    checkSequences(40, futures, -1);
+    reader.checkContext(50, "<>");
+
+    // Blocking operations, from another thread, alongside a long pipeline
+    // on the same connection, over small socket buffers.  Both directions
+    // of the connection fill up, so the sends must not hold the client
+    // locked against the ear:
+    {
+      final ClientServerPair n2 = new XDRSocketClientServerPair(
+        "n2", aether, log, logLevel, smallBufferSize
+      );
+      final List<CompletableFuture<Long>> pipelined =
+        Collections.synchronizedList(
+          new LinkedList<CompletableFuture<Long>>()
+        );
+      final StringBuilder padding = new StringBuilder();
+      final Exception[] exceptions = new Exception[2];
+      Thread[] threads = new Thread[2];
+
+      addPair(n2);
+      n2.newParticipant(1).joinAsync(null, true, dimension).get(
+        30, TimeUnit.SECONDS
+      );
+      n2.newParticipant(2).joinAsync(null, true, dimension).get(
+        30, TimeUnit.SECONDS
+      );
+      // Each token is larger than the socket buffers:
+      for (int i = 0; i < 16*smallBufferSize; i++) {
+        padding.append('x');
+      }
+      threads[0] = new Thread() {
+          public void run
+          ()
+          {
+            try {
+              for (int i = 0; i < pipelineLength; i++) {
+                pipelined.add(n2.get(1).applyAsync(
+                  new ContextOp("[pipeline:[\"" + padding + i + "\"]]"),
+                  null, 0
+                ));
+              }
+            } catch (Exception e) {
+              exceptions[0] = e;
+            }
+          }
+        };
+      threads[1] = new Thread() {
+          public void run
+          ()
+          {
+            try {
+              for (int i = 0; i < blockingLength; i++) {
+                n2.get(2).apply(
+                  new ContextOp("[blocking:[\"" + padding + i + "\"]]")
+                );
+              }
+            } catch (Exception e) {
+              exceptions[1] = e;
+            }
+          }
+        };
+      for (int i = 0; i < threads.length; i++) {
+        threads[i].setDaemon(true);
+        threads[i].start();
+      }
+      for (int i = 0; i < threads.length; i++) {
+        threads[i].join(60000);
+        if (threads[i].isAlive()) {
+          throw new IntenseTestException(
+            60, "ERROR: Blocking and pipelined operations deadlocked"
+          );
+        }
+        if (exceptions[i] != null) {
+          throw exceptions[i];
+        }
+      }
+      checkSequences(61, pipelined, -1);
+    }
+
+    deletePairs();
+    socketServer.stop();
+    aether.stop();
+  }
+
+  public static void main(String[] argv)
+  {
+    IntenseAEPTest7 test = new IntenseAEPTest7();
+    test.testMain(argv);
+  }
+
+}
@@ -0,0 +1,328 @@
+// ****************************************************************************
+//
+// IntenseAEPTest8.java : A sanity test for AEP 2 over XDR streams with batched
+// writes.
+//
+// Copyright 2026 the Intense project contributors.
+//
+// This file is part of the Intense project.
+//
+// Intense is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// Intense is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with Intense; if not, write to the Free Software Foundation, Inc.,
+// 59 Temple Place, Suite 330, Boston, MA 02111-1307, USA.
+//
+// ****************************************************************************
+
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.regex.*;
+import intense.*;
+import intense.log.*;
+import intense.aep.*;
+
+
+public class IntenseAEPTest8
+  extends IntenseAEPTest {
+
+  public static final int logLevel = Log.ERROR;
+
+  public static final long stallTimeout = 10000;
+
+  /**
+   * An OutputStream which can be made to block writers, as a socket to a
+   * peer which is not reading would, and which counts the writes made to
+   * it.
+   */
+  private static class GatedOutputStream
+    extends FilterOutputStream {
+
+    volatile int writes = 0;
+
+    private boolean stalled = false;
+
+    private boolean blocked = false;
+
+    GatedOutputStream
+    (OutputStream out)
+    {
+      super(out);
+    }
+
+    synchronized void stall
+    ()
+    {
+      stalled = true;
+    }
+
+    synchronized void release
+    ()
+    {
+      stalled = false;
+      notifyAll();
+    }
+
+    synchronized boolean waitForBlocked
+    (long timeout)
+      throws InterruptedException
+    {
+      long deadline = System.currentTimeMillis() + timeout;
+
+      while ((!blocked)&&(System.currentTimeMillis() < deadline)) {
+        wait(10);
+      }
+      return blocked;
+    }
+
+    private synchronized void pass
+    ()
+    {
+      while (stalled) {
+        blocked = true;
+        notifyAll();
+        try {
+          wait();
+        } catch (InterruptedException e) {
+        }
+      }
+      blocked = false;
+    }
+
+    public void write
+    (int b)
+      throws IOException
+    {
+      pass();
+      writes++;
+      out.write(b);
+    }
+
+    public void write
+    (byte[] b, int off, int len)
+      throws IOException
+    {
+      pass();
+      writes++;
+      out.write(b, off, len);
+    }
+
+  }
+
+  /**
+   * A batching XDR pair whose server and client each write through a
+   * GatedOutputStream.
+   */
+  private class GatedClientServerPair
+    extends StreamClientServerPair {
+
+    GatedOutputStream gate;
+
+    GatedOutputStream clientGate;
+
+    GatedClientServerPair
+    (String name, AEPServer.AEther aether, Log log, int logLevel,
+     int maxBatchSize, long maxLinger)
+      throws InterruptedException, IOException, IntenseException, AEPException
+    {
+      super(name, log, logLevel);
+      gate = new GatedOutputStream(serverOut);
+      clientGate = new GatedOutputStream(clientOut);
+
+      AEPXDRServer xdrServer = new AEPXDRServer(
+        aether, serverIn, gate, log, logLevel, true
+      );
+      AEPXDRClient xdrClient = new AEPXDRClient(
+        clientIn, clientGate, log, logLevel
+      );
+
+      xdrServer.setBatching(maxBatchSize, maxLinger);
+      xdrClient.setBatching(maxBatchSize, maxLinger);
+      setServer(xdrServer);
+      setClient(xdrClient);
+      xdrServer.start();
+      xdrClient.start();
+    }
+
+  }
+
+  public IntenseAEPTest8
+  ()
+  {
+    super("IntenseAEPTest8");
+  }
+
+  protected void test
+  ()
+    throws Exception
+  {
+    LogStream logStream = new LogStream(System.err, logLevel, true, true);
+    Log log = new Log(logStream);
+    AEPServer.AEther aether = new AEPServer.AEther(10, log, logLevel);
+
+    aether.start();
+    setLog(log);
+    // Batches flushed mostly by size, by linger, and by the explicit flushes
+    // of transactions and idle server ears:
+    addPair(new XDRClientServerPair("b1", aether, log, logLevel, 4, 2));
+    addPair(new XDRClientServerPair("b2", aether, log, logLevel, 64, 20));
+    addPair(new XDRClientServerPair("b3", aether, log, logLevel, 1000, 500));
+    addPair(new XDRClientServerPair("x1", aether, log, logLevel));
+    aepTest();
+    deletePairs();
+    testBatchedWrites(aether, log);
+    testStalledLinger(aether, log);
+    aether.stop();
+  }
+
+  /**
+   * A batch of tokens, each carrying a Context or ContextOp with nested
+   * nodes, reaches the underlying stream as a single write.
+   */
+  private void testBatchedWrites
+  (AEPServer.AEther aether, Log log)
+    throws Exception
+  {
+    GatedClientServerPair batched =
+      new GatedClientServerPair("g1", aether, log, logLevel, 100, 100000);
+    XDRClientServerPair writer =
+      new XDRClientServerPair("w1", aether, log, logLevel);
+    int flags = AEPServer.notifySelfBit|AEPServer.notifyClientBit;
+    Vector<CompletableFuture<Long>> futures =
+      new Vector<CompletableFuture<Long>>();
+    TestParticipant participant;
+    String last = null;
+    int writes;
+
+    addPair(batched);
+    addPair(writer);
+    participant = batched.newParticipant(1);
+    participant.join(true, "batched");
+    writer.newParticipant(1).join(true);
+
+    // Asynchronous client tokens wait for an explicit flush:
+    writes = batched.clientGate.writes;
+    for (int i = 0; i < 10; i++) {
+      futures.add(participant.assignAsync(
+        new Context("<a:<\"" + i + "\"+b:<" + i + "+c:<\"c\">>>>"),
+        (CompoundDimension)null, flags
+      ));
+      futures.add(participant.applyAsync(
+        new ContextOp("[d:[\"" + i + "\"+e:[" + i + "+f:[\"f\"]]]]"),
+        (CompoundDimension)null, flags
+      ));
+    }
+    if (batched.clientGate.writes != writes) {
+      throw new IntenseTestException(
+        1,
+        "ERROR: " + (batched.clientGate.writes - writes) +
+        " writes made by a client batch before it was flushed!"
+      );
+    }
+    batched.client.flush();
+    if (batched.clientGate.writes != writes + 1) {
+      throw new IntenseTestException(
+        2,
+        "ERROR: A client batch of 20 tokens took " +
+        (batched.clientGate.writes - writes) + " writes!"
+      );
+    }
+    for (CompletableFuture<Long> future : futures) {
+      future.get();
+    }
+
+    // Notifications from another client are batched by the server (and are
+    // sent with shared node encodings):
+    participant.synch();
+    writes = batched.gate.writes;
+    for (int i = 0; i < 100; i++) {
+      last = "<a:<\"" + i + "\"+b:<" + i + "+c:<\"c\">>>+d:<\"d\">>";
+      writer.get(1).assign(last, "batched", flags);
+    }
+    writer.get(1).synch();
+    participant.synch();
+    participant.checkContext(10, new Context(last).canonical());
+    // At most one write for the batch (or fewer, if the AEther accumulated
+    // the assignments into fewer notifications), and one for the synch
+    // reply, which is flushed with whatever is still batched:
+    if (batched.gate.writes - writes > 2) {
+      throw new IntenseTestException(
+        11,
+        "ERROR: 100 notifications and a synch reply took " +
+        (batched.gate.writes - writes) + " writes!"
+      );
+    }
+    deletePairs();
+  }
+
+  /**
+   * A stream whose lingering batch cannot be written must not hold up the
+   * lingering batches of other streams.
+   */
+  private void testStalledLinger
+  (AEPServer.AEther aether, Log log)
+    throws Exception
+  {
+    GatedClientServerPair stalled =
+      new GatedClientServerPair("s1", aether, log, logLevel, 1000, 2);
+    XDRClientServerPair free =
+      new XDRClientServerPair("f1", aether, log, logLevel, 1000, 2);
+    XDRClientServerPair writer =
+      new XDRClientServerPair("w1", aether, log, logLevel);
+    int flags = AEPServer.notifySelfBit|AEPServer.notifyClientBit;
+    TestParticipant participant;
+    long deadline;
+
+    addPair(stalled);
+    addPair(free);
+    addPair(writer);
+    stalled.newParticipant(1).join(true, "stalled");
+    participant = free.newParticipant(1);
+    participant.join(true, "free");
+    writer.newParticipant(1).join(true);
+
+    // Only the stalled pair is notified of the first assignment, and only
+    // the free pair of the second:
+    stalled.gate.stall();
+    writer.get(1).assign("<\"first\">", "stalled", flags);
+    writer.get(1).synch();
+    if (!stalled.gate.waitForBlocked(stallTimeout)) {
+      throw new IntenseTestException(
+        10, "ERROR: Lingering batch was not written to the stalled stream!"
+      );
+    }
+    writer.get(1).assign("<\"second\">", "free", flags);
+    writer.get(1).synch();
+    deadline = System.currentTimeMillis() + stallTimeout;
+    while (!participant.localContext.canonical().equals("<\"second\">")) {
+      if (System.currentTimeMillis() > deadline) {
+        stalled.gate.release();
+        throw new IntenseTestException(
+          11, "ERROR: Lingering batch held up by a stalled stream!"
+        );
+      }
+      Thread.sleep(10);
+    }
+    stalled.gate.release();
+    stalled.get(1).synch();
+    stalled.get(1).checkContext(12, "<\"first\">");
+    deletePairs();
+  }
+
+  public static void main(String[] argv)
+  {
+    IntenseAEPTest8 test = new IntenseAEPTest8();
+    test.testMain(argv);
+  }
+
+}
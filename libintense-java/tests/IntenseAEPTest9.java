@@ -0,0 +1,119 @@
+// ****************************************************************************
+//
+// IntenseAEPTest9.java : A sanity test for AEP 2 over XDR streams, with
+// replies and notifications sent from bounded outbound queues.
+//
+// Copyright 2026 the Intense project contributors.
+//
+// This file is part of the Intense project.
+//
+// Intense is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// Intense is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with Intense; if not, write to the Free Software Foundation, Inc.,
+// 59 Temple Place, Suite 330, Boston, MA 02111-1307, USA.
+//
+// ****************************************************************************
+
+
+import java.io.*;
+import java.util.*;
+import java.util.regex.*;
+import intense.*;
+import intense.log.*;
+import intense.aep.*;
+
+
+public class IntenseAEPTest9
+  extends IntenseAEPTest {
+
+  public static final int logLevel = Log.ERROR;
+
+  public IntenseAEPTest9
+  ()
+  {
+    super("IntenseAEPTest9");
+  }
+
+  protected XDRClientServerPair queuedPair
+  (String name, AEPServer.AEther aether, Log log, int maxOutboundSize,
+   int overflowPolicy)
+    throws Exception
+  {
+    XDRClientServerPair pair =
+      new XDRClientServerPair(name, aether, log, logLevel);
+
+    pair.server.setOutboundQueue(maxOutboundSize, overflowPolicy);
+    addPair(pair);
+    return pair;
+  }
+
+  protected void test
+  ()
+    throws Exception
+  {
+    LogStream logStream = new LogStream(System.err, logLevel, true, true);
+    Log log = new Log(logStream);
+    AEPServer.AEther aether = new AEPServer.AEther(10, log, logLevel);
+    SharedClientServerPair shared;
+    XDRClientServerPair q1;
+    XDRClientServerPair q2;
+    XDRClientServerPair q3;
+
+    aether.start();
+    setLog(log);
+    // A single slot makes senders block and notifications conflate most of
+    // the time:
+    q1 = queuedPair("q1", aether, log, 1, AEPServer.OVERFLOW_BLOCK);
+    q2 = queuedPair("q2", aether, log, 1, AEPServer.OVERFLOW_CONFLATE);
+    q3 = queuedPair("q3", aether, log, 1000, AEPServer.OVERFLOW_DISCONNECT);
+    shared = new SharedClientServerPair("s1", aether, log, logLevel);
+    addPair(shared);
+    try {
+      shared.server.setOutboundQueue(10, AEPServer.OVERFLOW_BLOCK);
+      throw new TestException(
+        1, "AEPSharedServer accepted an outbound queue"
+      );
+    } catch (AEPException e) {
+    }
+    aepTest();
+    if (q3.server.getOutboundOverflowCount() != 0) {
+      throw new TestException(
+        2, "Unexpected overflow of a 1000 token outbound queue"
+      );
+    }
+    // A blocking queue never exceeds its bound; replies are queued beyond
+    // the bound of a conflating one:
+    if ((q1.server.getOutboundHighWater() != 1)||
+        (q2.server.getOutboundHighWater() < 1)) {
+      throw new TestException(
+        3, "Unexpected outbound queue high water marks " +
+        q1.server.getOutboundHighWater() + ", " +
+        q2.server.getOutboundHighWater()
+      );
+    }
+    deletePairs();
+    if (q1.server.getOutboundQueueDepth() != 0) {
+      throw new TestException(
+        4, "Outbound queue not drained: " +
+        q1.server.getOutboundQueueDepth() + " tokens"
+      );
+    }
+    aether.stop();
+  }
+
+  public static void main(String[] argv)
+  {
+    IntenseAEPTest9 test = new IntenseAEPTest9();
+    test.testMain(argv);
+  }
+
+}
@@ -79,6 +79,33 @@ public abstract class IntenseTest
     }
   }
 
+  protected static void testHash
+  (int i, String input1, String input2, boolean expectedEqual)
+    throws IntenseException
+  {
+    Context c1 = new Context(input1), c2 = new Context(input2);
+    HashMap<Context, String> map = new HashMap<Context, String>();
+
+    if ((c1.equals((Object)c2) != expectedEqual)||
+        (c2.equals((Object)c1) != expectedEqual)) {
+      throw new IntenseTestException(
+        i,
+        "ERROR: Context equality was incorrect!\nc1: " + c1.canonical() +
+        "\nc2: " + c2.canonical() + "\nexpected: " + expectedEqual
+      );
+    }
+    map.put(c1, input1);
+    if (expectedEqual&&
+        ((c1.hashCode() != c2.hashCode())||(map.get(c2) != input1))) {
+      throw new IntenseTestException(
+        i,
+        "ERROR: Equal Contexts have unequal hash codes!\nc1: " +
+        c1.canonical() + " (" + c1.hashCode() + ")\nc2: " + c2.canonical() +
+        " (" + c2.hashCode() + ")"
+      );
+    }
+  }
+
   protected static void testContextOp
   (int i, String input, String expectedCanonical,
    String expectedShortCanonical, int expectedBlankcount,
@@ -291,6 +291,13 @@ public class IntenseTest0
     13
   );
 
+  testHash(350, "<a:<1>+b:<c:<x>>>", "<b:<c:<x>+d:<>>+a:<1.0>>", true);
+  testHash(360, "<a:<1>+b:<c:<x>>>", "<a:<1>+b:<c:<y>>>", false);
+  testHash(370, "<a:<1>>", "<a:<\"1\">>", false);
+  testHash(380, "<a:<1>>", "<b:<1>>", false);
+  testHash(390, "<>", "<a:<>>", true);
+  testHash(400, "<#0a0b+x:<~>>", "<#0a0b+x:<~>>", true);
+
   }
 
   public static void main(String[] argv)
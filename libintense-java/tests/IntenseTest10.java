@@ -0,0 +1,178 @@
+// ****************************************************************************
+//
+// IntenseTest10.java : A sanity test for intense.log message formatting,
+// with synchronous and asynchronous LogStreams.
+//
+// Copyright 2026 the Intense project contributors.
+//
+// This file is part of the Intense project.
+//
+// Intense is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// Intense is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with Intense; if not, write to the Free Software Foundation, Inc.,
+// 59 Temple Place, Suite 330, Boston, MA 02111-1307, USA.
+//
+// ****************************************************************************
+
+
+import intense.*;
+import intense.log.*;
+import java.io.*;
+import java.util.*;
+import java.util.regex.*;
+
+
+public class IntenseTest10
+  extends IntenseTest {
+
+  private static final int threadCount = 4;
+
+  private static final int messageCount = 2000;
+
+  private static final Pattern linePattern = Pattern.compile(
+    "\\[\\d{4}/\\d\\d/\\d\\d \\d\\d:\\d\\d:\\d\\d:\\d{3}\\] " +
+    "\\[(NOTICE|WARN)\\] thread (\\d+) message (\\d+)"
+  );
+
+  public IntenseTest10
+  ()
+  {
+    super("IntenseTest10");
+  }
+
+  /**
+   * Log from several threads at once, each through its own Log, and check
+   * that every message was printed, well formed and in per-thread order.
+   */
+  private static void testStream
+  (int i, ByteArrayOutputStream bytes, final LogStream logStream)
+    throws Exception
+  {
+    Thread[] threads = new Thread[threadCount];
+    BufferedReader reader;
+    int[] next = new int[threadCount];
+    String line;
+    int lineCount = 0;
+
+    for (int t = 0; t < threadCount; t++) {
+      final int threadId = t;
+
+      threads[t] = new Thread() {
+        public void run
+        ()
+        {
+          Log log = new Log(logStream);
+
+          for (int m = 0; m < messageCount; m++) {
+            if (m%2 == 0) {
+              log.priority(Log.WARN);
+            }
+            log.add("thread ").add(threadId).add(" message ").add(m).end();
+            // Dropped by the stream's log level:
+            log.priority(Log.DEBUG).add("dropped").end();
+          }
+        }
+      };
+      threads[t].start();
+    }
+    for (int t = 0; t < threadCount; t++) {
+      threads[t].join();
+    }
+    logStream.flush();
+    reader = new BufferedReader(new StringReader(bytes.toString()));
+    while ((line = reader.readLine()) != null) {
+      Matcher matcher = linePattern.matcher(line);
+      int threadId;
+      int m;
+
+      if (!matcher.matches()) {
+        throw new IntenseTestException(
+          i, "ERROR: Malformed log line \"" + line + "\"!"
+        );
+      }
+      threadId = Integer.parseInt(matcher.group(2));
+      m = Integer.parseInt(matcher.group(3));
+      if ((m != next[threadId]++)||
+          (!matcher.group(1).equals((m%2 == 0) ? "WARN" : "NOTICE"))) {
+        throw new IntenseTestException(
+          i, "ERROR: Log line \"" + line + "\" was out of order!"
+        );
+      }
+      lineCount++;
+    }
+    if (lineCount != threadCount*messageCount) {
+      throw new IntenseTestException(
+        i,
+        "ERROR: Logged " + lineCount + " lines, instead of " +
+        threadCount*messageCount + "!"
+      );
+    }
+    logStream.close();
+    if (logStream.isOpen()) {
+      throw new IntenseTestException(
+        i, "ERROR: Closed LogStream is still open!"
+      );
+    }
+    new Log(logStream).add("after close").end();
+    if (bytes.toString().indexOf("after close") >= 0) {
+      throw new IntenseTestException(
+        i, "ERROR: Closed LogStream printed a message!"
+      );
+    }
+  }
+
+  protected void test
+  ()
+    throws Exception
+  {
+    ByteArrayOutputStream bytes;
+
+    bytes = new ByteArrayOutputStream();
+    testStream(0, bytes, new LogStream(new PrintStream(bytes), Log.NOTICE));
+    bytes = new ByteArrayOutputStream();
+    testStream(
+      1, bytes, new AsyncLogStream(new PrintStream(bytes), Log.NOTICE)
+    );
+    // A small ring, so that logging threads wait for the writer:
+    bytes = new ByteArrayOutputStream();
+    testStream(
+      2, bytes,
+      new AsyncLogStream(new PrintStream(bytes), Log.NOTICE, true, true, 16)
+    );
+
+    // Messages waiting in the ring are printed on close:
+    {
+      AsyncLogStream logStream;
+      Log log;
+
+      bytes = new ByteArrayOutputStream();
+      logStream = new AsyncLogStream(new PrintStream(bytes), Log.NOTICE);
+      log = new Log(logStream);
+      for (int m = 0; m < 100; m++) {
+        log.add("message ").add(m).end();
+      }
+      logStream.close();
+      if (!bytes.toString().endsWith("message 99" + System.lineSeparator())) {
+        throw new IntenseTestException(
+          10, "ERROR: AsyncLogStream did not print waiting messages on close!"
+        );
+      }
+    }
+  }
+
+  public static void main(String[] argv)
+  {
+    IntenseTest10 test = new IntenseTest10();
+    test.testMain(argv);
+  }
+
+}
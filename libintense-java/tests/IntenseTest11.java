@@ -0,0 +1,234 @@
+// ****************************************************************************
+//
+// IntenseTest11.java : A sanity test for persistent Context snapshots.
+//
+// Copyright 2026 the Intense project contributors.
+//
+// This file is part of the Intense project.
+//
+// Intense is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// Intense is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with Intense; if not, write to the Free Software Foundation, Inc.,
+// 59 Temple Place, Suite 330, Boston, MA 02111-1307, USA.
+//
+// ****************************************************************************
+
+
+import intense.*;
+import java.io.*;
+import java.util.*;
+
+
+public class IntenseTest11
+  extends IntenseTest {
+
+  private static final String[] contextStrings = {
+    "<>",
+    "<\"one\">",
+    "<a:<\"one\">>",
+    "<a:<\"one\">+b:<\"two\">>",
+    "<a:<\"two\">>",
+    "<b:<\"one\">>",
+    "<\"base\"+a:<\"one\"+c:<\"three\">>+b:<\"two\">>",
+    "<a:<c:<\"three\">>+0:<\"zero\">>"
+  };
+
+  private static volatile ContextSnapshot published;
+
+  public IntenseTest11
+  ()
+  {
+    super("IntenseTest11");
+  }
+
+  /**
+   * Check that a snapshot reads as the Context it was taken from.
+   */
+  private static void testSnapshot
+  (int i, Context context, ContextSnapshot snapshot)
+    throws Exception
+  {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    Context deserialised;
+
+    if (!snapshot.canonical().equals(context.canonical())) {
+      throw new IntenseTestException(
+        i,
+        "ERROR: Snapshot canonical form " + snapshot.canonical() +
+        " differs from Context " + context.canonical() + "!"
+      );
+    }
+    if ((snapshot.hashCode() != context.hashCode())||
+        (snapshot.baseCount() != context.baseCount())) {
+      throw new IntenseTestException(
+        i,
+        "ERROR: Snapshot of " + context.canonical() + " has the wrong hash " +
+        "code or base count!"
+      );
+    }
+    snapshot.serialise(new DataOutputStream(bytes));
+    deserialised = new Context();
+    deserialised.deserialise(
+      new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()))
+    );
+    if ((!deserialised.equals(context))||
+        (!snapshot.toContext().equals(context))) {
+      throw new IntenseTestException(
+        i,
+        "ERROR: Snapshot of " + context.canonical() + " did not round " +
+        "trip!"
+      );
+    }
+  }
+
+  protected void test
+  ()
+    throws Exception
+  {
+    Context[] contexts = new Context[contextStrings.length];
+    ContextSnapshot[] snapshots = new ContextSnapshot[contextStrings.length];
+    Context context;
+    ContextSnapshot first;
+    ContextSnapshot second;
+
+    for (int i = 0; i < contextStrings.length; i++) {
+      contexts[i] = new Context(contextStrings[i]);
+      snapshots[i] = contexts[i].snapshot();
+      testSnapshot(i, contexts[i], snapshots[i]);
+    }
+
+    // Snapshots order and refine as their Contexts do, and the order is
+    // antisymmetric:
+    for (int i = 0; i < contexts.length; i++) {
+      for (int j = 0; j < contexts.length; j++) {
+        int rc = contexts[i].compare(contexts[j]);
+
+        if ((snapshots[i].compare(snapshots[j]) != rc)||
+            (contexts[j].compare(contexts[i]) != -rc)||
+            ((rc == 0) != (i == j))) {
+          throw new IntenseTestException(
+            10,
+            "ERROR: Inconsistent comparison of " + contextStrings[i] +
+            " and " + contextStrings[j] + "!"
+          );
+        }
+        if ((snapshots[i].refinesTo(snapshots[j]) !=
+             contexts[i].refinesTo(contexts[j]))||
+            (snapshots[i].equals(snapshots[j]) != (i == j))) {
+          throw new IntenseTestException(
+            11,
+            "ERROR: Inconsistent refinement or equality of " +
+            contextStrings[i] + " and " + contextStrings[j] + "!"
+          );
+        }
+      }
+    }
+
+    // Unchanged subtrees are shared, and earlier snapshots do not change:
+    context = new Context("<a:<\"one\"+c:<\"three\">>+b:<\"two\">>");
+    first = context.snapshot();
+    if (context.snapshot() != first) {
+      throw new IntenseTestException(
+        20, "ERROR: Unchanged Context was snapshot again!"
+      );
+    }
+    context.value("b").setBase("changed");
+    context.value("d").setBase("added");
+    second = context.snapshot();
+    if ((second.value(new CompoundDimension("a")) !=
+         first.value(new CompoundDimension("a")))||(second == first)) {
+      throw new IntenseTestException(
+        21, "ERROR: Snapshot did not share an unchanged subtree!"
+      );
+    }
+    if (!first.canonical().equals(
+          "<a:<\"one\"+c:<\"three\">>+b:<\"two\">>"
+        )) {
+      throw new IntenseTestException(
+        22, "ERROR: Earlier snapshot changed to " + first.canonical() + "!"
+      );
+    }
+    testSnapshot(23, context, second);
+    if (!second.value(new CompoundDimension("a:c")).canonical().equals(
+          "<\"three\">"
+        )) {
+      throw new IntenseTestException(
+        24, "ERROR: Snapshot lookup of a:c failed!"
+      );
+    }
+    context.clear("a:c");
+    context.value("b").apply(new ContextOp("<->"));
+    testSnapshot(25, context, context.snapshot());
+    testSnapshot(26, new Context(), new Context().snapshot());
+
+    // A reader checks published snapshots, without locks, while the writer
+    // keeps adding to the AEther:
+    {
+      AEther aether = new AEther();
+      final int changes = 5000;
+      final Exception[] failure = new Exception[1];
+      Thread reader;
+
+      published = aether.snapshot();
+      reader = new Thread() {
+        public void run
+        ()
+        {
+          try {
+            ContextSnapshot snapshot;
+
+            do {
+              ContextSnapshot n;
+
+              snapshot = published;
+              n = snapshot.value(new CompoundDimension("n"));
+              // Every value under n is the name of its own dimension:
+              if (n.size() != snapshot.baseCount()) {
+                throw new IntenseTestException(
+                  30, "ERROR: Inconsistent snapshot base count!"
+                );
+              }
+              for (int i = 0; i < n.size(); i++) {
+                if (!n.getChild(i).getBase().equals(
+                      new StringBaseValue(n.getDimension(i).canonical())
+                    )) {
+                  throw new IntenseTestException(
+                    31, "ERROR: Inconsistent snapshot value!"
+                  );
+                }
+              }
+            } while (snapshot.baseCount() < changes);
+          } catch (Exception e) {
+            failure[0] = e;
+          }
+        }
+      };
+      reader.start();
+      for (int i = 0; i < changes; i++) {
+        aether.value(new CompoundDimension("n:k" + i)).setBase("k" + i);
+        published = aether.snapshot();
+      }
+      reader.join();
+      if (failure[0] != null) {
+        throw failure[0];
+      }
+      testSnapshot(32, aether, published);
+    }
+  }
+
+  public static void main(String[] argv)
+  {
+    IntenseTest11 test = new IntenseTest11();
+    test.testMain(argv);
+  }
+
+}
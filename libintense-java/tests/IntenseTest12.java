@@ -0,0 +1,213 @@
+// ****************************************************************************
+//
+// IntenseTest12.java : A sanity test for compact Context child storage.
+//
+// Copyright 2026 the Intense project contributors.
+//
+// This file is part of the Intense project.
+//
+// Intense is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// Intense is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with Intense; if not, write to the Free Software Foundation, Inc.,
+// 59 Temple Place, Suite 330, Boston, MA 02111-1307, USA.
+//
+// ****************************************************************************
+
+
+import intense.*;
+import java.util.*;
+
+
+public class IntenseTest12
+  extends IntenseTest {
+
+  public IntenseTest12
+  ()
+  {
+    super("IntenseTest12");
+  }
+
+  /**
+   * Build the canonical form of a Context with the given dimensions, each
+   * valued with its own name, from a sorted set of names.
+   */
+  private static String expected
+  (SortedSet<String> names)
+  {
+    StringBuilder buffer = new StringBuilder("<");
+    boolean first = true;
+
+    for (String name : names) {
+      if (!first) {
+        buffer.append('+');
+      }
+      first = false;
+      buffer.append(name).append(":<\"").append(name).append("\">");
+    }
+    return buffer.append('>').toString();
+  }
+
+  private static void check
+  (int i, Context context, SortedSet<String> names)
+    throws Exception
+  {
+    String expectedString = expected(names);
+    Context parsed = new Context(expectedString);
+
+    if ((!context.canonical().equals(expectedString))||
+        (!context.equals(parsed))||(context.compare(parsed) != 0)||
+        (!context.refinesTo(parsed))||(!parsed.refinesTo(context))||
+        (context.hashCode() != parsed.hashCode())||
+        (context.baseCount() != names.size())) {
+      throw new IntenseTestException(
+        i,
+        "ERROR: Got " + context.canonical() + ", instead of " +
+        expectedString + "!"
+      );
+    }
+    if (context.isCompact() !=
+        (names.size() <= Context.MAX_COMPACT_CHILDREN)) {
+      throw new IntenseTestException(
+        i,
+        "ERROR: Context with " + names.size() + " children has " +
+        "isCompact() == " + context.isCompact() + "!"
+      );
+    }
+  }
+
+  protected void test
+  ()
+    throws Exception
+  {
+    Random random = new Random(12);
+    Context context = new Context();
+    SortedSet<String> names = new TreeSet<String>();
+
+    if (!context.isCompact()) {
+      throw new IntenseTestException(
+        0, "ERROR: New Context is not compact!"
+      );
+    }
+
+    // Grow one child at a time, in no particular order, past the compact
+    // capacity, checking the value of the Context at each step:
+    for (int n = 0; n < 2*Context.MAX_COMPACT_CHILDREN; n++) {
+      String name;
+
+      do {
+        name = "d" + random.nextInt(100);
+      } while (names.contains(name));
+      names.add(name);
+      context.value(name).setBase(name);
+      if (names.size() <= Context.MAX_COMPACT_CHILDREN) {
+        check(1, context, names);
+      } else if (context.isCompact()) {
+        throw new IntenseTestException(
+          2, "ERROR: Context with " + names.size() + " children is compact!"
+        );
+      }
+    }
+
+    // Clear back down, through ContextOps and clear(), with the Context
+    // built:
+    while (names.size() > 1) {
+      String name = names.first();
+
+      if (names.size()%2 == 0) {
+        context.apply(new ContextOp("[" + name + ":[-]]"));
+      } else {
+        context.clear(name);
+      }
+      names.remove(name);
+      if ((!context.canonical().equals(expected(names)))||
+          (context.baseCount() != names.size())) {
+        throw new IntenseTestException(
+          3,
+          "ERROR: Got " + context.canonical() + ", instead of " +
+          expected(names) + "!"
+        );
+      }
+    }
+
+    // Adding, replacing and removing children of compact Contexts, through
+    // ContextOps, both with and without clearing dimensions:
+    {
+      Context compact = new Context("<a:<\"a\">+c:<\"c\">>");
+      SortedSet<String> compactNames = new TreeSet<String>();
+
+      compactNames.add("a");
+      compactNames.add("c");
+      check(10, compact, compactNames);
+      compact.apply(new ContextOp("[b:[\"b\"]+d:[\"d\"]]"));
+      compactNames.add("b");
+      compactNames.add("d");
+      check(11, compact, compactNames);
+      compact.apply(new ContextOp("[--+b:[\"b\"]+e:[\"e\"]+f:[-]]"));
+      compactNames.clear();
+      compactNames.add("b");
+      compactNames.add("e");
+      check(12, compact, compactNames);
+      compact.apply(new ContextOp("[b:[-]+e:[-]]"));
+      compactNames.clear();
+      check(13, compact, compactNames);
+    }
+
+    // ContextOps, which are compact too, applied to one another:
+    {
+      ContextOp op = new ContextOp("[a:[\"a\"]+b:[\"b\"]]");
+      ContextOp other = new ContextOp("[--+c:[\"c\"]+d:[-]]");
+      ContextOp expectedOp = new ContextOp("[--+c:[\"c\"]+d:[-]]");
+
+      if (!op.isCompact()) {
+        throw new IntenseTestException(
+          20, "ERROR: Small ContextOp is not compact!"
+        );
+      }
+      op.apply(other);
+      if (!op.equals(expectedOp)) {
+        throw new IntenseTestException(
+          21,
+          "ERROR: Got " + op.canonical() + ", instead of " +
+          expectedOp.canonical() + "!"
+        );
+      }
+    }
+
+    // Copies of compact and built Contexts have the same value, and are
+    // independent of the original:
+    for (int n = 1; n <= 2*Context.MAX_COMPACT_CHILDREN; n++) {
+      Context original = new Context();
+      Context copy;
+      SortedSet<String> copyNames = new TreeSet<String>();
+
+      for (int i = 0; i < n; i++) {
+        original.value("d" + i).setBase("d" + i);
+        copyNames.add("d" + i);
+      }
+      copy = new Context(original);
+      check(30, copy, copyNames);
+      copy.clear("d0");
+      if (original.baseCount() != n) {
+        throw new IntenseTestException(
+          31, "ERROR: Clearing a copy changed the original!"
+        );
+      }
+    }
+  }
+
+  public static void main(String[] argv)
+  {
+    IntenseTest12 test = new IntenseTest12();
+    test.testMain(argv);
+  }
+
+}
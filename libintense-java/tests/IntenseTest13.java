@@ -0,0 +1,204 @@
+// ****************************************************************************
+//
+// IntenseTest13.java : A sanity test for interned StringDimensions.
+//
+// Copyright 2026 the Intense project contributors.
+//
+// This file is part of the Intense project.
+//
+// Intense is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// Intense is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with Intense; if not, write to the Free Software Foundation, Inc.,
+// 59 Temple Place, Suite 330, Boston, MA 02111-1307, USA.
+//
+// ****************************************************************************
+
+
+import intense.*;
+import java.io.*;
+import java.lang.ref.*;
+import java.util.*;
+
+
+public class IntenseTest13
+  extends IntenseTest {
+
+  private static final String[] names = {
+    "", "a", "a\u0000", "ab", "abc", "abcd", "abcde", "abcdf", "abd", "b",
+    "\u00e9t\u00e9", "\u7f16\u7801", "\uffff", "\uffffa", "zzzz", "zzzzz"
+  };
+
+  public IntenseTest13
+  ()
+  {
+    super("IntenseTest13");
+  }
+
+  private static Dimension first
+  (CompoundDimension dim)
+  {
+    return (Dimension)dim.iterator().next();
+  }
+
+  protected void test
+  ()
+    throws Exception
+  {
+    // Parsed dimensions are shared, but keep their own quoting:
+    {
+      Dimension a = first(new CompoundDimension("alpha:beta"));
+      Dimension b = first(new CompoundDimension("alpha"));
+      // Names which are all digits must be quoted:
+      Dimension quoted = first(new CompoundDimension("\"12\""));
+      Dimension unquoted = StringDimension.intern("12", false);
+
+      if (a != b) {
+        throw new IntenseTestException(
+          0, "ERROR: Parsed dimension alpha was not interned!"
+        );
+      }
+      if ((!quoted.equals(unquoted))||(quoted.compareTo(unquoted) != 0)||
+          (!quoted.canonical().equals("\"12\""))||
+          (!unquoted.canonical().equals("12"))) {
+        throw new IntenseTestException(
+          1, "ERROR: Quoted and unquoted 12 were confused!"
+        );
+      }
+    }
+
+    // Deserialised dimensions are only shared on request, and interned ones
+    // cannot be deserialised into:
+    {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      StringDimension dim = StringDimension.intern("gamma", false);
+      Dimension deserialised;
+      DataInputStream in;
+
+      Dimension.factorySerialise(
+        new StringDimension("delta", true), new DataOutputStream(bytes)
+      );
+      Dimension.factorySerialise(
+        new StringDimension("gamma", false), new DataOutputStream(bytes)
+      );
+      in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+      in.readInt();
+      try {
+        dim.deserialise(in);
+        throw new IntenseTestException(
+          10, "ERROR: Deserialised into an interned dimension!"
+        );
+      } catch (IOException e) {
+      }
+      if ((!dim.isInterned())||(!dim.canonical().equals("gamma"))) {
+        throw new IntenseTestException(
+          11, "ERROR: Interned dimension changed to " + dim.canonical()
+        );
+      }
+      deserialised = Dimension.factoryDeserialise(
+        new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()))
+      );
+      if (deserialised == StringDimension.intern("delta", true)) {
+        throw new IntenseTestException(
+          12, "ERROR: Received dimension was interned by default!"
+        );
+      }
+      StringDimension.setInterningReceived(true);
+      try {
+        deserialised = Dimension.factoryDeserialise(
+          new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()))
+        );
+      } finally {
+        StringDimension.setInterningReceived(false);
+      }
+      if (deserialised != StringDimension.intern("delta", true)) {
+        throw new IntenseTestException(
+          13, "ERROR: Received dimension was not interned on request!"
+        );
+      }
+    }
+
+    // Names no longer used drop out of the symbol table:
+    {
+      WeakReference<StringDimension> reference =
+        new WeakReference<StringDimension>(
+          StringDimension.intern("transient" + System.nanoTime(), false)
+        );
+
+      for (int i = 0; (i < 100)&&(reference.get() != null); i++) {
+        System.gc();
+        Thread.sleep(10);
+      }
+      if (reference.get() != null) {
+        throw new IntenseTestException(
+          14, "ERROR: Unused interned dimension was not collected!"
+        );
+      }
+    }
+
+    // Interned and unshared dimensions order as their names do:
+    for (int i = 0; i < names.length; i++) {
+      for (int j = 0; j < names.length; j++) {
+        int expected = Integer.signum(names[i].compareTo(names[j]));
+        Dimension[] left = {
+          StringDimension.intern(names[i], true),
+          new StringDimension(names[i], false)
+        };
+        Dimension[] right = {
+          StringDimension.intern(names[j], false),
+          new StringDimension(new String(names[j]), true)
+        };
+
+        for (int l = 0; l < left.length; l++) {
+          for (int r = 0; r < right.length; r++) {
+            if ((Integer.signum(left[l].compareTo(right[r])) != expected)||
+                (left[l].equals(right[r]) != (expected == 0))) {
+              throw new IntenseTestException(
+                20,
+                "ERROR: Inconsistent comparison of " + left[l].canonical() +
+                " and " + right[r].canonical() + "!"
+              );
+            }
+          }
+        }
+      }
+      if (new IntegerDimension(i).compareTo(
+            StringDimension.intern(names[i], false)
+          ) >= 0) {
+        throw new IntenseTestException(
+          21, "ERROR: Integer dimension ordered after string dimension!"
+        );
+      }
+    }
+
+    // Contexts built from separately parsed strings still agree:
+    {
+      Context one = new Context("<zzzz:<\"1\">+abcd:<\"2\">+abcde:<\"3\">>");
+      Context two = new Context("<abcde:<\"3\">+abcd:<\"2\">+zzzz:<\"1\">>");
+
+      if ((!one.equals(two))||(one.compare(two) != 0)||
+          (!one.canonical().equals(
+             "<abcd:<\"2\">+abcde:<\"3\">+zzzz:<\"1\">>"
+           ))) {
+        throw new IntenseTestException(
+          30, "ERROR: Got " + one.canonical() + " and " + two.canonical()
+        );
+      }
+    }
+  }
+
+  public static void main(String[] argv)
+  {
+    IntenseTest13 test = new IntenseTest13();
+    test.testMain(argv);
+  }
+
+}
@@ -0,0 +1,173 @@
+// ****************************************************************************
+//
+// IntenseTest14.java : A sanity test for Contexts with many integer
+// dimensions.
+//
+// Copyright 2026 the Intense project contributors.
+//
+// This file is part of the Intense project.
+//
+// Intense is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// Intense is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with Intense; if not, write to the Free Software Foundation, Inc.,
+// 59 Temple Place, Suite 330, Boston, MA 02111-1307, USA.
+//
+// ****************************************************************************
+
+
+import intense.*;
+import java.io.*;
+import java.util.*;
+
+
+public class IntenseTest14
+  extends IntenseTest {
+
+  private static final int count = 1000;
+
+  public IntenseTest14
+  ()
+  {
+    super("IntenseTest14");
+  }
+
+  /**
+   * @return The canonical form of a Context with the given integer
+   * dimensions, in order, followed by a string dimension, each valued with
+   * its own name.
+   */
+  private static String expected
+  (SortedSet<Integer> values)
+  {
+    StringBuilder buffer = new StringBuilder("<");
+
+    for (Integer value : values) {
+      buffer.append(value).append(":<\"").append(value).append("\">+");
+    }
+    return buffer.append("s:<\"s\">>").toString();
+  }
+
+  private static void check
+  (int i, Context context, SortedSet<Integer> values)
+    throws Exception
+  {
+    String expectedString = expected(values);
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    Context deserialised = new Context();
+
+    if ((!context.canonical().equals(expectedString))||
+        (!context.equals(new Context(expectedString)))||
+        (context.baseCount() != values.size() + 1)) {
+      throw new IntenseTestException(
+        i, "ERROR: Got " + context.canonical() + "!"
+      );
+    }
+    for (int value = -2; value < count + 2; value++) {
+      Context child = context.value(new CompoundDimension("" + value));
+      boolean present = values.contains(value);
+
+      if ((present && (!child.getBase().equals(
+                         new StringBaseValue("" + value)
+                       )))||
+          ((!present) && (!child.empty()))) {
+        throw new IntenseTestException(
+          i, "ERROR: Wrong value under " + value + "!"
+        );
+      }
+    }
+    context.serialise(new DataOutputStream(bytes));
+    deserialised.deserialise(
+      new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()))
+    );
+    if (!deserialised.equals(context)) {
+      throw new IntenseTestException(
+        i, "ERROR: Context did not round trip!"
+      );
+    }
+  }
+
+  protected void test
+  ()
+    throws Exception
+  {
+    Random random = new Random(14);
+    Context context = new Context();
+    SortedSet<Integer> values = new TreeSet<Integer>();
+    List<Integer> order = new ArrayList<Integer>();
+
+    // Add the integers in no particular order, with a string dimension, a
+    // negative one and a sparse one.  (The lexer reads "0" as a string.)
+    for (int value = 1; value <= count; value++) {
+      order.add(value);
+    }
+    order.add(-1);
+    order.add(1000000);
+    Collections.shuffle(order, random);
+    context.value("s").setBase("s");
+    for (Integer value : order) {
+      context.value(new CompoundDimension("" + value)).setBase("" + value);
+      values.add(value);
+    }
+    check(0, context, values);
+
+    // Clear every third one, by clear() and by ContextOp:
+    for (int value = 1; value <= count; value += 3) {
+      if (value%2 == 0) {
+        context.clear(new CompoundDimension("" + value));
+      } else {
+        context.apply(new ContextOp("[" + value + ":[-]]"));
+      }
+      values.remove(value);
+    }
+    check(1, context, values);
+
+    // Put them back, through a ContextOp with all of them:
+    {
+      StringBuilder buffer = new StringBuilder("[");
+
+      for (int value = 1; value <= count; value += 3) {
+        if (value > 1) {
+          buffer.append('+');
+        }
+        buffer.append(value).append(":[\"").append(value).append("\"]");
+        values.add(value);
+      }
+      context.apply(new ContextOp(buffer.append(']').toString()));
+    }
+    check(2, context, values);
+
+    // Copies are independent of the original:
+    {
+      Context copy = new Context(context);
+
+      check(3, copy, values);
+      copy.clear(new CompoundDimension("5"));
+      check(4, context, values);
+      values.remove(5);
+      check(5, copy, values);
+    }
+
+    // A ContextOp which clears dimensions leaves only its own:
+    context.apply(new ContextOp("[--+2:[\"2\"]+7:[\"7\"]+s:[\"s\"]]"));
+    values.clear();
+    values.add(2);
+    values.add(7);
+    check(6, context, values);
+  }
+
+  public static void main(String[] argv)
+  {
+    IntenseTest14 test = new IntenseTest14();
+    test.testMain(argv);
+  }
+
+}
@@ -0,0 +1,164 @@
+// ****************************************************************************
+//
+// IntenseTest15.java : A sanity test for non-materialising lookups, and
+// pruning of empty nodes.
+//
+// Copyright 2026 the Intense project contributors.
+//
+// This file is part of the Intense project.
+//
+// Intense is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// Intense is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with Intense; if not, write to the Free Software Foundation, Inc.,
+// 59 Temple Place, Suite 330, Boston, MA 02111-1307, USA.
+//
+// ****************************************************************************
+
+
+import intense.*;
+import java.util.*;
+
+
+public class IntenseTest15
+  extends IntenseTest {
+
+  /**
+   * A participant which ignores its notifications.
+   */
+  private static class QuietParticipant
+    extends AEtherParticipant {
+
+    public void assignNotify
+    (Context context, CompoundDimension dim, Origin origin)
+    {
+    }
+
+    public void applyNotify
+    (ContextOp op, CompoundDimension dim, Origin origin)
+    {
+    }
+
+    public void clearNotify
+    (CompoundDimension dim, Origin origin)
+    {
+    }
+
+    public void kickNotify
+    (Origin origin)
+    {
+    }
+
+    public boolean isPure
+    ()
+    {
+      return false;
+    }
+
+  }
+
+  public IntenseTest15
+  ()
+  {
+    super("IntenseTest15");
+  }
+
+  protected void test
+  ()
+    throws Exception
+  {
+    Context context = new Context("<a:<\"a\"+b:<\"b\">>+1:<\"1\">>");
+    String canonical = context.canonical();
+
+    // Lookups find what value() would, and never create nodes:
+    if ((context.lookup("a:b") != context.value("a:b"))||
+        (context.lookup("1") != context.value("1"))||
+        (!context.lookup("a").getBase().equals(new StringBaseValue("a")))) {
+      throw new IntenseTestException(
+        0, "ERROR: Lookup did not find an existing node!"
+      );
+    }
+    if ((context.lookup("x") != null)||(context.lookup("a:x:y") != null)||
+        (context.lookup("2") != null)||(context.lookup("a:b:c") != null)) {
+      throw new IntenseTestException(
+        1, "ERROR: Lookup found a node which does not exist!"
+      );
+    }
+    if (context.prune() != 0) {
+      throw new IntenseTestException(
+        2, "ERROR: Lookup created nodes!"
+      );
+    }
+
+    // value() creates nodes, which prune() removes, without changing the
+    // value of the Context:
+    context.value("x:y:z");
+    context.value("a:c");
+    context.value("2");
+    if (context.lookup("x:y:z") == null) {
+      throw new IntenseTestException(
+        10, "ERROR: Lookup did not find a node created by value()!"
+      );
+    }
+    if ((context.prune() != 3)||(!context.canonical().equals(canonical))||
+        (context.lookup("x") != null)||(context.lookup("a:c") != null)||
+        (context.lookup("2") != null)||(context.lookup("a:b") == null)) {
+      throw new IntenseTestException(
+        11, "ERROR: Pruning removed the wrong nodes!"
+      );
+    }
+
+    // Pruned nodes are detached:
+    {
+      Context orphan = context.value("x");
+
+      context.prune();
+      orphan.setBase("orphan");
+      if ((!context.canonical().equals(canonical))||
+          (context.baseCount() != 3)) {
+        throw new IntenseTestException(
+          12, "ERROR: A pruned node changed its old parent!"
+        );
+      }
+    }
+
+    // AEther nodes with participants, or above them, are kept:
+    {
+      AEther aether = new AEther("<a:<\"a\">>");
+      AEtherParticipant participant = new QuietParticipant();
+
+      participant.join((AEther)aether.value("p:q"));
+      aether.value("r:s");
+      participant.clear(new CompoundDimension("t:u"));
+      if ((aether.lookup("t") != null)||(aether.prune() != 1)||
+          (aether.lookup("r") != null)||
+          (aether.lookup("p:q") != participant.getNode())||
+          (!aether.canonical().equals("<a:<\"a\">>"))) {
+        throw new IntenseTestException(
+          20, "ERROR: Wrong AEther nodes pruned!"
+        );
+      }
+      participant.leave();
+      if ((aether.prune() != 1)||(aether.lookup("p") != null)) {
+        throw new IntenseTestException(
+          21, "ERROR: AEther node left by a participant was not pruned!"
+        );
+      }
+    }
+  }
+
+  public static void main(String[] argv)
+  {
+    IntenseTest15 test = new IntenseTest15();
+    test.testMain(argv);
+  }
+
+}
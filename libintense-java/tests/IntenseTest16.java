@@ -0,0 +1,188 @@
+// ****************************************************************************
+//
+// IntenseTest16.java : A test of the best-fit cache of I.
+//
+// Copyright 2026 the Intense project contributors.
+//
+// This file is part of the Intense project.
+//
+// Intense is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// Intense is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with Intense; if not, write to the Free Software Foundation, Inc.,
+// 59 Temple Place, Suite 330, Boston, MA 02111-1307, USA.
+//
+// ****************************************************************************
+
+
+import intense.*;
+
+
+public class IntenseTest16
+  extends IntenseTest {
+
+  private static final String a = "<a:<\"1\">>";
+
+  private static final String b = "<b:<\"2\">>";
+
+  private static final String c = "<c:<\"3\">>";
+
+  /**
+   * A SetContextDomain which runs a given action in the middle of each best
+   * fit, to modify the versions while the fit is being computed.
+   */
+  private static class InterruptedDomain
+    extends SetContextDomain<Version<String>> {
+
+    static final long serialVersionUID = 1L;
+
+    Runnable during = null;
+
+    public Version<String> best
+    (Context requested, boolean canThrow)
+      throws IntenseException
+    {
+      Runnable action = during;
+
+      during = null;
+      if (action != null) {
+        action.run();
+      }
+      return super.best(requested, canThrow);
+    }
+
+  }
+
+  public IntenseTest16
+  ()
+  {
+    super("IntenseTest16");
+  }
+
+  private static void check
+  (int i, I<String> versions, String desired, String expected, long hits,
+   long misses)
+    throws Exception
+  {
+    String best = versions.best(desired, false);
+
+    if ((expected == null) ? (best != null) : (!expected.equals(best))) {
+      throw new IntenseTestException(
+        i, "ERROR: Best fit for " + desired + " was " + best + ", not " +
+        expected + "!"
+      );
+    }
+    if ((versions.getCacheHits() != hits)||
+        (versions.getCacheMisses() != misses)) {
+      throw new IntenseTestException(
+        i, "ERROR: " + versions.getCacheHits() + " hits and " +
+        versions.getCacheMisses() + " misses, instead of " + hits + " and " +
+        misses + "!"
+      );
+    }
+  }
+
+  protected void test
+  ()
+    throws Exception
+  {
+    final InterruptedDomain domain = new InterruptedDomain();
+    final I<String> versions = new I<String>(domain, 2);
+
+    versions.insert(a, "a");
+    versions.insert(b, "b");
+
+    // Hits and misses, including failed best fits:
+    check(0, versions, a, "a", 0, 1);
+    check(1, versions, a, "a", 1, 1);
+    check(2, versions, b, "b", 1, 2);
+    check(3, versions, c, null, 1, 3);
+    check(4, versions, c, null, 2, 3);
+    try {
+      versions.best(c);
+      throw new IntenseTestException(
+        5, "ERROR: Cached failed best fit did not throw!"
+      );
+    } catch (IntenseException e) {
+    }
+    if (versions.getCacheHits() != 3) {
+      throw new IntenseTestException(
+        6, "ERROR: Cached failed best fit was not counted as a hit!"
+      );
+    }
+
+    // The requested context is copied into the cache:
+    {
+      Context desired = new Context(a);
+
+      versions.best(desired);
+      desired.value("b").setBase("2");
+      check(10, versions, a, "a", 4, 4);
+    }
+
+    // Least recently used entries are evicted at the size limit (a and c
+    // are cached, and c is the least recently used):
+    check(20, versions, b, "b", 4, 5);
+    check(21, versions, a, "a", 5, 5);
+    check(22, versions, c, null, 5, 6);
+    check(23, versions, b, "b", 5, 7);
+    check(24, versions, c, null, 6, 7);
+
+    // Every modification invalidates the cache:
+    versions.insert(c, "c");
+    check(30, versions, c, "c", 6, 8);
+    check(31, versions, c, "c", 7, 8);
+    versions.remove(c);
+    check(32, versions, c, null, 7, 9);
+    check(33, versions, c, null, 8, 9);
+    versions.insert(new Version<String>(c, "c"));
+    check(34, versions, c, "c", 8, 10);
+    versions.remove(new Context(c));
+    check(35, versions, c, null, 8, 11);
+    versions.clear();
+    check(36, versions, a, null, 8, 12);
+    check(37, versions, a, null, 9, 12);
+
+    // A best fit computed across a modification is not retained:
+    domain.during = new Runnable() {
+        public void run
+        ()
+        {
+          try {
+            versions.insert(a, "a");
+          } catch (IntenseException e) {
+            throw new RuntimeException(e);
+          }
+        }
+      };
+    check(40, versions, b, null, 9, 13);
+    check(41, versions, b, null, 9, 14);
+    check(42, versions, b, null, 10, 14);
+    check(43, versions, a, "a", 10, 15);
+
+    // Resizing empties the cache, and with no cache, nothing is counted:
+    versions.setCacheSize(1);
+    check(50, versions, a, "a", 10, 16);
+    check(51, versions, b, null, 10, 17);
+    check(52, versions, a, "a", 10, 18);
+    check(53, versions, a, "a", 11, 18);
+    versions.setCacheSize(0);
+    check(54, versions, a, "a", 11, 18);
+    check(55, versions, b, null, 11, 18);
+  }
+
+  public static void main(String[] argv)
+  {
+    IntenseTest16 test = new IntenseTest16();
+    test.testMain(argv);
+  }
+
+}
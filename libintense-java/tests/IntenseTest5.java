@@ -35,6 +35,31 @@ public class IntenseTest5
     super("IntenseTest5");
   }
 
+  /**
+   * Check that Context.compare() is antisymmetric, and agrees with equals(),
+   * over the cross product of the first n Contexts.
+   */
+  private void testCompares
+  (int i, Context[] c, int n)
+    throws IntenseException
+  {
+    for (int j = 0; j < n; j++) {
+      for (int k = 0; k < n; k++) {
+        int forward = Integer.signum(c[j].compare(c[k]));
+        int backward = Integer.signum(c[k].compare(c[j]));
+
+        if ((forward != -backward)||((forward == 0) != c[j].equals(c[k]))) {
+          throw new IntenseTestException(
+            i + (100*j) + (15*k),
+            "ERROR: Comparison was inconsistent!\nc1.canonical(): " +
+            c[j].canonical() + "\nc2.canonical(): " + c[k].canonical() +
+            "\nc1.compare(c2): " + forward + "\nc2.compare(c1): " + backward
+          );
+        }
+      }
+    }
+  }
+
   protected void test
   ()
     throws Exception
@@ -111,6 +136,7 @@ public class IntenseTest5
       );
     }
   }
+  testCompares(2500, c, 15);
 
   // Now stuff all of the the above versions into a subdimension and repeat
   // with the same refinement table:
@@ -138,6 +164,7 @@ public class IntenseTest5
       );
     }
   }
+  testCompares(5500, c, 15);
 
   // Just for kicks, stuff all of the the above into into two subdimensions
   // (duplicated) and repeat with the same refinement table:
@@ -165,6 +192,7 @@ public class IntenseTest5
       );
     }
   }
+  testCompares(8500, c, 15);
 
   testParse(9000, c[1], "<a:<\"one\">>");
   testParse(9010, c[2], "<a:<-1.0>>");
@@ -189,6 +217,7 @@ public class IntenseTest5
       );
     }
   }
+  testCompares(12500, c, 15);
 
   testParse(12000, c[1], "<\"blah\"+dim1:<a:<\"one\">>>");
   testParse(12010, c[2], "<\"blah\"+dim1:<a:<-1.0>>>");
@@ -213,6 +242,7 @@ public class IntenseTest5
       );
     }
   }
+  testCompares(15500, c, 15);
 
   testParse(15000, c[1], "<\"blah\"+dim1:<a:<\"one\">>+dim2:<a:<\"one\">>>");
   testParse(15010, c[2], "<\"blah\"+dim1:<a:<-1.0>>+dim2:<a:<-1.0>>>");
@@ -237,6 +267,7 @@ public class IntenseTest5
       );
     }
   }
+  testCompares(18500, c, 15);
 
   }
 
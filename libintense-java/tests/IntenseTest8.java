@@ -0,0 +1,156 @@
+// ****************************************************************************
+//
+// IntenseTest8.java : A test of IndexedContextDomains against
+// SetContextDomains.
+//
+// Copyright 2026 the Intense project contributors.
+//
+// This file is part of the Intense project.
+//
+// Intense is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// Intense is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with Intense; if not, write to the Free Software Foundation, Inc.,
+// 59 Temple Place, Suite 330, Boston, MA 02111-1307, USA.
+//
+// ****************************************************************************
+
+
+import intense.*;
+import java.util.*;
+
+
+public class IntenseTest8
+  extends IntenseTest {
+
+  private static final String[] versions = {
+    "<a:<\"one\">>",
+    "<b:<\"two\">>",
+    "<a:<\"one\">+aa:<\"one\">+b:<\"two\">>",
+    "<a:<\"one\">+b:<\"two\">>",
+    "<a:<\"one\">+b:<\"three\">>",
+    "<a:<\"one\">+b:<\"two\">+c:<\"four\">>",
+    "<d:<\"dvalue\">>",
+    "<e:<\"evalue\">>",
+    "<>",
+    "<n:<3.0>>",
+    "<a:<\"one\">+n:<5.0>>",
+    "<a:<\"one\">+p:<q:<\"deep\">+r:<#0a0b>>>",
+    "<a:<~>>",
+    "<b:<^>>",
+  };
+
+  private static final String[] requests = {
+    "<a:<\"one\">+b:<\"two\">+c:<\"four\">>",
+    "<a:<\"one\">+b:<\"two\">+c:<\"blah\">>",
+    "<a:<\"one\">+b:<\"two\">+d:<\"blah\">>",
+    "<d:<\"dvalue\">+e:<\"evalue\">+f:<\"fvalue\">>",
+    "<n:<4>>",
+    "<n:<7>+a:<\"one\">>",
+    "<a:<\"one\">+p:<q:<\"deep\">+r:<#0a0b>>>",
+    "<a:<\"two\">+b:<^>>",
+    "<a:<^>+b:<^>+n:<^>>",
+    "<zz:<\"nothing\">>",
+    "<>",
+  };
+
+  public IntenseTest8
+  ()
+  {
+    super("IntenseTest8");
+  }
+
+  private static String nearCanonicals
+  (List nearFit)
+  {
+    StringBuffer canonicals = new StringBuffer();
+    Iterator itr = nearFit.iterator();
+
+    while (itr.hasNext()) {
+      canonicals.append(((Context)itr.next()).canonical());
+    }
+    return canonicals.toString();
+  }
+
+  private void compareDomains
+  (int i, ContextDomain set, ContextDomain indexed)
+    throws IntenseException
+  {
+    for (int j = 0; j < requests.length; j++) {
+      Context requested = new Context(requests[j]);
+      Context setFit = set.best(requested, false);
+      Context indexedFit = indexed.best(requested, false);
+      String setNear = nearCanonicals(set.near(requested));
+      String indexedNear = nearCanonicals(indexed.near(requested));
+
+      if (((setFit == null) != (indexedFit == null))||
+          ((setFit != null)&&
+           (!setFit.canonical().equals(indexedFit.canonical())))) {
+        throw new IntenseTestException(
+          i + j,
+          "ERROR: Indexed best fit for " + requested.canonical() + ":\n\t" +
+          indexedFit + ".\nExpected:\n\t" + setFit
+        );
+      }
+      if (!setNear.equals(indexedNear)) {
+        throw new IntenseTestException(
+          i + j,
+          "ERROR: Indexed near fit for " + requested.canonical() + ":\n\t" +
+          indexedNear + ".\nExpected:\n\t" + setNear
+        );
+      }
+    }
+  }
+
+  protected void test
+  ()
+    throws IntenseException
+  {
+    SetContextDomain set = new SetContextDomain();
+    IndexedContextDomain indexed = new IndexedContextDomain();
+    Context c = new Context();
+
+    for (int i = 0; i < versions.length; i++) {
+      testParse(10 + i, c, versions[i]);
+      set.insert((Context)c.clone());
+      indexed.insert((Context)c.clone());
+    }
+    compareDomains(100, set, indexed);
+    testFit(
+      200, indexed, new Context(requests[1]), "<a:<\"one\">+b:<\"two\">>"
+    );
+    testNearFit(
+      210, indexed, new Context(requests[3]),
+      "<d:<\"dvalue\">><e:<\"evalue\">>"
+    );
+
+    // Replacement and removal must keep the index in step with the set:
+    set.insert(new Context(versions[3]));
+    indexed.insert(new Context(versions[3]));
+    set.remove(new Context(versions[0]));
+    indexed.remove(new Context(versions[0]));
+    set.remove(new Context(versions[8]));
+    indexed.remove(new Context(versions[8]));
+    compareDomains(300, set, indexed);
+
+    set.clear();
+    indexed.clear();
+    compareDomains(400, set, indexed);
+    testNearFit(500, indexed, new Context(requests[0]), "");
+  }
+
+  public static void main(String[] argv)
+  {
+    IntenseTest8 test = new IntenseTest8();
+    test.testMain(argv);
+  }
+
+}
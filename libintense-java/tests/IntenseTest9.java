@@ -0,0 +1,218 @@
+// ****************************************************************************
+//
+// IntenseTest9.java : A sanity test for BinaryBaseValues held in heap,
+// direct and memory-mapped buffers.
+//
+// Copyright 2026 the Intense project contributors.
+//
+// This file is part of the Intense project.
+//
+// Intense is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// Intense is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with Intense; if not, write to the Free Software Foundation, Inc.,
+// 59 Temple Place, Suite 330, Boston, MA 02111-1307, USA.
+//
+// ****************************************************************************
+
+
+import intense.*;
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.util.*;
+
+
+public class IntenseTest9
+  extends IntenseTest {
+
+  public IntenseTest9
+  ()
+  {
+    super("IntenseTest9");
+  }
+
+  private static ByteBuffer direct
+  (byte[] bytes)
+  {
+    ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length);
+
+    buffer.put(bytes);
+    buffer.flip();
+    return buffer;
+  }
+
+  private static void testCompare
+  (int i, BaseValue bv1, BaseValue bv2, boolean expectedEqual,
+   boolean expectedLess)
+    throws IntenseException
+  {
+    if ((bv1.equals(bv2) != expectedEqual)||
+        (bv2.equals(bv1) != expectedEqual)) {
+      throw new IntenseTestException(
+        i,
+        "ERROR: BinaryBaseValue equality was incorrect!\nbv1: " +
+        bv1.canonical() + "\nbv2: " + bv2.canonical() + "\nexpected: " +
+        expectedEqual
+      );
+    }
+    if ((expectedEqual)&&(bv1.hashCode() != bv2.hashCode())) {
+      throw new IntenseTestException(
+        i,
+        "ERROR: Equal BinaryBaseValues have unequal hash codes!\nbv1: " +
+        bv1.canonical() + "\nbv2: " + bv2.canonical()
+      );
+    }
+    if (bv1.lessThan(bv2) != expectedLess) {
+      throw new IntenseTestException(
+        i,
+        "ERROR: BinaryBaseValue ordering was incorrect!\nbv1: " +
+        bv1.canonical() + "\nbv2: " + bv2.canonical() + "\nexpected less: " +
+        expectedLess
+      );
+    }
+  }
+
+  private static void testCanonical
+  (int i, BaseValue bv, String expectedCanonical)
+    throws IntenseException
+  {
+    if (!bv.canonical().equals(expectedCanonical)) {
+      throw new IntenseTestException(
+        i,
+        "ERROR: BinaryBaseValue canonical form was incorrect!\n" +
+        "bv.canonical(): " + bv.canonical() + "\nexpected:        " +
+        expectedCanonical
+      );
+    }
+  }
+
+  /**
+   * Serialise a context with bv as the base of one of its nodes, and check
+   * that it deserialises to the same thing.
+   */
+  private static void testSerialise
+  (int i, BaseValue bv)
+    throws Exception
+  {
+    Context c = new Context("<a:<\"one\">>");
+    Context deserialised;
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+    c.value(new CompoundDimension("b:c")).setBase(bv);
+    Context.factorySerialise(c, new DataOutputStream(bytes));
+    deserialised = Context.factoryDeserialise(
+      new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()))
+    );
+    if (!deserialised.canonical().equals(c.canonical())) {
+      throw new IntenseTestException(
+        i,
+        "ERROR: Context with a BinaryBaseValue was serialised incorrectly!" +
+        "\nc:            " + c.canonical() + "\ndeserialised: " +
+        deserialised.canonical()
+      );
+    }
+  }
+
+  protected void test
+  ()
+    throws Exception
+  {
+    byte[] bytes = { 0x0a, 0x0b, (byte)0xff };
+    BinaryBaseValue heap = new BinaryBaseValue(ByteBuffer.wrap(bytes));
+    BinaryBaseValue onDirect = new BinaryBaseValue(direct(bytes));
+    BinaryBaseValue parsed =
+      BinaryBaseValue.hexStringToBinaryBaseValue("0a0bff");
+    BinaryBaseValue shorter = new BinaryBaseValue(direct(new byte[] { 0x0a }));
+    BinaryBaseValue positive = new BinaryBaseValue(
+      direct(new byte[] { 0x0a, 0x0b, 0x01 })
+    );
+    BinaryBaseValue clone;
+    File file;
+
+    testCanonical(10, heap, "#0a0bff");
+    testCanonical(11, onDirect, "#0a0bff");
+    testCompare(20, heap, onDirect, true, false);
+    testCompare(21, onDirect, parsed, true, false);
+    testCompare(22, shorter, onDirect, false, true);
+    testCompare(23, onDirect, shorter, false, false);
+    // Bytes compare as signed, as they always have:
+    testCompare(24, onDirect, positive, false, true);
+    testCompare(25, positive, onDirect, false, false);
+    testCompare(26, onDirect, new StringBaseValue("#0a0bff"), false, false);
+
+    // A clone shares its original's (direct) storage:
+    clone = (BinaryBaseValue)onDirect.clone();
+    if ((!clone.getContent().isDirect())||(clone.length() != 3)) {
+      throw new IntenseTestException(
+        30, "ERROR: Cloned BinaryBaseValue did not share its storage!"
+      );
+    }
+    testCompare(31, clone, onDirect, true, false);
+    clone.assign("other");
+    testCanonical(32, onDirect, "#0a0bff");
+    testCanonical(33, new BinaryBaseValue(onDirect.getContent()), "#0a0bff");
+
+    testSerialise(40, heap);
+    testSerialise(41, onDirect);
+    testSerialise(42, new BinaryBaseValue());
+
+    // Memory-mapped content:
+    file = File.createTempFile("IntenseTest9", ".bin");
+    file.deleteOnExit();
+    try {
+      RandomAccessFile raf = new RandomAccessFile(file, "rw");
+      byte[] large = new byte[20000];
+      BinaryBaseValue mapped;
+
+      for (int i = 0; i < large.length; i++) {
+        large[i] = (byte)(i*7);
+      }
+      raf.write(large);
+      mapped = new BinaryBaseValue(
+        raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, large.length)
+      );
+      raf.close();
+      testCompare(
+        50, mapped, new BinaryBaseValue(ByteBuffer.wrap(large)), true, false
+      );
+      testSerialise(51, mapped);
+      if (!Arrays.equals(mapped.getBytes(), large)) {
+        throw new IntenseTestException(
+          52, "ERROR: Memory-mapped BinaryBaseValue content was incorrect!"
+        );
+      }
+    } finally {
+      file.delete();
+    }
+
+    // java.io serialization keeps its byte array form:
+    {
+      ByteArrayOutputStream objectBytes = new ByteArrayOutputStream();
+      ObjectOutputStream out = new ObjectOutputStream(objectBytes);
+      BaseValue deserialised;
+
+      out.writeObject(onDirect);
+      out.close();
+      deserialised = (BaseValue)new ObjectInputStream(
+        new ByteArrayInputStream(objectBytes.toByteArray())
+      ).readObject();
+      testCompare(60, deserialised, onDirect, true, false);
+    }
+  }
+
+  public static void main(String[] argv)
+  {
+    IntenseTest9 test = new IntenseTest9();
+    test.testMain(argv);
+  }
+
+}